@@ -0,0 +1,332 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.BranchHandle;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.FieldGen;
+import org.apache.bcel.generic.GOTO;
+import org.apache.bcel.generic.IFGE;
+import org.apache.bcel.generic.IF_ICMPLT;
+import org.apache.bcel.generic.IINC;
+import org.apache.bcel.generic.InstructionConstants;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.PUSH;
+import org.apache.bcel.generic.Type;
+
+/**
+ * generates a jar of synthetic classes for scaling tests, as the samples hold only a class or two per bug pattern. The classes are spread over 100 packages,
+ * and are built the same way for the same settings and seed.
+ * <ul>
+ * <li>classes - the number of classes</li>
+ * <li>methods - the methods of each class, alternating between static and instance methods</li>
+ * <li>size - the number of blocks, each an arithmetic step and a branch, in every method, on top of a loop</li>
+ * <li>calls - the calls every method makes to methods of other classes, half of them static, and half on a new instance of the other class</li>
+ * <li>depth - the length of the inheritance chains, where each class in a chain extends the one before it, and overrides its instance methods</li>
+ * <li>cycles - one in this many calls is made to a class a short way ahead, rather than to an earlier one, which creates dependency cycles, 0 for none</li>
+ * <li>seed - the seed of the random choices</li>
+ * </ul>
+ * <p>
+ * java com.mebigfatguy.fbcontrib.benchmarks.CorpusGenerator [-classes n] [-methods n] [-size n] [-calls n] [-depth n] [-cycles n] [-seed n] output.jar
+ */
+public final class CorpusGenerator {
+
+    private static final String PACKAGE_PREFIX = "com.example.corpus.p";
+    private static final int NUM_PACKAGES = 100;
+    private static final int NUM_FIELDS = 3;
+    private static final int CYCLE_RANGE = 50;
+    private static final int LOOP_MULTIPLIER = 31;
+    private static final int MAJOR_VERSION = 50;
+
+    private int numClasses = 1000;
+    private int methodsPerClass = 10;
+    private int methodSize = 8;
+    private int callsPerMethod = 4;
+    private int inheritanceDepth = 3;
+    private int cycleOdds = 200;
+    private long seed = 1L;
+
+    /**
+     * creates a generator with the settings given as -name value pairs, and the defaults for the rest
+     *
+     * @param options
+     *            the options, which are consumed from the front of the list as long as they start with a dash
+     * @return the generator
+     */
+    public static CorpusGenerator fromOptions(List<String> options) {
+        CorpusGenerator generator = new CorpusGenerator();
+        Iterator<String> it = options.iterator();
+        while (it.hasNext()) {
+            String option = it.next();
+            if (!option.startsWith("-")) {
+                break;
+            }
+            it.remove();
+            if (!it.hasNext()) {
+                throw new IllegalArgumentException("No value given for " + option);
+            }
+            long value = Long.parseLong(it.next());
+            it.remove();
+
+            switch (option) {
+                case "-classes":
+                    generator.numClasses = (int) value;
+                break;
+                case "-methods":
+                    generator.methodsPerClass = (int) value;
+                break;
+                case "-size":
+                    generator.methodSize = (int) value;
+                break;
+                case "-calls":
+                    generator.callsPerMethod = (int) value;
+                break;
+                case "-depth":
+                    generator.inheritanceDepth = (int) value;
+                break;
+                case "-cycles":
+                    generator.cycleOdds = (int) value;
+                break;
+                case "-seed":
+                    generator.seed = value;
+                break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        return generator;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> options = new ArrayList<String>(Arrays.asList(args));
+        CorpusGenerator generator = fromOptions(options);
+        if (options.size() != 1) {
+            System.err.println("java " + CorpusGenerator.class.getName() + " [-classes n] [-methods n] [-size n] [-calls n] [-depth n] [-cycles n] [-seed n] output.jar");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        generator.write(new File(options.get(0)));
+        System.out.printf("Generated %s in %d ms%n", generator, (System.nanoTime() - start) / 1000000L);
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    public void setNumClasses(int numClasses) {
+        this.numClasses = numClasses;
+    }
+
+    /**
+     * writes all the classes to a jar
+     *
+     * @param jarFile
+     *            the jar to create
+     * @throws IOException
+     *             if the jar can't be written
+     */
+    public void write(File jarFile) throws IOException {
+        File dir = jarFile.getAbsoluteFile().getParentFile();
+        if ((dir != null) && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed creating directory " + dir);
+        }
+
+        Random random = new Random(seed);
+        try (JarOutputStream jos = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jarFile)))) {
+            for (int i = 0; i < numClasses; i++) {
+                JavaClass cls = generateClass(i, random);
+                ZipEntry entry = new ZipEntry(cls.getClassName().replace('.', '/') + ".class");
+                entry.setTime(0L);
+                jos.putNextEntry(entry);
+                jos.write(cls.getBytes());
+                jos.closeEntry();
+            }
+        }
+    }
+
+    private static String className(int i) {
+        return PACKAGE_PREFIX + (i % NUM_PACKAGES) + ".Class" + i;
+    }
+
+    private boolean hasSuperClass(int i) {
+        return (inheritanceDepth > 0) && ((i % (inheritanceDepth + 1)) != 0);
+    }
+
+    JavaClass generateClass(int i, Random random) {
+        String clsName = className(i);
+        String superName = hasSuperClass(i) ? className(i - 1) : "java.lang.Object";
+        ClassGen cg = new ClassGen(clsName, superName, "Class" + i + ".java", Constants.ACC_PUBLIC | Constants.ACC_SUPER, null);
+        cg.setMajor(MAJOR_VERSION);
+        cg.addEmptyConstructor(Constants.ACC_PUBLIC);
+
+        ConstantPoolGen cp = cg.getConstantPool();
+        for (int f = 0; f < NUM_FIELDS; f++) {
+            cg.addField(new FieldGen(Constants.ACC_PRIVATE, Type.INT, "f" + f, cp).getField());
+        }
+
+        InstructionFactory factory = new InstructionFactory(cg);
+        for (int m = 0; m < methodsPerClass; m++) {
+            cg.addMethod(generateMethod(i, clsName, superName, m, factory, cp, random));
+        }
+
+        return cg.getJavaClass();
+    }
+
+    /**
+     * builds a method that takes and returns an int, made up of a loop, a number of arithmetic blocks that each branch, and calls to other classes
+     */
+    private Method generateMethod(int i, String clsName, String superName, int m, InstructionFactory factory, ConstantPoolGen cp,
+            Random random) {
+        boolean isStatic = isStaticMethod(m);
+        int argReg = isStatic ? 0 : 1;
+        int accReg = argReg + 1;
+        int loopReg = argReg + 2;
+        InstructionList il = new InstructionList();
+
+        il.append(InstructionFactory.createLoad(Type.INT, argReg));
+        il.append(InstructionFactory.createStore(Type.INT, accReg));
+
+        il.append(new PUSH(cp, 0));
+        il.append(InstructionFactory.createStore(Type.INT, loopReg));
+        BranchHandle toCondition = il.append(new GOTO(null));
+        InstructionHandle loopBody = il.append(InstructionFactory.createLoad(Type.INT, accReg));
+        il.append(new PUSH(cp, LOOP_MULTIPLIER));
+        il.append(InstructionConstants.IMUL);
+        il.append(InstructionFactory.createLoad(Type.INT, loopReg));
+        il.append(InstructionConstants.IADD);
+        il.append(InstructionFactory.createStore(Type.INT, accReg));
+        il.append(new IINC(loopReg, 1));
+        toCondition.setTarget(il.append(InstructionFactory.createLoad(Type.INT, loopReg)));
+        il.append(InstructionFactory.createLoad(Type.INT, argReg));
+        il.append(new IF_ICMPLT(loopBody));
+
+        for (int b = 0; b < methodSize; b++) {
+            il.append(InstructionFactory.createLoad(Type.INT, accReg));
+            il.append(new PUSH(cp, (b % 16) + 1));
+            il.append(InstructionConstants.ISHL);
+            il.append(InstructionFactory.createLoad(Type.INT, accReg));
+            il.append(InstructionConstants.IXOR);
+            il.append(InstructionFactory.createStore(Type.INT, accReg));
+            il.append(InstructionFactory.createLoad(Type.INT, accReg));
+            BranchHandle ifNonNegative = il.append(new IFGE(null));
+            il.append(InstructionFactory.createLoad(Type.INT, accReg));
+            il.append(InstructionConstants.INEG);
+            il.append(InstructionFactory.createStore(Type.INT, accReg));
+            ifNonNegative.setTarget(il.append(InstructionConstants.NOP));
+        }
+
+        if (!isStatic) {
+            String fieldName = "f" + (m % NUM_FIELDS);
+            il.append(InstructionConstants.ALOAD_0);
+            il.append(InstructionFactory.createLoad(Type.INT, accReg));
+            il.append(InstructionConstants.ALOAD_0);
+            il.append(factory.createFieldAccess(clsName, fieldName, Type.INT, Constants.GETFIELD));
+            il.append(InstructionConstants.IADD);
+            il.append(factory.createFieldAccess(clsName, fieldName, Type.INT, Constants.PUTFIELD));
+
+            if (hasSuperClass(i)) {
+                il.append(InstructionConstants.ALOAD_0);
+                il.append(InstructionFactory.createLoad(Type.INT, accReg));
+                il.append(factory.createInvoke(superName, methodName(m), Type.INT, new Type[] { Type.INT }, Constants.INVOKESPECIAL));
+                il.append(InstructionFactory.createStore(Type.INT, accReg));
+            }
+        }
+
+        for (int c = 0; c < callsPerMethod; c++) {
+            int target = pickTarget(i, random);
+            if (target < 0) {
+                break;
+            }
+            String targetName = className(target);
+            int targetMethod = random.nextInt(methodsPerClass);
+            if (isStaticMethod(targetMethod)) {
+                il.append(InstructionFactory.createLoad(Type.INT, accReg));
+                il.append(factory.createInvoke(targetName, methodName(targetMethod), Type.INT, new Type[] { Type.INT }, Constants.INVOKESTATIC));
+            } else {
+                il.append(factory.createNew(targetName));
+                il.append(InstructionConstants.DUP);
+                il.append(factory.createInvoke(targetName, "<init>", Type.VOID, Type.NO_ARGS, Constants.INVOKESPECIAL));
+                il.append(InstructionFactory.createLoad(Type.INT, accReg));
+                il.append(factory.createInvoke(targetName, methodName(targetMethod), Type.INT, new Type[] { Type.INT }, Constants.INVOKEVIRTUAL));
+            }
+            il.append(InstructionFactory.createLoad(Type.INT, accReg));
+            il.append(InstructionConstants.IADD);
+            il.append(InstructionFactory.createStore(Type.INT, accReg));
+        }
+
+        il.append(InstructionFactory.createLoad(Type.INT, accReg));
+        il.append(InstructionConstants.IRETURN);
+
+        int access = Constants.ACC_PUBLIC | (isStatic ? Constants.ACC_STATIC : 0);
+        MethodGen mg = new MethodGen(access, Type.INT, new Type[] { Type.INT }, new String[] { "value" }, methodName(m), clsName, il, cp);
+        mg.setMaxStack();
+        mg.setMaxLocals();
+        Method method = mg.getMethod();
+        il.dispose();
+        return method;
+    }
+
+    /**
+     * picks the class a call is made to, which is an earlier class, so that the call graph is layered, or now and again one a short way ahead
+     *
+     * @return the class index, or -1 if there is no class to call
+     */
+    private int pickTarget(int i, Random random) {
+        if ((cycleOdds > 0) && (random.nextInt(cycleOdds) == 0)) {
+            int target = i + 1 + random.nextInt(CYCLE_RANGE);
+            if (target < numClasses) {
+                return target;
+            }
+        }
+        return (i == 0) ? -1 : random.nextInt(i);
+    }
+
+    private static boolean isStaticMethod(int m) {
+        return (m & 1) == 0;
+    }
+
+    private static String methodName(int m) {
+        return isStaticMethod(m) ? "s" + m : "m" + m;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d classes, %d methods of size %d with %d calls, inheritance depth %d, cycle odds %d, seed %d", numClasses, methodsPerClass,
+                methodSize, callsPerMethod, inheritanceDepth, cycleOdds, seed);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+
+/**
+ * measures one detector at a time, running visitClassContext over every sample class and then report, against an analysis of the samples that is built once
+ * per trial. A fresh detector is created for each operation, so that state collected in one run doesn't carry over to the next. Other detectors than the
+ * default ones are picked with -p detector=Name,Name...
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DetectorBenchmark {
+
+    @Param({ "SillynessPotPourri", "BloatedAssignmentScope", "FieldCouldBeLocal", "PossiblyRedundantMethodCalls", "OverlyPermissiveMethod",
+            "SuspiciousJDKVersionUse", "CustomBuiltXML", "SQLInLoop", "PossibleConstantAllocationInLoop", "CircularDependencies" })
+    public String detector;
+
+    private SampleAnalysis analysis;
+
+    /**
+     * analyzes the samples on the thread that runs the benchmark, as the analysis context is kept per thread
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        analysis = SampleAnalysis.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        analysis.close();
+    }
+
+    @Benchmark
+    public int visitSamples() throws CheckedAnalysisException {
+        return analysis.visitAll(analysis.createDetector(detector));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+
+import com.mebigfatguy.fbcontrib.utils.AnalysisProfile;
+import com.mebigfatguy.fbcontrib.utils.DetectorProfiler;
+
+import edu.umd.cs.findbugs.DetectorFactory;
+
+/**
+ * measures what each fb-contrib detector costs, in microseconds of cpu per KB of bytecode, by running all of them over a corpus with the detector profiler
+ * on, and writes the costs to the properties file that AnalysisProfile reads. The tier each cost falls in is printed next to the speed the detector has in
+ * findbugs.xml, so that the speeds can be brought up to date. The first pass warms up the JVM, and isn't counted. The cost of a detector is its own, not
+ * including the control flow graphs and dataflows it asks for, as those are shared with the other detectors.
+ * <p>
+ * java com.mebigfatguy.fbcontrib.benchmarks.DetectorCalibration [-runs n] detector-costs.properties
+ * <p>
+ * The corpus is the one SampleAnalysis is given, the compiled samples by default.
+ */
+public final class DetectorCalibration {
+
+    private static final double NANOS_PER_MICRO = 1000.0;
+    private static final double BYTES_PER_KB = 1024.0;
+
+    /**
+     * private to force use through main
+     */
+    private DetectorCalibration() {
+    }
+
+    @SuppressWarnings("deprecation")
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = 2;
+        int argIdx = 0;
+        if ((args.length > 1) && "-runs".equals(args[0])) {
+            runs = Integer.parseInt(args[1]);
+            argIdx = 2;
+        }
+        if ((args.length != (argIdx + 1)) || (runs < 1)) {
+            System.err.println("java " + DetectorCalibration.class.getName() + " [-runs n] detector-costs.properties");
+            System.exit(1);
+        }
+        File output = new File(args[argIdx]).getAbsoluteFile();
+        if (System.getProperty(DetectorProfiler.PROFILE_PROPERTY) == null) {
+            System.setProperty(DetectorProfiler.PROFILE_PROPERTY, new File(System.getProperty("java.io.tmpdir"), "fb-contrib-calibration.csv").getPath());
+        }
+
+        File corpus = new File(System.getProperty(SampleAnalysis.SAMPLES_PROPERTY, "target/classes/samples"));
+        double codeKB = getCodeBytes(corpus) / BYTES_PER_KB;
+
+        Map<String, Long> warmupNanos = new HashMap<String, Long>();
+        SampleAnalysis.runPluginPass();
+        for (DetectorProfiler.Timings t : DetectorProfiler.getTimings()) {
+            warmupNanos.put(t.getName(), Long.valueOf(getNanos(t)));
+        }
+        for (int r = 1; r < runs; r++) {
+            SampleAnalysis.runPluginPass();
+        }
+        int measuredRuns = Math.max(1, runs - 1);
+
+        Map<String, Double> costs = new HashMap<String, Double>();
+        for (DetectorProfiler.Timings t : DetectorProfiler.getTimings()) {
+            if ("detector".equals(t.getKind()) && t.getName().startsWith("com.mebigfatguy.fbcontrib.")) {
+                long nanos = getNanos(t);
+                if (runs > 1) {
+                    Long warmup = warmupNanos.get(t.getName());
+                    nanos -= (warmup == null) ? 0L : warmup.longValue();
+                }
+                costs.put(t.getName().substring(t.getName().lastIndexOf('.') + 1), Double.valueOf(nanos / (NANOS_PER_MICRO * measuredRuns * codeKB)));
+            }
+        }
+
+        List<DetectorFactory> factories = new ArrayList<DetectorFactory>(SampleAnalysis.getPlugin().getDetectorFactories());
+        Collections.sort(factories, new Comparator<DetectorFactory>() {
+            @Override
+            public int compare(DetectorFactory f1, DetectorFactory f2) {
+                return f1.getShortName().compareTo(f2.getShortName());
+            }
+        });
+
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))) {
+            pw.println("# the cost of each detector in microseconds of cpu per KB of bytecode, as measured by DetectorCalibration");
+            pw.println(String.format(Locale.ROOT, "# over %s, %.0f KB of bytecode", corpus.getName(), Double.valueOf(codeKB)));
+            System.out.printf("%-45s %12s %10s %10s%n", "Detector", "us/KB", "Measured", "Declared");
+            for (DetectorFactory factory : factories) {
+                Double cost = costs.get(factory.getShortName());
+                if ((cost == null) || factory.getReportedBugPatterns().isEmpty()) {
+                    continue;
+                }
+                pw.println(String.format(Locale.ROOT, "%s=%.1f", factory.getShortName(), cost));
+
+                String measured = AnalysisProfile.Tier.forCost(cost.doubleValue()).getSpeed();
+                String declared = factory.getSpeed();
+                System.out.printf(Locale.ROOT, "%-45s %12.1f %10s %10s%s%n", factory.getShortName(), cost, measured, declared,
+                        measured.equals(declared) ? "" : " *");
+            }
+        }
+    }
+
+    private static long getNanos(DetectorProfiler.Timings t) {
+        return (t.getCpuNanos() > 0) ? t.getCpuNanos() : t.getWallNanos();
+    }
+
+    /**
+     * adds up the size of the code of all the methods of the classes in a directory or jar
+     */
+    private static long getCodeBytes(File corpus) throws IOException {
+        long bytes = 0L;
+        if (corpus.isDirectory()) {
+            File[] files = corpus.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    if (f.isDirectory()) {
+                        bytes += getCodeBytes(f);
+                    } else if (f.getName().endsWith(".class")) {
+                        bytes += getCodeBytes(new ClassParser(f.getPath()).parse());
+                    }
+                }
+            }
+        } else {
+            try (JarFile jar = new JarFile(corpus)) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (entry.getName().endsWith(".class")) {
+                        try (InputStream is = jar.getInputStream(entry)) {
+                            bytes += getCodeBytes(new ClassParser(is, entry.getName()).parse());
+                        }
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long getCodeBytes(JavaClass cls) {
+        long bytes = 0L;
+        for (Method m : cls.getMethods()) {
+            Code code = m.getCode();
+            if (code != null) {
+                bytes += code.getCode().length;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugReporterObserver;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.MethodAnnotation;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+
+/**
+ * checks that the fb-contrib detectors that are enabled by default give the same results when they run at the same time on several threads, as they do when run one after another, so
+ * that no detector depends on static state another thread can change underneath it. Each detector is first run alone over the samples, then each thread runs
+ * every detector over its own analysis of the samples, starting at a different detector so that different detectors overlap, for a number of rounds. The bugs
+ * each detector reports on each thread in each round are compared with those it reported alone.
+ * <p>
+ * java com.mebigfatguy.fbcontrib.benchmarks.ParallelConsistencyCheck [-threads n] [-rounds n]
+ * <p>
+ * The samples are the ones SampleAnalysis is given, and the process exits with a status of 1 if any results differ.
+ */
+public final class ParallelConsistencyCheck {
+
+    /**
+     * private to force use through main
+     */
+    private ParallelConsistencyCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        int rounds = 3;
+        for (int a = 0; a < args.length; a += 2) {
+            if ((a + 1) < args.length) {
+                if ("-threads".equals(args[a])) {
+                    threads = Integer.parseInt(args[a + 1]);
+                    continue;
+                } else if ("-rounds".equals(args[a])) {
+                    rounds = Integer.parseInt(args[a + 1]);
+                    continue;
+                }
+            }
+            System.err.println("java " + ParallelConsistencyCheck.class.getName() + " [-threads n] [-rounds n]");
+            System.exit(1);
+        }
+
+        List<String> detectors = new ArrayList<String>();
+        for (DetectorFactory factory : SampleAnalysis.getPlugin().getDetectorFactories()) {
+            if (factory.isDefaultEnabled() && !factory.getReportedBugPatterns().isEmpty()) {
+                detectors.add(factory.getShortName());
+            }
+        }
+
+        Map<String, List<String>> expected;
+        try (SampleAnalysis analysis = SampleAnalysis.open()) {
+            expected = runDetectors(analysis, detectors, 0);
+        }
+        int expectedBugs = 0;
+        for (List<String> bugs : expected.values()) {
+            expectedBugs += bugs.size();
+        }
+        System.out.printf("%d detectors report %d bugs when run one after another%n", Integer.valueOf(detectors.size()), Integer.valueOf(expectedBugs));
+
+        CountDownLatch opened = new CountDownLatch(threads);
+        CountDownLatch finished = new CountDownLatch(threads);
+        List<CheckThread> checkThreads = new ArrayList<CheckThread>(threads);
+        for (int t = 0; t < threads; t++) {
+            CheckThread thread = new CheckThread((t * detectors.size()) / threads, detectors, rounds, expected, opened, finished);
+            checkThreads.add(thread);
+            thread.start();
+        }
+
+        int mismatches = 0;
+        for (CheckThread thread : checkThreads) {
+            thread.join();
+            if (thread.failure != null) {
+                thread.failure.printStackTrace();
+                mismatches++;
+            }
+            for (String mismatch : thread.mismatches) {
+                System.out.println(mismatch);
+                mismatches++;
+            }
+        }
+
+        if (mismatches > 0) {
+            System.out.printf("%d mismatches on %d threads over %d rounds%n", Integer.valueOf(mismatches), Integer.valueOf(threads), Integer.valueOf(rounds));
+            System.exit(1);
+        }
+        System.out.printf("identical results on %d threads over %d rounds%n", Integer.valueOf(threads), Integer.valueOf(rounds));
+    }
+
+    /**
+     * runs each detector over the samples, starting at a given one, and collects the bugs each reports
+     *
+     * @return the sorted bug keys reported by each detector
+     */
+    static Map<String, List<String>> runDetectors(SampleAnalysis analysis, List<String> detectors, int start) throws CheckedAnalysisException {
+        BugCollector collector = new BugCollector();
+        analysis.addBugObserver(collector);
+
+        Map<String, List<String>> bugsByDetector = new TreeMap<String, List<String>>();
+        int numDetectors = detectors.size();
+        for (int d = 0; d < numDetectors; d++) {
+            String detector = detectors.get((start + d) % numDetectors);
+            collector.bugs = new ArrayList<String>();
+            analysis.visitAll(analysis.createDetector(detector));
+            Collections.sort(collector.bugs);
+            bugsByDetector.put(detector, collector.bugs);
+        }
+        return bugsByDetector;
+    }
+
+    /**
+     * builds a key for a bug out of its type, priority and primary location
+     */
+    static String getKey(BugInstance bug) {
+        StringBuilder key = new StringBuilder(bug.getType());
+        key.append(' ').append(bug.getPriority()).append(' ').append(bug.getPrimaryClass().getClassName());
+        MethodAnnotation method = bug.getPrimaryMethod();
+        if (method != null) {
+            key.append('.').append(method.getMethodName()).append(method.getMethodSignature());
+        }
+        SourceLineAnnotation line = bug.getPrimarySourceLineAnnotation();
+        if (line != null) {
+            key.append(':').append(line.getStartLine());
+        }
+        return key.toString();
+    }
+
+    /**
+     * collects the keys of the bugs reported to an analysis
+     */
+    static class BugCollector implements BugReporterObserver {
+        List<String> bugs = new ArrayList<String>();
+
+        @Override
+        public void reportBug(BugInstance bugInstance) {
+            bugs.add(getKey(bugInstance));
+        }
+    }
+
+    /**
+     * a thread that opens its own analysis of the samples, and runs the detectors over it once all threads have done so
+     */
+    static class CheckThread extends Thread {
+
+        /**
+         * the full pass that opens an analysis also fills in the statistics collectors, so analyses are opened one at a time
+         */
+        private static final Object OPEN_LOCK = new Object();
+
+        private final int start;
+        private final List<String> detectors;
+        private final int rounds;
+        private final Map<String, List<String>> expected;
+        private final CountDownLatch opened;
+        private final CountDownLatch finished;
+        final List<String> mismatches = new ArrayList<String>();
+        Exception failure;
+
+        CheckThread(int start, List<String> detectors, int rounds, Map<String, List<String>> expected, CountDownLatch opened, CountDownLatch finished) {
+            super("check-" + start);
+            this.start = start;
+            this.detectors = detectors;
+            this.rounds = rounds;
+            this.expected = expected;
+            this.opened = opened;
+            this.finished = finished;
+        }
+
+        @Override
+        public void run() {
+            SampleAnalysis analysis = null;
+            try {
+                synchronized (OPEN_LOCK) {
+                    analysis = SampleAnalysis.open();
+                }
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                opened.countDown();
+            }
+
+            try {
+                opened.await();
+                for (int r = 0; (analysis != null) && (r < rounds); r++) {
+                    Map<String, List<String>> actual = runDetectors(analysis, detectors, start + r);
+                    for (Map.Entry<String, List<String>> entry : expected.entrySet()) {
+                        List<String> bugs = actual.get(entry.getKey());
+                        if (!entry.getValue().equals(bugs)) {
+                            mismatches.add(String.format("%s round %d: %s reported %s instead of %s", getName(), Integer.valueOf(r), entry.getKey(), bugs,
+                                    entry.getValue()));
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                finished.countDown();
+                try {
+                    finished.await();
+                } catch (InterruptedException e) {
+                    // the analysis is closed regardless
+                }
+                if (analysis != null) {
+                    analysis.close();
+                }
+            }
+        }
+    }
+}
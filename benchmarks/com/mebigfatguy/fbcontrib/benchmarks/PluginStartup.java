@@ -0,0 +1,230 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.util.ClassPath;
+
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.Plugin;
+
+/**
+ * measures what it costs to start the fb-contrib plugin: loading the plugin, setting up an analysis context over the samples with no detectors enabled,
+ * and then creating every fb-contrib detector the way FindBugs creates them. As the jvm is fresh, the first creation of a detector includes loading and
+ * initializing its class, and the detectors that take longest to create are listed. The detectors are then created again for a number of rounds, to show what
+ * a warm creation costs, as happens once per analysis run in a long lived jvm such as an IDE. Allocated bytes are reported when the jvm can measure them, along
+ * with the number of classes the detectors look up in the bcel repository while they are created, which costs the parsing of each class not yet loaded.
+ * <p>
+ * java com.mebigfatguy.fbcontrib.benchmarks.PluginStartup [-rounds n] [-top n]
+ * <p>
+ * The samples are the ones SampleAnalysis is given.
+ */
+public final class PluginStartup {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double BYTES_PER_KB = 1024.0;
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = (THREAD_BEAN instanceof com.sun.management.ThreadMXBean)
+            && ((com.sun.management.ThreadMXBean) THREAD_BEAN).isThreadAllocatedMemorySupported();
+
+    /**
+     * private to force use through main
+     */
+    private PluginStartup() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = 20;
+        int top = 15;
+        for (int a = 0; a < args.length; a += 2) {
+            if ((a + 1) < args.length) {
+                if ("-rounds".equals(args[a])) {
+                    rounds = Integer.parseInt(args[a + 1]);
+                    continue;
+                } else if ("-top".equals(args[a])) {
+                    top = Integer.parseInt(args[a + 1]);
+                    continue;
+                }
+            }
+            System.err.println("java " + PluginStartup.class.getName() + " [-rounds n] [-top n]");
+            System.exit(1);
+        }
+        if (ALLOCATION_SUPPORTED) {
+            ((com.sun.management.ThreadMXBean) THREAD_BEAN).setThreadAllocatedMemoryEnabled(true);
+        }
+
+        long start = System.nanoTime();
+        Plugin plugin = SampleAnalysis.getPlugin();
+        long pluginNanos = System.nanoTime() - start;
+
+        List<DetectorFactory> factories = new ArrayList<DetectorFactory>(plugin.getDetectorFactories());
+
+        start = System.nanoTime();
+        try (SampleAnalysis analysis = SampleAnalysis.openContext()) {
+            long contextNanos = System.nanoTime() - start;
+
+            CountingRepository repository = new CountingRepository(Repository.getRepository());
+            Repository.setRepository(repository);
+
+            List<Creation> cold = new ArrayList<Creation>(factories.size());
+            long coldNanos = 0L;
+            long coldBytes = 0L;
+            for (DetectorFactory factory : factories) {
+                long bytesBefore = getAllocatedBytes();
+                long before = System.nanoTime();
+                analysis.createDetector(factory);
+                long nanos = System.nanoTime() - before;
+                long bytes = getAllocatedBytes() - bytesBefore;
+                cold.add(new Creation(factory.getShortName(), nanos, bytes));
+                coldNanos += nanos;
+                coldBytes += bytes;
+            }
+
+            int coldLookups = repository.getLookups();
+
+            long warmNanos = 0L;
+            long warmBytes = 0L;
+            for (int r = 0; r < rounds; r++) {
+                for (int f = 0; f < factories.size(); f++) {
+                    long bytesBefore = getAllocatedBytes();
+                    long before = System.nanoTime();
+                    analysis.createDetector(factories.get(f));
+                    long nanos = System.nanoTime() - before;
+                    long bytes = getAllocatedBytes() - bytesBefore;
+                    cold.get(f).warmBytes += bytes;
+                    warmNanos += nanos;
+                    warmBytes += bytes;
+                }
+            }
+            int warmLookups = repository.getLookups() - coldLookups;
+            Repository.setRepository(repository.getDelegate());
+
+            System.out.printf(Locale.ROOT, "%-45s %10.1f ms%n", "Plugin load", Double.valueOf(pluginNanos / NANOS_PER_MILLI));
+            System.out.printf(Locale.ROOT, "%-45s %10.1f ms%n", "Analysis context, no detectors", Double.valueOf(contextNanos / NANOS_PER_MILLI));
+            System.out.printf(Locale.ROOT, "%-45s %10.1f ms %10.1f KB %6d lookups%n", "Cold creation of " + factories.size() + " detectors",
+                    Double.valueOf(coldNanos / NANOS_PER_MILLI), Double.valueOf(coldBytes / BYTES_PER_KB), Integer.valueOf(coldLookups));
+            System.out.printf(Locale.ROOT, "%-45s %10.3f ms %10.1f KB %6.1f lookups%n", "Warm creation of all detectors, per round",
+                    Double.valueOf(warmNanos / (NANOS_PER_MILLI * rounds)), Double.valueOf(warmBytes / (BYTES_PER_KB * rounds)),
+                    Double.valueOf((double) warmLookups / rounds));
+
+            Collections.sort(cold, new Comparator<Creation>() {
+                @Override
+                public int compare(Creation c1, Creation c2) {
+                    return Long.compare(c2.nanos, c1.nanos);
+                }
+            });
+            System.out.println();
+            System.out.printf("%-45s %13s %13s %13s%n", "Slowest cold creations", "ms", "KB", "warm KB");
+            for (Creation c : cold.subList(0, Math.min(top, cold.size()))) {
+                System.out.printf(Locale.ROOT, "%-45s %13.2f %13.1f %13.1f%n", c.name, Double.valueOf(c.nanos / NANOS_PER_MILLI),
+                        Double.valueOf(c.bytes / BYTES_PER_KB), Double.valueOf(c.warmBytes / (BYTES_PER_KB * rounds)));
+            }
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        return ALLOCATION_SUPPORTED ? ((com.sun.management.ThreadMXBean) THREAD_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId()) : 0L;
+    }
+
+    /**
+     * what the first creation of one detector cost, and what the later ones allocated
+     */
+    static final class Creation {
+        final String name;
+        final long nanos;
+        final long bytes;
+        long warmBytes;
+
+        Creation(String name, long nanos, long bytes) {
+            this.name = name;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * a bcel repository that counts the classes looked up in it, and passes everything on to the repository in use
+     */
+    static final class CountingRepository implements org.apache.bcel.util.Repository {
+        private static final long serialVersionUID = 1L;
+
+        private final org.apache.bcel.util.Repository delegate;
+        private int lookups;
+
+        CountingRepository(org.apache.bcel.util.Repository delegate) {
+            this.delegate = delegate;
+        }
+
+        org.apache.bcel.util.Repository getDelegate() {
+            return delegate;
+        }
+
+        int getLookups() {
+            return lookups;
+        }
+
+        @Override
+        public void storeClass(JavaClass cls) {
+            delegate.storeClass(cls);
+        }
+
+        @Override
+        public void removeClass(JavaClass cls) {
+            delegate.removeClass(cls);
+        }
+
+        @Override
+        public JavaClass findClass(String className) {
+            lookups++;
+            return delegate.findClass(className);
+        }
+
+        @Override
+        public JavaClass loadClass(String className) throws ClassNotFoundException {
+            lookups++;
+            return delegate.loadClass(className);
+        }
+
+        @Override
+        public JavaClass loadClass(Class<?> cls) throws ClassNotFoundException {
+            lookups++;
+            return delegate.loadClass(cls);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+
+        @Override
+        public ClassPath getClassPath() {
+            return delegate.getClassPath();
+        }
+    }
+}
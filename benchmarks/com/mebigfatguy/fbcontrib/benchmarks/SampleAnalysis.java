@@ -0,0 +1,339 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.AbstractBugReporter;
+import edu.umd.cs.findbugs.AnalysisError;
+import edu.umd.cs.findbugs.BugCollection;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugReporterObserver;
+import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.Detector2;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.PluginException;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * the analysis of the compiled samples that the benchmarks run detectors against. Opening it runs one full FindBugs pass with the fb-contrib detectors, so
+ * that the statistics gathered by the collectors are in place, and then keeps the analysis context and cache alive for the current thread, so that a detector
+ * can be run over the sample classes again on its own. As the class and method analyses built during the full pass stay cached, such a run measures the
+ * detector, not the building of control flow graphs and dataflows it asks for.
+ * <p>
+ * The locations used are taken from system properties
+ * <ul>
+ * <li>fb-contrib.benchmark.samples - the directory or jar of classes to analyze, target/classes/samples by default</li>
+ * <li>fb-contrib.benchmark.auxclasspath - the classpath the samples need, the benchmark's own classpath by default</li>
+ * <li>fb-contrib.benchmark.plugin - the fb-contrib plugin directory or jar, target/classes/main by default</li>
+ * </ul>
+ */
+public final class SampleAnalysis implements Closeable {
+
+    public static final String SAMPLES_PROPERTY = "fb-contrib.benchmark.samples";
+    public static final String AUX_CLASSPATH_PROPERTY = "fb-contrib.benchmark.auxclasspath";
+    public static final String PLUGIN_PROPERTY = "fb-contrib.benchmark.plugin";
+
+    private static final String PLACEHOLDER_DETECTOR = "FindFinalizeInvocations";
+
+    private static Plugin plugin;
+
+    private final RetainingFindBugs2 findBugs;
+    private final CountingBugReporter bugReporter;
+    private final List<ClassDescriptor> appClasses;
+
+    private SampleAnalysis(RetainingFindBugs2 findBugs, CountingBugReporter bugReporter, List<ClassDescriptor> appClasses) {
+        this.findBugs = findBugs;
+        this.bugReporter = bugReporter;
+        this.appClasses = appClasses;
+    }
+
+    /**
+     * analyzes the samples once with all the fb-contrib detectors, leaving the analysis context in place for the current thread
+     *
+     * @return the analysis to run detectors against
+     *
+     * @throws IOException
+     *             if the samples or plugin can't be read
+     * @throws InterruptedException
+     *             if the analysis is interrupted
+     */
+    public static SampleAnalysis open() throws IOException, InterruptedException {
+        CountingBugReporter reporter = new CountingBugReporter();
+        RetainingFindBugs2 fb = new RetainingFindBugs2();
+        configure(fb, reporter, true);
+        fb.execute();
+
+        return new SampleAnalysis(fb, reporter, getAppClasses(reporter));
+    }
+
+    /**
+     * sets up the analysis context for the samples without running any fb-contrib detector, leaving it in place for the current thread, so that detectors can
+     * be created the way FindBugs creates them, and run on their own. As FindBugs won't run without a detector, the cheap core detector
+     * FindFinalizeInvocations is run.
+     *
+     * @return the analysis to create detectors in
+     *
+     * @throws IOException
+     *             if the samples or plugin can't be read
+     * @throws InterruptedException
+     *             if the analysis is interrupted
+     */
+    public static SampleAnalysis openContext() throws IOException, InterruptedException {
+        CountingBugReporter reporter = new CountingBugReporter();
+        RetainingFindBugs2 fb = new RetainingFindBugs2();
+        configure(fb, reporter, false);
+        fb.execute();
+
+        return new SampleAnalysis(fb, reporter, getAppClasses(reporter));
+    }
+
+    /**
+     * runs a complete FindBugs pass over the samples with the fb-contrib detectors, the way the plugin is normally used
+     *
+     * @return the number of bugs reported
+     *
+     * @throws IOException
+     *             if the samples or plugin can't be read
+     * @throws InterruptedException
+     *             if the analysis is interrupted
+     */
+    public static int runPluginPass() throws IOException, InterruptedException {
+        CountingBugReporter reporter = new CountingBugReporter();
+        FindBugs2 fb = new FindBugs2();
+        try {
+            configure(fb, reporter, true);
+            fb.execute();
+            return reporter.getBugCount();
+        } finally {
+            fb.dispose();
+        }
+    }
+
+    /**
+     * creates a new instance of an fb-contrib detector, reporting to this analysis. Detectors are wrapped the same way FindBugs wraps them, so that the
+     * visitClassContext calls are timed by the active profiler.
+     *
+     * @param shortName
+     *            the simple class name of the detector
+     * @return the detector
+     */
+    public Detector2 createDetector(String shortName) {
+        for (DetectorFactory factory : getPlugin().getDetectorFactories()) {
+            if (factory.getShortName().equals(shortName)) {
+                return createDetector(factory);
+            }
+        }
+        throw new IllegalArgumentException("No fb-contrib detector named " + shortName);
+    }
+
+    /**
+     * creates a new instance of a detector from its factory, reporting to this analysis
+     *
+     * @param factory
+     *            the factory of the detector
+     * @return the detector
+     */
+    public Detector2 createDetector(DetectorFactory factory) {
+        return factory.createDetector2(bugReporter);
+    }
+
+    /**
+     * runs a detector over every sample class, which calls its visitClassContext, followed by its report
+     *
+     * @param detector
+     *            the detector to run
+     * @return the number of bugs the detector reported
+     *
+     * @throws CheckedAnalysisException
+     *             if a class can't be analyzed
+     */
+    public int visitAll(Detector2 detector) throws CheckedAnalysisException {
+        int bugsBefore = bugReporter.getBugCount();
+        for (ClassDescriptor cls : appClasses) {
+            detector.visitClass(cls);
+        }
+        detector.finishPass();
+        return bugReporter.getBugCount() - bugsBefore;
+    }
+
+    /**
+     * adds an observer that is told of each bug reported to this analysis from now on
+     *
+     * @param observer
+     *            the observer to add
+     */
+    public void addBugObserver(BugReporterObserver observer) {
+        bugReporter.addObserver(observer);
+    }
+
+    /**
+     * returns the sample classes that were analyzed
+     *
+     * @return the application classes
+     */
+    public List<ClassDescriptor> getAppClasses() {
+        return appClasses;
+    }
+
+    /**
+     * releases the analysis context and cache of the current thread
+     */
+    @Override
+    public void close() {
+        findBugs.releaseCaches();
+        findBugs.dispose();
+    }
+
+    private static void configure(FindBugs2 fb, CountingBugReporter reporter, boolean withDetectors) throws IOException {
+        Plugin fbContrib = getPlugin();
+
+        Project project = new Project();
+        project.addFile(new File(System.getProperty(SAMPLES_PROPERTY, "target/classes/samples")).getAbsolutePath());
+        String auxClasspath = System.getProperty(AUX_CLASSPATH_PROPERTY, System.getProperty("java.class.path"));
+        for (String entry : auxClasspath.split(File.pathSeparator)) {
+            if (!entry.isEmpty() && new File(entry).exists()) {
+                project.addAuxClasspathEntry(entry);
+            }
+        }
+
+        UserPreferences preferences = UserPreferences.createDefaultUserPreferences();
+        preferences.enableAllDetectors(false);
+        if (withDetectors) {
+            for (DetectorFactory factory : fbContrib.getDetectorFactories()) {
+                preferences.enableDetector(factory, true);
+            }
+        } else {
+            preferences.enableDetector(DetectorFactoryCollection.instance().getFactory(PLACEHOLDER_DETECTOR), true);
+        }
+
+        reporter.setPriorityThreshold(Detector.LOW_PRIORITY);
+        fb.setProject(project);
+        fb.setBugReporter(reporter);
+        fb.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+        fb.setUserPreferences(preferences);
+        fb.setAnalysisFeatureSettings(FindBugs.MAX_EFFORT);
+        fb.setNoClassOk(true);
+        fb.finishSettings();
+    }
+
+    private static List<ClassDescriptor> getAppClasses(CountingBugReporter reporter) {
+        AnalysisContext context = AnalysisContext.currentAnalysisContext();
+        List<ClassDescriptor> appClasses = new ArrayList<ClassDescriptor>();
+        for (ClassDescriptor cls : reporter.getObservedClasses()) {
+            if (context.isApplicationClass(cls)) {
+                appClasses.add(cls);
+            }
+        }
+        return Collections.unmodifiableList(appClasses);
+    }
+
+    static synchronized Plugin getPlugin() {
+        if (plugin == null) {
+            File pluginLocation = new File(System.getProperty(PLUGIN_PROPERTY, "target/classes/main"));
+            try {
+                plugin = Plugin.loadCustomPlugin(pluginLocation, null);
+            } catch (PluginException e) {
+                throw new IllegalStateException("Failed loading the fb-contrib plugin from " + pluginLocation.getAbsolutePath(), e);
+            }
+            if (plugin == null) {
+                throw new IllegalStateException("No fb-contrib plugin found at " + pluginLocation.getAbsolutePath());
+            }
+        }
+        return plugin;
+    }
+
+    /**
+     * a FindBugs engine that leaves the analysis context and cache of its thread in place once it is done, until asked to release them
+     */
+    static class RetainingFindBugs2 extends FindBugs2 {
+
+        @Override
+        protected void clearCaches() {
+            // kept until releaseCaches
+        }
+
+        void releaseCaches() {
+            super.clearCaches();
+        }
+    }
+
+    /**
+     * a bug reporter that only counts the bugs it is given, passing them on to any observers, and remembers the classes that were analyzed
+     */
+    static class CountingBugReporter extends AbstractBugReporter {
+
+        private int bugCount;
+        private final Set<ClassDescriptor> observedClasses = new LinkedHashSet<ClassDescriptor>();
+
+        int getBugCount() {
+            return bugCount;
+        }
+
+        Set<ClassDescriptor> getObservedClasses() {
+            return observedClasses;
+        }
+
+        @Override
+        protected void doReportBug(BugInstance bugInstance) {
+            bugCount++;
+            notifyObservers(bugInstance);
+        }
+
+        @Override
+        public void reportAnalysisError(AnalysisError error) {
+            // errors in the samples aren't of interest to the benchmarks
+        }
+
+        @Override
+        public void reportMissingClass(String string) {
+            // missing classes aren't of interest to the benchmarks
+        }
+
+        @Override
+        public void observeClass(ClassDescriptor classDescriptor) {
+            observedClasses.add(classDescriptor);
+        }
+
+        @Override
+        public void finish() {
+            // nothing is buffered
+        }
+
+        @Override
+        public BugCollection getBugCollection() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.mebigfatguy.fbcontrib.utils.DetectorProfiler;
+
+/**
+ * runs the fb-contrib detectors over a generated corpus of the given size, and appends the time and allocation of each detector, along with the time and peak
+ * heap of the whole pass, to a csv file, so that runs at different sizes can be plotted against each other. The per detector figures come from the detector
+ * profiler, so the run needs -Dfb-contrib.detector.profile set, and each size should be run in its own JVM, so that the figures and the peak heap aren't
+ * mixed up with those of another run.
+ * <p>
+ * java -Dfb-contrib.detector.profile=profile.csv com.mebigfatguy.fbcontrib.benchmarks.ScalingBenchmark [corpus generator options] results.csv
+ */
+public final class ScalingBenchmark {
+
+    private static final String HEADER = "classes,name,kind,visits,wall_ms,cpu_ms,allocated_mb,peak_heap_mb";
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double BYTES_PER_MEG = 1024.0 * 1024.0;
+
+    /**
+     * private to force use through main
+     */
+    private ScalingBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<String> options = new ArrayList<String>(Arrays.asList(args));
+        CorpusGenerator generator = CorpusGenerator.fromOptions(options);
+        if (options.size() != 1) {
+            System.err.println("java " + ScalingBenchmark.class.getName() + " [corpus generator options] results.csv");
+            System.exit(1);
+        }
+        if (!DetectorProfiler.isEnabled()) {
+            System.err.println("-D" + DetectorProfiler.PROFILE_PROPERTY + " isn't set, so only the totals are recorded");
+        }
+
+        File results = new File(options.get(0)).getAbsoluteFile();
+        File corpus = new File(results.getParentFile(), "corpus-" + generator.getNumClasses() + ".jar");
+        generator.write(corpus);
+        System.setProperty(SampleAnalysis.SAMPLES_PROPERTY, corpus.getPath());
+
+        long start = System.nanoTime();
+        int bugs;
+        try {
+            bugs = SampleAnalysis.runPluginPass();
+        } finally {
+            if (!corpus.delete()) {
+                corpus.deleteOnExit();
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+        double peakHeap = getPeakHeapBytes() / BYTES_PER_MEG;
+
+        boolean exists = results.isFile();
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(results, true), StandardCharsets.UTF_8))) {
+            if (!exists) {
+                pw.println(HEADER);
+            }
+            int numClasses = generator.getNumClasses();
+            pw.println(String.format(Locale.ROOT, "%d,total,pass,%d,%.1f,,,%.1f", numClasses, numClasses, wallNanos / NANOS_PER_MILLI, peakHeap));
+            for (DetectorProfiler.Timings t : DetectorProfiler.getTimings()) {
+                pw.println(String.format(Locale.ROOT, "%d,%s,%s,%d,%.1f,%.1f,%.1f,", numClasses, t.getName(), t.getKind(), t.getClasses(),
+                        t.getWallNanos() / NANOS_PER_MILLI, t.getCpuNanos() / NANOS_PER_MILLI, t.getAllocatedBytes() / BYTES_PER_MEG));
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%s: %d bugs in %.1f s, peak heap %.0f MB%n", generator, bugs, wallNanos / (NANOS_PER_MILLI * 1000.0), peakHeap);
+    }
+
+    private static long getPeakHeapBytes() {
+        long peak = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.bcel.Constants;
+
+import com.mebigfatguy.fbcontrib.collect.ImmutabilityType;
+import com.mebigfatguy.fbcontrib.collect.MethodInfo;
+import com.mebigfatguy.fbcontrib.collect.Statistics;
+import com.mebigfatguy.fbcontrib.collect.StatisticsKey;
+
+/**
+ * checks that the method statistics end up the same when they are filled from several threads at once, as when they are filled from one, and that
+ * threads reading the statistics while others fill them never see a method half added. A fixed list of updates, made of adding a method, marking it
+ * called with some access, and setting its immutability, is first applied on one thread. Then, for a number of rounds, the same updates are shuffled and
+ * dealt out to several writing threads, while as many reading threads look up methods as they go. Every update to a method either sets it to a value that
+ * only depends on the method, or ors in a bit, so the outcome doesn't depend on the order the threads run in. Methods share classes, names and signatures,
+ * so the threads also race to intern the same symbols and add the same pairs.
+ * <p>
+ * java com.mebigfatguy.fbcontrib.benchmarks.StatisticsConsistencyCheck [-threads n] [-rounds n] [-methods n]
+ * <p>
+ * The process exits with a status of 1 if any round differs from the serial run, or if a reader saw a method in a state no update could have left it in.
+ */
+public final class StatisticsConsistencyCheck {
+
+    private static final int UPDATES_PER_METHOD = 4;
+    private static final int METHODS_PER_CLASS = 10;
+    private static final int NUM_NAMES = 500;
+    private static final int NUM_SIGNATURES = 200;
+    private static final int[] ACCESSES = { Constants.ACC_PUBLIC, Constants.ACC_PROTECTED, Constants.ACC_PRIVATE, 0 };
+    private static final long SEED = 42L;
+
+    private static final int ADD = 0;
+    private static final int CALL = 1;
+    private static final int IMMUTABILITY = 2;
+
+    /**
+     * private to force use through main
+     */
+    private StatisticsConsistencyCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        int rounds = 5;
+        int methods = 100000;
+        for (int a = 0; a < args.length; a += 2) {
+            if ((a + 1) < args.length) {
+                if ("-threads".equals(args[a])) {
+                    threads = Integer.parseInt(args[a + 1]);
+                    continue;
+                } else if ("-rounds".equals(args[a])) {
+                    rounds = Integer.parseInt(args[a + 1]);
+                    continue;
+                } else if ("-methods".equals(args[a])) {
+                    methods = Integer.parseInt(args[a + 1]);
+                    continue;
+                }
+            }
+            System.err.println("java " + StatisticsConsistencyCheck.class.getName() + " [-threads n] [-rounds n] [-methods n]");
+            System.exit(1);
+        }
+
+        List<Update> updates = buildUpdates(methods);
+        Statistics statistics = Statistics.getStatistics();
+        statistics.clear();
+        for (Update update : updates) {
+            update.apply(statistics);
+        }
+        statistics.freeze();
+        Map<String, String> expected = describe(statistics);
+        System.out.printf("%d updates leave %d methods when applied on one thread%n", Integer.valueOf(updates.size()), Integer.valueOf(expected.size()));
+
+        int mismatches = 0;
+        Random random = new Random(SEED);
+        for (int r = 0; r < rounds; r++) {
+            List<Update> shuffled = new ArrayList<Update>(updates);
+            Collections.shuffle(shuffled, random);
+            statistics.clear();
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<WriteThread> writers = new ArrayList<WriteThread>(threads);
+            List<ReadThread> readers = new ArrayList<ReadThread>(threads);
+            for (int t = 0; t < threads; t++) {
+                WriteThread writer = new WriteThread(t, shuffled.subList((t * shuffled.size()) / threads, ((t + 1) * shuffled.size()) / threads), start);
+                writers.add(writer);
+                writer.start();
+                ReadThread reader = new ReadThread(t, updates, start);
+                readers.add(reader);
+                reader.start();
+            }
+            start.countDown();
+
+            for (WriteThread writer : writers) {
+                writer.join();
+            }
+            for (ReadThread reader : readers) {
+                reader.done = true;
+                reader.join();
+                for (String problem : reader.problems) {
+                    System.out.println("round " + r + ": " + problem);
+                    mismatches++;
+                }
+            }
+
+            Map<String, String> unfrozen = lookUp(statistics, updates);
+            statistics.freeze();
+            Map<String, String> actual = describe(statistics);
+            mismatches += compare("round " + r + " iterated", expected, actual);
+            mismatches += compare("round " + r + " looked up before freezing", expected, unfrozen);
+            mismatches += compare("round " + r + " looked up after freezing", expected, lookUp(statistics, updates));
+        }
+        statistics.clear();
+
+        if (mismatches > 0) {
+            System.out.printf("%d mismatches on %d threads over %d rounds%n", Integer.valueOf(mismatches), Integer.valueOf(threads), Integer.valueOf(rounds));
+            System.exit(1);
+        }
+        System.out.printf("identical statistics on %d threads over %d rounds%n", Integer.valueOf(threads), Integer.valueOf(rounds));
+    }
+
+    /**
+     * builds the updates, UPDATES_PER_METHOD for each method: one add, one immutability, and the rest calls with one of the accesses
+     */
+    private static List<Update> buildUpdates(int methods) {
+        Random random = new Random(SEED);
+        List<Update> updates = new ArrayList<Update>(methods * UPDATES_PER_METHOD);
+        for (int m = 0; m < methods; m++) {
+            String cls = "com/example/pkg" + (m % 97) + "/Class" + (m / METHODS_PER_CLASS);
+            String name = "method" + random.nextInt(NUM_NAMES);
+            String sig = "(I)Lcom/example/Type" + random.nextInt(NUM_SIGNATURES) + ';';
+            updates.add(new Update(ADD, m, cls, name, sig, 0));
+            updates.add(new Update(IMMUTABILITY, m, cls, name, sig, 0));
+            for (int u = 2; u < UPDATES_PER_METHOD; u++) {
+                updates.add(new Update(CALL, m, cls, name, sig, ACCESSES[random.nextInt(ACCESSES.length)]));
+            }
+        }
+        return updates;
+    }
+
+    /**
+     * describes all the methods in the statistics, as found by iterating over them
+     */
+    private static Map<String, String> describe(Statistics statistics) {
+        Map<String, String> methods = new TreeMap<String, String>();
+        for (Map.Entry<StatisticsKey, MethodInfo> entry : statistics) {
+            StatisticsKey key = entry.getKey();
+            methods.put(key.getClassName() + '.' + key.getMethodName() + key.getSignature(), entry.getValue().toString());
+        }
+        return methods;
+    }
+
+    /**
+     * describes the methods the updates touch, as found by looking each one up
+     */
+    private static Map<String, String> lookUp(Statistics statistics, List<Update> updates) {
+        Map<String, String> methods = new TreeMap<String, String>();
+        for (Update update : updates) {
+            methods.put(update.cls + '.' + update.name + update.sig, statistics.getMethodStatistics(update.cls, update.name, update.sig).toString());
+        }
+        return methods;
+    }
+
+    private static int compare(String what, Map<String, String> expected, Map<String, String> actual) {
+        if (expected.equals(actual)) {
+            return 0;
+        }
+
+        int mismatches = 0;
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            String found = actual.get(entry.getKey());
+            if (!entry.getValue().equals(found)) {
+                System.out.println(what + ": " + entry.getKey() + " is " + found + " instead of " + entry.getValue());
+                mismatches++;
+            }
+        }
+        for (String key : actual.keySet()) {
+            if (!expected.containsKey(key)) {
+                System.out.println(what + ": " + key + " should not be there");
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * one change to the statistics of one method, whose values other than the calling access only depend on the method. As there is no way to add a
+     * method without setting something, a call first sets the method's immutability, which the method's own immutability update sets to the same value.
+     */
+    static class Update {
+        final int kind;
+        final int method;
+        final String cls;
+        final String name;
+        final String sig;
+        final int callingAccess;
+
+        Update(int kind, int method, String cls, String name, String sig, int callingAccess) {
+            this.kind = kind;
+            this.method = method;
+            this.cls = cls;
+            this.name = name;
+            this.sig = sig;
+            this.callingAccess = callingAccess;
+        }
+
+        void apply(Statistics statistics) {
+            switch (kind) {
+            case ADD:
+                statistics.addMethodStatistics(cls, name, sig, declaredAccess(method), numBytes(method), numMethodCalls(method));
+                break;
+            case IMMUTABILITY:
+                statistics.addImmutabilityStatus(cls, name, sig, immutabilityType(method));
+                break;
+            default:
+                statistics.addImmutabilityStatus(cls, name, sig, immutabilityType(method));
+                statistics.getMethodStatistics(cls, name, sig).addCallingAccess(callingAccess);
+                break;
+            }
+        }
+
+        static int declaredAccess(int method) {
+            return ACCESSES[method % ACCESSES.length];
+        }
+
+        static int numBytes(int method) {
+            return 1 + (method % 5000);
+        }
+
+        static int numMethodCalls(int method) {
+            return method % 100;
+        }
+
+        static ImmutabilityType immutabilityType(int method) {
+            ImmutabilityType[] types = ImmutabilityType.values();
+            return types[1 + (method % (types.length - 1))];
+        }
+    }
+
+    /**
+     * a thread that applies its share of the updates
+     */
+    static class WriteThread extends Thread {
+        private final List<Update> updates;
+        private final CountDownLatch start;
+
+        WriteThread(int id, List<Update> updates, CountDownLatch start) {
+            super("write-" + id);
+            this.updates = updates;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            try {
+                start.await();
+                Statistics statistics = Statistics.getStatistics();
+                for (Update update : updates) {
+                    update.apply(statistics);
+                }
+            } catch (InterruptedException e) {
+                // the round is checked regardless
+            }
+        }
+    }
+
+    /**
+     * a thread that looks up methods while the writers run, checking that each is either not found yet, or holds values some updates could have left
+     */
+    static class ReadThread extends Thread {
+        private final List<Update> updates;
+        private final CountDownLatch start;
+        private final Random random;
+        volatile boolean done;
+        final List<String> problems = new ArrayList<String>();
+
+        ReadThread(int id, List<Update> updates, CountDownLatch start) {
+            super("read-" + id);
+            this.updates = updates;
+            this.start = start;
+            random = new Random(SEED + id);
+        }
+
+        @Override
+        public void run() {
+            try {
+                start.await();
+                Statistics statistics = Statistics.getStatistics();
+                while (!done && (problems.size() < 10)) {
+                    Update update = updates.get(random.nextInt(updates.size()));
+                    MethodInfo mi = statistics.getMethodStatistics(update.cls, update.name, update.sig);
+                    int numBytes = mi.getNumBytes();
+                    ImmutabilityType imType = mi.getImmutabilityType();
+                    if (((numBytes != 0) && (numBytes != Update.numBytes(update.method)))
+                            || ((imType != ImmutabilityType.UNKNOWN) && (imType != Update.immutabilityType(update.method)))) {
+                        problems.add(update.cls + '.' + update.name + update.sig + " was seen as " + mi);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // nothing was checked
+            }
+        }
+    }
+}
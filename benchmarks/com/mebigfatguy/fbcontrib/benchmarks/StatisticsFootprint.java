@@ -0,0 +1,127 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.mebigfatguy.fbcontrib.collect.Statistics;
+import com.mebigfatguy.fbcontrib.collect.StatisticsKey;
+
+/**
+ * measures the heap held by the method statistics, compared with the heap the same methods would take as a map from StatisticsKey to an object per method
+ * holding a short and four bytes, as Statistics used to keep them. Synthetic methods are spread over classes of a dozen methods, with names and signatures
+ * picked at random from large pools, and every string freshly made, as reading class files would make them. The heap is measured after repeated full
+ * collections, before and after each table is filled, and both figures include the strings the table holds on to.
+ * <p>
+ * java com.mebigfatguy.fbcontrib.benchmarks.StatisticsFootprint [-methods n]
+ */
+public final class StatisticsFootprint {
+
+    private static final int METHODS_PER_CLASS = 12;
+    private static final int CLASSES_PER_PACKAGE = 50;
+    private static final int NUM_NAMES = 200000;
+    private static final int NUM_TYPES = 100000;
+    private static final long SEED = 42L;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    /**
+     * private to force use through main
+     */
+    private StatisticsFootprint() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int methods = 1200000;
+        for (int a = 0; a < args.length; a += 2) {
+            if (((a + 1) < args.length) && "-methods".equals(args[a])) {
+                methods = Integer.parseInt(args[a + 1]);
+                continue;
+            }
+            System.err.println("java " + StatisticsFootprint.class.getName() + " [-methods n]");
+            System.exit(1);
+        }
+
+        Statistics statistics = Statistics.getStatistics();
+        statistics.clear();
+        long before = usedHeap();
+        Random random = new Random(SEED);
+        for (int i = 0; i < methods; i++) {
+            statistics.addMethodStatistics(className(i), methodName(random), signature(random), 1, 100, 5);
+        }
+        long packed = usedHeap() - before;
+        statistics.clear();
+
+        before = usedHeap();
+        Map<StatisticsKey, ObjectMethodInfo> map = new HashMap<StatisticsKey, ObjectMethodInfo>();
+        random = new Random(SEED);
+        for (int i = 0; i < methods; i++) {
+            ObjectMethodInfo mi = new ObjectMethodInfo();
+            mi.numMethodBytes = 100;
+            mi.numMethodCalls = 5;
+            mi.declaredAccess = 1;
+            map.put(new StatisticsKey(className(i), methodName(random), signature(random)), mi);
+        }
+        long objects = usedHeap() - before;
+
+        System.out.printf("%d methods in %d classes%n", Integer.valueOf(methods), Integer.valueOf(((methods - 1) / METHODS_PER_CLASS) + 1));
+        print("packed statistics", packed, methods);
+        print("map of objects", objects, map.size());
+    }
+
+    private static void print(String layout, long bytes, int methods) {
+        System.out.printf("%-20s %8.1f MB %8.1f bytes/method%n", layout, Double.valueOf(bytes / BYTES_PER_MB), Double.valueOf(bytes / (double) methods));
+    }
+
+    private static String className(int method) {
+        int cls = method / METHODS_PER_CLASS;
+        return "com/example/pkg" + (cls / CLASSES_PER_PACKAGE) + "/Class" + cls;
+    }
+
+    private static String methodName(Random random) {
+        return "method" + random.nextInt(NUM_NAMES);
+    }
+
+    private static String signature(Random random) {
+        return "(Ljava/lang/String;I)Lcom/example/Type" + random.nextInt(NUM_TYPES) + ';';
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 5; i++) {
+            memory.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * an object per method, with the fields MethodInfo had before its values were packed into the statistics pages
+     */
+    static class ObjectMethodInfo {
+        short numMethodBytes;
+        byte numMethodCalls;
+        byte immutabilityOrdinal;
+        byte declaredAccess;
+        byte isCalledType;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.BranchHandle;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.GOTO;
+import org.apache.bcel.generic.IFGE;
+import org.apache.bcel.generic.IINC;
+import org.apache.bcel.generic.InstructionConstants;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.PUSH;
+import org.apache.bcel.generic.TABLESWITCH;
+import org.apache.bcel.generic.Type;
+
+import edu.umd.cs.findbugs.Detector2;
+
+/**
+ * times BloatedAssignmentScope on generated methods made of one switch with a growing number of cases, up to the 64KB limit of a method, as such
+ * methods, common in generated parsers and state machines, give a scope block per case, and finding the block that holds each load and store used to walk
+ * them all. Each case stores into one of a few locals, tests it, and breaks out of the switch. The time per KB of bytecode should stay about the same as the
+ * methods grow, rather than growing with them.
+ * <p>
+ * java com.mebigfatguy.fbcontrib.benchmarks.SwitchScopeBenchmark [-rounds n] [-cases n,n,...]
+ */
+public final class SwitchScopeBenchmark {
+
+    private static final String DETECTOR = "BloatedAssignmentScope";
+    private static final String CLASS_NAME = "com.example.switches.Switches";
+    private static final int NUM_LOCALS = 8;
+    private static final int RESULT_REG = NUM_LOCALS + 1;
+    private static final int MAX_CODE_LENGTH = 65535;
+    private static final int MAJOR_VERSION = 50;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double NANOS_PER_MICRO = 1000.0;
+    private static final double BYTES_PER_KB = 1024.0;
+
+    /**
+     * private to force use through main
+     */
+    private SwitchScopeBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = 10;
+        int[] caseCounts = { 250, 500, 1000, 2000, 3000 };
+        for (int a = 0; a < args.length; a += 2) {
+            if ((a + 1) < args.length) {
+                if ("-rounds".equals(args[a])) {
+                    rounds = Integer.parseInt(args[a + 1]);
+                    continue;
+                } else if ("-cases".equals(args[a])) {
+                    String[] counts = args[a + 1].split(",");
+                    caseCounts = new int[counts.length];
+                    for (int c = 0; c < counts.length; c++) {
+                        caseCounts[c] = Integer.parseInt(counts[c].trim());
+                    }
+                    continue;
+                }
+            }
+            System.err.println("java " + SwitchScopeBenchmark.class.getName() + " [-rounds n] [-cases n,n,...]");
+            System.exit(1);
+        }
+
+        System.out.printf(Locale.ROOT, "%8s %10s %10s %10s %12s%n", "cases", "bytes", "best ms", "mean ms", "us per KB");
+        for (int cases : caseCounts) {
+            File jar = File.createTempFile("switches", ".jar");
+            try {
+                int codeLength = writeClass(jar, cases);
+                System.setProperty(SampleAnalysis.SAMPLES_PROPERTY, jar.getPath());
+                try (SampleAnalysis analysis = SampleAnalysis.openContext()) {
+                    Detector2 detector = analysis.createDetector(DETECTOR);
+                    analysis.visitAll(detector);
+
+                    long best = Long.MAX_VALUE;
+                    long total = 0L;
+                    for (int r = 0; r < rounds; r++) {
+                        long start = System.nanoTime();
+                        analysis.visitAll(detector);
+                        long nanos = System.nanoTime() - start;
+                        best = Math.min(best, nanos);
+                        total += nanos;
+                    }
+
+                    System.out.printf(Locale.ROOT, "%8d %10d %10.2f %10.2f %12.1f%n", Integer.valueOf(cases), Integer.valueOf(codeLength),
+                            Double.valueOf(best / NANOS_PER_MILLI), Double.valueOf(total / (rounds * NANOS_PER_MILLI)),
+                            Double.valueOf((best / NANOS_PER_MICRO) / (codeLength / BYTES_PER_KB)));
+                }
+            } finally {
+                if (!jar.delete()) {
+                    jar.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    /**
+     * writes a jar holding the one class with the switch method
+     *
+     * @return the length of the bytecode of the switch method
+     */
+    private static int writeClass(File jarFile, int cases) throws IOException {
+        ClassGen cg = new ClassGen(CLASS_NAME, "java.lang.Object", "Switches.java", Constants.ACC_PUBLIC | Constants.ACC_SUPER, null);
+        cg.setMajor(MAJOR_VERSION);
+        cg.addEmptyConstructor(Constants.ACC_PUBLIC);
+        Method method = generateSwitch(cg.getClassName(), cg.getConstantPool(), cases);
+        int codeLength = method.getCode().getLength();
+        if (codeLength > MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException(cases + " cases need " + codeLength + " bytes, more than a method can hold");
+        }
+        cg.addMethod(method);
+        JavaClass cls = cg.getJavaClass();
+
+        try (JarOutputStream jos = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jarFile)))) {
+            ZipEntry entry = new ZipEntry(cls.getClassName().replace('.', '/') + ".class");
+            entry.setTime(0L);
+            jos.putNextEntry(entry);
+            jos.write(cls.getBytes());
+            jos.closeEntry();
+        }
+        return codeLength;
+    }
+
+    /**
+     * builds a static method that takes and returns an int, switching on its argument
+     */
+    private static Method generateSwitch(String clsName, ConstantPoolGen cp, int cases) {
+        InstructionList il = new InstructionList();
+        for (int reg = 1; reg <= RESULT_REG; reg++) {
+            il.append(new PUSH(cp, 0));
+            il.append(InstructionFactory.createStore(Type.INT, reg));
+        }
+
+        il.append(InstructionFactory.createLoad(Type.INT, 0));
+        int[] matches = new int[cases];
+        InstructionHandle[] targets = new InstructionHandle[cases];
+        TABLESWITCH tableSwitch = new TABLESWITCH(matches, targets, null);
+        BranchHandle switchHandle = il.append(tableSwitch);
+
+        List<BranchHandle> breaks = new ArrayList<BranchHandle>(cases);
+        for (int c = 0; c < cases; c++) {
+            int reg = 1 + (c % NUM_LOCALS);
+            matches[c] = c;
+            targets[c] = il.append(InstructionFactory.createLoad(Type.INT, 0));
+            il.append(InstructionFactory.createStore(Type.INT, reg));
+            il.append(InstructionFactory.createLoad(Type.INT, reg));
+            BranchHandle ifNonNegative = il.append(new IFGE(null));
+            il.append(new IINC(reg, 1));
+            ifNonNegative.setTarget(il.append(InstructionFactory.createLoad(Type.INT, reg)));
+            il.append(InstructionFactory.createStore(Type.INT, RESULT_REG));
+            breaks.add(il.append(new GOTO(null)));
+        }
+
+        InstructionHandle end = il.append(InstructionFactory.createLoad(Type.INT, RESULT_REG));
+        il.append(InstructionConstants.IRETURN);
+        for (BranchHandle b : breaks) {
+            b.setTarget(end);
+        }
+        switchHandle.setTarget(end);
+        for (int c = 0; c < cases; c++) {
+            tableSwitch.setTarget(c, targets[c]);
+        }
+
+        MethodGen mg = new MethodGen(Constants.ACC_PUBLIC | Constants.ACC_STATIC, Type.INT, new Type[] { Type.INT }, new String[] { "value" }, "select",
+                clsName, il, cp);
+        mg.setMaxStack();
+        mg.setMaxLocals();
+        Method method = mg.getMethod();
+        il.dispose();
+        return method;
+    }
+}
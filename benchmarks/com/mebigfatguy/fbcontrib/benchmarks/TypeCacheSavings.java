@@ -0,0 +1,165 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.mebigfatguy.fbcontrib.utils.DetectorProfiler;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+
+/**
+ * measures the time the TypeHierarchyCache saves each fb-contrib detector, by running all of them over a corpus with the detector profiler on, alternately
+ * with the cache turned on and off. The first pass warms up the JVM, and isn't counted. The time of a detector is its cpu time, or wall time where cpu
+ * time isn't supported, averaged over the runs, and written as a csv file, along with a summary of the detectors that gain the most, to System.out.
+ * <p>
+ * java com.mebigfatguy.fbcontrib.benchmarks.TypeCacheSavings [-runs n] typecache-savings.csv
+ * <p>
+ * The corpus is the one SampleAnalysis is given, the compiled samples by default.
+ */
+public final class TypeCacheSavings {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final int TOP = 20;
+
+    /**
+     * private to force use through main
+     */
+    private TypeCacheSavings() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = 3;
+        int argIdx = 0;
+        if ((args.length > 1) && "-runs".equals(args[0])) {
+            runs = Integer.parseInt(args[1]);
+            argIdx = 2;
+        }
+        if ((args.length != (argIdx + 1)) || (runs < 1)) {
+            System.err.println("java " + TypeCacheSavings.class.getName() + " [-runs n] typecache-savings.csv");
+            System.exit(1);
+        }
+        File output = new File(args[argIdx]).getAbsoluteFile();
+        if (System.getProperty(DetectorProfiler.PROFILE_PROPERTY) == null) {
+            System.setProperty(DetectorProfiler.PROFILE_PROPERTY, new File(System.getProperty("java.io.tmpdir"), "fb-contrib-typecache.csv").getPath());
+        }
+
+        SampleAnalysis.runPluginPass();
+
+        Map<String, Long> cachedNanos = new HashMap<String, Long>();
+        Map<String, Long> uncachedNanos = new HashMap<String, Long>();
+        try {
+            for (int r = 0; r < runs; r++) {
+                TypeHierarchyCache.setEnabled(true);
+                addRun(cachedNanos);
+                TypeHierarchyCache.setEnabled(false);
+                addRun(uncachedNanos);
+            }
+        } finally {
+            TypeHierarchyCache.setEnabled(true);
+        }
+
+        List<Saving> savings = new ArrayList<Saving>();
+        for (Map.Entry<String, Long> entry : cachedNanos.entrySet()) {
+            Long uncached = uncachedNanos.get(entry.getKey());
+            if (uncached != null) {
+                savings.add(new Saving(entry.getKey(), entry.getValue().longValue() / runs, uncached.longValue() / runs));
+            }
+        }
+        Collections.sort(savings, new Comparator<Saving>() {
+            @Override
+            public int compare(Saving s1, Saving s2) {
+                int cmp = Long.compare(s2.getSavedNanos(), s1.getSavedNanos());
+                if (cmp != 0) {
+                    return cmp;
+                }
+                return s1.name.compareTo(s2.name);
+            }
+        });
+
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))) {
+            pw.println("detector,cached_nanos,uncached_nanos,saved_nanos");
+            for (Saving saving : savings) {
+                pw.printf("%s,%d,%d,%d%n", saving.name, Long.valueOf(saving.cachedNanos), Long.valueOf(saving.uncachedNanos),
+                        Long.valueOf(saving.getSavedNanos()));
+            }
+        }
+
+        System.out.printf("%-45s %12s %12s %12s%n", "Detector", "Cached ms", "Uncached ms", "Saved ms");
+        for (Saving saving : savings.subList(0, Math.min(TOP, savings.size()))) {
+            System.out.printf(Locale.ROOT, "%-45s %12.2f %12.2f %12.2f%n", saving.name.substring(saving.name.lastIndexOf('.') + 1),
+                    Double.valueOf(saving.cachedNanos / NANOS_PER_MILLI), Double.valueOf(saving.uncachedNanos / NANOS_PER_MILLI),
+                    Double.valueOf(saving.getSavedNanos() / NANOS_PER_MILLI));
+        }
+    }
+
+    /**
+     * runs one pass over the corpus, adding the time each fb-contrib detector took in it to the totals
+     */
+    private static void addRun(Map<String, Long> totals) throws IOException, InterruptedException {
+        Map<String, Long> before = getDetectorNanos();
+        SampleAnalysis.runPluginPass();
+        for (Map.Entry<String, Long> entry : getDetectorNanos().entrySet()) {
+            Long start = before.get(entry.getKey());
+            long nanos = entry.getValue().longValue() - ((start == null) ? 0L : start.longValue());
+            Long total = totals.get(entry.getKey());
+            totals.put(entry.getKey(), Long.valueOf(((total == null) ? 0L : total.longValue()) + nanos));
+        }
+    }
+
+    private static Map<String, Long> getDetectorNanos() {
+        Map<String, Long> nanos = new HashMap<String, Long>();
+        for (DetectorProfiler.Timings t : DetectorProfiler.getTimings()) {
+            if ("detector".equals(t.getKind()) && t.getName().startsWith("com.mebigfatguy.fbcontrib.")) {
+                nanos.put(t.getName(), Long.valueOf((t.getCpuNanos() > 0) ? t.getCpuNanos() : t.getWallNanos()));
+            }
+        }
+        return nanos;
+    }
+
+    /**
+     * the average time of a detector with and without the cache
+     */
+    static final class Saving {
+        final String name;
+        final long cachedNanos;
+        final long uncachedNanos;
+
+        Saving(String name, long cachedNanos, long uncachedNanos) {
+            this.name = name;
+            this.cachedNanos = cachedNanos;
+            this.uncachedNanos = uncachedNanos;
+        }
+
+        long getSavedNanos() {
+            return uncachedNanos - cachedNanos;
+        }
+    }
+}
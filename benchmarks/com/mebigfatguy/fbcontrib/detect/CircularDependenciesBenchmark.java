@@ -0,0 +1,106 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.detect;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * times the loop finding of CircularDependencies on synthetic dependency graphs. Each class depends on a number of classes declared before it, so that
+ * most of the graph is layered, and a small fraction of dependencies point a short way forward instead, creating many loops of varying size.
+ * <p>
+ * java com.mebigfatguy.fbcontrib.detect.CircularDependenciesBenchmark [numClasses...]
+ */
+public final class CircularDependenciesBenchmark {
+
+    private static final int[] DEFAULT_SIZES = { 10000, 50000, 100000 };
+    private static final int DEPENDENCIES_PER_CLASS = 8;
+    private static final int FORWARD_DEPENDENCY_ODDS = 200;
+    private static final int FORWARD_DEPENDENCY_RANGE = 50;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    /**
+     * private to force use through main
+     */
+    private CircularDependenciesBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%10s %12s %8s %10s %10s%n", "Classes", "Dependencies", "Loops", "Longest", "Millis");
+        for (int numClasses : sizes) {
+            String[] classNames = new String[numClasses];
+            for (int i = 0; i < numClasses; i++) {
+                classNames[i] = "com.example.p" + (i % 100) + ".Class" + i;
+            }
+
+            for (int run = 0; run < WARMUP_RUNS; run++) {
+                runOnce(classNames);
+            }
+
+            long totalNanos = 0;
+            List<String[]> loops = null;
+            for (int run = 0; run < MEASURED_RUNS; run++) {
+                long start = System.nanoTime();
+                loops = runOnce(classNames);
+                totalNanos += System.nanoTime() - start;
+            }
+
+            int longest = 0;
+            for (String[] loop : loops) {
+                longest = Math.max(longest, loop.length);
+            }
+            System.out.printf("%10d %12d %8d %10d %10.1f%n", Integer.valueOf(numClasses), Integer.valueOf(numClasses * DEPENDENCIES_PER_CLASS),
+                    Integer.valueOf(loops.size()), Integer.valueOf(longest), Double.valueOf(totalNanos / (MEASURED_RUNS * 1000000.0)));
+        }
+    }
+
+    private static List<String[]> runOnce(String[] classNames) {
+        Random random = new Random(classNames.length);
+        CircularDependencies.DependencyGraph graph = new CircularDependencies.DependencyGraph();
+        for (int i = 0; i < classNames.length; i++) {
+            int clsId = graph.startClass(classNames[i]);
+            for (int d = 0; d < DEPENDENCIES_PER_CLASS; d++) {
+                int target;
+                if ((i == 0) || (random.nextInt(FORWARD_DEPENDENCY_ODDS) == 0)) {
+                    target = Math.min(classNames.length - 1, i + 1 + random.nextInt(FORWARD_DEPENDENCY_RANGE));
+                } else {
+                    target = i - 1 - random.nextInt(Math.min(i, 1000));
+                }
+                if (target != i) {
+                    graph.addDependency(clsId, classNames[target]);
+                }
+            }
+        }
+        return graph.findLoops();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
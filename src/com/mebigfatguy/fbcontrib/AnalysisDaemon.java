@@ -0,0 +1,475 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.generic.ConstantPoolGen;
+
+import com.mebigfatguy.fbcontrib.ParallelAnalysis.EngineRole;
+import com.mebigfatguy.fbcontrib.collect.CollectClassDependencies;
+import com.mebigfatguy.fbcontrib.collect.CollectMethodsReturningImmutableCollections;
+import com.mebigfatguy.fbcontrib.collect.CollectStatistics;
+import com.mebigfatguy.fbcontrib.collect.DependencyGraph;
+import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+
+import edu.umd.cs.findbugs.AbstractBugReporter;
+import edu.umd.cs.findbugs.AnalysisError;
+import edu.umd.cs.findbugs.BugCollection;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.Detector2;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.asm.FBClassReader;
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.AssertionMethods;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.ch.Subtypes2;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
+import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+import edu.umd.cs.findbugs.classfile.analysis.ClassNameAndSuperclassInfo;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache;
+import edu.umd.cs.findbugs.config.AnalysisFeatureSetting;
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * a long lived analysis of a project, that re-analyzes classes that have changed on request, such as when a class is saved in an ide. At start up, the
+ * whole project is analyzed once, as FindBugs would, and the analysis cache and context are then kept, so the classes of the jdk and of the aux classpath,
+ * along with the statistics the collectors gathered, are at hand for each request. A request drops what was cached about the classes named, runs the
+ * collectors the reporting detectors depend on over them again to update the statistics, and then runs fresh instances of the per class detectors over them
+ * and over every class that depends on them, transitively, as found in the DependencyGraph, which the daemon keeps in memory. The results of those
+ * classes may change with the statistics and immutability of the classes they use, such as a caller of a method that now returns an unmodifiable
+ * collection.
+ * <p>
+ * Requests are read one per line, and are answered by zero or more bug lines, ended by a done line, or by a single error line. The fields of a line are
+ * separated by tabs.
+ * <ul>
+ * <li>analyze files - re-analyzes the class files given, or all class files under the directories given, which are listed as a classpath is, along with
+ * the classes that depend on them. The classes must be in one of the directories of the project, where their new versions are read from</li>
+ * <li>reload - analyzes the whole project again from scratch</li>
+ * <li>quit - ends the daemon</li>
+ * </ul>
+ * The analysis at start up and reload answer as analyze does, with the bugs of the whole project, and an analyze request answers with the bugs of all
+ * the classes it re-analyzed. A bug line is "bug", the bug type, priority, class name,
+ * line number (or -1) and message, on one line, and a done line is "done", the number of bugs and the milliseconds taken.
+ * <p>
+ * The whole program detectors, such as CircularDependencies and OverlyPermissiveMethod, aren't run for a request, as their bugs depend on all the classes,
+ * and the class hierarchy that FindBugs keeps only learns of new classes, not of changes to the superclass or interfaces of an existing one. A reload brings
+ * both up to date. Classes in jars can't be re-analyzed, as FindBugs keeps application jars open, so a changed jar requires a reload as well.
+ */
+public class AnalysisDaemon {
+
+    /**
+     * the analyses FindBugs caches per class, which are all built from the bytes of the class, and so are dropped when a class changes. The method analyses
+     * are kept by the class's ClassContext, and so go with it.
+     */
+    private static final List<Class<?>> CLASS_ANALYSES = Arrays.<Class<?>> asList(ClassData.class, ClassNameAndSuperclassInfo.class, XClass.class,
+            FBClassReader.class, JavaClass.class, ConstantPoolGen.class, AssertionMethods.class, ClassContext.class);
+
+    /**
+     * the collectors whose statistics the per class detectors read, which must see a changed class before they do, along with the collector of the
+     * dependencies that decide which other classes must be re-analyzed
+     */
+    private static final List<Class<?>> REQUEST_COLLECTORS = Arrays.<Class<?>> asList(CollectStatistics.class,
+            CollectMethodsReturningImmutableCollections.class, CollectClassDependencies.class);
+
+    private final Project project;
+    private final int priorityThreshold;
+    private final AnalysisFeatureSetting[] effort;
+    private final DaemonBugReporter bugReporter = new DaemonBugReporter();
+    private Plugin fbContrib;
+    private UserPreferences preferences;
+    private RetainingFindBugs2 findBugs;
+    private List<Detector2> collectors;
+
+    /**
+     * constructs a daemon for a project
+     *
+     * @param project
+     *            the project holding the jars or directories to analyze, and their aux classpath
+     * @param priorityThreshold
+     *            the lowest priority of bugs to report, as a Detector priority
+     * @param effort
+     *            the FindBugs analysis feature settings for the effort to use
+     */
+    public AnalysisDaemon(Project project, int priorityThreshold, AnalysisFeatureSetting[] effort) {
+        this.project = project;
+        this.priorityThreshold = priorityThreshold;
+        this.effort = effort.clone();
+        bugReporter.setPriorityThreshold(priorityThreshold);
+    }
+
+    /**
+     * analyzes the project, and then answers requests until told to quit, or the input ends. All analysis is done on the calling thread, as the FindBugs
+     * analysis context is kept per thread.
+     *
+     * @param in
+     *            the reader of requests
+     * @param out
+     *            the stream to answer on
+     *
+     * @throws IOException
+     *             if the project, plugin or requests can't be read
+     * @throws InterruptedException
+     *             if the analysis is interrupted
+     */
+    public void serve(BufferedReader in, PrintStream out) throws IOException, InterruptedException {
+        fbContrib = ParallelAnalysis.getPlugin();
+        preferences = ParallelAnalysis.getPreferences(fbContrib, EngineRole.ALL);
+        DependencyGraph.keepInMemory();
+        try {
+            load(out);
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                int space = line.indexOf(' ');
+                String command = (space < 0) ? line : line.substring(0, space);
+                String arguments = (space < 0) ? "" : line.substring(space + 1).trim();
+                if ("analyze".equals(command)) {
+                    try {
+                        analyze(findClasses(arguments), out);
+                    } catch (IOException e) {
+                        out.println("error\t" + e.getMessage());
+                    }
+                } else if ("reload".equals(command)) {
+                    release();
+                    load(out);
+                } else if ("quit".equals(command)) {
+                    break;
+                } else {
+                    out.println("error\tUnknown request " + command);
+                }
+                out.flush();
+            }
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * analyzes the whole project, keeping the analysis context and cache for the requests that follow. The collectors used for requests are made first, as
+     * making a collector resets what the collectors have gathered, and so must not happen once the statistics are in place.
+     */
+    private void load(PrintStream out) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+
+        collectors = new ArrayList<Detector2>();
+        for (DetectorFactory factory : fbContrib.getDetectorFactories()) {
+            for (Class<?> collector : REQUEST_COLLECTORS) {
+                if (factory.isDetectorClassSubtypeOf(collector)) {
+                    collectors.add(factory.createDetector2(bugReporter));
+                }
+            }
+        }
+
+        findBugs = new RetainingFindBugs2();
+        findBugs.setProject(project.duplicate());
+        findBugs.setBugReporter(bugReporter);
+        findBugs.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+        findBugs.setUserPreferences(preferences);
+        findBugs.setAnalysisFeatureSettings(effort);
+        findBugs.setNoClassOk(true);
+        findBugs.finishSettings();
+        findBugs.execute();
+
+        answer(out, start);
+    }
+
+    /**
+     * re-analyzes classes that have changed, or been added, since they were last analyzed
+     *
+     * @param classes
+     *            the classes to analyze
+     * @param out
+     *            the stream to answer on
+     */
+    private void analyze(Set<ClassDescriptor> classes, PrintStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+
+        for (ClassDescriptor cls : classes) {
+            try {
+                ICodeBaseEntry entry = analysisCache.getClassPath().lookupResource(cls.toResourceName());
+                if (!entry.getCodeBase().isApplicationCodeBase()) {
+                    throw new IOException(cls.getDottedClassName() + " is not a class of the project");
+                }
+            } catch (ResourceNotFoundException e) {
+                throw new IOException(cls.getDottedClassName() + " is not a class of the project", e);
+            }
+        }
+
+        invalidate(analysisCache, classes);
+
+        List<Detector2> detectors = new ArrayList<Detector2>();
+        for (DetectorFactory factory : fbContrib.getDetectorFactories()) {
+            if (preferences.isDetectorEnabled(factory) && ParallelAnalysis.runsIn(factory, EngineRole.CLASSES)) {
+                detectors.add(factory.createDetector2(bugReporter));
+            }
+        }
+
+        runPass(collectors, classes);
+        runPass(detectors, addDependents(classes));
+
+        answer(out, start);
+    }
+
+    /**
+     * adds the classes that depend on the changed classes, transitively, as their results may change with the statistics of the changed classes. The
+     * changed classes come first, followed by their dependents in name order.
+     */
+    private static Set<ClassDescriptor> addDependents(Set<ClassDescriptor> classes) {
+        Set<String> changed = new HashSet<String>();
+        for (ClassDescriptor cls : classes) {
+            changed.add(cls.getDottedClassName());
+        }
+
+        Set<ClassDescriptor> affected = new LinkedHashSet<ClassDescriptor>(classes);
+        for (String dependent : new TreeSet<String>(DependencyGraph.getDependencyGraph().findDependents(changed))) {
+            affected.add(DescriptorFactory.createClassDescriptorFromDottedClassName(dependent));
+        }
+        return affected;
+    }
+
+    /**
+     * drops the cached analyses of classes that have changed, and records their new versions with FindBugs' factory of class members and class hierarchy
+     */
+    private static void invalidate(IAnalysisCache analysisCache, Set<ClassDescriptor> classes) throws IOException {
+        for (Class<?> analysis : CLASS_ANALYSES) {
+            if (analysisCache instanceof AnalysisCache) {
+                Map<ClassDescriptor, Object> cached = ((AnalysisCache) analysisCache).getClassAnalysis(analysis);
+                if (cached != null) {
+                    cached.keySet().removeAll(classes);
+                }
+            } else {
+                analysisCache.purgeClassAnalysis(analysis);
+            }
+        }
+        TypeHierarchyCache.clear();
+
+        Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
+        try {
+            for (ClassDescriptor cls : classes) {
+                XClass xClass = analysisCache.getClassAnalysis(XClass.class, cls);
+                AnalysisContext.currentXFactory().intern(xClass);
+                if (!subtypes2.isApplicationClass(cls)) {
+                    subtypes2.addApplicationClass(xClass);
+                }
+            }
+        } catch (CheckedAnalysisException e) {
+            throw new IOException("Failed reading a changed class", e);
+        }
+    }
+
+    /**
+     * runs detectors over classes, the way a FindBugs pass does, visiting each class with each detector in turn, and then finishing the detectors
+     */
+    private void runPass(List<Detector2> detectors, Set<ClassDescriptor> classes) {
+        for (ClassDescriptor cls : classes) {
+            bugReporter.observeClass(cls);
+            for (Detector2 detector : detectors) {
+                try {
+                    detector.visitClass(cls);
+                } catch (CheckedAnalysisException | RuntimeException e) {
+                    bugReporter.logError("Exception analyzing " + cls.getDottedClassName() + " using detector " + detector.getDetectorClassName(), e);
+                }
+            }
+        }
+
+        for (Detector2 detector : detectors) {
+            try {
+                detector.finishPass();
+            } catch (RuntimeException e) {
+                bugReporter.logError("Exception finishing detector " + detector.getDetectorClassName(), e);
+            }
+        }
+    }
+
+    /**
+     * writes the bugs reported since the last answer, and the done line
+     */
+    private void answer(PrintStream out, long start) {
+        bugReporter.reportQueuedErrors();
+        List<BugInstance> bugs = bugReporter.takeBugs();
+        for (BugInstance bug : bugs) {
+            SourceLineAnnotation sourceLine = bug.getPrimarySourceLineAnnotation();
+            out.println("bug\t" + bug.getType() + '\t' + bug.getPriority() + '\t' + bug.getPrimaryClass().getClassName() + '\t' + sourceLine.getStartLine()
+                    + '\t' + bug.getMessageWithoutPrefix().replaceAll("\\s+", " "));
+        }
+        out.println("done\t" + bugs.size() + '\t' + (System.currentTimeMillis() - start));
+        out.flush();
+    }
+
+    private void release() {
+        if (findBugs != null) {
+            findBugs.releaseCaches();
+            findBugs.dispose();
+            findBugs = null;
+        }
+    }
+
+    /**
+     * finds the classes named by the arguments of an analyze request, reading the name of each class from its class file
+     */
+    private static Set<ClassDescriptor> findClasses(String paths) throws IOException {
+        if (paths.isEmpty()) {
+            throw new IOException("No class files to analyze");
+        }
+
+        List<File> classFiles = new ArrayList<File>();
+        for (String path : paths.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                addClassFiles(new File(path), classFiles);
+            }
+        }
+
+        Set<ClassDescriptor> classes = new LinkedHashSet<ClassDescriptor>();
+        for (File classFile : classFiles) {
+            JavaClass cls = new ClassParser(classFile.getPath()).parse();
+            classes.add(DescriptorFactory.createClassDescriptorFromDottedClassName(cls.getClassName()));
+        }
+        return classes;
+    }
+
+    private static void addClassFiles(File file, List<File> classFiles) throws IOException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (child.isDirectory() || child.getName().endsWith(".class")) {
+                        addClassFiles(child, classFiles);
+                    }
+                }
+            }
+        } else if (file.isFile()) {
+            classFiles.add(file);
+        } else {
+            throw new IOException("No such class file or directory " + file);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+
+    /**
+     * a FindBugs engine that leaves the analysis context and cache of its thread in place once it is done, until asked to release them
+     */
+    static class RetainingFindBugs2 extends FindBugs2 {
+
+        @Override
+        protected void clearCaches() {
+            // kept until releaseCaches
+        }
+
+        void releaseCaches() {
+            super.clearCaches();
+        }
+    }
+
+    /**
+     * holds the bugs reported until they are answered, and writes analysis errors and missing classes to System.err, once each
+     */
+    static class DaemonBugReporter extends AbstractBugReporter {
+        private final List<BugInstance> bugs = new ArrayList<BugInstance>();
+        private final Set<String> errors = new HashSet<String>();
+
+        List<BugInstance> takeBugs() {
+            List<BugInstance> taken = new ArrayList<BugInstance>(bugs);
+            bugs.clear();
+            return taken;
+        }
+
+        @Override
+        protected void doReportBug(BugInstance bugInstance) {
+            bugs.add(bugInstance);
+            notifyObservers(bugInstance);
+        }
+
+        @Override
+        public void reportAnalysisError(AnalysisError error) {
+            if (errors.add(error.getMessage())) {
+                System.err.println("fb-contrib: " + error.getMessage());
+                if (error.getStackTrace() != null) {
+                    for (String frame : error.getStackTrace()) {
+                        System.err.println("    at " + frame);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void reportMissingClass(String string) {
+            if (errors.add(string)) {
+                System.err.println("fb-contrib: missing class " + string);
+            }
+        }
+
+        @Override
+        public void finish() {
+            // bugs are answered as each request is done
+        }
+
+        @Override
+        public BugCollection getBugCollection() {
+            return null;
+        }
+
+        @Override
+        public void observeClass(ClassDescriptor classDescriptor) {
+            // nothing is recorded per class
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+}
@@ -18,23 +18,144 @@
  */
 package com.mebigfatguy.fbcontrib;
 
-import javax.swing.JOptionPane;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import com.mebigfatguy.fbcontrib.collect.DependencyGraph;
+
+import edu.umd.cs.findbugs.BugCollection;
+import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.config.AnalysisFeatureSetting;
 
 /**
- * a simple main app that gives information. This is the jar double-click class.
- * Not used under normal situations.
+ * runs the fb-contrib detectors over a set of jars or class directories on its own, spreading the classes over several threads, and writes the bugs found
+ * as FindBugs BugCollection xml. FindBugs itself must come first on the classpath, as in
+ * <p>
+ * java -cp findbugs.jar:fb-contrib.jar com.mebigfatguy.fbcontrib.FBContrib [options] jar-or-directory...
+ * <p>
+ * With -dependencies, the graph of dependencies between classes is kept in the file given, and with -changed as well, only the classes the changed class
+ * files can affect are analyzed, as described in DependencyGraph.
+ * <p>
+ * With -daemon, the project is analyzed once, and then kept loaded to re-analyze changed classes as they are asked for on standard input, answering on
+ * standard output, as described in AnalysisDaemon.
+ * <p>
+ * Without arguments, it shows how to use fb-contrib as a FindBugs plugin, which is the normal way to use it.
  */
 public class FBContrib {
+
+    private static final String USAGE = "java -cp findbugs.jar" + File.pathSeparator + "fb-contrib.jar " + FBContrib.class.getName()
+            + " [-threads n | -daemon] [-auxclasspath path] [-low|-medium|-high] [-effort:min|default|max] [-dependencies file [-changed class-files]] [-output file.xml] jar-or-directory...";
+
+    /**
+     * private to force use through main
+     */
+    private FBContrib() {
+    }
+
     /**
-     * shows the simple help
+     * analyzes the jars and directories given, or shows the simple help when there are none
      *
      * @param args
      *            standard command line args
      */
     public static void main(final String[] args) {
-        JOptionPane.showMessageDialog(null,
-                "To use fb-contrib, copy this jar file into your local FindBugs plugin directory, and use FindBugs as usual.\n\nfb-contrib is a trademark of MeBigFatGuy.com\nFindBugs is a trademark of the University of Maryland",
-                "fb-contrib: copyright 2005-2016", JOptionPane.INFORMATION_MESSAGE);
-        System.exit(0);
+        if (args.length == 0) {
+            System.out.println("To use fb-contrib, copy this jar file into your local FindBugs plugin directory, and use FindBugs as usual.");
+            System.out.println("To run the fb-contrib detectors on their own, use");
+            System.out.println("    " + USAGE);
+            System.out.println();
+            System.out.println("fb-contrib is a trademark of MeBigFatGuy.com");
+            System.out.println("FindBugs is a trademark of the University of Maryland");
+            return;
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        int priorityThreshold = Detector.NORMAL_PRIORITY;
+        AnalysisFeatureSetting[] effort = FindBugs.DEFAULT_EFFORT;
+        File output = null;
+        boolean daemon = false;
+        Project project = new Project();
+
+        int a = 0;
+        try {
+            for (; a < args.length; a++) {
+                String arg = args[a];
+                if ("-threads".equals(arg)) {
+                    threads = Integer.parseInt(args[++a]);
+                } else if ("-daemon".equals(arg)) {
+                    daemon = true;
+                } else if ("-auxclasspath".equals(arg)) {
+                    for (String entry : args[++a].split(File.pathSeparator)) {
+                        if (!entry.isEmpty()) {
+                            project.addAuxClasspathEntry(entry);
+                        }
+                    }
+                } else if ("-low".equals(arg)) {
+                    priorityThreshold = Detector.LOW_PRIORITY;
+                } else if ("-medium".equals(arg)) {
+                    priorityThreshold = Detector.NORMAL_PRIORITY;
+                } else if ("-high".equals(arg)) {
+                    priorityThreshold = Detector.HIGH_PRIORITY;
+                } else if ("-effort:min".equals(arg)) {
+                    effort = FindBugs.MIN_EFFORT;
+                } else if ("-effort:default".equals(arg)) {
+                    effort = FindBugs.DEFAULT_EFFORT;
+                } else if ("-effort:max".equals(arg)) {
+                    effort = FindBugs.MAX_EFFORT;
+                } else if ("-dependencies".equals(arg)) {
+                    System.setProperty(DependencyGraph.GRAPH_FILE_PROPERTY, args[++a]);
+                } else if ("-changed".equals(arg)) {
+                    System.setProperty(DependencyGraph.CHANGED_FILES_PROPERTY, args[++a]);
+                } else if ("-output".equals(arg)) {
+                    output = new File(args[++a]);
+                } else if (arg.startsWith("-")) {
+                    usage("Unknown option " + arg);
+                } else {
+                    project.addFile(new File(arg).getAbsolutePath());
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            usage("Missing or bad value for " + args[a - 1]);
+        }
+
+        if (project.getFileList().isEmpty()) {
+            usage("No jars or directories to analyze");
+        }
+        if ((System.getProperty(DependencyGraph.CHANGED_FILES_PROPERTY) != null) && (System.getProperty(DependencyGraph.GRAPH_FILE_PROPERTY) == null)) {
+            usage("-changed requires -dependencies");
+        }
+
+        try {
+            if (daemon) {
+                new AnalysisDaemon(project, priorityThreshold, effort).serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                        System.out);
+                return;
+            }
+
+            BugCollection bugs = new ParallelAnalysis(project, threads, priorityThreshold, effort).execute();
+            if (output == null) {
+                bugs.writeXML(System.out);
+            } else {
+                bugs.writeXML(output.getPath());
+            }
+        } catch (IOException e) {
+            System.err.println("fb-contrib analysis failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.err.println("fb-contrib analysis interrupted");
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println(USAGE);
+        System.exit(1);
     }
 }
@@ -0,0 +1,367 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.WholeProgramDetector;
+
+import edu.umd.cs.findbugs.AbstractBugReporter;
+import edu.umd.cs.findbugs.AnalysisError;
+import edu.umd.cs.findbugs.BugCollection;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.IClassScreener;
+import edu.umd.cs.findbugs.NoOpFindBugsProgress;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.PluginException;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.config.AnalysisFeatureSetting;
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * runs the fb-contrib detectors over a project outside of the FindBugs driver, on several threads. FindBugs keeps its analysis cache and context per thread,
+ * so each thread runs its own FindBugs engine over the whole project, and the classes are shared out between the engines as they go.
+ * <p>
+ * One engine runs the collectors, and then the detectors that need to see every class, over all the classes. The others set up their own analysis of the
+ * project at the same time, but wait for the collectors to finish before visiting classes, as the reporting detectors read the statistics they gather. From
+ * then on, each class is visited by whichever of these engines claims it first, with its own instances of the rest of the detectors. Bugs from all engines
+ * go to one sorted bug collection, so the results don't depend on which engine found them. With one thread, a single engine runs all the detectors, as
+ * FindBugs would.
+ */
+public class ParallelAnalysis {
+
+    public static final String FBCONTRIB_PLUGIN_ID = "com.mebigfatguy.fbcontrib";
+
+    /**
+     * the part of the analysis an engine does
+     */
+    enum EngineRole {
+        /** runs every detector over every class */
+        ALL,
+        /** runs the collectors and whole program detectors over every class */
+        COLLECT,
+        /** runs the other detectors over the classes it claims */
+        CLASSES
+    }
+
+    private final Project project;
+    private final int threads;
+    private final int priorityThreshold;
+    private final AnalysisFeatureSetting[] effort;
+    private final SortedBugCollection bugCollection;
+    private final Set<String> missingClasses = new TreeSet<String>();
+    private final Set<String> errors = new HashSet<String>();
+    private final CountDownLatch collected = new CountDownLatch(1);
+    private final ConcurrentMap<String, Integer> classOwners = new ConcurrentHashMap<String, Integer>();
+    private Plugin fbContrib;
+
+    /**
+     * constructs an analysis of a project
+     *
+     * @param project
+     *            the project holding the jars or directories to analyze, and their aux classpath
+     * @param threads
+     *            the number of engines to run at once
+     * @param priorityThreshold
+     *            the lowest priority of bugs to report, as a Detector priority
+     * @param effort
+     *            the FindBugs analysis feature settings for the effort to use
+     */
+    public ParallelAnalysis(Project project, int threads, int priorityThreshold, AnalysisFeatureSetting[] effort) {
+        this.project = project;
+        this.threads = Math.max(1, threads);
+        this.priorityThreshold = priorityThreshold;
+        this.effort = effort.clone();
+        bugCollection = new SortedBugCollection(project);
+    }
+
+    /**
+     * runs the analysis
+     *
+     * @return the bugs found, along with any analysis errors and missing classes
+     *
+     * @throws IOException
+     *             if the project or plugin can't be read, or an engine fails
+     * @throws InterruptedException
+     *             if the analysis is interrupted
+     */
+    public BugCollection execute() throws IOException, InterruptedException {
+        fbContrib = getPlugin();
+        long start = System.currentTimeMillis();
+
+        List<Engine> engines = new ArrayList<Engine>(threads);
+        if (threads == 1) {
+            engines.add(new Engine(EngineRole.ALL, 0));
+        } else {
+            engines.add(new Engine(EngineRole.COLLECT, 0));
+            for (int e = 1; e < threads; e++) {
+                engines.add(new Engine(EngineRole.CLASSES, e));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(engines.size());
+        try {
+            for (Future<Void> result : pool.invokeAll(engines)) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("fb-contrib analysis failed", cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        synchronized (bugCollection) {
+            for (String missingClass : missingClasses) {
+                bugCollection.addMissingClass(missingClass);
+            }
+            bugCollection.setTimestamp(start);
+            bugCollection.setAnalysisTimestamp(System.currentTimeMillis());
+            bugCollection.setDoNotUseCloud(true);
+            bugCollection.setWithMessages(true);
+            bugCollection.bugsPopulated();
+            return bugCollection;
+        }
+    }
+
+    /**
+     * finds the fb-contrib plugin, loading it from the jar or directory this class came from if FindBugs hasn't loaded it already
+     */
+    static Plugin getPlugin() throws IOException {
+        Plugin plugin = Plugin.getByPluginId(FBCONTRIB_PLUGIN_ID);
+        if (plugin != null) {
+            return plugin;
+        }
+
+        try {
+            File location = new File(ParallelAnalysis.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            plugin = Plugin.loadCustomPlugin(location, null);
+            if (plugin == null) {
+                throw new IOException("No fb-contrib plugin found at " + location);
+            }
+            return plugin;
+        } catch (URISyntaxException | PluginException e) {
+            throw new IOException("Failed loading the fb-contrib plugin", e);
+        }
+    }
+
+    /**
+     * sets up the detectors an engine runs. The fb-contrib detectors of its role are left to their default enablement, and all others are turned off.
+     */
+    static UserPreferences getPreferences(Plugin fbContrib, EngineRole role) {
+        UserPreferences preferences = UserPreferences.createDefaultUserPreferences();
+        for (DetectorFactory factory : DetectorFactoryCollection.instance().getFactories()) {
+            if ((factory.getPlugin() != fbContrib) || !runsIn(factory, role)) {
+                preferences.enableDetector(factory, false);
+            }
+        }
+        return preferences;
+    }
+
+    /**
+     * returns whether a detector is run by an engine of a given role. Collectors, which report nothing, and whole program detectors are run by the
+     * collecting engine.
+     */
+    static boolean runsIn(DetectorFactory factory, EngineRole role) {
+        if (role == EngineRole.ALL) {
+            return true;
+        }
+
+        boolean wholeProgram = factory.getReportedBugPatterns().isEmpty() || factory.isDetectorClassSubtypeOf(WholeProgramDetector.class);
+        return wholeProgram == (role == EngineRole.COLLECT);
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+
+    /**
+     * one FindBugs engine, run on its own thread, so that it has its own analysis cache and context
+     */
+    class Engine implements Callable<Void> {
+        private final EngineRole role;
+        private final int id;
+
+        Engine(EngineRole role, int id) {
+            this.role = role;
+            this.id = id;
+        }
+
+        @Override
+        public Void call() throws IOException, InterruptedException {
+            EngineBugReporter reporter = new EngineBugReporter();
+            reporter.setPriorityThreshold(priorityThreshold);
+            FindBugs2 findBugs = new FindBugs2();
+            try {
+                findBugs.setProject(project.duplicate());
+                findBugs.setBugReporter(reporter);
+                findBugs.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+                findBugs.setUserPreferences(getPreferences(fbContrib, role));
+                findBugs.setAnalysisFeatureSettings(effort);
+                findBugs.setNoClassOk(true);
+                if (role == EngineRole.COLLECT) {
+                    findBugs.setProgressCallback(new CollectProgress());
+                } else if (role == EngineRole.CLASSES) {
+                    findBugs.setClassScreener(new ClaimingScreener(id));
+                }
+                findBugs.finishSettings();
+                findBugs.execute();
+                reporter.reportQueuedErrors();
+                return null;
+            } finally {
+                if (role == EngineRole.COLLECT) {
+                    collected.countDown();
+                }
+                findBugs.dispose();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * lets the other engines start visiting classes once the first pass of the collecting engine, which holds the collectors, is done
+     */
+    class CollectProgress extends NoOpFindBugsProgress {
+        @Override
+        public void finishPerClassAnalysis() {
+            collected.countDown();
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * hands an engine the classes no other engine has claimed yet, once the collectors are done. It calls itself vacuous, as otherwise FindBugs would also
+     * drop bugs reported against classes it doesn't claim.
+     */
+    class ClaimingScreener implements IClassScreener {
+        private final Integer id;
+
+        ClaimingScreener(int id) {
+            this.id = Integer.valueOf(id);
+        }
+
+        @Override
+        public boolean matches(String fileName) {
+            try {
+                collected.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            Integer owner = classOwners.putIfAbsent(fileName, id);
+            return (owner == null) || owner.equals(id);
+        }
+
+        @Override
+        public boolean vacuous() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * passes the bugs and errors of one engine on to the shared collection
+     */
+    class EngineBugReporter extends AbstractBugReporter {
+
+        @Override
+        protected void doReportBug(BugInstance bugInstance) {
+            synchronized (bugCollection) {
+                bugCollection.add(bugInstance);
+            }
+            notifyObservers(bugInstance);
+        }
+
+        @Override
+        public void reportAnalysisError(AnalysisError error) {
+            synchronized (bugCollection) {
+                if (errors.add(error.getMessage())) {
+                    bugCollection.addError(error);
+                }
+            }
+        }
+
+        @Override
+        public void reportMissingClass(String className) {
+            synchronized (bugCollection) {
+                missingClasses.add(className);
+            }
+        }
+
+        @Override
+        public void observeClass(ClassDescriptor classDescriptor) {
+            // classes are tracked by the engines
+        }
+
+        @Override
+        public void finish() {
+            // bugs are added to the collection as they are reported
+        }
+
+        @Override
+        public BugCollection getBugCollection() {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+}
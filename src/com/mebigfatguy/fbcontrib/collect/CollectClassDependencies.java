@@ -0,0 +1,62 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.collect;
+
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.NonReportingDetector;
+import edu.umd.cs.findbugs.ba.ClassContext;
+
+/**
+ * collects the classes each application class depends on, when tracking
+ * dependencies, to decide which classes a change can affect, and to save the
+ * graph for the next run
+ */
+public class CollectClassDependencies implements Detector, NonReportingDetector {
+
+    /**
+     * constructs a CCDE detector given the reporter to report bugs on
+     *
+     * @param bugReporter
+     *            the sync of bug reports
+     */
+    public CollectClassDependencies(BugReporter bugReporter) {
+        DependencyGraph.start(bugReporter);
+    }
+
+    /**
+     * implements the visitor to record the dependencies of the class
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        DependencyGraph.getDependencyGraph().addClass(classContext);
+    }
+
+    /**
+     * implements the detector to decide which classes to analyze, now that all
+     * classes have been seen
+     */
+    @Override
+    public void report() {
+        DependencyGraph.getDependencyGraph().computeScope();
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.CollectionUtils;
+import com.mebigfatguy.fbcontrib.utils.DetectorProfiler;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
@@ -80,6 +81,10 @@ public class CollectMethodsReturningImmutableCollections extends BytecodeScannin
 
     @Override
     public void visitClassContext(ClassContext context) {
+        if (StatisticsCache.getCache().isCached(context)) {
+            return;
+        }
+
         try {
             stack = new OpcodeStack();
             clsName = context.getJavaClass().getClassName();
@@ -206,4 +211,20 @@ public class CollectMethodsReturningImmutableCollections extends BytecodeScannin
             }
         }
     }
+
+    /**
+     * implements the detector to save the collected statistics to the cache,
+     * if one is used, and freeze them, now that all classes have been seen, so
+     * that the reporting detectors can read them without synchronization
+     */
+    @Override
+    public void report() {
+        DetectorProfiler.startReport(this);
+        try {
+            StatisticsCache.getCache().store();
+            Statistics.getStatistics().freeze();
+        } finally {
+            DetectorProfiler.endReport(this);
+        }
+    }
 }
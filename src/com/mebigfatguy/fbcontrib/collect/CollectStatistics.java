@@ -26,6 +26,7 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
+import com.mebigfatguy.fbcontrib.utils.DetectorProfiler;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugReporter;
@@ -48,12 +49,18 @@ public class CollectStatistics extends BytecodeScanningDetector implements NonRe
     private int numMethodCalls;
     private boolean classHasAnnotation;
 
-    public CollectStatistics(@SuppressWarnings("unused") BugReporter bugReporter) {
+    public CollectStatistics(BugReporter bugReporter) {
         Statistics.getStatistics().clear();
+        StatisticsCache.start(bugReporter);
+        DetectorProfiler.start(bugReporter);
     }
 
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (StatisticsCache.getCache().isCached(classContext)) {
+            return;
+        }
+
         JavaClass cls = classContext.getJavaClass();
         AnnotationEntry[] annotations = cls.getAnnotationEntries();
         classHasAnnotation = (annotations != null) && (annotations.length > 0);
@@ -113,4 +120,20 @@ public class CollectStatistics extends BytecodeScanningDetector implements NonRe
         AnnotationEntry[] annotations = m.getAnnotationEntries();
         return (annotations != null) && (annotations.length > 0);
     }
+
+    /**
+     * implements the detector to save the collected statistics to the cache,
+     * if one is used, and freeze them, now that all classes have been seen, so
+     * that the reporting detectors can read them without synchronization
+     */
+    @Override
+    public void report() {
+        DetectorProfiler.startReport(this);
+        try {
+            StatisticsCache.getCache().store();
+            Statistics.getStatistics().freeze();
+        } finally {
+            DetectorProfiler.endReport(this);
+        }
+    }
 }
@@ -0,0 +1,376 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.collect;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.ClassParser;
+
+import com.mebigfatguy.fbcontrib.utils.ClassReferenceIndex;
+import com.mebigfatguy.fbcontrib.utils.ToString;
+
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
+
+/**
+ * holds the dependencies between the application classes, for analyzing only the classes a change can affect. It is turned on by setting the system
+ * property fb-contrib.dependencies to the path of a file to keep the graph in between runs. Each run records, for every application class, the
+ * application classes named in its constant pool, which covers the calls CircularDependencies follows, along with supertypes, field types and signatures,
+ * and saves them to the file.
+ * <p>
+ * When the system property fb-contrib.changed is also set, to the class files that have changed since the last run, such as from a git diff, listed as a
+ * classpath is, only the classes whose results may change are analyzed. These are the changed classes and, transitively, the classes that depend on them,
+ * in either this run or the last, as a class's results depend on the statistics and hierarchy of the classes it uses, and those statistics in turn on the
+ * classes they use. Also included are the classes the changed classes call, or used to call, as the calls seen by OverlyPermissiveMethod, and so its
+ * results for them, may have changed. Deleted class files are matched to classes by their path. Without a saved graph, everything is analyzed.
+ * <p>
+ * The collectors still see every class, so the statistics are complete. The per class detectors skip classes outside the scope, as with classes replayed
+ * by an incremental analysis, and OverlyPermissiveMethod only reports methods of classes in the scope. The other whole program detectors see and report on
+ * every class, as their bugs span classes.
+ * <p>
+ * The file holds the class names once each, followed by each class's dependencies as indices into the names, and is compressed.
+ * <p>
+ * A long lived analysis, such as the AnalysisDaemon, can instead have the graph kept in memory only, to ask which classes depend on the ones that change.
+ */
+public final class DependencyGraph {
+
+    public static final String GRAPH_FILE_PROPERTY = "fb-contrib.dependencies";
+    public static final String CHANGED_FILES_PROPERTY = "fb-contrib.changed";
+
+    private static final int MAGIC = 0x46424344;
+    private static final int VERSION = 1;
+
+    private static volatile DependencyGraph graph = new DependencyGraph(null, null, false);
+    private static volatile boolean keptInMemory;
+
+    private final File graphFile;
+    private final BugReporter bugReporter;
+    private final boolean tracking;
+    private final Map<String, Set<String>> dependencies = new ConcurrentHashMap<String, Set<String>>();
+    private Map<String, Set<String>> previousDependencies;
+    private volatile Set<String> scope;
+
+    private DependencyGraph(File graphFile, BugReporter bugReporter, boolean tracking) {
+        this.graphFile = graphFile;
+        this.bugReporter = bugReporter;
+        this.tracking = tracking;
+    }
+
+    public static DependencyGraph getDependencyGraph() {
+        return graph;
+    }
+
+    /**
+     * determines whether a class is outside the classes a change can affect, and so should be skipped
+     *
+     * @param className
+     *            the dotted name of the class
+     * @return whether the class is out of scope
+     */
+    public static boolean isOutOfScope(String className) {
+        Set<String> s = graph.scope;
+        return (s != null) && !s.contains(className);
+    }
+
+    /**
+     * makes the analyses that follow record the dependencies between classes even when no graph file is given, so that they can be asked for the
+     * dependents of a class
+     */
+    public static void keepInMemory() {
+        keptInMemory = true;
+    }
+
+    /**
+     * starts a new analysis, loading the graph of the last run if dependency tracking is turned on
+     *
+     * @param reporter
+     *            the bug reporter to log problems to
+     */
+    public static void start(BugReporter reporter) {
+        String fileName = System.getProperty(GRAPH_FILE_PROPERTY);
+        if (fileName == null) {
+            graph = new DependencyGraph(null, reporter, keptInMemory);
+            return;
+        }
+
+        DependencyGraph newGraph = new DependencyGraph(new File(fileName), reporter, true);
+        newGraph.load();
+        graph = newGraph;
+    }
+
+    /**
+     * records the classes an application class depends on, as seen in the first pass
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    public void addClass(ClassContext classContext) {
+        if (!tracking || !AnalysisContext.currentAnalysisContext().isApplicationClass(classContext.getJavaClass())) {
+            return;
+        }
+
+        String clsName = classContext.getJavaClass().getClassName();
+        Set<String> referenced = new HashSet<String>();
+        for (String referencedClass : ClassReferenceIndex.getIndex(classContext).getReferencedClasses()) {
+            String dottedName = referencedClass.replace('/', '.');
+            if (!dottedName.equals(clsName)) {
+                referenced.add(dottedName);
+            }
+        }
+        dependencies.put(clsName, referenced);
+    }
+
+    /**
+     * decides, once all classes have been seen, which classes a change can affect, and saves the graph for the next run
+     */
+    public void computeScope() {
+        if (graphFile == null) {
+            return;
+        }
+
+        Map<String, Set<String>> current = new TreeMap<String, Set<String>>();
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            Set<String> appDependencies = new TreeSet<String>();
+            for (String dependency : entry.getValue()) {
+                if (dependencies.containsKey(dependency)) {
+                    appDependencies.add(dependency);
+                }
+            }
+            current.put(entry.getKey(), appDependencies);
+        }
+
+        String changedFiles = System.getProperty(CHANGED_FILES_PROPERTY);
+        if ((changedFiles != null) && (previousDependencies != null)) {
+            Set<String> changed = findChangedClasses(changedFiles, current);
+            if (changed != null) {
+                scope = Collections.unmodifiableSet(findAffectedClasses(changed, current));
+            }
+        }
+
+        store(current);
+    }
+
+    /**
+     * finds the classes that a change to some classes can affect
+     */
+    private Set<String> findAffectedClasses(Set<String> changed, Map<String, Set<String>> current) {
+        Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+        addDependents(current, dependents);
+        addDependents(previousDependencies, dependents);
+
+        Set<String> affected = new HashSet<String>(changed);
+        addTransitiveDependents(affected, dependents);
+
+        for (String clsName : changed) {
+            addAllOf(current.get(clsName), affected);
+            addAllOf(previousDependencies.get(clsName), affected);
+        }
+        return affected;
+    }
+
+    /**
+     * finds the classes that depend, transitively, on some classes, as recorded so far in this run
+     *
+     * @param classNames
+     *            the dotted names of the classes
+     * @return the classes given, along with the classes that depend on them
+     */
+    public Set<String> findDependents(Set<String> classNames) {
+        Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+        addDependents(dependencies, dependents);
+
+        Set<String> affected = new HashSet<String>(classNames);
+        addTransitiveDependents(affected, dependents);
+        return affected;
+    }
+
+    private static void addTransitiveDependents(Set<String> affected, Map<String, Set<String>> dependents) {
+        Deque<String> toVisit = new ArrayDeque<String>(affected);
+        while (!toVisit.isEmpty()) {
+            Set<String> classDependents = dependents.get(toVisit.pop());
+            if (classDependents != null) {
+                for (String dependent : classDependents) {
+                    if (affected.add(dependent)) {
+                        toVisit.push(dependent);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addDependents(Map<String, Set<String>> graphDependencies, Map<String, Set<String>> dependents) {
+        for (Map.Entry<String, Set<String>> entry : graphDependencies.entrySet()) {
+            for (String dependency : entry.getValue()) {
+                Set<String> classDependents = dependents.get(dependency);
+                if (classDependents == null) {
+                    classDependents = new HashSet<String>();
+                    dependents.put(dependency, classDependents);
+                }
+                classDependents.add(entry.getKey());
+            }
+        }
+    }
+
+    private static void addAllOf(Set<String> classes, Set<String> to) {
+        if (classes != null) {
+            to.addAll(classes);
+        }
+    }
+
+    /**
+     * finds the names of the classes in a list of changed class files. Files that exist are read for the name of their class, and deleted ones are matched
+     * by their path to the classes of this run and the last.
+     *
+     * @return the changed classes, or null if a file couldn't be read, and so everything should be analyzed
+     */
+    private Set<String> findChangedClasses(String changedFiles, Map<String, Set<String>> current) {
+        Set<String> knownClasses = new HashSet<String>(current.keySet());
+        knownClasses.addAll(previousDependencies.keySet());
+
+        Set<String> changed = new HashSet<String>();
+        for (String path : changedFiles.split(File.pathSeparator)) {
+            if (path.isEmpty()) {
+                continue;
+            }
+
+            File classFile = new File(path);
+            if (classFile.isFile()) {
+                try {
+                    changed.add(new ClassParser(classFile.getPath()).parse().getClassName());
+                } catch (IOException | ClassFormatException e) {
+                    bugReporter.logError("Failed reading changed class file " + path + ", analyzing all classes", e);
+                    return null;
+                }
+            } else {
+                String resourceName = path.replace(File.separatorChar, '/');
+                if (resourceName.endsWith(".class")) {
+                    resourceName = resourceName.substring(0, resourceName.length() - ".class".length());
+                }
+                for (String clsName : knownClasses) {
+                    String clsResource = clsName.replace('.', '/');
+                    if (resourceName.equals(clsResource) || resourceName.endsWith('/' + clsResource)) {
+                        changed.add(clsName);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * writes the graph of this run, for the next run to use
+     */
+    private void store(Map<String, Set<String>> current) {
+        List<String> names = new ArrayList<String>(current.keySet());
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        for (String name : names) {
+            ids.put(name, Integer.valueOf(ids.size()));
+        }
+
+        try {
+            File dir = graphFile.getAbsoluteFile().getParentFile();
+            File tempFile = File.createTempFile(graphFile.getName(), ".tmp", dir);
+            try {
+                try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(tempFile))))) {
+                    dos.writeInt(MAGIC);
+                    dos.writeInt(VERSION);
+                    dos.writeInt(names.size());
+                    for (String name : names) {
+                        dos.writeUTF(name);
+                    }
+                    for (String name : names) {
+                        Set<String> classDependencies = current.get(name);
+                        dos.writeInt(classDependencies.size());
+                        for (String dependency : classDependencies) {
+                            dos.writeInt(ids.get(dependency).intValue());
+                        }
+                    }
+                }
+                Files.move(tempFile.toPath(), graphFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        } catch (IOException e) {
+            bugReporter.logError("Failed writing the dependency graph to " + graphFile, e);
+        }
+    }
+
+    /**
+     * loads the graph of the last run, if there is one
+     */
+    private void load() {
+        if (!graphFile.isFile()) {
+            return;
+        }
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(graphFile))))) {
+            if ((dis.readInt() != MAGIC) || (dis.readInt() != VERSION)) {
+                return;
+            }
+
+            String[] names = new String[dis.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = dis.readUTF();
+            }
+
+            Map<String, Set<String>> loaded = new HashMap<String, Set<String>>();
+            for (String name : names) {
+                Set<String> classDependencies = new HashSet<String>();
+                int numDependencies = dis.readInt();
+                for (int d = 0; d < numDependencies; d++) {
+                    classDependencies.add(names[dis.readInt()]);
+                }
+                loaded.put(name, classDependencies);
+            }
+            previousDependencies = loaded;
+        } catch (IOException | ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            bugReporter.logError("Failed reading the dependency graph from " + graphFile + ", analyzing all classes", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+}
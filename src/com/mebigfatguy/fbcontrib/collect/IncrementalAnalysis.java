@@ -0,0 +1,637 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.collect;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.dom4j.DocumentException;
+
+import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ClassReferenceIndex;
+import com.mebigfatguy.fbcontrib.utils.ToString;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.BugReporterObserver;
+import edu.umd.cs.findbugs.FindBugsAnalysisFeatures;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.AnalysisFeatures;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.ICodeBase;
+import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+
+/**
+ * holds the state of an incremental analysis, which is turned on by setting the system property fb-contrib.incremental to the path of a file to keep the
+ * results in between runs. For each application class, the file holds a digest of the class and of the classes it depends on, along with the fb-contrib
+ * bugs reported against the class. When a class and its dependencies are unchanged since the last run, the per class detectors skip it, and its bugs are
+ * replayed from the file instead.
+ * <p>
+ * The classes a class depends on are all the application classes named in its constant pool, which covers the methods it calls, whose statistics it reads,
+ * and its superclass and interfaces. As statistics and immutability are in turn derived from the methods those methods call, the digest covers the whole
+ * transitive closure of these dependencies, so that a change to any class a class can reach invalidates it. The file as a whole is dropped when
+ * fb-contrib itself, the auxiliary classpath, the effort, or any fb-contrib system property changes. It is also dropped when the per class detectors
+ * that run differ from those of the last run, which is only known once the reporting detectors are created, so is checked when the first class is
+ * visited.
+ * <p>
+ * Detectors whose bugs depend on the whole application, rather than on one class and its dependencies, are global. They report in their report method,
+ * are never skipped, and their bugs are never cached. These are CircularDependencies, OverlyPermissiveMethod, InconsistentKeyNameCasing and
+ * NonSymmetricEquals, along with the collectors, which must see every class to fill in the statistics.
+ */
+public final class IncrementalAnalysis {
+
+    public static final String INCREMENTAL_FILE_PROPERTY = "fb-contrib.incremental";
+
+    private static final int VERSION = 3;
+
+    private static final Set<String> GLOBAL_BUG_TYPES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(BugType.CD_CIRCULAR_DEPENDENCY.name(),
+            BugType.OPM_OVERLY_PERMISSIVE_METHOD.name(), BugType.IKNC_INCONSISTENT_HTTP_ATTRIBUTE_CASING.name(),
+            BugType.IKNC_INCONSISTENT_HTTP_PARAM_CASING.name(), BugType.NSE_NON_SYMMETRIC_EQUALS.name())));
+
+    private static final Set<String> CACHEABLE_BUG_TYPES;
+
+    private static final int[] EFFORT_FEATURES = { AnalysisFeatures.ACCURATE_EXCEPTIONS, AnalysisFeatures.CONSERVE_SPACE,
+            AnalysisFeatures.MERGE_SIMILAR_WARNINGS, AnalysisFeatures.INTERATIVE_OPCODE_STACK_ANALYSIS,
+            AnalysisFeatures.TRACK_GUARANTEED_VALUE_DEREFS_IN_NULL_POINTER_ANALYSIS, AnalysisFeatures.TRACK_VALUE_NUMBERS_IN_NULL_POINTER_ANALYSIS,
+            AnalysisFeatures.SKIP_HUGE_METHODS, FindBugsAnalysisFeatures.INTERPROCEDURAL_ANALYSIS,
+            FindBugsAnalysisFeatures.INTERPROCEDURAL_ANALYSIS_OF_REFERENCED_CLASSES };
+
+    static {
+        Set<String> types = new HashSet<String>();
+        for (BugType type : EnumSet.allOf(BugType.class)) {
+            if (!GLOBAL_BUG_TYPES.contains(type.name())) {
+                types.add(type.name());
+            }
+        }
+        CACHEABLE_BUG_TYPES = Collections.unmodifiableSet(types);
+    }
+
+    private static volatile IncrementalAnalysis analysis = new IncrementalAnalysis(null, null);
+
+    private final File resultsFile;
+    private final BugReporter bugReporter;
+    private final Map<String, ClassDigest> classDigests = new ConcurrentHashMap<String, ClassDigest>();
+    private final ConcurrentMap<String, List<BugInstance>> reportedBugs = new ConcurrentHashMap<String, List<BugInstance>>();
+    private final Set<String> detectors = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean detectorsChecked;
+    private Results previousResults;
+    private Map<String, List<BugInstance>> previousBugs = Collections.emptyMap();
+    private Map<String, byte[]> dependencyDigests = Collections.emptyMap();
+    private Set<String> replayedClasses = Collections.emptySet();
+    private byte[] environmentDigest;
+
+    private IncrementalAnalysis(File resultsFile, BugReporter bugReporter) {
+        this.resultsFile = resultsFile;
+        this.bugReporter = bugReporter;
+    }
+
+    public static IncrementalAnalysis getIncrementalAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * determines whether a per class detector should skip this class, as its results are being replayed from the last run, or it is outside the classes
+     * a change can affect, as decided by the DependencyGraph. ClassScope asks this before any per class detector visits a class.
+     *
+     * @param className
+     *            the dotted name of the class about to be visited
+     * @return whether the class should be skipped
+     */
+    public static boolean isSkipped(String className) {
+        IncrementalAnalysis current = analysis;
+        current.checkDetectors();
+        return current.replayedClasses.contains(className) || DependencyGraph.isOutOfScope(className);
+    }
+
+    /**
+     * records that a per class detector runs in this analysis, so that the results are only replayed in a run with the same detectors. The Scoped detector
+     * bases register themselves thru ClassScope when they are created.
+     *
+     * @param detectorClassName
+     *            the name of the class of the detector
+     */
+    public static void addDetector(String detectorClassName) {
+        IncrementalAnalysis current = analysis;
+        if (current.resultsFile != null) {
+            current.detectors.add(detectorClassName);
+        }
+    }
+
+    /**
+     * starts a new analysis, loading the results of the last run if incremental analysis is turned on
+     *
+     * @param reporter
+     *            the bug reporter, to watch for bugs being reported, and to log problems to
+     */
+    public static void start(BugReporter reporter) {
+        String fileName = System.getProperty(INCREMENTAL_FILE_PROPERTY);
+        if (fileName == null) {
+            analysis = new IncrementalAnalysis(null, null);
+            return;
+        }
+
+        final IncrementalAnalysis newAnalysis = new IncrementalAnalysis(new File(fileName), reporter);
+        newAnalysis.environmentDigest = newAnalysis.buildEnvironmentDigest();
+        newAnalysis.loadResults();
+        reporter.addObserver(new BugReporterObserver() {
+            @Override
+            public void reportBug(BugInstance bugInstance) {
+                newAnalysis.recordBug(bugInstance);
+            }
+        });
+        analysis = newAnalysis;
+    }
+
+    /**
+     * records the digest of a class, and the classes it depends on, as seen in the first pass
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    public void addClass(ClassContext classContext) {
+        if (resultsFile == null) {
+            return;
+        }
+
+        try {
+            JavaClass cls = classContext.getJavaClass();
+            ClassData data = Global.getAnalysisCache().getClassAnalysis(ClassData.class, classContext.getClassDescriptor());
+            Set<String> dependencies = new TreeSet<String>();
+            for (String referencedClass : ClassReferenceIndex.getIndex(classContext).getReferencedClasses()) {
+                dependencies.add(referencedClass.replace('/', '.'));
+            }
+            List<String> supertypes = new ArrayList<String>();
+            supertypes.add(cls.getSuperclassName());
+            supertypes.addAll(Arrays.asList(cls.getInterfaceNames()));
+
+            classDigests.put(cls.getClassName(), new ClassDigest(sha1().digest(data.getData()), dependencies, supertypes));
+        } catch (CheckedAnalysisException e) {
+            bugReporter.logError("Failed reading class data of " + classContext.getJavaClass().getClassName(), e);
+        }
+    }
+
+    /**
+     * decides, once all classes have been seen, which classes are unchanged, along with everything they depend on, transitively, since the last run, and
+     * so can be replayed
+     */
+    public void computeReplayedClasses() {
+        if (resultsFile == null) {
+            return;
+        }
+
+        Map<String, byte[]> newDependencyDigests = buildClosureDigests();
+        Set<String> replayed = new HashSet<String>();
+        if (previousResults != null) {
+            for (Map.Entry<String, byte[]> entry : newDependencyDigests.entrySet()) {
+                byte[] previousDigest = previousResults.dependencyDigests.get(entry.getKey());
+                if ((previousDigest != null) && Arrays.equals(previousDigest, entry.getValue())) {
+                    replayed.add(entry.getKey());
+                }
+            }
+        }
+
+        dependencyDigests = newDependencyDigests;
+        replayedClasses = Collections.unmodifiableSet(replayed);
+    }
+
+    /**
+     * reports the cached bugs of a class, if it is being replayed
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    public void replay(ClassContext classContext) {
+        checkDetectors();
+        String clsName = classContext.getJavaClass().getClassName();
+        if (replayedClasses.contains(clsName)) {
+            List<BugInstance> bugs = previousBugs.get(clsName);
+            if (bugs != null) {
+                for (BugInstance bug : bugs) {
+                    bugReporter.reportBug(bug);
+                }
+            }
+        }
+    }
+
+    /**
+     * writes the results of this run, for the next run to use
+     */
+    public void store() {
+        if (resultsFile == null) {
+            return;
+        }
+
+        Map<String, byte[]> storedDigests = new HashMap<String, byte[]>();
+        SortedBugCollection bugCollection = new SortedBugCollection(new Project());
+        for (Map.Entry<String, byte[]> entry : dependencyDigests.entrySet()) {
+            String clsName = entry.getKey();
+            if (DependencyGraph.isOutOfScope(clsName) && !replayedClasses.contains(clsName)) {
+                // never analyzed in this run, so its bugs aren't known
+                continue;
+            }
+            storedDigests.put(clsName, entry.getValue());
+            List<BugInstance> bugs = reportedBugs.get(clsName);
+            if (bugs != null) {
+                synchronized (bugs) {
+                    for (BugInstance bug : bugs) {
+                        bugCollection.add(bug, false);
+                    }
+                }
+            }
+        }
+
+        try {
+            File dir = resultsFile.getAbsoluteFile().getParentFile();
+            File tempFile = File.createTempFile(resultsFile.getName(), ".tmp", dir);
+            try {
+                ByteArrayOutputStream bugsXml = new ByteArrayOutputStream();
+                bugCollection.writeXML(bugsXml);
+                try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                    oos.writeObject(new Results(environmentDigest, buildDetectorsDigest(), storedDigests, bugsXml.toByteArray()));
+                }
+                Files.move(tempFile.toPath(), resultsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        } catch (IOException e) {
+            bugReporter.logError("Failed writing incremental results to " + resultsFile, e);
+        }
+    }
+
+    /**
+     * drops the results of the last run, once all the reporting detectors have been created, if they weren't made by the same per class detectors
+     */
+    private void checkDetectors() {
+        if (detectorsChecked) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!detectorsChecked) {
+                if ((previousResults != null) && !Arrays.equals(previousResults.detectorsDigest, buildDetectorsDigest())) {
+                    previousResults = null;
+                    previousBugs = Collections.emptyMap();
+                    replayedClasses = Collections.emptySet();
+                }
+                detectorsChecked = true;
+            }
+        }
+    }
+
+    private byte[] buildDetectorsDigest() {
+        return sha1().digest(new TreeSet<String>(detectors).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void recordBug(BugInstance bugInstance) {
+        if (!CACHEABLE_BUG_TYPES.contains(bugInstance.getType())) {
+            return;
+        }
+
+        String clsName = bugInstance.getPrimaryClass().getClassName();
+        List<BugInstance> bugs = reportedBugs.get(clsName);
+        if (bugs == null) {
+            bugs = Collections.synchronizedList(new ArrayList<BugInstance>());
+            List<BugInstance> existing = reportedBugs.putIfAbsent(clsName, bugs);
+            if (existing != null) {
+                bugs = existing;
+            }
+        }
+        bugs.add(bugInstance);
+    }
+
+    /**
+     * builds, for each class, a digest of the class and of every application class it can reach through its dependencies. The dependency graph is split
+     * into its strongly connected components with an iterative version of Tarjan's algorithm, which finishes each component only after all the components
+     * it reaches, so each component's digest is built from its own classes and the digests of the components it points to. Every class of a component
+     * shares the component's digest.
+     *
+     * @return the closure digest of each class
+     */
+    private Map<String, byte[]> buildClosureDigests() {
+        List<String> names = new ArrayList<String>(new TreeSet<String>(classDigests.keySet()));
+        int numClasses = names.size();
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        for (String name : names) {
+            ids.put(name, Integer.valueOf(ids.size()));
+        }
+
+        int[] offsets = new int[numClasses + 1];
+        List<Integer> edges = new ArrayList<Integer>();
+        for (int v = 0; v < numClasses; v++) {
+            offsets[v] = edges.size();
+            ClassDigest classDigest = classDigests.get(names.get(v));
+            Set<Integer> classEdges = new TreeSet<Integer>();
+            addEdges(classDigest.dependencies, ids, v, classEdges);
+            addEdges(classDigest.supertypes, ids, v, classEdges);
+            edges.addAll(classEdges);
+        }
+        offsets[numClasses] = edges.size();
+        int[] targets = new int[edges.size()];
+        for (int e = 0; e < targets.length; e++) {
+            targets[e] = edges.get(e).intValue();
+        }
+
+        int[] index = new int[numClasses];
+        int[] lowLink = new int[numClasses];
+        int[] edgePos = new int[numClasses];
+        int[] stack = new int[numClasses];
+        int[] callStack = new int[numClasses];
+        int[] components = new int[numClasses];
+        BitSet onStack = new BitSet(numClasses);
+        Arrays.fill(index, -1);
+        List<byte[]> componentDigests = new ArrayList<byte[]>();
+        List<String> componentNames = new ArrayList<String>();
+        Map<String, byte[]> closureDigests = new HashMap<String, byte[]>();
+
+        int nextIndex = 0;
+        int stackSize = 0;
+        for (int root = 0; root < numClasses; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+
+            index[root] = lowLink[root] = nextIndex++;
+            edgePos[root] = offsets[root];
+            stack[stackSize++] = root;
+            onStack.set(root);
+            int callDepth = 0;
+            callStack[callDepth++] = root;
+
+            while (callDepth > 0) {
+                int v = callStack[callDepth - 1];
+                if (edgePos[v] < offsets[v + 1]) {
+                    int w = targets[edgePos[v]++];
+                    if (index[w] < 0) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        edgePos[w] = offsets[w];
+                        stack[stackSize++] = w;
+                        onStack.set(w);
+                        callStack[callDepth++] = w;
+                    } else if (onStack.get(w)) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                } else {
+                    callDepth--;
+                    if (callDepth > 0) {
+                        int u = callStack[callDepth - 1];
+                        lowLink[u] = Math.min(lowLink[u], lowLink[v]);
+                    }
+                    if (lowLink[v] == index[v]) {
+                        int component = componentDigests.size();
+                        Set<Integer> members = new TreeSet<Integer>();
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack.clear(w);
+                            components[w] = component;
+                            members.add(Integer.valueOf(w));
+                        } while (w != v);
+
+                        byte[] componentDigest = digestComponent(members, names, offsets, targets, components, componentDigests, componentNames);
+                        componentDigests.add(componentDigest);
+                        componentNames.add(names.get(members.iterator().next().intValue()));
+                        for (Integer member : members) {
+                            closureDigests.put(names.get(member.intValue()), componentDigest);
+                        }
+                    }
+                }
+            }
+        }
+        return closureDigests;
+    }
+
+    private static void addEdges(Iterable<String> dependencies, Map<String, Integer> ids, int from, Set<Integer> edges) {
+        for (String dependency : dependencies) {
+            Integer id = ids.get(dependency);
+            if ((id != null) && (id.intValue() != from)) {
+                edges.add(id);
+            }
+        }
+    }
+
+    /**
+     * digests a finished component from the names and class digests of its members, and the digests of the components they point to. The components
+     * pointed to are ordered by their lowest named class, rather than by when they were found, so that the digest doesn't depend on the search order.
+     */
+    private byte[] digestComponent(Set<Integer> members, List<String> names, int[] offsets, int[] targets, int[] components, List<byte[]> componentDigests,
+            List<String> componentNames) {
+        int component = componentDigests.size();
+        MessageDigest digest = sha1();
+        Map<String, byte[]> successorDigests = new TreeMap<String, byte[]>();
+        for (Integer member : members) {
+            int v = member.intValue();
+            String clsName = names.get(v);
+            digest.update(clsName.getBytes(StandardCharsets.UTF_8));
+            digest.update(classDigests.get(clsName).digest);
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int successor = components[targets[e]];
+                if (successor != component) {
+                    successorDigests.put(componentNames.get(successor), componentDigests.get(successor));
+                }
+            }
+        }
+        for (Map.Entry<String, byte[]> entry : successorDigests.entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update(entry.getValue());
+        }
+        return digest.digest();
+    }
+
+    /**
+     * builds a digest of everything outside the application classes that can change the results: the contents of the fb-contrib jar, the paths, sizes and
+     * modification times of the auxiliary classpath entries, the analysis features set by the effort, and the fb-contrib system properties
+     *
+     * @return the digest of the analysis environment
+     */
+    private byte[] buildEnvironmentDigest() {
+        MessageDigest digest = sha1();
+        digest.update(Integer.toString(VERSION).getBytes(StandardCharsets.UTF_8));
+
+        CodeSource source = IncrementalAnalysis.class.getProtectionDomain().getCodeSource();
+        if ((source != null) && (source.getLocation() != null)) {
+            File pluginFile = new File(source.getLocation().getPath());
+            if (pluginFile.isFile()) {
+                try {
+                    digest.update(Files.readAllBytes(pluginFile.toPath()));
+                } catch (IOException e) {
+                    updateWithFile(digest, pluginFile.getPath(), pluginFile.lastModified(), pluginFile.length());
+                }
+            }
+        }
+
+        Iterator<? extends ICodeBase> it = Global.getAnalysisCache().getClassPath().auxCodeBaseIterator();
+        while (it.hasNext()) {
+            ICodeBase codeBase = it.next();
+            String path = codeBase.getPathName();
+            if (path != null) {
+                File f = new File(path);
+                updateWithFile(digest, path, f.lastModified(), f.length());
+            }
+        }
+
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        StringBuilder features = new StringBuilder(EFFORT_FEATURES.length);
+        for (int feature : EFFORT_FEATURES) {
+            features.append(analysisContext.getBoolProperty(feature) ? '1' : '0');
+        }
+        digest.update(features.toString().getBytes(StandardCharsets.UTF_8));
+
+        Map<String, String> properties = new TreeMap<String, String>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("fb-contrib.") && !INCREMENTAL_FILE_PROPERTY.equals(name) && !DependencyGraph.GRAPH_FILE_PROPERTY.equals(name)
+                    && !DependencyGraph.CHANGED_FILES_PROPERTY.equals(name)) {
+                properties.put(name, System.getProperty(name));
+            }
+        }
+        digest.update(properties.toString().getBytes(StandardCharsets.UTF_8));
+
+        return digest.digest();
+    }
+
+    private static void updateWithFile(MessageDigest digest, String path, long lastModified, long length) {
+        digest.update((path + ':' + lastModified + ':' + length + ';').getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * loads the results of the last run, unless they were made in a different environment. The bugs are saved in the standard FindBugs xml format, as
+     * BugInstances can't be serialized directly, and are split up by their primary class.
+     */
+    private void loadResults() {
+        if (!resultsFile.isFile()) {
+            return;
+        }
+
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(resultsFile)))) {
+            Results results = (Results) ois.readObject();
+            if (!Arrays.equals(environmentDigest, results.environmentDigest)) {
+                return;
+            }
+
+            SortedBugCollection bugCollection = new SortedBugCollection(new Project());
+            bugCollection.readXML(new ByteArrayInputStream(results.bugsXml));
+            Map<String, List<BugInstance>> bugs = new HashMap<String, List<BugInstance>>();
+            for (BugInstance bug : bugCollection.getCollection()) {
+                String clsName = bug.getPrimaryClass().getClassName();
+                List<BugInstance> classBugs = bugs.get(clsName);
+                if (classBugs == null) {
+                    classBugs = new ArrayList<BugInstance>();
+                    bugs.put(clsName, classBugs);
+                }
+                classBugs.add(bug);
+            }
+
+            previousResults = results;
+            previousBugs = bugs;
+        } catch (IOException | ClassNotFoundException | ClassCastException | DocumentException e) {
+            bugReporter.logError("Failed reading incremental results from " + resultsFile + ", analyzing all classes", e);
+        }
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+
+    /**
+     * the digest of a class file, and the names of the classes it depends on
+     */
+    static final class ClassDigest {
+        final byte[] digest;
+        final Set<String> dependencies;
+        final List<String> supertypes;
+
+        ClassDigest(byte[] digest, Set<String> dependencies, List<String> supertypes) {
+            this.digest = digest;
+            this.dependencies = dependencies;
+            this.supertypes = supertypes;
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * the results of one run, as saved to the results file
+     */
+    static final class Results implements Serializable {
+        private static final long serialVersionUID = 2L;
+
+        final byte[] environmentDigest;
+        final byte[] detectorsDigest;
+        final Map<String, byte[]> dependencyDigests;
+        final byte[] bugsXml;
+
+        Results(byte[] environmentDigest, byte[] detectorsDigest, Map<String, byte[]> dependencyDigests, byte[] bugsXml) {
+            this.environmentDigest = environmentDigest;
+            this.detectorsDigest = detectorsDigest;
+            this.dependencyDigests = dependencyDigests;
+            this.bugsXml = bugsXml;
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+}
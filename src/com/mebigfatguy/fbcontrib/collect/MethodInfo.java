@@ -18,10 +18,17 @@
  */
 package com.mebigfatguy.fbcontrib.collect;
 
-import org.apache.bcel.Constants;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-import com.mebigfatguy.fbcontrib.utils.ToString;
+import org.apache.bcel.Constants;
 
+/**
+ * the statistics collected about one method. All the values are packed into one long, which is only ever changed by compare and swap, so that detectors
+ * running on different threads can update the same method's statistics without losing each other's changes.
+ * <p>
+ * The long itself lives in one of the primitive pages held by {@link Statistics}, and a MethodInfo is just a light view onto it, made as needed, so that
+ * no object need be kept per method.
+ */
 public class MethodInfo {
 
     public static final int PUBLIC_USE = 1;
@@ -29,81 +36,157 @@ public class MethodInfo {
     public static final int PROTECTED_USE = 4;
     public static final int PACKAGE_USE = 8;
 
-    private short numMethodBytes;
-    private byte numMethodCalls;
-    private byte immutabilityOrdinal;
-    private byte declaredAccess;
-    private byte isCalledType;
+    private static final int NUM_BYTES_SHIFT = 0;
+    private static final int NUM_METHOD_CALLS_SHIFT = 16;
+    private static final int IMMUTABILITY_SHIFT = 24;
+    private static final int DECLARED_ACCESS_SHIFT = 32;
+    private static final int CALLED_TYPE_SHIFT = 40;
+
+    private static final long SHORT_MASK = 0xFFFFL;
+    private static final long BYTE_MASK = 0xFFL;
+
+    private final AtomicLongArray page;
+    private final int offset;
+
+    /**
+     * creates a method info that isn't held by any statistics table
+     */
+    public MethodInfo() {
+        this(new AtomicLongArray(1), 0);
+    }
+
+    /**
+     * creates a view onto the statistics of a method held in a statistics page
+     *
+     * @param page
+     *            the page of packed method statistics
+     * @param offset
+     *            the index of this method's statistics in the page
+     */
+    MethodInfo(AtomicLongArray page, int offset) {
+        this.page = page;
+        this.offset = offset;
+    }
 
     public int getNumBytes() {
-        return 0x0000FFFF & numMethodBytes;
+        return (int) get(NUM_BYTES_SHIFT, SHORT_MASK);
     }
 
     public void setNumBytes(int numBytes) {
-        numMethodBytes = (short) numBytes;
+        set(NUM_BYTES_SHIFT, SHORT_MASK, numBytes);
     }
 
     public int getNumMethodCalls() {
-        return 0x000000FF & numMethodCalls;
+        return (int) get(NUM_METHOD_CALLS_SHIFT, BYTE_MASK);
     }
 
     public void setNumMethodCalls(int numCalls) {
         if (numCalls > 255) {
             numCalls = 255;
         }
-        numMethodCalls = (byte) numCalls;
+        set(NUM_METHOD_CALLS_SHIFT, BYTE_MASK, numCalls);
     }
 
     public void setDeclaredAccess(int access) {
-        declaredAccess = (byte) access;
+        set(DECLARED_ACCESS_SHIFT, BYTE_MASK, access);
     }
 
     public int getDeclaredAccess() {
-        return declaredAccess;
+        return (byte) get(DECLARED_ACCESS_SHIFT, BYTE_MASK);
     }
 
     public void addCallingAccess(int access) {
+        int calledType;
         if ((access & Constants.ACC_PUBLIC) != 0) {
-            isCalledType |= PUBLIC_USE;
+            calledType = PUBLIC_USE;
         } else if ((access & Constants.ACC_PROTECTED) != 0) {
-            isCalledType |= PROTECTED_USE;
+            calledType = PROTECTED_USE;
         } else if ((access & Constants.ACC_PRIVATE) != 0) {
-            isCalledType |= PRIVATE_USE;
+            calledType = PRIVATE_USE;
         } else {
-            isCalledType |= PACKAGE_USE;
+            calledType = PACKAGE_USE;
         }
+
+        long bit = ((long) calledType) << CALLED_TYPE_SHIFT;
+        long current;
+        do {
+            current = page.get(offset);
+            if ((current & bit) != 0) {
+                return;
+            }
+        } while (!page.compareAndSet(offset, current, current | bit));
     }
 
     public boolean wasCalled() {
-        return (isCalledType & (PUBLIC_USE | PROTECTED_USE | PACKAGE_USE | PRIVATE_USE)) != 0;
+        return (getCalledType() & (PUBLIC_USE | PROTECTED_USE | PACKAGE_USE | PRIVATE_USE)) != 0;
     }
 
     public boolean wasCalledPublicly() {
-        return (isCalledType & PUBLIC_USE) != 0;
+        return (getCalledType() & PUBLIC_USE) != 0;
     }
 
     public boolean wasCalledProtectedly() {
-        return (isCalledType & PROTECTED_USE) != 0;
+        return (getCalledType() & PROTECTED_USE) != 0;
     }
 
     public boolean wasCalledPackagely() {
-        return (isCalledType & PACKAGE_USE) != 0;
+        return (getCalledType() & PACKAGE_USE) != 0;
     }
 
     public boolean wasCalledPrivately() {
-        return (isCalledType & PRIVATE_USE) != 0;
+        return (getCalledType() & PRIVATE_USE) != 0;
     }
 
     public ImmutabilityType getImmutabilityType() {
-        return ImmutabilityType.values()[immutabilityOrdinal];
+        return ImmutabilityType.values()[(int) get(IMMUTABILITY_SHIFT, BYTE_MASK)];
     }
 
     public void setImmutabilityType(ImmutabilityType imType) {
-        immutabilityOrdinal = (byte) imType.ordinal();
+        set(IMMUTABILITY_SHIFT, BYTE_MASK, imType.ordinal());
+    }
+
+    /**
+     * returns all the statistics of this method as the one packed long, for saving them in a statistics cache
+     *
+     * @return the packed statistics
+     */
+    long getPacked() {
+        return page.get(offset);
+    }
+
+    /**
+     * replaces all the statistics of this method, as loaded from a statistics cache
+     *
+     * @param packed
+     *            the packed statistics
+     */
+    void setPacked(long packed) {
+        page.set(offset, packed);
+    }
+
+    private int getCalledType() {
+        return (int) get(CALLED_TYPE_SHIFT, BYTE_MASK);
+    }
+
+    private long get(int shift, long mask) {
+        return (page.get(offset) >>> shift) & mask;
+    }
+
+    private void set(int shift, long mask, long value) {
+        long current;
+        long updated;
+        do {
+            current = page.get(offset);
+            updated = (current & ~(mask << shift)) | ((value & mask) << shift);
+        } while (!page.compareAndSet(offset, current, updated));
     }
 
+    /**
+     * describes the method's statistics, rather than the page that holds them, which is what ToString would show
+     */
     @Override
     public String toString() {
-        return ToString.build(this);
+        return "MethodInfo[numBytes=" + getNumBytes() + ", numMethodCalls=" + getNumMethodCalls() + ", declaredAccess=" + getDeclaredAccess()
+                + ", calledType=" + getCalledType() + ", immutabilityType=" + getImmutabilityType() + ']';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.collect;
+
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.NonReportingDetector;
+import edu.umd.cs.findbugs.ba.ClassContext;
+
+/**
+ * reports the cached bugs of classes that are unchanged since the last
+ * incremental analysis, and saves the results of this run. This runs after
+ * all the reporting detectors, so that all bugs have been reported by the time
+ * the results are saved.
+ */
+public class ReplayIncrementalResults implements Detector, NonReportingDetector {
+
+    /**
+     * constructs a RIR detector given the reporter to report bugs on
+     *
+     * @param bugReporter
+     *            the sync of bug reports
+     */
+    public ReplayIncrementalResults(@SuppressWarnings("unused") BugReporter bugReporter) {
+    }
+
+    /**
+     * implements the visitor to report the cached bugs of an unchanged class
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        IncrementalAnalysis.getIncrementalAnalysis().replay(classContext);
+    }
+
+    /**
+     * implements the detector to save the results of this run
+     */
+    @Override
+    public void report() {
+        IncrementalAnalysis.getIncrementalAnalysis().store();
+    }
+}
@@ -18,44 +18,85 @@
  */
 package com.mebigfatguy.fbcontrib.collect;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.mebigfatguy.fbcontrib.utils.ToString;
 
 /**
- * holds statistics about classes collected in the first pass. To cut down on
- * the size of the database, class, method, signature is not stored as a key
- * only a hash of that data is stored. This will allow some false positives, but
- * hopefully not enough to cause issues.
+ * holds statistics about classes collected in the first pass. As this may hold
+ * a record for every method of the application and its dependencies, nothing
+ * is kept per method but primitives. Class names, method names and signatures
+ * are interned to int ids, a method is keyed by a long made of its class id and
+ * the id of its name and signature pair, and its statistics are packed into a
+ * long, kept in fixed size pages so that they never move once added.
+ * MethodInfo objects are just views onto those longs, made on demand.
+ * <p>
+ * The statistics may be collected and read from many threads at once, without
+ * a lock shared by all of them. Ids are handed out by atomic counters, and the
+ * pages they index are installed by compare and swap. The two indices, from
+ * name and signature pairs, and from methods, to ids, are split into stripes
+ * by the hash of their keys, each with its own lock, so threads only contend
+ * when they add to the same stripe at once. Updating the statistics of a
+ * method is done with compare and swap, in MethodInfo. Once the collecting
+ * detectors have finished, the indices are frozen into a read only copy, which
+ * later passes read without taking any lock.
  */
 public class Statistics implements Iterable<Map.Entry<StatisticsKey, MethodInfo>> {
 
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = 1 << 14;
+
+    private static final int STRIPE_SHIFT = 6;
+    private static final int NUM_STRIPES = 1 << STRIPE_SHIFT;
+
     private static Statistics statistics = new Statistics();
     private static final MethodInfo NOT_FOUND_METHOD_INFO = new MethodInfo();
 
-    private final Map<StatisticsKey, MethodInfo> methodStatistics = new HashMap<StatisticsKey, MethodInfo>();
+    private volatile Tables tables;
 
     private Statistics() {
+        clear();
     }
 
     public static Statistics getStatistics() {
         return statistics;
     }
 
+    /**
+     * drops all statistics collected so far. This is not meant to be called while other threads are still adding or reading statistics.
+     */
     public void clear() {
-        methodStatistics.clear();
+        tables = new Tables();
     }
 
-    public MethodInfo addMethodStatistics(String className, String methodName, String signature, int access, int numBytes, int numMethodCalls) {
-        StatisticsKey key = new StatisticsKey(className, methodName, signature);
-        MethodInfo mi = methodStatistics.get(key);
-        if (mi == null) {
-            mi = new MethodInfo();
-            methodStatistics.put(key, mi);
+    /**
+     * takes a read only copy of the indices of methods collected so far, for use
+     * by the reporting detectors. Adding a method that was not seen before drops
+     * the copy, until freeze is called again.
+     */
+    public void freeze() {
+        Tables t = tables;
+        long additions = t.additions.get();
+        Lookup lookup = new Lookup(t, copy(t.memberStripes), copy(t.methodStripes));
+        t.frozenLookup = lookup;
+        if (t.additions.get() != additions) {
+            t.frozenLookup = null;
         }
+    }
 
+    public MethodInfo addMethodStatistics(String className, String methodName, String signature, int access, int numBytes, int numMethodCalls) {
+        MethodInfo mi = getOrAddMethodInfo(className, methodName, signature);
         mi.setNumBytes(numBytes);
         mi.setNumMethodCalls(numMethodCalls);
         mi.setDeclaredAccess(access);
@@ -63,30 +104,416 @@ public class Statistics implements Iterable<Map.Entry<StatisticsKey, MethodInfo>
     }
 
     public MethodInfo getMethodStatistics(String className, String methodName, String signature) {
-        MethodInfo mi = methodStatistics.get(new StatisticsKey(className, methodName, signature));
+        Tables t = tables;
+        Lookup lookup = t.frozenLookup;
+        MethodInfo mi;
+        if (lookup != null) {
+            mi = lookup.find(className, methodName, signature);
+        } else {
+            mi = new Lookup(t, null, null).find(className, methodName, signature);
+        }
+
         if (mi == null)
             return NOT_FOUND_METHOD_INFO;
         return mi;
     }
 
+    /**
+     * returns an iterator over the methods that had been added when it was made. Methods added by other threads while the iterator was being made may or
+     * may not be included.
+     */
     @Override
     public Iterator<Map.Entry<StatisticsKey, MethodInfo>> iterator() {
-        return methodStatistics.entrySet().iterator();
+        Tables t = tables;
+        return new MethodIterator(t, t.nextMethodId.get());
     }
 
     public void addImmutabilityStatus(String className, String methodName, String signature, ImmutabilityType imType) {
-        StatisticsKey key = new StatisticsKey(className, methodName, signature);
-        MethodInfo mi = methodStatistics.get(key);
-        if (mi == null) {
-            mi = new MethodInfo();
-            methodStatistics.put(key, mi);
+        MethodInfo mi = getOrAddMethodInfo(className, methodName, signature);
+        mi.setImmutabilityType(imType);
+    }
+
+    MethodInfo getOrAddMethodInfo(String className, String methodName, String signature) {
+        Tables t = tables;
+        long memberKey = pair(t.intern(methodName), t.intern(signature));
+        int memberId;
+        Stripe memberStripe = t.memberStripes[stripe(memberKey)];
+        synchronized (memberStripe) {
+            memberId = memberStripe.index.get(memberKey);
+            if (memberId < 0) {
+                memberId = t.nextMemberId.getAndIncrement();
+                t.memberKeys.set(memberId, memberKey);
+                memberStripe.index.put(memberKey, memberId);
+            }
         }
 
-        mi.setImmutabilityType(imType);
+        long methodKey = pair(t.intern(className), memberId);
+        int methodId;
+        boolean added = false;
+        Stripe methodStripe = t.methodStripes[stripe(methodKey)];
+        synchronized (methodStripe) {
+            methodId = methodStripe.index.get(methodKey);
+            if (methodId < 0) {
+                methodId = t.nextMethodId.getAndIncrement();
+                t.methodPages.getPage(methodId);
+                t.methodKeys.set(methodId, ~methodKey);
+                methodStripe.index.put(methodKey, methodId);
+                added = true;
+            }
+        }
+
+        if (added) {
+            t.additions.incrementAndGet();
+            t.frozenLookup = null;
+        }
+
+        return new MethodInfo(t.methodPages.getPage(methodId), methodId & PAGE_MASK);
+    }
+
+    private static LongIndex[] copy(Stripe[] stripes) {
+        LongIndex[] indices = new LongIndex[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            synchronized (stripes[i]) {
+                indices[i] = stripes[i].index.copy();
+            }
+        }
+        return indices;
     }
-    
+
+    private static int stripe(long key) {
+        return LongIndex.hash(key) >>> (Integer.SIZE - STRIPE_SHIFT);
+    }
+
+    private static long pair(int high, int low) {
+        return (((long) high) << 32) | (low & 0xFFFFFFFFL);
+    }
+
     @Override
     public String toString() {
         return ToString.build(this);
     }
+
+    /**
+     * all the tables of one collection of statistics, replaced as a whole by clear
+     */
+    private static final class Tables {
+        final ConcurrentMap<String, Integer> symbolIds = new ConcurrentHashMap<String, Integer>();
+        final SymbolPages symbols = new SymbolPages();
+        final AtomicInteger nextSymbolId = new AtomicInteger();
+        final Stripe[] memberStripes = newStripes();
+        final LongPages memberKeys = new LongPages();
+        final AtomicInteger nextMemberId = new AtomicInteger();
+        final Stripe[] methodStripes = newStripes();
+        final LongPages methodPages = new LongPages();
+        final LongPages methodKeys = new LongPages();
+        final AtomicInteger nextMethodId = new AtomicInteger();
+        final AtomicLong additions = new AtomicLong();
+        volatile Lookup frozenLookup;
+
+        /**
+         * returns the id of a symbol, giving it the next one if it has none. The symbol is stored under its new id before the id is published, so any
+         * thread that finds the id can find the symbol. A thread that loses the race to publish leaves its id unused.
+         */
+        int intern(String symbol) {
+            Integer id = symbolIds.get(symbol);
+            if (id == null) {
+                Integer newId = Integer.valueOf(nextSymbolId.getAndIncrement());
+                symbols.set(newId.intValue(), symbol);
+                id = symbolIds.putIfAbsent(symbol, newId);
+                if (id == null) {
+                    id = newId;
+                }
+            }
+            return id.intValue();
+        }
+
+        private static Stripe[] newStripes() {
+            Stripe[] stripes = new Stripe[NUM_STRIPES];
+            for (int i = 0; i < NUM_STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+            return stripes;
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * one stripe of an index, whose monitor guards it
+     */
+    private static final class Stripe {
+        final LongIndex index = new LongIndex(64);
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * finds methods in a given version of the member and method indices, or in the live indices, under their stripe locks, if no version is given
+     */
+    private static final class Lookup {
+        private final Tables tables;
+        private final LongIndex[] members;
+        private final LongIndex[] methods;
+
+        Lookup(Tables tables, LongIndex[] members, LongIndex[] methods) {
+            this.tables = tables;
+            this.members = members;
+            this.methods = methods;
+        }
+
+        MethodInfo find(String className, String methodName, String signature) {
+            Integer classId = tables.symbolIds.get(className);
+            Integer nameId = tables.symbolIds.get(methodName);
+            Integer sigId = tables.symbolIds.get(signature);
+            if ((classId == null) || (nameId == null) || (sigId == null)) {
+                return null;
+            }
+
+            int memberId = get(members, tables.memberStripes, pair(nameId.intValue(), sigId.intValue()));
+            if (memberId < 0) {
+                return null;
+            }
+
+            int methodId = get(methods, tables.methodStripes, pair(classId.intValue(), memberId));
+            if (methodId < 0) {
+                return null;
+            }
+
+            return new MethodInfo(tables.methodPages.getPage(methodId), methodId & PAGE_MASK);
+        }
+
+        private static int get(LongIndex[] frozen, Stripe[] live, long key) {
+            int s = stripe(key);
+            if (frozen != null) {
+                return frozen[s].get(key);
+            }
+            synchronized (live[s]) {
+                return live[s].index.get(key);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * walks the methods that had been added when the iterator was made, rebuilding their keys from the symbol ids. Ids that were handed out, but whose
+     * method was not yet stored, when the iterator reached them, are skipped.
+     */
+    private static final class MethodIterator implements Iterator<Map.Entry<StatisticsKey, MethodInfo>> {
+        private final Tables tables;
+        private final int numMethods;
+        private int methodId;
+        private long nextKey;
+
+        MethodIterator(Tables tables, int numMethods) {
+            this.tables = tables;
+            this.numMethods = numMethods;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextKey != 0;
+        }
+
+        @Override
+        public Map.Entry<StatisticsKey, MethodInfo> next() {
+            if (nextKey == 0) {
+                throw new NoSuchElementException();
+            }
+
+            long methodKey = ~nextKey;
+            int id = methodId - 1;
+            advance();
+
+            long memberKey = tables.memberKeys.get((int) methodKey);
+            StatisticsKey key = new StatisticsKey(tables.symbols.get((int) (methodKey >>> 32)), tables.symbols.get((int) (memberKey >>> 32)),
+                    tables.symbols.get((int) memberKey));
+            return new AbstractMap.SimpleImmutableEntry<StatisticsKey, MethodInfo>(key, new MethodInfo(tables.methodPages.getPage(id), id & PAGE_MASK));
+        }
+
+        private void advance() {
+            nextKey = 0;
+            while ((nextKey == 0) && (methodId < numMethods)) {
+                nextKey = tables.methodKeys.get(methodId++);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * a growable array of longs, made of fixed size pages that are installed by compare and swap, so that it can be written and read from many threads
+     * without a lock, and so that a page never moves once it is made
+     */
+    private static final class LongPages {
+        private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<AtomicLongArray>(MAX_PAGES);
+
+        AtomicLongArray getPage(int id) {
+            int page = pageOf(id);
+            AtomicLongArray longs = pages.get(page);
+            if (longs == null) {
+                pages.compareAndSet(page, null, new AtomicLongArray(PAGE_SIZE));
+                longs = pages.get(page);
+            }
+            return longs;
+        }
+
+        long get(int id) {
+            AtomicLongArray longs = pages.get(pageOf(id));
+            return (longs == null) ? 0 : longs.get(id & PAGE_MASK);
+        }
+
+        void set(int id, long value) {
+            getPage(id).set(id & PAGE_MASK, value);
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * the strings of the interned symbols, paged as LongPages is
+     */
+    private static final class SymbolPages {
+        private final AtomicReferenceArray<AtomicReferenceArray<String>> pages = new AtomicReferenceArray<AtomicReferenceArray<String>>(MAX_PAGES);
+
+        String get(int id) {
+            AtomicReferenceArray<String> strings = pages.get(pageOf(id));
+            return (strings == null) ? null : strings.get(id & PAGE_MASK);
+        }
+
+        void set(int id, String symbol) {
+            int page = pageOf(id);
+            AtomicReferenceArray<String> strings = pages.get(page);
+            if (strings == null) {
+                pages.compareAndSet(page, null, new AtomicReferenceArray<String>(PAGE_SIZE));
+                strings = pages.get(page);
+            }
+            strings.set(id & PAGE_MASK, symbol);
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    private static int pageOf(int id) {
+        int page = id >>> PAGE_SHIFT;
+        if (page >= MAX_PAGES) {
+            throw new IllegalStateException("More than " + (MAX_PAGES * PAGE_SIZE) + " entries in the method statistics");
+        }
+        return page;
+    }
+
+    /**
+     * an open addressed hash table from long keys to non negative int values,
+     * which avoids boxing either
+     */
+    private static final class LongIndex {
+        private static final float LOAD_FACTOR = 0.5f;
+
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        LongIndex(int capacity) {
+            this(new long[capacity], new int[capacity], 0);
+        }
+
+        private LongIndex(long[] keys, int[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the value of this key, or -1 if it isn't in the index
+         */
+        int get(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != 0) {
+                if (keys[slot] == key) {
+                    return values[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) > (keys.length * LOAD_FACTOR)) {
+                grow();
+            }
+            if (insert(keys, values, key, value + 1)) {
+                size++;
+            }
+        }
+
+        LongIndex copy() {
+            return new LongIndex(keys.clone(), values.clone(), size);
+        }
+
+        private void grow() {
+            long[] newKeys = new long[keys.length * 2];
+            int[] newValues = new int[values.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != 0) {
+                    insert(newKeys, newValues, keys[i], values[i]);
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        private static boolean insert(long[] tableKeys, int[] tableValues, long key, int storedValue) {
+            int mask = tableKeys.length - 1;
+            int slot = hash(key) & mask;
+            while (tableValues[slot] != 0) {
+                if (tableKeys[slot] == key) {
+                    tableValues[slot] = storedValue;
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            tableKeys[slot] = key;
+            tableValues[slot] = storedValue;
+            return true;
+        }
+
+        static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
 }
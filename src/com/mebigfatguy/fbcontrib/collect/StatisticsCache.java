@@ -0,0 +1,426 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.collect;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.mebigfatguy.fbcontrib.utils.ToString;
+
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.ICodeBase;
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
+
+/**
+ * an optional cache, kept on disk between runs, of the statistics collected for the jars being analyzed. It is turned on by setting the system property
+ * fb-contrib.statistics.cache to a directory to keep the cache files in. Each jar gets its own file, named for the jar's path, and holding the jar's path and
+ * a key, along with the statistics of each method in the jar. When a jar's file is found, and its path and key match, its statistics are loaded, by memory
+ * mapping the file, and the collecting detectors skip the classes of that jar. Otherwise the jar's classes are collected as usual, and the file is rewritten
+ * once collection is done.
+ * <p>
+ * The key is the SHA-1 hash of the jar's contents combined with a hash of the whole application and aux classpath. The immutability saved for a method
+ * depends on the methods it calls, which may live in other jars, so a change to any jar on the classpath invalidates every file.
+ * <p>
+ * Only the statistics collected in the first pass are saved, as the reporting detectors mark methods as called, later.
+ */
+public final class StatisticsCache {
+
+    public static final String CACHE_DIR_PROPERTY = "fb-contrib.statistics.cache";
+
+    private static final int MAGIC = 0x46424353;
+    private static final int VERSION = 2;
+    private static final String CACHE_FILE_SUFFIX = ".stats";
+    private static final int HASH_CHUNK_SIZE = 1 << 24;
+
+    private static volatile StatisticsCache cache = new StatisticsCache(null, null);
+
+    private final File cacheDir;
+    private final BugReporter bugReporter;
+    private final Set<String> loadedCodeBases = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ConcurrentMap<String, byte[]> codeBaseHashes = new ConcurrentHashMap<String, byte[]>();
+    private final ConcurrentMap<String, Set<String>> collectedClasses = new ConcurrentHashMap<String, Set<String>>();
+
+    private StatisticsCache(File cacheDir, BugReporter bugReporter) {
+        this.cacheDir = cacheDir;
+        this.bugReporter = bugReporter;
+    }
+
+    public static StatisticsCache getCache() {
+        return cache;
+    }
+
+    /**
+     * starts a new analysis, loading the statistics of any application jars that have valid cache files. This must be called after the statistics have
+     * been cleared.
+     *
+     * @param reporter
+     *            the reporter to log cache problems to
+     */
+    public static void start(BugReporter reporter) {
+        String dirName = System.getProperty(CACHE_DIR_PROPERTY);
+        if (dirName == null) {
+            cache = new StatisticsCache(null, null);
+            return;
+        }
+
+        File dir = new File(dirName);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            reporter.logError("Statistics cache directory " + dir + " can not be created");
+            cache = new StatisticsCache(null, null);
+            return;
+        }
+
+        StatisticsCache newCache = new StatisticsCache(dir, reporter);
+        newCache.loadCodeBases();
+        cache = newCache;
+    }
+
+    /**
+     * determines whether the statistics of this class have been loaded from the cache, and if not, remembers the class as one to save, if its jar can be
+     * cached.
+     *
+     * @param classContext
+     *            the context object of the class about to be collected
+     * @return whether the class need not be collected
+     */
+    public boolean isCached(ClassContext classContext) {
+        if (cacheDir == null) {
+            return false;
+        }
+
+        String path = getCodeBasePath(classContext);
+        if (path == null) {
+            return false;
+        }
+
+        if (loadedCodeBases.contains(path)) {
+            return true;
+        }
+
+        Set<String> classes = collectedClasses.get(path);
+        if (classes != null) {
+            classes.add(classContext.getJavaClass().getClassName());
+        }
+        return false;
+    }
+
+    /**
+     * writes the cache files of the jars whose statistics were collected in this run. Only the first call after collection does anything.
+     */
+    public void store() {
+        if (cacheDir == null) {
+            return;
+        }
+
+        for (String path : new ArrayList<String>(collectedClasses.keySet())) {
+            Set<String> classes = collectedClasses.remove(path);
+            if (classes != null) {
+                try {
+                    writeCacheFile(path, codeBaseHashes.get(path), classes);
+                } catch (IOException e) {
+                    bugReporter.logError("Failed writing statistics cache for " + path, e);
+                }
+            }
+        }
+    }
+
+    private void loadCodeBases() {
+        IClassPath classPath = Global.getAnalysisCache().getClassPath();
+        Map<String, byte[]> jarHashes = new HashMap<String, byte[]>();
+        byte[] classPathHash;
+        try {
+            classPathHash = hashClassPath(classPath, jarHashes);
+        } catch (IOException e) {
+            bugReporter.logError("Failed hashing the classpath for the statistics cache", e);
+            return;
+        }
+
+        Iterator<? extends ICodeBase> it = classPath.appCodeBaseIterator();
+        while (it.hasNext()) {
+            String path = it.next().getPathName();
+            byte[] jarHash = jarHashes.get(path);
+            if (jarHash == null) {
+                continue;
+            }
+
+            try {
+                MessageDigest digest = sha1();
+                digest.update(jarHash);
+                digest.update(classPathHash);
+                byte[] key = digest.digest();
+                if (readCacheFile(path, key)) {
+                    loadedCodeBases.add(path);
+                } else {
+                    codeBaseHashes.put(path, key);
+                    collectedClasses.put(path, Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+                }
+            } catch (IOException e) {
+                bugReporter.logError("Failed reading statistics cache for " + path, e);
+            }
+        }
+    }
+
+    /**
+     * hashes every application and aux code base, in classpath order. Jars are hashed by their contents, and directories by the names, sizes and
+     * modification times of the files in them, as reading every class file of a directory would cost about as much as collecting it.
+     *
+     * @param classPath
+     *            the classpath of the analysis
+     * @param jarHashes
+     *            filled with the content hash of each jar, by path
+     * @return the hash of the whole classpath
+     *
+     * @throws IOException
+     *             if a code base can't be read
+     */
+    private static byte[] hashClassPath(IClassPath classPath, Map<String, byte[]> jarHashes) throws IOException {
+        MessageDigest digest = sha1();
+        List<Iterator<? extends ICodeBase>> iterators = new ArrayList<Iterator<? extends ICodeBase>>(2);
+        iterators.add(classPath.appCodeBaseIterator());
+        iterators.add(classPath.auxCodeBaseIterator());
+        for (Iterator<? extends ICodeBase> it : iterators) {
+            while (it.hasNext()) {
+                String path = it.next().getPathName();
+                if (path == null) {
+                    continue;
+                }
+
+                digest.update(path.getBytes(StandardCharsets.UTF_8));
+                File codeBaseFile = new File(path);
+                if (codeBaseFile.isFile()) {
+                    byte[] hash = hashFile(codeBaseFile);
+                    jarHashes.put(path, hash);
+                    digest.update(hash);
+                } else if (codeBaseFile.isDirectory()) {
+                    stampDirectory(codeBaseFile.toPath(), digest);
+                }
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void stampDirectory(final Path dir, final MessageDigest digest) throws IOException {
+        final List<Path> files = new ArrayList<Path>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+
+        ByteBuffer stamp = ByteBuffer.allocate(16);
+        for (Path file : files) {
+            digest.update(dir.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            stamp.clear();
+            stamp.putLong(Files.size(file)).putLong(Files.getLastModifiedTime(file).toMillis());
+            digest.update(stamp.array());
+        }
+    }
+
+    private static String getCodeBasePath(ClassContext classContext) {
+        try {
+            ICodeBaseEntry entry = Global.getAnalysisCache().getClassPath().lookupResource(classContext.getClassDescriptor().toResourceName());
+            return entry.getCodeBase().getPathName();
+        } catch (ResourceNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * loads the statistics in the cache file for a jar, if the file is for this version of the jar and classpath
+     *
+     * @param path
+     *            the path of the jar
+     * @param hash
+     *            the key of the jar's current contents and classpath
+     * @return whether the statistics were loaded
+     *
+     * @throws IOException
+     *             if the cache file can't be read
+     */
+    private boolean readCacheFile(String path, byte[] hash) throws IOException {
+        File cacheFile = getCacheFile(path);
+        if (!cacheFile.isFile()) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION) || !path.equals(readString(buffer))) {
+                return false;
+            }
+
+            byte[] cachedHash = new byte[buffer.getInt()];
+            buffer.get(cachedHash);
+            if (!Arrays.equals(hash, cachedHash)) {
+                return false;
+            }
+
+            String[] symbols = new String[buffer.getInt()];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = readString(buffer);
+            }
+
+            Statistics statistics = Statistics.getStatistics();
+            int numMethods = buffer.getInt();
+            for (int i = 0; i < numMethods; i++) {
+                String className = symbols[buffer.getInt()];
+                String methodName = symbols[buffer.getInt()];
+                String signature = symbols[buffer.getInt()];
+                statistics.getOrAddMethodInfo(className, methodName, signature).setPacked(buffer.getLong());
+            }
+            return true;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            return false;
+        }
+    }
+
+    private void writeCacheFile(String path, byte[] hash, Set<String> classes) throws IOException {
+        Map<String, Integer> symbolIds = new HashMap<String, Integer>();
+        List<String> symbols = new ArrayList<String>();
+        List<int[]> methodSymbols = new ArrayList<int[]>();
+        List<Long> methodStatistics = new ArrayList<Long>();
+
+        for (Map.Entry<StatisticsKey, MethodInfo> entry : Statistics.getStatistics()) {
+            StatisticsKey key = entry.getKey();
+            if (classes.contains(key.getClassName().replace('/', '.'))) {
+                methodSymbols.add(new int[] { symbolId(key.getClassName(), symbolIds, symbols), symbolId(key.getMethodName(), symbolIds, symbols),
+                        symbolId(key.getSignature(), symbolIds, symbols) });
+                methodStatistics.add(Long.valueOf(entry.getValue().getPacked()));
+            }
+        }
+
+        File cacheFile = getCacheFile(path);
+        File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+        try {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                writeString(dos, path);
+                dos.writeInt(hash.length);
+                dos.write(hash);
+                dos.writeInt(symbols.size());
+                for (String symbol : symbols) {
+                    writeString(dos, symbol);
+                }
+                dos.writeInt(methodSymbols.size());
+                for (int i = 0; i < methodSymbols.size(); i++) {
+                    for (int symbolId : methodSymbols.get(i)) {
+                        dos.writeInt(symbolId);
+                    }
+                    dos.writeLong(methodStatistics.get(i).longValue());
+                }
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    private static int symbolId(String symbol, Map<String, Integer> symbolIds, List<String> symbols) {
+        Integer id = symbolIds.get(symbol);
+        if (id == null) {
+            id = Integer.valueOf(symbols.size());
+            symbolIds.put(symbol, id);
+            symbols.add(symbol);
+        }
+        return id.intValue();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    private File getCacheFile(String path) {
+        return new File(cacheDir, toHex(sha1().digest(path.getBytes(StandardCharsets.UTF_8))) + CACHE_FILE_SUFFIX);
+    }
+
+    private static byte[] hashFile(File f) throws IOException {
+        MessageDigest digest = sha1();
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += HASH_CHUNK_SIZE) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(HASH_CHUNK_SIZE, size - pos)));
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0x0F, 16)).append(Character.forDigit(b & 0x0F, 16));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+}
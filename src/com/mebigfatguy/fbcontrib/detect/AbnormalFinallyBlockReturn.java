@@ -31,11 +31,11 @@ import org.apache.bcel.classfile.Method;
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -43,7 +43,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * short-circuits the return or exception thrown from the try block, and masks
  * it.
  */
-public class AbnormalFinallyBlockReturn extends BytecodeScanningDetector {
+public class AbnormalFinallyBlockReturn extends ScopedBytecodeScanningDetector {
     private final BugReporter bugReporter;
     private List<FinallyBlockInfo> fbInfo;
     private int loadedReg;
@@ -29,11 +29,13 @@ import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.QMethod;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -41,21 +43,11 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * Since this is an abstract class, it may be more correct to just leave the
  * method abstract.
  */
-public class AbstractClassEmptyMethods extends BytecodeScanningDetector {
+public class AbstractClassEmptyMethods extends ScopedBytecodeScanningDetector {
     enum State {
         SAW_NOTHING, SAW_NEW, SAW_DUP, SAW_LDC, SAW_INVOKESPECIAL, SAW_DONE
     }
 
-    private static JavaClass EXCEPTION_CLASS;
-
-    static {
-        try {
-            EXCEPTION_CLASS = Repository.lookupClass("java/lang/Exception");
-        } catch (ClassNotFoundException cnfe) {
-            // ignore
-        }
-    }
-
     private final BugReporter bugReporter;
     private Set<QMethod> interfaceMethods;
     private String methodName;
@@ -139,7 +131,8 @@ public class AbstractClassEmptyMethods extends BytecodeScanningDetector {
                 } else if (seen == NEW) {
                     String newClass = getClassConstantOperand();
                     JavaClass exCls = Repository.lookupClass(newClass);
-                    if ((EXCEPTION_CLASS != null) && exCls.instanceOf(EXCEPTION_CLASS))
+                    JavaClass exceptionClass = WellKnownType.EXCEPTION.getJavaClass();
+                    if ((exceptionClass != null) && TypeHierarchyCache.isSubtypeOf(exCls, exceptionClass))
                         state = State.SAW_NEW;
                     else
                         state = State.SAW_DONE;
@@ -23,18 +23,17 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * finds methods that are declared abstract but override concrete methods in a
  * superclass.
  */
-public class AbstractOverriddenMethod extends PreorderVisitor implements Detector {
+public class AbstractOverriddenMethod extends ScopedPreorderDetector {
     private BugReporter bugReporter;
     private ClassContext clsContext;
     private JavaClass[] superClasses;
@@ -25,11 +25,12 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -39,9 +40,10 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * do not, and cannot define an equals method, reference equality is used for
  * these collections, which is probably not desired.
  */
-public class ArrayBasedCollections extends BytecodeScanningDetector {
+public class ArrayBasedCollections extends ScopedBytecodeScanningDetector {
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private List<BugInstance> mapBugs;
     private List<BugInstance> setBugs;
     private boolean hasMapComparator;
@@ -66,7 +68,6 @@ public class ArrayBasedCollections extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             mapBugs = new ArrayList<BugInstance>();
             setBugs = new ArrayList<BugInstance>();
             hasMapComparator = false;
@@ -85,6 +86,7 @@ public class ArrayBasedCollections extends BytecodeScanningDetector {
             }
         } finally {
             stack = null;
+            snapshots = null;
             mapBugs = null;
             setBugs = null;
         }
@@ -98,7 +100,8 @@ public class ArrayBasedCollections extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         super.visitCode(obj);
     }
 
@@ -112,7 +115,7 @@ public class ArrayBasedCollections extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (seen == INVOKEINTERFACE) {
                 String className = getClassConstantOperand();
@@ -176,7 +179,7 @@ public class ArrayBasedCollections extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 }
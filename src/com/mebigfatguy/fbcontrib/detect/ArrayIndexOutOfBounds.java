@@ -32,11 +32,11 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -49,7 +49,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * of problems that can occur at runtime.
  */
 @CustomUserValue
-public class ArrayIndexOutOfBounds extends BytecodeScanningDetector {
+public class ArrayIndexOutOfBounds extends ScopedBytecodeScanningDetector {
 
     private BugReporter bugReporter;
     private OpcodeStack stack;
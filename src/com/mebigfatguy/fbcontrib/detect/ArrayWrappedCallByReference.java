@@ -18,7 +18,6 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -28,14 +27,15 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -45,7 +45,9 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * that holds all the relevant information retrieved from the called method.
  */
 @CustomUserValue
-public class ArrayWrappedCallByReference extends BytecodeScanningDetector {
+public class ArrayWrappedCallByReference extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(ArrayWrappedCallByReference.class, Prescreen.opcodes(Constants.NEWARRAY, Constants.ANEWARRAY));
 
     static class WrapperInfo {
         int wrappedReg;
@@ -64,6 +66,7 @@ public class ArrayWrappedCallByReference extends BytecodeScanningDetector {
 
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Map<Integer, WrapperInfo> wrappers;
 
     /**
@@ -102,8 +105,7 @@ public class ArrayWrappedCallByReference extends BytecodeScanningDetector {
      * @return if the class uses synchronization
      */
     public boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.NEWARRAY) || bytecodeSet.get(Constants.ANEWARRAY));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -245,9 +247,9 @@ public class ArrayWrappedCallByReference extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (userValue != null) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item itm = stack.getStackItem(0);
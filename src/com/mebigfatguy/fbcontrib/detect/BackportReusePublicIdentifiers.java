@@ -23,12 +23,12 @@ import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedOpcodeStackDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
 /**
  * Detects use of Backport concurrent classes. Updated/Efficient version of
@@ -37,7 +37,7 @@ import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
  * 
  * Finds usage of classes from backport utils package.
  */
-public class BackportReusePublicIdentifiers extends OpcodeStackDetector {
+public class BackportReusePublicIdentifiers extends ScopedOpcodeStackDetector {
 
     private final BugReporter bugReporter;
 
@@ -26,8 +26,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.CodeException;
@@ -39,13 +37,14 @@ import org.apache.bcel.generic.Type;
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+import com.mebigfatguy.fbcontrib.utils.StringMatchUtils;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -56,7 +55,7 @@ import edu.umd.cs.findbugs.ba.XField;
  * performance impact of that assignment.
  */
 @CustomUserValue
-public class BloatedAssignmentScope extends BytecodeScanningDetector {
+public class BloatedAssignmentScope extends ScopedBytecodeScanningDetector {
     private static final Set<String> dangerousAssignmentClassSources = UnmodifiableSet.create(
         //@formatter:off
         "java/io/BufferedInputStream",
@@ -84,18 +83,11 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
         //@formatter:on
     );
 
-    private static final Set<Pattern> dangerousAssignmentMethodPatterns = UnmodifiableSet.create(
-        //@formatter:off
-            Pattern.compile(".*serial.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*\\.read[^.]*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*\\.create[^.]*", Pattern.CASE_INSENSITIVE)
-        //@formatter:on
-    );
-
     private static final Set<String> dangerousStoreClassSigs = UnmodifiableSet.create("Ljava/util/concurrent/Future;");
 
     BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private BitSet ignoreRegs;
     private ScopeBlock rootScopeBlock;
     private BitSet tryBlocks;
@@ -232,9 +224,9 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
             sawDup = (seen == DUP);
             sawNull = (seen == ACONST_NULL);
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (uo != null) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item item = stack.getStackItem(0);
@@ -575,15 +567,13 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
     private ScopeBlock findScopeBlock(ScopeBlock sb, int pc) {
 
         if ((pc > sb.getStart()) && (pc < sb.getFinish())) {
-            if (sb.children != null) {
-                for (ScopeBlock child : sb.children) {
-                    ScopeBlock foundSb = findScopeBlock(child, pc);
-                    if (foundSb != null) {
-                        return foundSb;
-                    }
-                }
+            ScopeBlock found = sb;
+            ScopeBlock child = (sb.children == null) ? null : sb.children.findContaining(pc);
+            while (child != null) {
+                found = child;
+                child = (child.children == null) ? null : child.children.findContaining(pc);
             }
-            return sb;
+            return found;
         }
         return null;
     }
@@ -607,17 +597,46 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
         }
 
         if (sb.children != null) {
-            for (ScopeBlock child : sb.children) {
-                ScopeBlock targetBlock = findScopeBlockWithTarget(child, start, target);
-                if (targetBlock != null) {
-                    return targetBlock;
-                }
+            ScopeBlock targetBlock = findScopeBlockWithTarget(sb.children.root, start, target);
+            if (targetBlock != null) {
+                return targetBlock;
             }
         }
 
         return parentBlock;
     }
 
+    /**
+     * looks through the children held in a subtree of a ScopeBlockTree, in order, for an existing scope block that has the same target as the one looked
+     * for. Children that start at or after the start pc, or that, along with all their descendants, finish before it, can't hold one, and are skipped.
+     *
+     * @param node
+     *            the root of the subtree of children
+     * @param start
+     *            the start to look for
+     * @param target
+     *            the target to look for
+     *
+     * @return the scope block found or null
+     */
+    private ScopeBlock findScopeBlockWithTarget(ScopeBlockTree.Node node, int start, int target) {
+        if ((node == null) || (node.maxReach < start)) {
+            return null;
+        }
+
+        ScopeBlock targetBlock = findScopeBlockWithTarget(node.left, start, target);
+        if ((targetBlock != null) || (node.block.startLocation >= start)) {
+            return targetBlock;
+        }
+
+        targetBlock = findScopeBlockWithTarget(node.block, start, target);
+        if (targetBlock != null) {
+            return targetBlock;
+        }
+
+        return findScopeBlockWithTarget(node.right, start, target);
+    }
+
     /**
      * looks for the ScopeBlock has the same parent as this given one, but precedes it in the list.
      *
@@ -631,20 +650,11 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
             return null;
         }
 
-        List<ScopeBlock> children = parent.getChildren();
-        if (children == null) {
+        if ((parent.children == null) || (sb.node == null)) {
             return null;
         }
 
-        ScopeBlock lastSibling = null;
-        for (ScopeBlock sibling : children) {
-            if (sibling.equals(sb)) {
-                return lastSibling;
-            }
-            lastSibling = sibling;
-        }
-
-        return null;
+        return parent.children.previous(sb);
     }
 
     /**
@@ -706,7 +716,9 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
         private Map<Integer, Integer> loads;
         private Map<Integer, Integer> stores;
         private Map<UserObject, Integer> assocs;
-        private List<ScopeBlock> children;
+        private ScopeBlockTree children;
+        private ScopeBlockTree.Node node;
+        private Set<Integer> usedRegs;
 
         /**
          * construts a new scope block
@@ -729,6 +741,8 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
             stores = null;
             assocs = null;
             children = null;
+            node = null;
+            usedRegs = null;
         }
 
         /**
@@ -756,7 +770,7 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
          * @return the scope blocks children
          */
         public List<ScopeBlock> getChildren() {
-            return children;
+            return (children == null) ? null : children.toList();
         }
 
         /**
@@ -784,7 +798,14 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
          *            the start pc
          */
         public void setStart(int start) {
-            startLocation = start;
+            if ((node != null) && (parent != null) && (parent.children != null)) {
+                parent.children.remove(this);
+                startLocation = start;
+                parent.children.insert(this);
+                parent.refresh();
+            } else {
+                startLocation = start;
+            }
         }
 
         /**
@@ -795,6 +816,33 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
          */
         public void setFinish(int finish) {
             finishLocation = finish;
+            refresh();
+        }
+
+        /**
+         * returns the furthest finish pc of this block and all the blocks below it
+         *
+         * @return the furthest finish pc
+         */
+        int getReach() {
+            if ((children == null) || (children.root == null)) {
+                return finishLocation;
+            }
+            return Math.max(finishLocation, children.root.maxReach);
+        }
+
+        /**
+         * brings the finish pcs held for this block, in the tree of its parent's children, and so on up to the root block, up to date after this block's
+         * finish, or its children, have changed
+         */
+        void refresh() {
+            ScopeBlock sb = this;
+            while ((sb != null) && (sb.node != null)) {
+                for (ScopeBlockTree.Node n = sb.node; n != null; n = n.parent) {
+                    n.update();
+                }
+                sb = sb.parent;
+            }
         }
 
         public boolean hasChildren() {
@@ -947,28 +995,19 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
             newChild.parent = this;
 
             if (children != null) {
-                for (ScopeBlock child : children) {
-                    if ((newChild.startLocation > child.startLocation) && (newChild.startLocation < child.finishLocation)) {
-                        if (newChild.finishLocation > child.finishLocation) {
-                            newChild.finishLocation = child.finishLocation;
-                        }
-                        child.addChild(newChild);
-                        return;
-                    }
-                }
-                int pos = 0;
-                for (ScopeBlock child : children) {
-                    if (newChild.startLocation < child.startLocation) {
-                        children.add(pos, newChild);
-                        return;
+                ScopeBlock child = children.findContaining(newChild.startLocation);
+                if (child != null) {
+                    if (newChild.finishLocation > child.finishLocation) {
+                        newChild.finishLocation = child.finishLocation;
                     }
-                    pos++;
+                    child.addChild(newChild);
+                    return;
                 }
-                children.add(newChild);
-                return;
+            } else {
+                children = new ScopeBlockTree();
             }
-            children = new ArrayList<ScopeBlock>();
-            children.add(newChild);
+            children.insert(newChild);
+            refresh();
         }
 
         /**
@@ -978,8 +1017,9 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
          *            the child to remove
          */
         public void removeChild(ScopeBlock child) {
-            if (children != null) {
+            if ((children != null) && (child.node != null)) {
                 children.remove(child);
+                refresh();
             }
         }
 
@@ -991,12 +1031,12 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
                 return;
             }
 
-            Set<Integer> usedRegs = new HashSet<Integer>(parentUsedRegs);
+            Set<Integer> parentAndOwnRegs = new HashSet<Integer>(parentUsedRegs);
             if (stores != null) {
-                usedRegs.addAll(stores.keySet());
+                parentAndOwnRegs.addAll(stores.keySet());
             }
             if (loads != null) {
-                usedRegs.addAll(loads.keySet());
+                parentAndOwnRegs.addAll(loads.keySet());
             }
 
             if (stores != null) {
@@ -1013,7 +1053,7 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
                         int childUseCount = 0;
                         boolean inIgnoreSB = false;
                         Integer reg = entry.getKey();
-                        for (ScopeBlock child : children) {
+                        for (ScopeBlock child : getChildren()) {
                             if (child.usesReg(reg)) {
                                 if (child.isLoop || child.isSync() || child.isTry()) {
                                     inIgnoreSB = true;
@@ -1032,14 +1072,15 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
             }
 
             if (children != null) {
-                for (ScopeBlock child : children) {
-                    child.findBugs(usedRegs);
+                for (ScopeBlock child : getChildren()) {
+                    child.findBugs(parentAndOwnRegs);
                 }
             }
         }
 
         /**
-         * returns whether this block either loads or stores into the register in question
+         * returns whether this block either loads or stores into the register in question. The registers used by the block and those below it are
+         * collected on the first call, which findBugs makes before it trims the stores of the block.
          *
          * @param reg
          *            the register to look for loads or stores
@@ -1047,22 +1088,25 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
          * @return whether the block uses the register
          */
         public boolean usesReg(Integer reg) {
-            if ((loads != null) && (loads.containsKey(reg))) {
-                return true;
-            }
-            if ((stores != null) && (stores.containsKey(reg))) {
-                return true;
-            }
+            return getUsedRegs().contains(reg);
+        }
 
-            if (children != null) {
-                for (ScopeBlock child : children) {
-                    if (child.usesReg(reg)) {
-                        return true;
+        private Set<Integer> getUsedRegs() {
+            if (usedRegs == null) {
+                usedRegs = new HashSet<Integer>();
+                if (loads != null) {
+                    usedRegs.addAll(loads.keySet());
+                }
+                if (stores != null) {
+                    usedRegs.addAll(stores.keySet());
+                }
+                if (children != null) {
+                    for (ScopeBlock child : getChildren()) {
+                        usedRegs.addAll(child.getUsedRegs());
                     }
                 }
             }
-
-            return false;
+            return usedRegs;
         }
 
         /**
@@ -1090,6 +1134,238 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
         }
     }
 
+    /**
+     * the children of a scope block, kept in a treap ordered by start pc, and by the order they were added for the same start, which is the order the
+     * children were listed in before. Each node also holds the furthest finish pc of the children in its subtree, and the furthest finish pc of those
+     * children and all the blocks below them, so that finding the child that contains a pc, or the open blocks at a pc, takes time in the order of the
+     * depth of the treap, rather than walking every child. Switches with many cases made that walk quadratic in the length of the method.
+     */
+    private static final class ScopeBlockTree {
+        private Node root;
+        private int nextOrder;
+
+        /**
+         * returns the first child, in order, that contains pc, not counting its start and finish
+         *
+         * @param pc
+         *            the program counter to look for
+         * @return the child found, or null
+         */
+        ScopeBlock findContaining(int pc) {
+            return findContaining(root, pc);
+        }
+
+        private static ScopeBlock findContaining(Node n, int pc) {
+            if ((n == null) || (n.maxFinish <= pc)) {
+                return null;
+            }
+
+            ScopeBlock found = findContaining(n.left, pc);
+            if ((found != null) || (n.block.startLocation >= pc)) {
+                return found;
+            }
+            if (n.block.finishLocation > pc) {
+                return n.block;
+            }
+            return findContaining(n.right, pc);
+        }
+
+        /**
+         * adds a child after the children that start at or before it
+         *
+         * @param sb
+         *            the child to add
+         */
+        void insert(ScopeBlock sb) {
+            int order = nextOrder++;
+            Node n = new Node(sb, order);
+            sb.node = n;
+            if (root == null) {
+                root = n;
+                return;
+            }
+
+            Node cur = root;
+            while (true) {
+                if ((sb.startLocation < cur.block.startLocation) || ((sb.startLocation == cur.block.startLocation) && (order < cur.order))) {
+                    if (cur.left == null) {
+                        cur.left = n;
+                        break;
+                    }
+                    cur = cur.left;
+                } else {
+                    if (cur.right == null) {
+                        cur.right = n;
+                        break;
+                    }
+                    cur = cur.right;
+                }
+            }
+            n.parent = cur;
+
+            while ((n.parent != null) && (n.parent.priority < n.priority)) {
+                rotateUp(n);
+            }
+            for (Node p = n.parent; p != null; p = p.parent) {
+                p.update();
+            }
+        }
+
+        /**
+         * removes a child
+         *
+         * @param sb
+         *            the child to remove
+         */
+        void remove(ScopeBlock sb) {
+            Node n = sb.node;
+            while ((n.left != null) || (n.right != null)) {
+                if ((n.right == null) || ((n.left != null) && (n.left.priority > n.right.priority))) {
+                    rotateUp(n.left);
+                } else {
+                    rotateUp(n.right);
+                }
+            }
+
+            Node p = n.parent;
+            if (p == null) {
+                root = null;
+            } else {
+                if (p.left == n) {
+                    p.left = null;
+                } else {
+                    p.right = null;
+                }
+                for (; p != null; p = p.parent) {
+                    p.update();
+                }
+            }
+            sb.node = null;
+        }
+
+        /**
+         * returns the child just before a child, in order
+         *
+         * @param sb
+         *            the child whose predecessor is wanted
+         * @return the previous child, or null if sb is the first
+         */
+        ScopeBlock previous(ScopeBlock sb) {
+            Node n = sb.node;
+            if (n.left != null) {
+                n = n.left;
+                while (n.right != null) {
+                    n = n.right;
+                }
+                return n.block;
+            }
+
+            while ((n.parent != null) && (n.parent.left == n)) {
+                n = n.parent;
+            }
+            return (n.parent == null) ? null : n.parent.block;
+        }
+
+        /**
+         * returns the children in order
+         *
+         * @return a list of the children
+         */
+        List<ScopeBlock> toList() {
+            List<ScopeBlock> blocks = new ArrayList<ScopeBlock>();
+            addAll(root, blocks);
+            return blocks;
+        }
+
+        private static void addAll(Node n, List<ScopeBlock> blocks) {
+            if (n != null) {
+                addAll(n.left, blocks);
+                blocks.add(n.block);
+                addAll(n.right, blocks);
+            }
+        }
+
+        private void rotateUp(Node n) {
+            Node p = n.parent;
+            Node g = p.parent;
+            if (p.left == n) {
+                p.left = n.right;
+                if (n.right != null) {
+                    n.right.parent = p;
+                }
+                n.right = p;
+            } else {
+                p.right = n.left;
+                if (n.left != null) {
+                    n.left.parent = p;
+                }
+                n.left = p;
+            }
+            p.parent = n;
+            n.parent = g;
+            if (g == null) {
+                root = n;
+            } else if (g.left == p) {
+                g.left = n;
+            } else {
+                g.right = n;
+            }
+            p.update();
+            n.update();
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+
+        /**
+         * a node of the treap, holding one child
+         */
+        static final class Node {
+            final ScopeBlock block;
+            final int order;
+            final int priority;
+            Node parent;
+            Node left;
+            Node right;
+            int maxFinish;
+            int maxReach;
+
+            Node(ScopeBlock sb, int insertOrder) {
+                block = sb;
+                order = insertOrder;
+                // a fixed scrambling of the order, so that runs are repeatable
+                int h = insertOrder * 0x9E3779B9;
+                h ^= h >>> 16;
+                h *= 0x85EBCA6B;
+                priority = h ^ (h >>> 13);
+                update();
+            }
+
+            /**
+             * recomputes the furthest finish pcs of this subtree from the block and the subtrees below
+             */
+            void update() {
+                maxFinish = block.finishLocation;
+                maxReach = block.getReach();
+                if (left != null) {
+                    maxFinish = Math.max(maxFinish, left.maxFinish);
+                    maxReach = Math.max(maxReach, left.maxReach);
+                }
+                if (right != null) {
+                    maxFinish = Math.max(maxFinish, right.maxFinish);
+                    maxReach = Math.max(maxReach, right.maxReach);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "Node[" + block.startLocation + ", " + block.finishLocation + "]";
+            }
+        }
+    }
+
     public boolean isRiskyMethodCall() {
 
         String clsName = getClassConstantOperand();
@@ -1103,14 +1379,30 @@ public class BloatedAssignmentScope extends BytecodeScanningDetector {
             return true;
         }
 
-        for (Pattern p : dangerousAssignmentMethodPatterns) {
-            Matcher m = p.matcher(key);
-            if (m.matches()) {
-                return true;
-            }
+        return isDangerousAssignmentMethod(key);
+    }
+
+    /**
+     * returns whether a method key, class.name+signature, names a method whose
+     * value may change from call to call, as it holds "serial", or the method
+     * name starts with "read" or "create", in any case. This is what the
+     * patterns .*serial.*, .*\.read[^.]* and .*\.create[^.]* matched,
+     * without running them, including that the .* doesn't match line
+     * terminators.
+     *
+     * @param key
+     *            the key of the method
+     * @return whether calling the method is risky
+     */
+    private static boolean isDangerousAssignmentMethod(String key) {
+        int dotPos = key.lastIndexOf('.');
+        if ((dotPos >= 0) && !StringMatchUtils.hasLineTerminator(key, 0, dotPos)
+                && (StringMatchUtils.regionMatchesIgnoreAsciiCase(key, dotPos + 1, "read")
+                        || StringMatchUtils.regionMatchesIgnoreAsciiCase(key, dotPos + 1, "create"))) {
+            return true;
         }
 
-        return false;
+        return !StringMatchUtils.hasLineTerminator(key, 0, key.length()) && StringMatchUtils.containsIgnoreAsciiCase(key, "serial");
     }
 
     public boolean isRiskyStoreClass(int reg) {
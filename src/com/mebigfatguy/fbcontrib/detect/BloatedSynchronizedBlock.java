@@ -28,12 +28,14 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -42,10 +44,13 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * overly synchronized because the beginning of the block only accesses local
  * variables, and not member variables, or this.
  */
-public class BloatedSynchronizedBlock extends BytecodeScanningDetector {
+public class BloatedSynchronizedBlock extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(BloatedSynchronizedBlock.class, Prescreen.opcodes(Constants.MONITORENTER));
+
     private final BugReporter bugReporter;
     private static final String BSB_MIN_SAFE_CODE_SIZE = "fb-contrib.bsb.minsize";
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private BitSet unsafeAliases;
     private Map<Integer, Integer> branchInfo;
     private int syncPC;
@@ -67,12 +72,12 @@ public class BloatedSynchronizedBlock extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             unsafeAliases = new BitSet();
             branchInfo = new HashMap<Integer, Integer>();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
             unsafeAliases = null;
             branchInfo = null;
         }
@@ -86,8 +91,7 @@ public class BloatedSynchronizedBlock extends BytecodeScanningDetector {
      * @return if the class uses synchronization
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.MONITORENTER));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -110,7 +114,8 @@ public class BloatedSynchronizedBlock extends BytecodeScanningDetector {
             unsafeAliases.set(0);
             branchInfo.clear();
             unsafeCallOccurred = false;
-            stack.resetForMethodEntry(this);
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         }
     }
 
@@ -124,7 +129,7 @@ public class BloatedSynchronizedBlock extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (unsafeCallOccurred && OpcodeUtils.isAStore(seen)) {
                 int storeReg = RegisterUtils.getAStoreReg(this, seen);
@@ -199,7 +204,7 @@ public class BloatedSynchronizedBlock extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 }
@@ -28,13 +28,16 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -43,10 +46,8 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * of these methods to do extra work to handle an exception that will never be thrown. also looks for throws clauses where two exceptions declared to be thrown
  * are related through inheritance.
  */
-public class BogusExceptionDeclaration extends BytecodeScanningDetector {
+public class BogusExceptionDeclaration extends ScopedBytecodeScanningDetector {
 
-    private static JavaClass runtimeExceptionClass;
-    private static JavaClass exceptionClass;
     private static final Set<String> safeClasses = UnmodifiableSet.create(
             //@formatter:off
             "java/lang/Object",
@@ -60,20 +61,11 @@ public class BogusExceptionDeclaration extends BytecodeScanningDetector {
             //@formatter:on
     );
 
-    static {
-
-        try {
-            runtimeExceptionClass = Repository.lookupClass("java/lang/RuntimeException");
-            exceptionClass = Repository.lookupClass("java/lang/Exception");
-
-        } catch (ClassNotFoundException cnfe) {
-            runtimeExceptionClass = null;
-            exceptionClass = null;
-        }
-    }
-
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private JavaClass runtimeExceptionClass;
+    private JavaClass exceptionClass;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Set<String> declaredCheckedExceptions;
     private boolean classIsFinal;
     private boolean classIsAnonymous;
@@ -92,8 +84,9 @@ public class BogusExceptionDeclaration extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
+            runtimeExceptionClass = WellKnownType.RUNTIME_EXCEPTION.getJavaClass();
+            exceptionClass = WellKnownType.EXCEPTION.getJavaClass();
             if ((runtimeExceptionClass != null) && (exceptionClass != null)) {
-                stack = new OpcodeStack();
                 declaredCheckedExceptions = new HashSet<String>(6);
                 JavaClass cls = classContext.getJavaClass();
                 classIsFinal = cls.isFinal();
@@ -103,6 +96,7 @@ public class BogusExceptionDeclaration extends BytecodeScanningDetector {
         } finally {
             declaredCheckedExceptions = null;
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -115,7 +109,6 @@ public class BogusExceptionDeclaration extends BytecodeScanningDetector {
     @Override
     public void visitCode(Code obj) {
         declaredCheckedExceptions.clear();
-        stack.resetForMethodEntry(this);
         Method method = getMethod();
 
         if (method.isSynthetic()) {
@@ -130,7 +123,7 @@ public class BogusExceptionDeclaration extends BytecodeScanningDetector {
                 for (String exName : exNames) {
                     try {
                         JavaClass exCls = Repository.lookupClass(exName);
-                        if (!exCls.instanceOf(runtimeExceptionClass)) {
+                        if (!TypeHierarchyCache.isSubtypeOf(exCls, runtimeExceptionClass)) {
                             declaredCheckedExceptions.add(exName);
                         }
                     } catch (ClassNotFoundException cnfe) {
@@ -138,6 +131,8 @@ public class BogusExceptionDeclaration extends BytecodeScanningDetector {
                     }
                 }
                 if (!declaredCheckedExceptions.isEmpty()) {
+                    snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+                    stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
                     super.visitCode(obj);
                     if (!declaredCheckedExceptions.isEmpty()) {
                         BugInstance bi = new BugInstance(this, BugType.BED_BOGUS_EXCEPTION_DECLARATION.name(), NORMAL_PRIORITY).addClass(this).addMethod(this)
@@ -159,10 +154,10 @@ public class BogusExceptionDeclaration extends BytecodeScanningDetector {
                             JavaClass exCls2 = Repository.lookupClass(exNames[j]);
                             JavaClass childEx;
                             JavaClass parentEx;
-                            if (exCls1.instanceOf(exCls2)) {
+                            if (TypeHierarchyCache.isSubtypeOf(exCls1, exCls2)) {
                                 childEx = exCls1;
                                 parentEx = exCls2;
-                            } else if (exCls2.instanceOf(exCls1)) {
+                            } else if (TypeHierarchyCache.isSubtypeOf(exCls2, exCls1)) {
                                 childEx = exCls2;
                                 parentEx = exCls1;
                             } else {
@@ -220,7 +215,7 @@ public class BogusExceptionDeclaration extends BytecodeScanningDetector {
 
         try {
 
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if ((seen == INVOKEVIRTUAL) || (seen == INVOKEINTERFACE) || (seen == INVOKESPECIAL) || (seen == INVOKESTATIC)) {
                 String clsName = getClassConstantOperand();
@@ -266,7 +261,7 @@ public class BogusExceptionDeclaration extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -31,20 +31,21 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.PublicAPI;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * looks for issues related to manually specified charsets by using string literals.
  */
-public class CharsetIssues extends BytecodeScanningDetector {
+public class CharsetIssues extends ScopedBytecodeScanningDetector {
 
     private static final String CHARSET_SIG = "Ljava/nio/charset/Charset;";
 
@@ -110,7 +111,8 @@ public class CharsetIssues extends BytecodeScanningDetector {
     }
 
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private int classVersion;
 
     /**
@@ -134,11 +136,11 @@ public class CharsetIssues extends BytecodeScanningDetector {
         try {
             classVersion = classContext.getJavaClass().getMajor();
             if (classVersion >= Constants.MAJOR_1_4) {
-                stack = new OpcodeStack();
                 super.visitClassContext(classContext);
             }
         } finally {
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -150,7 +152,8 @@ public class CharsetIssues extends BytecodeScanningDetector {
      */
     @Override
     public void visitMethod(Method obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
     }
 
     /**
@@ -164,7 +167,7 @@ public class CharsetIssues extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             switch (seen) {
                 case INVOKESPECIAL:
@@ -229,7 +232,7 @@ public class CharsetIssues extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -18,35 +18,49 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.bcel.classfile.Constant;
 import org.apache.bcel.classfile.ConstantClass;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.DetectorProfiler;
+import com.mebigfatguy.fbcontrib.utils.OpcodeInterestDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.WholeProgramDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 
 /**
  * looks for classes that have dependencies on each other in a circular way. Class initialization can be compromised in this scenario, and usually points to a
  * bad data model. Consider using interfaces to break this hard circular dependency.
  */
-public class CircularDependencies extends BytecodeScanningDetector {
-    private Map<String, Set<String>> dependencyGraph = null;
+public class CircularDependencies extends OpcodeInterestDetector implements WholeProgramDetector {
+    private static final BitSet INTERESTING_OPCODES = new BitSet();
+
+    static {
+        INTERESTING_OPCODES.set(INVOKESPECIAL);
+        INTERESTING_OPCODES.set(INVOKESTATIC);
+        INTERESTING_OPCODES.set(INVOKEVIRTUAL);
+        INTERESTING_OPCODES.set(LDC);
+    }
+
+    private DependencyGraph dependencyGraph = null;
 
     private BugReporter bugReporter;
 
     private String clsName;
 
+    private int clsId;
+
     /**
      * constructs a CD detector given the reporter to report bugs on
      *
@@ -55,12 +69,23 @@ public class CircularDependencies extends BytecodeScanningDetector {
      */
     public CircularDependencies(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
-        this.dependencyGraph = new HashMap<String, Set<String>>();
+        this.dependencyGraph = new DependencyGraph();
+    }
+
+    /**
+     * returns the opcodes this detector looks at, so that sawOpcode is only called for these
+     *
+     * @return the set of interesting opcodes
+     */
+    @Override
+    public BitSet getInterestingOpcodes() {
+        return INTERESTING_OPCODES;
     }
 
     @Override
     public void visit(JavaClass obj) {
         clsName = obj.getClassName();
+        clsId = dependencyGraph.startClass(clsName);
     }
 
     @Override
@@ -84,69 +109,42 @@ public class CircularDependencies extends BytecodeScanningDetector {
                 return;
             }
 
-            Set<String> dependencies = getDependenciesForClass(clsName);
-            dependencies.add(refClsName);
+            dependencyGraph.addDependency(clsId, refClsName);
 
         } else if (seen == LDC) {
             Constant c = getConstantRefOperand();
             if (c instanceof ConstantClass) {
                 String refClsName = getClassConstantOperand();
                 if (!refClsName.equals(clsName)) {
-                    Set<String> dependencies = getDependenciesForClass(clsName);
-                    dependencies.add(refClsName);
+                    dependencyGraph.addDependency(clsId, refClsName);
                 }
             }
         }
     }
 
-    /**
-     * returns a set of dependent class names for a class, and if it doesn't exist create the set install it, and then return;
-     *
-     * @param clsName
-     *            the class for which you are trying to get dependencies
-     * @return the active set of classes that are dependent on the specified class
-     */
-    private Set<String> getDependenciesForClass(String clsName) {
-        Set<String> dependencies = dependencyGraph.get(clsName);
-        if (dependencies == null) {
-            dependencies = new HashSet<String>();
-            dependencyGraph.put(clsName, dependencies);
-        }
-
-        return dependencies;
-    }
-
     private boolean isEnclosingClassName(String outerClass, String innerClass) {
         return innerClass.startsWith(outerClass) && (innerClass.indexOf('$') >= 0);
     }
 
+    /**
+     * reports one bug for each set of classes that all depend on each other, naming the classes of the shortest loop through the first class of the set
+     */
     @Override
     public void report() {
-        removeDependencyLeaves();
-
-        LoopFinder lf = new LoopFinder();
-
-        while (!dependencyGraph.isEmpty()) {
-            String className = dependencyGraph.keySet().iterator().next();
-            Set<String> loop = lf.findLoop(dependencyGraph, className);
-            boolean pruneLeaves;
-            if (loop != null) {
+        DetectorProfiler.startReport(this);
+        try {
+            for (String[] loop : dependencyGraph.findLoops()) {
                 BugInstance bug = new BugInstance(this, BugType.CD_CIRCULAR_DEPENDENCY.name(), NORMAL_PRIORITY);
                 for (String loopCls : loop) {
                     bug.addClass(loopCls);
                 }
                 bugReporter.reportBug(bug);
-                pruneLeaves = removeLoopLinks(loop);
-            } else {
-                dependencyGraph.remove(className);
-                pruneLeaves = true;
-            }
-            if (pruneLeaves) {
-                removeDependencyLeaves();
             }
-        }
 
-        dependencyGraph.clear();
+            dependencyGraph = new DependencyGraph();
+        } finally {
+            DetectorProfiler.endReport(this);
+        }
     }
 
     private boolean isStaticChild(String child, String parent) {
@@ -158,101 +156,223 @@ public class CircularDependencies extends BytecodeScanningDetector {
         return ((extra.charAt(0) == '.') && (extra.indexOf('.', 1) < 0));
     }
 
-    private void removeDependencyLeaves() {
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            Iterator<Set<String>> it = dependencyGraph.values().iterator();
-            while (it.hasNext()) {
-                Set<String> dependencies = it.next();
-
-                boolean foundClass = false;
-                Iterator<String> dit = dependencies.iterator();
-                while (dit.hasNext()) {
-                    foundClass = dependencyGraph.containsKey(dit.next());
-                    if (!foundClass) {
-                        dit.remove();
-                        changed = true;
-                    }
-                }
-                if (dependencies.isEmpty()) {
-                    it.remove();
-                    changed = true;
-                }
-            }
+    /**
+     * the class dependencies collected, with class names interned to int ids, and dependencies kept as a flat list of id pairs packed in longs, until all
+     * classes have been seen. Loops are then found by building compact adjacency arrays, and finding the strongly connected components with Tarjan's
+     * algorithm, so that the cost grows linearly with the number of classes and dependencies.
+     */
+    static class DependencyGraph {
+
+        private final Map<String, Integer> classIds = new HashMap<String, Integer>();
+        private final List<String> classNames = new ArrayList<String>();
+        private long[] dependencies = new long[1024];
+        private int numDependencies;
+        private int classStart;
+
+        /**
+         * notes that the dependencies of a new class are about to be added, and removes duplicates from those of the class before it
+         *
+         * @param className
+         *            the dotted name of the class
+         * @return the id of the class
+         */
+        int startClass(String className) {
+            compactClassDependencies();
+            return getClassId(className);
         }
-    }
 
-    private boolean removeLoopLinks(Set<String> loop) {
-        Set<String> dependencies = null;
-        for (String className : loop) {
-            if (dependencies != null) {
-                dependencies.remove(className);
+        void addDependency(int fromId, String toClassName) {
+            if (numDependencies == dependencies.length) {
+                dependencies = Arrays.copyOf(dependencies, numDependencies * 2);
             }
-            dependencies = dependencyGraph.get(className);
-        }
-        if (dependencies != null) {
-            dependencies.remove(loop.iterator().next());
+            dependencies[numDependencies++] = (((long) fromId) << 32) | getClassId(toClassName);
         }
 
-        boolean removedClass = false;
-        Iterator<String> cIt = loop.iterator();
-        while (cIt.hasNext()) {
-            String className = cIt.next();
-            dependencies = dependencyGraph.get(className);
-            if (dependencies.isEmpty()) {
-                cIt.remove();
-                removedClass = true;
+        int getClassId(String className) {
+            Integer id = classIds.get(className);
+            if (id == null) {
+                id = Integer.valueOf(classNames.size());
+                classIds.put(className, id);
+                classNames.add(className);
             }
+            return id.intValue();
         }
-        return removedClass;
-    }
 
-    static class LoopFinder {
+        /**
+         * finds the loops in the graph, one for each strongly connected component of more than one class. Inner classes are left out, as they are
+         * expected to depend on their outer class.
+         *
+         * @return the shortest loop through the lowest named class of each component, as class names in dependency order
+         */
+        List<String[]> findLoops() {
+            compactClassDependencies();
+            int numClasses = classNames.size();
+
+            Arrays.sort(dependencies, 0, numDependencies);
+            int[] offsets = new int[numClasses + 1];
+            int[] targets = new int[numDependencies];
+            int numTargets = 0;
+            long lastDependency = -1L;
+            for (int i = 0; i < numDependencies; i++) {
+                long dependency = dependencies[i];
+                if (dependency != lastDependency) {
+                    lastDependency = dependency;
+                    int from = (int) (dependency >>> 32);
+                    int to = (int) dependency;
+                    if (!isInnerClass(from) && !isInnerClass(to)) {
+                        offsets[from + 1]++;
+                        targets[numTargets++] = to;
+                    }
+                }
+            }
+            dependencies = null;
+            for (int i = 0; i < numClasses; i++) {
+                offsets[i + 1] += offsets[i];
+            }
 
-        private Map<String, Set<String>> dGraph = null;
-        private String startClass = null;
-        private Set<String> visited = null;
-        private Set<String> loop = null;
+            int[] components = new int[numClasses];
+            int[] members = new int[numClasses];
+            List<int[]> componentRanges = findComponents(offsets, targets, components, members);
 
-        public Set<String> findLoop(Map<String, Set<String>> dependencyGraph, String startCls) {
-            dGraph = dependencyGraph;
-            startClass = startCls;
-            visited = new HashSet<String>();
-            loop = new LinkedHashSet<String>();
-            if (findLoop(startClass)) {
-                return loop;
+            List<String[]> loops = new ArrayList<String[]>(componentRanges.size());
+            int[] parents = new int[numClasses];
+            int[] queue = new int[numClasses];
+            for (int[] range : componentRanges) {
+                loops.add(findShortestLoop(offsets, targets, components, members, range, parents, queue));
             }
-            return null;
+            return loops;
         }
 
-        private boolean findLoop(String curClass) {
-            if (curClass.contains("$")) {
-                return false;
-            }
+        private boolean isInnerClass(int id) {
+            return classNames.get(id).indexOf('$') >= 0;
+        }
+
+        /**
+         * an iterative version of Tarjan's algorithm, so that long dependency chains don't overflow the stack
+         *
+         * @return the start and end, in members, of each component with more than one class
+         */
+        private List<int[]> findComponents(int[] offsets, int[] targets, int[] components, int[] members) {
+            int numClasses = components.length;
+            int[] index = new int[numClasses];
+            int[] lowLink = new int[numClasses];
+            int[] edgePos = new int[numClasses];
+            int[] stack = new int[numClasses];
+            int[] callStack = new int[numClasses];
+            BitSet onStack = new BitSet(numClasses);
+            Arrays.fill(index, -1);
+
+            List<int[]> componentRanges = new ArrayList<int[]>();
+            int nextIndex = 0;
+            int stackSize = 0;
+            int numMembers = 0;
+            int numComponents = 0;
+            for (int root = 0; root < numClasses; root++) {
+                if ((index[root] >= 0) || (offsets[root] == offsets[root + 1])) {
+                    continue;
+                }
 
-            Set<String> dependencies = dGraph.get(curClass);
-            if (dependencies == null) {
-                return false;
+                index[root] = lowLink[root] = nextIndex++;
+                edgePos[root] = offsets[root];
+                stack[stackSize++] = root;
+                onStack.set(root);
+                int callDepth = 0;
+                callStack[callDepth++] = root;
+
+                while (callDepth > 0) {
+                    int v = callStack[callDepth - 1];
+                    if (edgePos[v] < offsets[v + 1]) {
+                        int w = targets[edgePos[v]++];
+                        if (index[w] < 0) {
+                            index[w] = lowLink[w] = nextIndex++;
+                            edgePos[w] = offsets[w];
+                            stack[stackSize++] = w;
+                            onStack.set(w);
+                            callStack[callDepth++] = w;
+                        } else if (onStack.get(w)) {
+                            lowLink[v] = Math.min(lowLink[v], index[w]);
+                        }
+                    } else {
+                        callDepth--;
+                        if (callDepth > 0) {
+                            int u = callStack[callDepth - 1];
+                            lowLink[u] = Math.min(lowLink[u], lowLink[v]);
+                        }
+                        if (lowLink[v] == index[v]) {
+                            int start = numMembers;
+                            int w;
+                            do {
+                                w = stack[--stackSize];
+                                onStack.clear(w);
+                                components[w] = numComponents;
+                                members[numMembers++] = w;
+                            } while (w != v);
+                            numComponents++;
+                            if ((numMembers - start) > 1) {
+                                componentRanges.add(new int[] { start, numMembers });
+                            }
+                        }
+                    }
+                }
             }
+            return componentRanges;
+        }
 
-            visited.add(curClass);
-            loop.add(curClass);
-            for (String depClass : dependencies) {
-                if (depClass.equals(startClass)) {
-                    return true;
+        /**
+         * finds the shortest loop through the lowest named class of a component, with a breadth first search that stays within the component
+         */
+        private String[] findShortestLoop(int[] offsets, int[] targets, int[] components, int[] members, int[] range, int[] parents, int[] queue) {
+            int start = members[range[0]];
+            for (int m = range[0] + 1; m < range[1]; m++) {
+                if (classNames.get(members[m]).compareTo(classNames.get(start)) < 0) {
+                    start = members[m];
                 }
+            }
+            for (int m = range[0]; m < range[1]; m++) {
+                parents[members[m]] = -1;
+            }
 
-                if (visited.contains(depClass)) {
-                    continue;
+            int component = components[start];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            parents[start] = start;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    if (w == start) {
+                        List<String> loop = new ArrayList<String>();
+                        for (int c = v; c != start; c = parents[c]) {
+                            loop.add(classNames.get(c));
+                        }
+                        loop.add(classNames.get(start));
+                        Collections.reverse(loop);
+                        return loop.toArray(new String[loop.size()]);
+                    }
+                    if ((components[w] == component) && (parents[w] < 0)) {
+                        parents[w] = v;
+                        queue[tail++] = w;
+                    }
                 }
+            }
+
+            // every class of a strongly connected component can reach every other, so this isn't reached
+            return new String[] { classNames.get(start) };
+        }
 
-                if (findLoop(depClass)) {
-                    return true;
+        private void compactClassDependencies() {
+            if (numDependencies > classStart) {
+                Arrays.sort(dependencies, classStart, numDependencies);
+                int last = classStart;
+                for (int i = classStart + 1; i < numDependencies; i++) {
+                    if (dependencies[i] != dependencies[last]) {
+                        dependencies[++last] = dependencies[i];
+                    }
                 }
+                numDependencies = last + 1;
             }
-            loop.remove(curClass);
-            return false;
+            classStart = numDependencies;
         }
 
         @Override
@@ -33,20 +33,21 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * finds methods that excessively use methods from another class. This probably means these methods should be defined in that other class.
  */
-public class ClassEnvy extends BytecodeScanningDetector {
+public class ClassEnvy extends ScopedBytecodeScanningDetector {
     private static final String ENVY_PERCENT_PROPERTY = "fb-contrib.ce.percent";
     private static final Set<String> ignorableInterfaces = UnmodifiableSet.create(
             //@formatter:off
@@ -64,7 +65,7 @@ public class ClassEnvy extends BytecodeScanningDetector {
     };
 
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
     private String packageName;
     private String clsName;
     private Map<String, BitSet> clsAccessCount;
@@ -108,10 +109,9 @@ public class ClassEnvy extends BytecodeScanningDetector {
             JavaClass cls = classContext.getJavaClass();
             packageName = cls.getPackageName();
             clsName = cls.getClassName();
-            stack = new OpcodeStack();
             super.visitClassContext(classContext);
         } finally {
-            stack = null;
+            snapshots = null;
             clsAccessCount = null;
         }
     }
@@ -137,12 +137,12 @@ public class ClassEnvy extends BytecodeScanningDetector {
     @Override
     @SuppressWarnings("unchecked")
     public void visitCode(final Code obj) {
-        stack.resetForMethodEntry(this);
         thisClsAccessCount = 0;
         if (Values.STATIC_INITIALIZER.equals(methodName)) {
             return;
         }
 
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
         clsAccessCount = new HashMap<String, BitSet>();
         super.visitCode(obj);
 
@@ -178,29 +178,23 @@ public class ClassEnvy extends BytecodeScanningDetector {
      */
     @Override
     public void sawOpcode(final int seen) {
-        try {
-            stack.precomputation(this);
-
-            if ((seen == INVOKEVIRTUAL) || (seen == INVOKEINTERFACE) || (seen == INVOKESTATIC) || (seen == INVOKESPECIAL)) {
-                String calledClass = getClassConstantOperand().replace('/', '.');
+        if ((seen == INVOKEVIRTUAL) || (seen == INVOKEINTERFACE) || (seen == INVOKESTATIC) || (seen == INVOKESPECIAL)) {
+            String calledClass = getClassConstantOperand().replace('/', '.');
 
-                if (seen == INVOKEINTERFACE) {
-                    int parmCount = Type.getArgumentTypes(this.getSigConstantOperand()).length;
-                    if (!countClassAccess(parmCount)) {
-                        countClassAccess(calledClass);
-                    }
-                } else {
+            if (seen == INVOKEINTERFACE) {
+                int parmCount = Type.getArgumentTypes(this.getSigConstantOperand()).length;
+                if (!countClassAccess(parmCount)) {
                     countClassAccess(calledClass);
                 }
-            } else if (seen == PUTFIELD) {
-                countClassAccess(1);
-            } else if (seen == GETFIELD) {
-                countClassAccess(0);
-            } else if ((seen == ALOAD_0) && (!methodIsStatic)) {
-                countClassAccess(clsName);
+            } else {
+                countClassAccess(calledClass);
             }
-        } finally {
-            stack.sawOpcode(this, seen);
+        } else if (seen == PUTFIELD) {
+            countClassAccess(1);
+        } else if (seen == GETFIELD) {
+            countClassAccess(0);
+        } else if ((seen == ALOAD_0) && (!methodIsStatic)) {
+            countClassAccess(clsName);
         }
     }
 
@@ -246,6 +240,7 @@ public class ClassEnvy extends BytecodeScanningDetector {
         String calledClass;
 
         try {
+            OpcodeStackSnapshots.Snapshot stack = snapshots.before(getPC());
             if (stack.getStackDepth() > classAtStackIndex) {
                 OpcodeStack.Item itm = stack.getStackItem(classAtStackIndex);
                 JavaClass cls = itm.getJavaClass();
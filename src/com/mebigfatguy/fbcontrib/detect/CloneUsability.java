@@ -18,8 +18,6 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.BitSet;
-
 import org.apache.bcel.Constants;
 import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Code;
@@ -28,12 +26,16 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -42,22 +44,15 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * and do not swallow CloneNotFoundException. Not doing so makes the clone
  * method not as simple to use, and should be harmless to do.
  */
-public class CloneUsability extends BytecodeScanningDetector {
-
-    private static JavaClass CLONE_CLASS;
+public class CloneUsability extends ScopedBytecodeScanningDetector {
 
-    static {
-        try {
-            CLONE_CLASS = Repository.lookupClass("java/lang/Cloneable");
-        } catch (ClassNotFoundException cnfe) {
-            CLONE_CLASS = null;
-        }
-    }
+    private static final Prescreen PRESCREEN = Prescreen.register(CloneUsability.class, Prescreen.opcodes(Constants.ATHROW));
 
     private BugReporter bugReporter;
     private JavaClass cls;
     private String clsName;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private boolean throwsCNFE;
 
     /**
@@ -80,9 +75,8 @@ public class CloneUsability extends BytecodeScanningDetector {
     public void visitClassContext(ClassContext classContext) {
         try {
             cls = classContext.getJavaClass();
-            if (cls.implementationOf(CLONE_CLASS)) {
+            if (TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.CLONEABLE.lookupClass())) {
                 clsName = cls.getClassName();
-                stack = new OpcodeStack();
                 super.visitClassContext(classContext);
             }
         } catch (ClassNotFoundException cnfe) {
@@ -90,6 +84,7 @@ public class CloneUsability extends BytecodeScanningDetector {
         } finally {
             cls = null;
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -114,7 +109,7 @@ public class CloneUsability extends BytecodeScanningDetector {
                                 new BugInstance(this, BugType.CU_CLONE_USABILITY_OBJECT_RETURN.name(), NORMAL_PRIORITY).addClass(this).addMethod(this));
                     } else {
                         JavaClass cloneClass = Repository.lookupClass(returnClsName);
-                        if (!cls.instanceOf(cloneClass)) {
+                        if (!TypeHierarchyCache.isSubtypeOf(cls, cloneClass)) {
                             bugReporter.reportBug(
                                     new BugInstance(this, BugType.CU_CLONE_USABILITY_MISMATCHED_RETURN.name(), HIGH_PRIORITY).addClass(this).addMethod(this));
                         }
@@ -127,7 +122,8 @@ public class CloneUsability extends BytecodeScanningDetector {
 
                     throwsCNFE = false;
                     if (prescreen(m)) {
-                        stack.resetForMethodEntry(this);
+                        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+                        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
                         super.visitCode(obj);
                     }
 
@@ -158,7 +154,7 @@ public class CloneUsability extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -170,7 +166,6 @@ public class CloneUsability extends BytecodeScanningDetector {
      * @return if the class throws exceptions
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && bytecodeSet.get(Constants.ATHROW);
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 }
@@ -26,38 +26,20 @@ import org.apache.bcel.classfile.LocalVariableTable;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * looks for fields and local variables that have Map, Set, List in their names
  * but the variable is a collection of a different basic type.
  */
-public class CollectionNamingConfusion extends PreorderVisitor implements Detector {
-
-    private static JavaClass MAP_CLASS;
-    private static JavaClass SET_CLASS;
-    private static JavaClass LIST_CLASS;
-    private static JavaClass QUEUE_CLASS;
-
-    static {
-        try {
-            MAP_CLASS = Repository.lookupClass("java/util/Map");
-            SET_CLASS = Repository.lookupClass("java/util/Set");
-            LIST_CLASS = Repository.lookupClass("java/util/List");
-            QUEUE_CLASS = Repository.lookupClass("java/util/Queue");
-        } catch (ClassNotFoundException cnfe) {
-            MAP_CLASS = null;
-            SET_CLASS = null;
-            LIST_CLASS = null;
-            QUEUE_CLASS = null;
-        }
-    }
+public class CollectionNamingConfusion extends ScopedPreorderDetector {
 
     private BugReporter bugReporter;
     private ClassContext classContext;
@@ -68,10 +50,8 @@ public class CollectionNamingConfusion extends PreorderVisitor implements Detect
 
     @Override
     public void visitClassContext(ClassContext classContext) {
-        if (MAP_CLASS != null) {
-            this.classContext = classContext;
-            classContext.getJavaClass().accept(this);
-        }
+        this.classContext = classContext;
+        classContext.getJavaClass().accept(this);
     }
 
     @Override
@@ -114,13 +94,13 @@ public class CollectionNamingConfusion extends PreorderVisitor implements Detect
                 if (signature.startsWith("Ljava/util/")) {
                     String clsName = SignatureUtils.stripSignature(signature);
                     JavaClass cls = Repository.lookupClass(clsName);
-                    if (cls.implementationOf(MAP_CLASS) && !name.endsWith("map")) {
+                    if (TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.MAP.lookupClass()) && !name.endsWith("map")) {
                         return true;
-                    } else if (cls.implementationOf(SET_CLASS) && !name.endsWith("set")) {
+                    } else if (TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.SET.lookupClass()) && !name.endsWith("set")) {
                         return true;
-                    } else if (cls.implementationOf(LIST_CLASS) && !name.endsWith("list")) {
+                    } else if (TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.LIST.lookupClass()) && !name.endsWith("list")) {
                         return true;
-                    } else if (cls.implementationOf(QUEUE_CLASS) && !name.endsWith("queue")) {
+                    } else if (TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.QUEUE.lookupClass()) && !name.endsWith("queue")) {
                         return true;
                     }
                 }
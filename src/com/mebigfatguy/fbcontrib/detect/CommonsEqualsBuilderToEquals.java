@@ -23,11 +23,13 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.LocalVariableTable;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
-import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * Find usage of EqualsBuilder from Apache commons, where the code invoke
@@ -37,11 +39,15 @@ import edu.umd.cs.findbugs.OpcodeStack;
  * new EqualsBuilder().append(this.name, other.name).equals(other);
  * </pre>
  */
-public class CommonsEqualsBuilderToEquals extends BytecodeScanningDetector {
+public class CommonsEqualsBuilderToEquals extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(CommonsEqualsBuilderToEquals.class,
+            Prescreen.prefixes("org/apache/commons/lang/builder/EqualsBuilder", "org/apache/commons/lang3/builder/EqualsBuilder"));
 
     private static final String LANG_EQUALS_BUILDER = "Lorg/apache/commons/lang/builder/EqualsBuilder;";
     private static final String LANG3_EQUALS_BUILDER = "Lorg/apache/commons/lang3/builder/EqualsBuilder;";
-    private final OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private final BugReporter bugReporter;
 
     /**
@@ -51,10 +57,22 @@ public class CommonsEqualsBuilderToEquals extends BytecodeScanningDetector {
      *            the sync of bug reports
      */
     public CommonsEqualsBuilderToEquals(final BugReporter bugReporter) {
-        stack = new OpcodeStack();
         this.bugReporter = bugReporter;
     }
 
+    /**
+     * implements the visitor to skip classes that do not use commons-lang EqualsBuilder
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        if (PRESCREEN.acceptClass(classContext)) {
+            super.visitClassContext(classContext);
+        }
+    }
+
     /**
      * implements the visitor to pass through constructors and static
      * initializers to the byte code scanning code. These methods are not
@@ -66,9 +84,10 @@ public class CommonsEqualsBuilderToEquals extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
         LocalVariableTable lvt = getMethod().getLocalVariableTable();
         if (lvt != null) {
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
         }
     }
@@ -86,6 +105,6 @@ public class CommonsEqualsBuilderToEquals extends BytecodeScanningDetector {
             }
         }
         super.sawOpcode(seen);
-        stack.sawOpcode(this, seen);
+        stack = snapshots.after(getPC());
     }
 }
@@ -22,10 +22,13 @@ package com.mebigfatguy.fbcontrib.detect;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.LocalVariableTable;
 
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
-import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * Find usage of HashCodeBuilder from Apache commons, where the code invokes
@@ -35,11 +38,15 @@ import edu.umd.cs.findbugs.OpcodeStack;
  * new HashCodeBuilder().append(this.name).hashCode();
  * </pre>
  */
-public class CommonsHashcodeBuilderToHashcode extends BytecodeScanningDetector {
+public class CommonsHashcodeBuilderToHashcode extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(CommonsHashcodeBuilderToHashcode.class,
+            Prescreen.prefixes("org/apache/commons/lang/builder/HashCodeBuilder", "org/apache/commons/lang3/builder/HashCodeBuilder"));
 
     private static final String LANG_HASH_CODE_BUILDER = "Lorg/apache/commons/lang/builder/HashCodeBuilder;";
     private static final String LANG3_HASH_CODE_BUILDER = "Lorg/apache/commons/lang3/builder/HashCodeBuilder;";
-    private final OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private final BugReporter bugReporter;
 
     /**
@@ -49,10 +56,22 @@ public class CommonsHashcodeBuilderToHashcode extends BytecodeScanningDetector {
      *            the sync of bug reports
      */
     public CommonsHashcodeBuilderToHashcode(final BugReporter bugReporter) {
-        stack = new OpcodeStack();
         this.bugReporter = bugReporter;
     }
 
+    /**
+     * implements the visitor to skip classes that do not use commons-lang HashCodeBuilder
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        if (PRESCREEN.acceptClass(classContext)) {
+            super.visitClassContext(classContext);
+        }
+    }
+
     /**
      * implements the visitor to pass through constructors and static
      * initializers to the byte code scanning code. These methods are not
@@ -64,9 +83,10 @@ public class CommonsHashcodeBuilderToHashcode extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
         LocalVariableTable lvt = getMethod().getLocalVariableTable();
         if (lvt != null) {
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
         }
     }
@@ -84,6 +104,6 @@ public class CommonsHashcodeBuilderToHashcode extends BytecodeScanningDetector {
             }
         }
         super.sawOpcode(seen);
-        stack.sawOpcode(this, seen);
+        stack = snapshots.after(getPC());
     }
 }
@@ -28,7 +28,9 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.LocalVariable;
 import org.apache.bcel.classfile.LocalVariableTable;
 
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedOpcodeStackDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
@@ -36,7 +38,7 @@ import com.mebigfatguy.fbcontrib.utils.Values;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
-import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * Find usage of ToStringBuilder from Apache commons, where the code invokes
@@ -49,7 +51,10 @@ import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
  * new ToStringBuilder(this).toString();
  * </pre>
  */
-public class CommonsStringBuilderToString extends OpcodeStackDetector {
+public class CommonsStringBuilderToString extends ScopedOpcodeStackDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(CommonsStringBuilderToString.class,
+            Prescreen.prefixes("org/apache/commons/lang/builder/ToStringBuilder", "org/apache/commons/lang3/builder/ToStringBuilder"));
 
     private static final Set<String> TOSTRINGBUILDER_CTOR_SIGS = UnmodifiableSet.create(
         "(Ljava/lang/Object;)V",
@@ -71,6 +76,19 @@ public class CommonsStringBuilderToString extends OpcodeStackDetector {
         this.bugReporter = bugReporter;
     }
 
+    /**
+     * implements the visitor to skip classes that do not use commons-lang ToStringBuilder
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        if (PRESCREEN.acceptClass(classContext)) {
+            super.visitClassContext(classContext);
+        }
+    }
+
     @Override
     public void visit(Code obj) {
         registerTracker.clear();
@@ -23,12 +23,12 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.LocalVariableTable;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedOpcodeStackDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
-import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
 /**
  * In a JVM, Two classes are the same class (and consequently the same type) if
@@ -43,7 +43,7 @@ import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
  *
  */
 @CustomUserValue
-public class CompareClassNameEquals extends OpcodeStackDetector {
+public class CompareClassNameEquals extends ScopedOpcodeStackDetector {
     private boolean flag = false;
     private final BugReporter bugReporter;
 
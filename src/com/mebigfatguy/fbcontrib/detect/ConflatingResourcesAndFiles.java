@@ -22,11 +22,11 @@ import org.apache.bcel.classfile.Code;
 import org.objectweb.asm.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -36,7 +36,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * URLs retrieved from potentially non file resources, into files objects.
  */
 @CustomUserValue
-public class ConflatingResourcesAndFiles extends BytecodeScanningDetector {
+public class ConflatingResourcesAndFiles extends ScopedBytecodeScanningDetector {
 
     private BugReporter bugReporter;
     private OpcodeStack stack;
@@ -27,10 +27,10 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -41,7 +41,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * nanosecond value.
  */
 @CustomUserValue
-public class ConflictingTimeUnits extends BytecodeScanningDetector {
+public class ConflictingTimeUnits extends ScopedBytecodeScanningDetector {
 
     private enum Units {
         NANOS, MICROS, MILLIS, SECONDS, MINUTES, HOURS, DAYS, CALLER
@@ -25,12 +25,12 @@ import java.util.Set;
 import org.apache.bcel.classfile.Code;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
-import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  *
@@ -39,7 +39,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * of one item, the array itself.
  *
  */
-public class ConfusingArrayAsList extends BytecodeScanningDetector {
+public class ConfusingArrayAsList extends ScopedBytecodeScanningDetector {
 
     private static final Set<String> PRIMITIVE_ARRAYS;
 
@@ -57,7 +57,7 @@ public class ConfusingArrayAsList extends BytecodeScanningDetector {
     }
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
 
     /**
      * constructs a CAAL detector given the reporter to report bugs on
@@ -70,31 +70,19 @@ public class ConfusingArrayAsList extends BytecodeScanningDetector {
     }
 
     /**
-     * implements the visitor to create and teardown the opcode stack
-     *
-     * @param classContext
-     *            the context object of the currently parsed class
-     */
-    @Override
-    public void visitClassContext(ClassContext classContext) {
-        try {
-            stack = new OpcodeStack();
-            super.visitClassContext(classContext);
-        } finally {
-            stack = null;
-        }
-    }
-
-    /**
-     * implements the visitor to clear the opcode stack
+     * implements the visitor to fetch the shared opcode stack snapshots for this method
      *
      * @param obj
      *            the currently code block
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
-        super.visitCode(obj);
+        try {
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            super.visitCode(obj);
+        } finally {
+            snapshots = null;
+        }
     }
 
     /**
@@ -106,27 +94,22 @@ public class ConfusingArrayAsList extends BytecodeScanningDetector {
      */
     @Override
     public void sawOpcode(int seen) {
-        try {
-            stack.precomputation(this);
-
-            if (seen == INVOKESTATIC) {
-                String clsName = getClassConstantOperand();
-                if ("java/util/Arrays".equals(clsName)) {
-                    String methodName = getNameConstantOperand();
-                    if ("asList".equals(methodName)) {
-                        if (stack.getStackDepth() >= 1) {
-                            OpcodeStack.Item item = stack.getStackItem(0);
-                            String sig = item.getSignature();
-                            if (PRIMITIVE_ARRAYS.contains(sig)) {
-                                bugReporter.reportBug(new BugInstance(this, BugType.CAAL_CONFUSING_ARRAY_AS_LIST.name(), NORMAL_PRIORITY).addClass(this)
-                                        .addMethod(this).addSourceLine(this));
-                            }
+        if (seen == INVOKESTATIC) {
+            String clsName = getClassConstantOperand();
+            if ("java/util/Arrays".equals(clsName)) {
+                String methodName = getNameConstantOperand();
+                if ("asList".equals(methodName)) {
+                    OpcodeStackSnapshots.Snapshot stack = snapshots.before(getPC());
+                    if (stack.getStackDepth() >= 1) {
+                        OpcodeStack.Item item = stack.getStackItem(0);
+                        String sig = item.getSignature();
+                        if (PRIMITIVE_ARRAYS.contains(sig)) {
+                            bugReporter.reportBug(new BugInstance(this, BugType.CAAL_CONFUSING_ARRAY_AS_LIST.name(), NORMAL_PRIORITY).addClass(this)
+                                    .addMethod(this).addSourceLine(this));
                         }
                     }
                 }
             }
-        } finally {
-            stack.sawOpcode(this, seen);
         }
     }
 }
@@ -29,13 +29,12 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * looks for methods that have the same signature, except where one uses a
@@ -54,7 +53,7 @@ import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
  *
  * but instead maps to one that takes an int, long, float or double.
  */
-public class ConfusingAutoboxedOverloading extends PreorderVisitor implements Detector {
+public class ConfusingAutoboxedOverloading extends ScopedPreorderDetector {
     private static final int JDK15_MAJOR = 49;
 
     private static final Set<String> primitiveSigs;
@@ -31,14 +31,16 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -49,7 +51,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * point of this method is to modify the parameter, it is probably better just
  * to have the method be a void method, to avoid confusion.
  */
-public class ConfusingFunctionSemantics extends BytecodeScanningDetector {
+public class ConfusingFunctionSemantics extends ScopedBytecodeScanningDetector {
     private static final Set<String> knownImmutables;
 
     static {
@@ -69,7 +71,8 @@ public class ConfusingFunctionSemantics extends BytecodeScanningDetector {
 
     private final BugReporter bugReporter;
     private Map<Integer, ParmUsage> possibleParmRegs;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
 
     /**
      * constructs a CFS detector given the reporter to report bugs on
@@ -91,11 +94,11 @@ public class ConfusingFunctionSemantics extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             possibleParmRegs = new HashMap<Integer, ParmUsage>(10);
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
             possibleParmRegs = null;
         }
     }
@@ -128,14 +131,15 @@ public class ConfusingFunctionSemantics extends BytecodeScanningDetector {
                         }
 
                         JavaClass parmClass = Repository.lookupClass(SignatureUtils.stripSignature(parmSignature));
-                        if ((parmRegs != null) && parmClass.instanceOf(returnClass)) {
+                        if ((parmRegs != null) && TypeHierarchyCache.isSubtypeOf(parmClass, returnClass)) {
                             possibleParmRegs.put(Integer.valueOf(parmRegs[p]), new ParmUsage());
                         }
                     }
                 }
 
                 if (possibleParmRegs.size() > 0) {
-                    stack.resetForMethodEntry(this);
+                    snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+                    stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
                     super.visitCode(obj);
                     for (ParmUsage pu : possibleParmRegs.values()) {
                         if ((pu.returnPC >= 0) && (pu.alteredPC >= 0)) {
@@ -156,7 +160,7 @@ public class ConfusingFunctionSemantics extends BytecodeScanningDetector {
             return;
 
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (seen == ARETURN) {
                 if (stack.getStackDepth() > 0) {
@@ -193,7 +197,7 @@ public class ConfusingFunctionSemantics extends BytecodeScanningDetector {
             }
 
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
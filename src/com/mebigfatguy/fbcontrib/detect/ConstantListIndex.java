@@ -23,7 +23,6 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Constant;
 import org.apache.bcel.classfile.ConstantInteger;
 import org.apache.bcel.classfile.JavaClass;
@@ -31,11 +30,14 @@ import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XMethod;
@@ -46,33 +48,27 @@ import edu.umd.cs.findbugs.ba.XMethod;
  * loop variable, but if specific indices mean certain things, perhaps a first
  * class object would be a better choice for a container.
  */
-public class ConstantListIndex extends BytecodeScanningDetector {
+public class ConstantListIndex extends ScopedBytecodeScanningDetector {
     enum State {
         SAW_NOTHING, SAW_CONSTANT_0, SAW_CONSTANT
     }
 
     private static final String MAX_ICONST0_LOOP_DISTANCE_PROPERTY = "fb-contrib.cli.maxloopdistance";
     private static final Set<FQMethod> ubiquitousMethods;
-    private static JavaClass INVOCATIONHANDLER_CLASS;
 
     static {
         Set<FQMethod> um = new HashSet<FQMethod>();
         um.add(new FQMethod(Values.DOTTED_JAVA_LANG_STRING, "split", "(Ljava/lang/String;)[Ljava/lang/String;"));
         um.add(new FQMethod(Values.DOTTED_JAVA_LANG_STRING, "split", "(Ljava/lang/String;I)[Ljava/lang/String;"));
         ubiquitousMethods = Collections.unmodifiableSet(um);
-
-        try {
-            INVOCATIONHANDLER_CLASS = Repository.lookupClass("java/lang/reflect/InvocationHandler");
-        } catch (ClassNotFoundException cnfe) {
-            INVOCATIONHANDLER_CLASS = null;
-        }
     }
 
     private final BugReporter bugReporter;
     private State state;
     private BitSet iConst0Looped;
     private final int max_iConst0LoopDistance;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
 
     /**
      * constructs a CLI detector given the reporter to report bugs on
@@ -94,19 +90,20 @@ public class ConstantListIndex extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            if (INVOCATIONHANDLER_CLASS != null) {
-                if (classContext.getJavaClass().implementationOf(INVOCATIONHANDLER_CLASS)) {
+            JavaClass invocationHandlerClass = WellKnownType.INVOCATION_HANDLER.getJavaClass();
+            if (invocationHandlerClass != null) {
+                if (TypeHierarchyCache.isSubtypeOf(classContext.getJavaClass(), invocationHandlerClass)) {
                     return;
                 }
             }
             iConst0Looped = new BitSet();
-            stack = new OpcodeStack();
             super.visitClassContext(classContext);
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
             iConst0Looped = null;
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -120,7 +117,8 @@ public class ConstantListIndex extends BytecodeScanningDetector {
     public void visitMethod(Method obj) {
         state = State.SAW_NOTHING;
         iConst0Looped.clear();
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
     }
 
     /**
@@ -133,7 +131,7 @@ public class ConstantListIndex extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             switch (state) {
             case SAW_NOTHING:
@@ -208,7 +206,7 @@ public class ConstantListIndex extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -27,12 +27,12 @@ import org.apache.bcel.classfile.ConstantClass;
 import org.apache.bcel.classfile.ConstantString;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
-import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -42,7 +42,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * and just use one contains(value) call. The set name adds self-documentation
  * as well.
  */
-public class ContainsBasedConditional extends BytecodeScanningDetector {
+public class ContainsBasedConditional extends ScopedBytecodeScanningDetector {
 
     private static final int LOW_CONDITIONAL_COUNT = 3;
     private static final int NORMAL_CONDITIONAL_COUNT = 4;
@@ -53,7 +53,8 @@ public class ContainsBasedConditional extends BytecodeScanningDetector {
     };
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private List<Integer> switchLocs;
     private State state;
     private int loadType;
@@ -74,18 +75,19 @@ public class ContainsBasedConditional extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             switchLocs = new ArrayList<Integer>();
             super.visitClassContext(classContext);
         } finally {
             switchLocs = null;
             stack = null;
+            snapshots = null;
         }
     }
 
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         state = State.SAW_NOTHING;
         loadType = 0;
         constType = null;
@@ -102,7 +104,7 @@ public class ContainsBasedConditional extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if ((seen == LOOKUPSWITCH) || (seen == TABLESWITCH)) {
                 switchLocs.add(Integer.valueOf(getPC()));
@@ -216,7 +218,7 @@ public class ContainsBasedConditional extends BytecodeScanningDetector {
                 throw new AssertionError("Unhandled state: " + state);
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
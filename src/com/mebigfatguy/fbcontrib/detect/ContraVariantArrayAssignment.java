@@ -26,11 +26,12 @@ import org.apache.bcel.generic.ObjectType;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 
 /**
@@ -53,9 +54,10 @@ import edu.umd.cs.findbugs.OpcodeStack;
  * reported with high priority.
  *
  */
-public class ContraVariantArrayAssignment extends BytecodeScanningDetector {
+public class ContraVariantArrayAssignment extends ScopedBytecodeScanningDetector {
     private final BugReporter bugReporter;
-    private final OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
 
     /**
      * constructs a CVAA detector given the reporter to report bugs on.
@@ -65,7 +67,6 @@ public class ContraVariantArrayAssignment extends BytecodeScanningDetector {
      */
     public ContraVariantArrayAssignment(final BugReporter bugReporter) {
         this.bugReporter = bugReporter;
-        stack = new OpcodeStack();
     }
 
     /**
@@ -79,9 +80,10 @@ public class ContraVariantArrayAssignment extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
         LocalVariableTable lvt = getMethod().getLocalVariableTable();
         if (lvt != null) {
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
         }
     }
@@ -89,7 +91,7 @@ public class ContraVariantArrayAssignment extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             switch (seen) {
             case ASTORE:
@@ -142,7 +144,7 @@ public class ContraVariantArrayAssignment extends BytecodeScanningDetector {
             }
             super.sawOpcode(seen);
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -37,13 +37,13 @@ import org.apache.bcel.generic.ReferenceType;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -51,7 +51,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * class. This detector doesn't handle multi-level inheritance, ie child to
  * grandparent. Could be done.
  */
-public class CopiedOverriddenMethod extends BytecodeScanningDetector {
+public class CopiedOverriddenMethod extends ScopedBytecodeScanningDetector {
     private final BugReporter bugReporter;
     private Map<String, CodeInfo> superclassCode;
     private ClassContext classContext;
@@ -18,19 +18,20 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.apache.bcel.classfile.Code;
 
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+import com.mebigfatguy.fbcontrib.utils.StringMatchUtils;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -41,28 +42,41 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * that are transformed at runtime, using parameters set through
  * Transformer.setParameter.
  */
-public class CustomBuiltXML extends BytecodeScanningDetector {
-    private static final Map<Pattern, Boolean> xmlPatterns;
-
-    static {
-        Map<Pattern, Boolean> xp = new HashMap<Pattern, Boolean>();
-        xp.put(Pattern.compile(".*<[a-zA-Z_](\\w)*>[^=]?.*"), Boolean.TRUE);
-        xp.put(Pattern.compile(".*</[a-zA-Z_](\\w)*>[^=]?.*"), Boolean.TRUE);
-        xp.put(Pattern.compile(".*<[a-zA-Z_](\\w)*/>[^=]?.*"), Boolean.TRUE);
-        xp.put(Pattern.compile(".*<[^=]?(/)?$"), Boolean.TRUE);
-        xp.put(Pattern.compile("^(/)?>.*"), Boolean.TRUE);
-        xp.put(Pattern.compile(".*=(\\s)*[\"'].*"), Boolean.FALSE);
-        xp.put(Pattern.compile("^[\"']>.*"), Boolean.TRUE);
-        xp.put(Pattern.compile(".*<!\\[CDATA\\[.*", Pattern.CASE_INSENSITIVE), Boolean.TRUE);
-        xp.put(Pattern.compile(".*\\]\\]>.*"), Boolean.TRUE);
-        xp.put(Pattern.compile(".*xmlns:.*"), Boolean.TRUE);
-        
-        xmlPatterns = Collections.<Pattern, Boolean> unmodifiableMap(xp);
+public class CustomBuiltXML extends ScopedBytecodeScanningDetector {
+
+    /**
+     * how much a string constant looks like a piece of xml
+     */
+    enum XmlItem {
+        NONE, XML, CONFIDENT_XML
     }
 
+    /**
+     * the patterns of a string that is surely a piece of xml. These are only
+     * run for strings with line terminators, as for other strings matchXml
+     * finds the same matches in one pass.
+     */
+    private static final List<Pattern> confidentXmlPatterns = Collections.unmodifiableList(Arrays.asList(
+            Pattern.compile(".*<[a-zA-Z_](\\w)*>[^=]?.*"),
+            Pattern.compile(".*</[a-zA-Z_](\\w)*>[^=]?.*"),
+            Pattern.compile(".*<[a-zA-Z_](\\w)*/>[^=]?.*"),
+            Pattern.compile(".*<[^=]?(/)?$"),
+            Pattern.compile("^(/)?>.*"),
+            Pattern.compile("^[\"']>.*"),
+            Pattern.compile(".*<!\\[CDATA\\[.*", Pattern.CASE_INSENSITIVE),
+            Pattern.compile(".*\\]\\]>.*"),
+            Pattern.compile(".*xmlns:.*")));
+
+    /**
+     * the pattern of a string that may be a piece of xml, as it holds an
+     * attribute, but may just as well be something else
+     */
+    private static final Pattern attributePattern = Pattern.compile(".*=(\\s)*[\"'].*");
+
     private static final String CBX_MIN_REPORTABLE_ITEMS = "fb-contrib.cbx.minxmlitems";
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private int xmlItemCount = 0;
     private int xmlConfidentCount = 0;
     private int lowReportingThreshold;
@@ -93,10 +107,10 @@ public class CustomBuiltXML extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -108,7 +122,8 @@ public class CustomBuiltXML extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         xmlItemCount = 0;
         xmlConfidentCount = 0;
         firstPC = -1;
@@ -135,7 +150,7 @@ public class CustomBuiltXML extends BytecodeScanningDetector {
         String strCon = null;
 
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (seen == INVOKESPECIAL) {
                 String clsName = getClassConstantOperand();
@@ -169,22 +184,195 @@ public class CustomBuiltXML extends BytecodeScanningDetector {
                     return;
                 }
 
-                for (Map.Entry<Pattern, Boolean> entry : xmlPatterns.entrySet()) {
-                    Matcher m = entry.getKey().matcher(strCon);
-                    if (m.matches()) {
-                        xmlItemCount++;
-                        if (entry.getValue().booleanValue()) {
-                            xmlConfidentCount++;
-                        }
-                        if ((firstPC < 0) && (xmlConfidentCount > 0)) {
+                XmlItem item = matchXml(strCon);
+                if (item != XmlItem.NONE) {
+                    xmlItemCount++;
+                    if (item == XmlItem.CONFIDENT_XML) {
+                        xmlConfidentCount++;
+                        if (firstPC < 0) {
                             firstPC = getPC();
                         }
-                        break;
                     }
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
+        }
+    }
+
+    /**
+     * classifies a trimmed, non empty string constant by the patterns of xml,
+     * in one pass over the string. Strings without any of '<', '>', '=' or
+     * "xmlns" can't match a pattern, and only cost the scan. A string that
+     * matches both a confident pattern and the attribute pattern is confident.
+     * As the patterns are all of the form .*...*, or anchored at an end, for a
+     * string without line terminators, where '.' matches any character, they
+     * come down to looking for
+     * <ul>
+     * <li>a tag, &lt;name&gt;, &lt;/name&gt; or &lt;name/&gt;</li>
+     * <li>&lt;![CDATA[, in any case, ]]&gt; or xmlns:</li>
+     * <li>an attribute value, an '=' followed by white space and a quote</li>
+     * <li>a string starting with &gt;, /&gt; or a quote and &gt;</li>
+     * <li>a string ending with &lt;, optionally followed by a character that
+     * isn't '=' and then by '/'</li>
+     * </ul>
+     * Strings with line terminators are left to the patterns themselves.
+     *
+     * @param s
+     *            the string to classify
+     * @return how much the string looks like xml
+     */
+    static XmlItem matchXml(String s) {
+        boolean confident = false;
+        boolean attribute = false;
+        boolean markup = false;
+        int len = s.length();
+
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<':
+                    markup = true;
+                    if (!confident) {
+                        confident = isTagAt(s, i) || StringMatchUtils.regionMatchesIgnoreAsciiCase(s, i, "<![CDATA[");
+                    }
+                break;
+
+                case '>':
+                    markup = true;
+                    if (!confident) {
+                        confident = (i >= 2) && (s.charAt(i - 1) == ']') && (s.charAt(i - 2) == ']');
+                    }
+                break;
+
+                case '=':
+                    markup = true;
+                    if (!attribute) {
+                        attribute = isQuotedValueAt(s, i + 1);
+                    }
+                break;
+
+                case 'x':
+                    if (s.startsWith("xmlns", i)) {
+                        markup = true;
+                        if (!confident) {
+                            confident = s.startsWith(":", i + 5);
+                        }
+                    }
+                break;
+
+                default:
+                    if (StringMatchUtils.isLineTerminator(c)) {
+                        return matchXmlPatterns(s);
+                    }
+                break;
+            }
+        }
+
+        if (!markup) {
+            return XmlItem.NONE;
+        }
+
+        if (!confident) {
+            char first = s.charAt(0);
+            confident = (first == '>') || ((len >= 2) && (s.charAt(1) == '>') && ((first == '/') || (first == '"') || (first == '\'')))
+                    || isOpenTagEnd(s);
+        }
+
+        if (confident) {
+            return XmlItem.CONFIDENT_XML;
+        }
+        return attribute ? XmlItem.XML : XmlItem.NONE;
+    }
+
+    /**
+     * returns whether a tag, &lt;name&gt;, &lt;/name&gt; or &lt;name/&gt;
+     * starts at an index, where a name is a letter or underscore followed by
+     * word characters
+     *
+     * @param s
+     *            the string to look in
+     * @param start
+     *            the index of the '&lt;'
+     * @return whether a tag is found
+     */
+    private static boolean isTagAt(String s, int start) {
+        int len = s.length();
+        int i = start + 1;
+        boolean closing = (i < len) && (s.charAt(i) == '/');
+        if (closing) {
+            i++;
+        }
+        if ((i >= len) || !(StringMatchUtils.isAsciiLetter(s.charAt(i)) || (s.charAt(i) == '_'))) {
+            return false;
+        }
+        do {
+            i++;
+        } while ((i < len) && StringMatchUtils.isWordChar(s.charAt(i)));
+
+        if (i >= len) {
+            return false;
+        }
+        char c = s.charAt(i);
+        if (c == '>') {
+            return true;
+        }
+        return !closing && (c == '/') && s.startsWith(">", i + 1);
+    }
+
+    /**
+     * returns whether white space followed by a quote starts at an index, as
+     * after the '=' of an attribute
+     *
+     * @param s
+     *            the string to look in
+     * @param start
+     *            the index after the '='
+     * @return whether a quoted value follows
+     */
+    private static boolean isQuotedValueAt(String s, int start) {
+        int len = s.length();
+        int i = start;
+        while ((i < len) && StringMatchUtils.isSpace(s.charAt(i))) {
+            i++;
+        }
+        return (i < len) && ((s.charAt(i) == '"') || (s.charAt(i) == '\''));
+    }
+
+    /**
+     * returns whether a string ends with the start of a tag, a '&lt;',
+     * optionally followed by a character that isn't '=' and then by a '/'
+     *
+     * @param s
+     *            the string to check
+     * @return whether the string ends in an open tag
+     */
+    private static boolean isOpenTagEnd(String s) {
+        int len = s.length();
+        char last = s.charAt(len - 1);
+        if (last == '<') {
+            return true;
+        }
+        if ((len >= 2) && (s.charAt(len - 2) == '<') && (last != '=')) {
+            return true;
+        }
+        return (len >= 3) && (s.charAt(len - 3) == '<') && (s.charAt(len - 2) != '=') && (last == '/');
+    }
+
+    /**
+     * classifies a string constant by running the xml patterns over it, for
+     * strings with line terminators
+     *
+     * @param s
+     *            the string to classify
+     * @return how much the string looks like xml
+     */
+    private static XmlItem matchXmlPatterns(String s) {
+        for (Pattern p : confidentXmlPatterns) {
+            if (p.matcher(s).matches()) {
+                return XmlItem.CONFIDENT_XML;
+            }
         }
+        return attributePattern.matcher(s).matches() ? XmlItem.XML : XmlItem.NONE;
     }
 }
@@ -18,36 +18,65 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.CodeException;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantCP;
+import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPool;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.CodeByteUtils;
+import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.BasicBlock;
 import edu.umd.cs.findbugs.ba.CFG;
 import edu.umd.cs.findbugs.ba.CFGBuilderException;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.Edge;
 import edu.umd.cs.findbugs.ba.EdgeTypes;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * Calculates the McCabe Cyclomatic Complexity measure and reports methods that
  * have an excessive value. This report value can be set with system property
  * 'fb-contrib.cc.limit'.
+ * <p>
+ * The complexity is first counted from the code attribute alone: the branch
+ * instructions, switch targets, calls to System.exit and exception handlers.
+ * As the control flow graph only prunes these, the count is an upper bound of
+ * the graph's, and the graph, which is costly to build, is only asked for when
+ * the bound is over the limit, or the method has jsr subroutines, which the
+ * graph inlines.
+ * <p>
+ * If the system property 'fb-contrib.cc.metrics' names a file, a csv line is
+ * written to it for every method, with the complexity counted from the code,
+ * and the one counted from the control flow graph when it was built.
  */
-public class CyclomaticComplexity extends PreorderVisitor implements Detector {
+public class CyclomaticComplexity extends ScopedPreorderDetector {
     public static final String LIMIT_PROPERTY = "fb-contrib.cc.limit";
+    public static final String METRICS_PROPERTY = "fb-contrib.cc.metrics";
     private BugReporter bugReporter;
+    private final MetricStream metrics;
     private ClassContext classContext;
     private int reportLimit = 50;
+    private final BitSet handlerPCs = new BitSet();
+    private boolean hasSubroutines;
 
     /**
      * constructs a CC detector given the reporter to report bugs on
@@ -61,6 +90,8 @@ public class CyclomaticComplexity extends PreorderVisitor implements Detector {
         if (limit != null) {
             reportLimit = limit.intValue();
         }
+        String metricsFile = System.getProperty(METRICS_PROPERTY);
+        metrics = (metricsFile == null) ? null : MetricStream.acquire(new File(metricsFile));
     }
 
     /**
@@ -80,15 +111,19 @@ public class CyclomaticComplexity extends PreorderVisitor implements Detector {
     }
 
     /**
-     * implement the detector with null implementation
+     * releases the metrics file, if one is written, at the end of the run
      */
     @Override
     public void report() {
-        // not used, required by the Detector interface
+        if (metrics != null) {
+            metrics.release();
+        }
     }
 
     /**
-     * overrides the visitor to navigate the basic block list to count branches
+     * overrides the visitor to count the branches of the method, from its code,
+     * and from its basic block list if the count from the code is over the
+     * limit
      *
      * @param obj
      *            the method of the currently parsed method
@@ -110,46 +145,256 @@ public class CyclomaticComplexity extends PreorderVisitor implements Detector {
             // code
             // length, but it is good enough. If the method is small, don't
             // bother
-            if (code.getCode().length < (2 * reportLimit)) {
+            boolean isSmall = code.getCode().length < (2 * reportLimit);
+            if (isSmall && (metrics == null)) {
                 return;
             }
 
-            BitSet exceptionNodeTargets = new BitSet();
-
-            CFG cfg = classContext.getCFG(obj);
-            int branches = 0;
-            Iterator<BasicBlock> bbi = cfg.blockIterator();
-            while (bbi.hasNext()) {
-                BasicBlock bb = bbi.next();
-                Iterator<Edge> iei = cfg.outgoingEdgeIterator(bb);
-                while (iei.hasNext()) {
-                    Edge e = iei.next();
-                    int edgeType = e.getType();
-                    if ((edgeType != EdgeTypes.FALL_THROUGH_EDGE) && (edgeType != EdgeTypes.RETURN_EDGE) && (edgeType != EdgeTypes.UNKNOWN_EDGE)) {
-                        if ((edgeType == EdgeTypes.UNHANDLED_EXCEPTION_EDGE) || (edgeType == EdgeTypes.HANDLED_EXCEPTION_EDGE)) {
-                            int nodeTarget = e.getTarget().getLabel();
-                            if (!exceptionNodeTargets.get(nodeTarget)) {
-                                exceptionNodeTargets.set(nodeTarget);
-                                branches++;
-                            }
-                        } else {
+            int codeBranches = countCodeBranches(code);
+            int branches = -1;
+            if (!isSmall && (hasSubroutines || (codeBranches > reportLimit))) {
+                branches = countGraphBranches(obj);
+                if (branches > reportLimit) {
+
+                    int priority = (branches > (reportLimit * 2) ? HIGH_PRIORITY : NORMAL_PRIORITY);
+                    BugInstance bug = new BugInstance(this, BugType.CC_CYCLOMATIC_COMPLEXITY.name(), priority).addClass(this).addMethod(this)
+                            .addSourceLine(classContext, this, 0).addInt(branches);
+
+                    bugReporter.reportBug(bug);
+                }
+            }
+
+            if (metrics != null) {
+                metrics.write(getDottedClassName(), obj, code.getCode().length, codeBranches, branches);
+            }
+        } catch (CFGBuilderException cbe) {
+            bugReporter.logError("Failure examining basic blocks for method " + classContext.getJavaClass().getClassName() + '.' + obj.getName()
+                    + " in Cyclomatic Complexity detector", cbe);
+        }
+    }
+
+    /**
+     * counts the branches of a method from its code attribute, in the same way
+     * they are counted from the control flow graph, assuming all of the code is
+     * reachable, and that every exception handler, as well as the exit of the
+     * method, is reached by an exception. That is, the start of the method,
+     * each conditional branch and goto, each switch target including the
+     * default, each call to System.exit, each distinct exception handler, and
+     * one for the exception exit. Also notes whether the method has jsr
+     * subroutines, for which the count is not a bound.
+     *
+     * @param code
+     *            the code attribute of the method
+     * @return the number of branches
+     */
+    private int countCodeBranches(Code code) {
+        byte[] bytes = code.getCode();
+        ConstantPool cp = code.getConstantPool();
+        int branches = 2;
+        hasSubroutines = false;
+
+        int offset = 0;
+        while (offset < bytes.length) {
+            int op = CodeByteUtils.getbyte(bytes, offset);
+            switch (op) {
+                case Constants.TABLESWITCH: {
+                    int base = (offset + 4) & ~3;
+                    branches += (CodeByteUtils.getint(bytes, base + 8) - CodeByteUtils.getint(bytes, base + 4)) + 2;
+                    break;
+                }
+
+                case Constants.LOOKUPSWITCH:
+                    branches += CodeByteUtils.getint(bytes, ((offset + 4) & ~3) + 4) + 1;
+                    break;
+
+                case Constants.JSR:
+                case Constants.JSR_W:
+                case Constants.RET:
+                    hasSubroutines = true;
+                    break;
+
+                case Constants.INVOKESTATIC:
+                    if (isSystemExit(cp, CodeByteUtils.getshort(bytes, offset + 1) & 0xFFFF)) {
+                        branches++;
+                    }
+                    break;
+
+                default:
+                    if (OpcodeUtils.isBranch(op)) {
+                        branches++;
+                    }
+                    break;
+            }
+            offset += CodeByteUtils.getInstructionLength(bytes, offset);
+        }
+
+        handlerPCs.clear();
+        CodeException[] exceptionTable = code.getExceptionTable();
+        if (exceptionTable != null) {
+            for (CodeException ce : exceptionTable) {
+                handlerPCs.set(ce.getHandlerPC());
+            }
+        }
+        return branches + handlerPCs.cardinality();
+    }
+
+    /**
+     * returns whether a method reference is to System.exit, which the control
+     * flow graph ends a block on, with an edge to the exit
+     *
+     * @param cp
+     *            the constant pool of the class
+     * @param index
+     *            the index of the method reference
+     * @return whether the method is System.exit
+     */
+    private static boolean isSystemExit(ConstantPool cp, int index) {
+        Constant c = cp.getConstant(index);
+        if (!(c instanceof ConstantCP)) {
+            return false;
+        }
+        ConstantCP ref = (ConstantCP) c;
+        ConstantNameAndType nat = (ConstantNameAndType) cp.getConstant(ref.getNameAndTypeIndex());
+        return "exit".equals(nat.getName(cp)) && "java.lang.System".equals(ref.getClass(cp));
+    }
+
+    /**
+     * counts the branches of a method from its control flow graph, as the
+     * edges that aren't fall throughs or returns, where all exception edges to
+     * the same block count once
+     *
+     * @param obj
+     *            the method to count
+     * @return the number of branches
+     *
+     * @throws CFGBuilderException
+     *             if the control flow graph can't be built
+     */
+    private int countGraphBranches(Method obj) throws CFGBuilderException {
+        BitSet exceptionNodeTargets = new BitSet();
+
+        CFG cfg = classContext.getCFG(obj);
+        int branches = 0;
+        Iterator<BasicBlock> bbi = cfg.blockIterator();
+        while (bbi.hasNext()) {
+            BasicBlock bb = bbi.next();
+            Iterator<Edge> iei = cfg.outgoingEdgeIterator(bb);
+            while (iei.hasNext()) {
+                Edge e = iei.next();
+                int edgeType = e.getType();
+                if ((edgeType != EdgeTypes.FALL_THROUGH_EDGE) && (edgeType != EdgeTypes.RETURN_EDGE) && (edgeType != EdgeTypes.UNKNOWN_EDGE)) {
+                    if ((edgeType == EdgeTypes.UNHANDLED_EXCEPTION_EDGE) || (edgeType == EdgeTypes.HANDLED_EXCEPTION_EDGE)) {
+                        int nodeTarget = e.getTarget().getLabel();
+                        if (!exceptionNodeTargets.get(nodeTarget)) {
+                            exceptionNodeTargets.set(nodeTarget);
                             branches++;
                         }
+                    } else {
+                        branches++;
                     }
                 }
             }
+        }
+        return branches;
+    }
+
+    /**
+     * the csv file the complexity of each method is written to, when the
+     * system property fb-contrib.cc.metrics is set. All the detectors that
+     * write to the same file share one stream, as a run can have several, one
+     * for each thread, and the daemon creates new ones for each request. The
+     * file is created on the first line written, replacing any earlier one,
+     * and is appended to from then on, for as long as the jvm runs. It is
+     * closed whenever no detector holds it. The columns are the class, method
+     * name, signature, code length in bytes, the complexity counted from the
+     * code, and the one counted from the control flow graph, which is empty
+     * when the graph wasn't built.
+     */
+    static final class MetricStream {
+        private static final Map<File, MetricStream> streams = new HashMap<File, MetricStream>();
+
+        private final File metricsFile;
+        private PrintWriter writer;
+        private boolean started;
+        private boolean failed;
+        private int holders;
+
+        private MetricStream(File metricsFile) {
+            this.metricsFile = metricsFile;
+        }
+
+        /**
+         * gets the stream of a file, to be released when the detector is done
+         * with it
+         *
+         * @param metricsFile
+         *            the file to write the metrics to
+         * @return the stream shared by all the detectors writing to the file
+         */
+        static MetricStream acquire(File metricsFile) {
+            File file = metricsFile.getAbsoluteFile();
+            synchronized (streams) {
+                MetricStream stream = streams.get(file);
+                if (stream == null) {
+                    stream = new MetricStream(file);
+                    streams.put(file, stream);
+                }
+                stream.holders++;
+                return stream;
+            }
+        }
 
-            if (branches > reportLimit) {
+        /**
+         * writes the line for a method
+         *
+         * @param clsName
+         *            the dotted name of the class of the method
+         * @param method
+         *            the method
+         * @param codeLength
+         *            the length of the code of the method in bytes
+         * @param codeBranches
+         *            the complexity counted from the code
+         * @param graphBranches
+         *            the complexity counted from the control flow graph, or -1
+         *            if it wasn't built
+         */
+        void write(String clsName, Method method, int codeLength, int codeBranches, int graphBranches) {
+            synchronized (streams) {
+                if ((writer == null) && (failed || !open())) {
+                    return;
+                }
+                writer.printf("%s,%s,%s,%d,%d,%s%n", clsName, method.getName(), method.getSignature(), Integer.valueOf(codeLength),
+                        Integer.valueOf(codeBranches), (graphBranches < 0) ? "" : String.valueOf(graphBranches));
+            }
+        }
 
-                int priority = (branches > (reportLimit * 2) ? HIGH_PRIORITY : NORMAL_PRIORITY);
-                BugInstance bug = new BugInstance(this, BugType.CC_CYCLOMATIC_COMPLEXITY.name(), priority).addClass(this).addMethod(this)
-                        .addSourceLine(classContext, this, 0).addInt(branches);
+        /**
+         * lets go of the stream, closing the file once no detector holds it
+         */
+        void release() {
+            synchronized (streams) {
+                holders--;
+                if ((holders == 0) && (writer != null)) {
+                    writer.close();
+                    writer = null;
+                }
+            }
+        }
 
-                bugReporter.reportBug(bug);
+        private boolean open() {
+            try {
+                writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(metricsFile, started), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Failed writing fb-contrib complexity metrics to " + metricsFile + ": " + e.getMessage());
+                failed = true;
+                return false;
             }
-        } catch (CFGBuilderException cbe) {
-            bugReporter.logError("Failure examining basic blocks for method " + classContext.getJavaClass().getClassName() + '.' + obj.getName()
-                    + " in Cyclomatic Complexity detector", cbe);
+            if (!started) {
+                writer.println("class,method,signature,code_bytes,code_complexity,graph_complexity");
+                started = true;
+            }
+            return true;
         }
     }
 }
@@ -41,14 +41,16 @@ import com.mebigfatguy.fbcontrib.utils.CodeByteUtils;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
 import com.mebigfatguy.fbcontrib.utils.QMethod;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.FieldAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
@@ -61,28 +63,9 @@ import edu.umd.cs.findbugs.classfile.FieldDescriptor;
  * occurs the iterator will become invalid and throw a ConcurrentModificationException. Instead, the remove should be called on the iterator itself.
  */
 @CustomUserValue
-public class DeletingWhileIterating extends BytecodeScanningDetector {
-    private static JavaClass collectionClass;
-    private static JavaClass iteratorClass;
-    private static Set<JavaClass> exceptionClasses;
-
-    static {
-        try {
-            collectionClass = Repository.lookupClass("java/util/Collection");
-            iteratorClass = Repository.lookupClass("java/util/Iterator");
-        } catch (ClassNotFoundException cnfe) {
-            collectionClass = null;
-            iteratorClass = null;
-        }
-
-        try {
-            exceptionClasses = new HashSet<JavaClass>(2);
-            exceptionClasses.add(Repository.lookupClass("java/util/concurrent/CopyOnWriteArrayList"));
-            exceptionClasses.add(Repository.lookupClass("java/util/concurrent/CopyOnWriteArraySet"));
-        } catch (ClassNotFoundException cnfe) {
-            // don't have a bugReporter yet, so do nothing
-        }
-    }
+public class DeletingWhileIterating extends ScopedBytecodeScanningDetector {
+    private static final Set<String> exceptionClasses = UnmodifiableSet.create("java.util.concurrent.CopyOnWriteArrayList",
+            "java.util.concurrent.CopyOnWriteArraySet");
 
     private static final Set<QMethod> collectionMethods = UnmodifiableSet.create(new QMethod("entrySet", "()Ljava/lang/Set;"),
             new QMethod("keySet", "()Ljava/lang/Set;"), new QMethod("values", "()Ljava/lang/Collection;"));
@@ -106,7 +89,10 @@ public class DeletingWhileIterating extends BytecodeScanningDetector {
     private static final QMethod HASNEXT = new QMethod("hasNext", "()Z");
 
     private final BugReporter bugReporter;
+    private JavaClass collectionClass;
+    private JavaClass iteratorClass;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private List<GroupPair> collectionGroups;
     private Map<Integer, Integer> groupToIterator;
     private Map<Integer, Loop> loops;
@@ -130,6 +116,8 @@ public class DeletingWhileIterating extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        collectionClass = WellKnownType.COLLECTION.getJavaClass();
+        iteratorClass = WellKnownType.ITERATOR.getJavaClass();
         if ((collectionClass == null) || (iteratorClass == null)) {
             return;
         }
@@ -280,7 +268,7 @@ public class DeletingWhileIterating extends BytecodeScanningDetector {
 
                         try {
                             JavaClass cls = itm.getJavaClass();
-                            if ((cls != null) && cls.implementationOf(iteratorClass)) {
+                            if ((cls != null) && TypeHierarchyCache.isSubtypeOf(cls, iteratorClass)) {
                                 Integer regIt = Integer.valueOf(reg);
                                 Iterator<Integer> curIt = groupToIterator.values().iterator();
                                 while (curIt.hasNext()) {
@@ -341,9 +329,9 @@ public class DeletingWhileIterating extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if ((groupId >= 0) && (stack.getStackDepth() > 0)) {
                 OpcodeStack.Item itm = stack.getStackItem(0);
                 itm.setUserValue(Integer.valueOf(groupId));
@@ -428,7 +416,7 @@ public class DeletingWhileIterating extends BytecodeScanningDetector {
     private boolean isCollection(String className) {
         try {
             JavaClass cls = Repository.lookupClass(className);
-            return cls.implementationOf(collectionClass) && !exceptionClasses.contains(cls);
+            return TypeHierarchyCache.isSubtypeOf(cls, collectionClass) && !exceptionClasses.contains(cls.getClassName());
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
             return false;
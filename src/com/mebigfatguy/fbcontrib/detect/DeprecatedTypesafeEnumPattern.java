@@ -28,11 +28,11 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -41,7 +41,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * this class is compiled with java 1.5 or later, it would be simpler to just
  * use java enums
  */
-public class DeprecatedTypesafeEnumPattern extends BytecodeScanningDetector {
+public class DeprecatedTypesafeEnumPattern extends ScopedBytecodeScanningDetector {
     enum State {
         SAW_NOTHING, SAW_INVOKESPECIAL, SAW_BUG
     }
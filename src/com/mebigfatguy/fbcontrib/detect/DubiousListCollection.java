@@ -29,13 +29,14 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.QMethod;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.FieldAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
@@ -47,7 +48,7 @@ import edu.umd.cs.findbugs.ba.XField;
  * linear search for Lists, the performance for large Lists will be poor. Consideration should be made as to whether these fields should be sets. In the case
  * that order is important, consider using LinkedHashSet.
  */
-public class DubiousListCollection extends BytecodeScanningDetector {
+public class DubiousListCollection extends ScopedBytecodeScanningDetector {
 
     private static final Set<QMethod> setMethods = UnmodifiableSet.create(
             //@formatter:off
@@ -75,7 +76,8 @@ public class DubiousListCollection extends BytecodeScanningDetector {
     );
 
     private final BugReporter bugReporter;
-    private final OpcodeStack stack = new OpcodeStack();
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private final Map<String, FieldInfo> fieldsReported = new HashMap<String, FieldInfo>(10);
 
     /**
@@ -122,7 +124,8 @@ public class DubiousListCollection extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(final Code obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         super.visitCode(obj);
     }
 
@@ -135,7 +138,7 @@ public class DubiousListCollection extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(final int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (seen == INVOKEINTERFACE) {
                 String className = this.getClassConstantOperand();
@@ -177,7 +180,7 @@ public class DubiousListCollection extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -191,7 +194,7 @@ public class DubiousListCollection extends BytecodeScanningDetector {
      *
      * @return the field annotation for the field whose method was executed
      */
-    private static XField getFieldFromStack(final OpcodeStack stk, final String signature) {
+    private static XField getFieldFromStack(final OpcodeStackSnapshots.Snapshot stk, final String signature) {
         int parmCount = Type.getArgumentTypes(signature).length;
         if (stk.getStackDepth() > parmCount) {
             OpcodeStack.Item itm = stk.getStackItem(parmCount);
@@ -23,10 +23,13 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -36,24 +39,14 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * the contents of the collection this can be costly from a performance point of
  * view.
  */
-public class DubiousSetOfCollections extends BytecodeScanningDetector {
-
-    private static JavaClass collectionCls;
-    private static JavaClass setCls;
-    private static JavaClass mapCls;
-
-    static {
-        try {
-            collectionCls = Repository.lookupClass("java/util/Collection");
-            setCls = Repository.lookupClass("java/util/Set");
-            mapCls = Repository.lookupClass("java/util/Map");
-        } catch (ClassNotFoundException cnfe) {
-            // np bugReporter yet, so ignore
-        }
-    }
+public class DubiousSetOfCollections extends ScopedBytecodeScanningDetector {
 
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private JavaClass collectionCls;
+    private JavaClass setCls;
+    private JavaClass mapCls;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
 
     /**
      * constructs a DSOC detector given the reporter to report bugs on
@@ -75,13 +68,15 @@ public class DubiousSetOfCollections extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext clsContext) {
         try {
+            collectionCls = WellKnownType.COLLECTION.getJavaClass();
+            setCls = WellKnownType.SET.getJavaClass();
+            mapCls = WellKnownType.MAP.getJavaClass();
             if ((collectionCls == null) || (setCls == null) || (mapCls == null))
                 return;
-
-            stack = new OpcodeStack();
             super.visitClassContext(clsContext);
         } finally {
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -93,7 +88,8 @@ public class DubiousSetOfCollections extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code code) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         super.visitCode(code);
     }
 
@@ -107,7 +103,7 @@ public class DubiousSetOfCollections extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if ((seen == INVOKEVIRTUAL) || (seen == INVOKEINTERFACE)) {
                 String clsName = getClassConstantOperand();
@@ -138,7 +134,7 @@ public class DubiousSetOfCollections extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -179,7 +175,7 @@ public class DubiousSetOfCollections extends BytecodeScanningDetector {
             if (cls == null) {
                 return false;
             }
-            if (cls.implementationOf(inf)) {
+            if (TypeHierarchyCache.isSubtypeOf(cls, inf)) {
                 return true;
             }
         } catch (ClassNotFoundException cnfe) {
@@ -19,7 +19,6 @@
 package com.mebigfatguy.fbcontrib.detect;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -43,14 +42,18 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -59,19 +62,13 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * methods constrained by interface or super class contracts not to throw checked exceptions but appear owned by the same author. Next are methods constrained
  * by interface or super class contracts and throw other types of checked exceptions. Lastly are method not constrained by any interface or superclass contract.
  */
-public class ExceptionSoftening extends BytecodeScanningDetector {
-    private static JavaClass runtimeClass;
-
-    static {
-        try {
-            runtimeClass = Repository.lookupClass("java/lang/RuntimeException");
-        } catch (ClassNotFoundException cnfe) {
-            runtimeClass = null;
-        }
-    }
+public class ExceptionSoftening extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(ExceptionSoftening.class, Prescreen.opcodes(Constants.ATHROW));
 
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private JavaClass runtimeClass;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Map<Integer, CodeException> catchHandlerPCs;
     private List<CatchInfo> catchInfos;
     private LocalVariableTable lvt;
@@ -99,12 +96,13 @@ public class ExceptionSoftening extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
+            runtimeClass = WellKnownType.RUNTIME_EXCEPTION.getJavaClass();
             if (runtimeClass != null) {
-                stack = new OpcodeStack();
                 super.visitClassContext(classContext);
             }
         } finally {
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -122,7 +120,8 @@ public class ExceptionSoftening extends BytecodeScanningDetector {
             if (isBooleanMethod || prescreen(method)) {
                 catchHandlerPCs = collectExceptions(obj.getExceptionTable());
                 if (!catchHandlerPCs.isEmpty()) {
-                    stack.resetForMethodEntry(this);
+                    snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+                    stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
                     catchInfos = new ArrayList<CatchInfo>();
                     lvt = method.getLocalVariableTable();
                     constrainingInfo = null;
@@ -153,7 +152,7 @@ public class ExceptionSoftening extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             int pc = getPC();
             CodeException ex = catchHandlerPCs.get(Integer.valueOf(pc));
@@ -179,14 +178,14 @@ public class ExceptionSoftening extends BytecodeScanningDetector {
                     if (stack.getStackDepth() > 0) {
                         OpcodeStack.Item itm = stack.getStackItem(0);
                         JavaClass exClass = itm.getJavaClass();
-                        if ((exClass != null) && exClass.instanceOf(runtimeClass)) {
+                        if ((exClass != null) && TypeHierarchyCache.isSubtypeOf(exClass, runtimeClass)) {
                             if (catchInfos.size() > 0) {
                                 Set<String> possibleCatchSignatures = findPossibleCatchSignatures(catchInfos, pc);
                                 if (!possibleCatchSignatures.contains(exClass.getClassName())) {
                                     boolean anyRuntimes = false;
                                     for (String possibleCatches : possibleCatchSignatures) {
                                         exClass = Repository.lookupClass(possibleCatches);
-                                        if (exClass.instanceOf(runtimeClass)) {
+                                        if (TypeHierarchyCache.isSubtypeOf(exClass, runtimeClass)) {
                                             anyRuntimes = true;
                                             break;
                                         }
@@ -264,7 +263,7 @@ public class ExceptionSoftening extends BytecodeScanningDetector {
             }
 
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -446,7 +445,7 @@ public class ExceptionSoftening extends BytecodeScanningDetector {
                     ConstantClass ccls = (ConstantClass) pool.getConstant(index);
                     String exName = ccls.getBytes(pool);
                     JavaClass exClass = Repository.lookupClass(exName);
-                    if (!exClass.instanceOf(runtimeClass)) {
+                    if (!TypeHierarchyCache.isSubtypeOf(exClass, WellKnownType.RUNTIME_EXCEPTION.lookupClass())) {
                         exs.add(ccls.getBytes(pool));
                     }
                 }
@@ -464,8 +463,7 @@ public class ExceptionSoftening extends BytecodeScanningDetector {
      * @return if the method throws an exception
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.ATHROW));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
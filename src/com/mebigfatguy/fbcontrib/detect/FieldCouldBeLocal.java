@@ -18,11 +18,16 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -30,6 +35,10 @@ import java.util.Set;
 import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.AnnotationEntry;
 import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantCP;
+import org.apache.bcel.classfile.ConstantFieldref;
+import org.apache.bcel.classfile.ConstantNameAndType;
 import org.apache.bcel.classfile.ConstantPool;
 import org.apache.bcel.classfile.ConstantUtf8;
 import org.apache.bcel.classfile.Field;
@@ -42,10 +51,14 @@ import org.apache.bcel.generic.INVOKESPECIAL;
 import org.apache.bcel.generic.INVOKEVIRTUAL;
 import org.apache.bcel.generic.Instruction;
 import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InvokeInstruction;
 import org.apache.bcel.generic.ObjectType;
 import org.apache.bcel.generic.ReferenceType;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.CodeByteUtils;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.Values;
@@ -65,14 +78,32 @@ import edu.umd.cs.findbugs.ba.Edge;
 /**
  * finds fields that are used in a locals only fashion, specifically private
  * fields that are accessed first in each method with a store vs. a load.
+ * <p>
+ * Each method is checked with a forward dataflow over its control flow graph,
+ * where the state at a block is the set of fields, by ordinal, that some path
+ * from the method entry reaches the block without having accessed. A field that
+ * is read in a block before being written, while still in that set, is not
+ * localizable.
  */
-public class FieldCouldBeLocal extends BytecodeScanningDetector {
+public class FieldCouldBeLocal extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(FieldCouldBeLocal.class, Prescreen.opcodes(Constants.PUTFIELD, Constants.GETFIELD));
+
     private final BugReporter bugReporter;
+    private final Deque<BasicBlock> worklist = new ArrayDeque<BasicBlock>();
+    private final BitSet queuedBlocks = new BitSet();
+    private final BitSet reachedBlocks = new BitSet();
+    private final BitSet scratchFields = new BitSet();
+    private BlockSummary[] blockSummaries = new BlockSummary[0];
+    private BitSet[] blockEntryFields = new BitSet[0];
     private ClassContext clsContext;
     private Map<String, FieldInfo> localizableFields;
+    private Map<String, Integer> fieldOrdinals;
+    private List<String> fieldNames;
+    private BitSet annotatedFields;
+    private String[] fieldConstants;
+    private BitSet methodConstants;
     private CFG cfg;
     private ConstantPoolGen cpg;
-    private BitSet visitedBlocks;
     private Map<String, Set<String>> methodFieldModifiers;
     private String clsName;
     private String clsSig;
@@ -98,7 +129,9 @@ public class FieldCouldBeLocal extends BytecodeScanningDetector {
     public void visitClassContext(ClassContext classContext) {
         try {
             localizableFields = new HashMap<String, FieldInfo>();
-            visitedBlocks = new BitSet();
+            fieldOrdinals = new HashMap<String, Integer>();
+            fieldNames = new ArrayList<String>();
+            annotatedFields = new BitSet();
             clsContext = classContext;
             clsName = clsContext.getJavaClass().getClassName();
             clsSig = SignatureUtils.classToSignature(clsName);
@@ -118,11 +151,17 @@ public class FieldCouldBeLocal extends BytecodeScanningDetector {
                         }
                     }
                     localizableFields.put(f.getName(), new FieldInfo(fa, hasExternalAnnotation));
+                    if (hasExternalAnnotation) {
+                        annotatedFields.set(fieldNames.size());
+                    }
+                    fieldOrdinals.put(f.getName(), Integer.valueOf(fieldNames.size()));
+                    fieldNames.add(f.getName());
                 }
             }
 
             if (localizableFields.size() > 0) {
                 buildMethodFieldModifiers(classContext);
+                buildConstants(cls);
                 super.visitClassContext(classContext);
                 for (FieldInfo fi : localizableFields.values()) {
                     FieldAnnotation fa = fi.getFieldAnnotation();
@@ -136,22 +175,26 @@ public class FieldCouldBeLocal extends BytecodeScanningDetector {
             }
         } finally {
             localizableFields = null;
-            visitedBlocks = null;
+            fieldOrdinals = null;
+            fieldNames = null;
+            annotatedFields = null;
+            fieldConstants = null;
+            methodConstants = null;
             clsContext = null;
             methodFieldModifiers = null;
         }
     }
 
     /**
-     * overrides the visitor to navigate basic blocks looking for all first
-     * usages of fields, removing those that are read from first.
+     * overrides the visitor to run the first access dataflow over the basic
+     * blocks of the method, removing the fields that are read from first.
      *
      * @param obj
      *            the context object of the currently parsed method
      */
     @Override
     public void visitMethod(Method obj) {
-        if (localizableFields.isEmpty()) {
+        if (localizableFields.isEmpty() || !mayAffectFields(obj)) {
             return;
         }
 
@@ -159,18 +202,55 @@ public class FieldCouldBeLocal extends BytecodeScanningDetector {
 
             cfg = clsContext.getCFG(obj);
             cpg = cfg.getMethodGen().getConstantPool();
-            BasicBlock bb = cfg.getEntry();
-            Set<String> uncheckedFields = new HashSet<String>(localizableFields.keySet());
-            visitedBlocks.clear();
-            checkBlock(bb, uncheckedFields);
+            BitSet uncheckedFields = new BitSet();
+            for (String fieldName : localizableFields.keySet()) {
+                uncheckedFields.set(fieldOrdinals.get(fieldName).intValue());
+            }
+            checkBlocks(uncheckedFields);
         } catch (CFGBuilderException cbe) {
             localizableFields.clear();
         } finally {
+            worklist.clear();
             cfg = null;
             cpg = null;
         }
     }
 
+    /**
+     * looks for methods that contain an instruction the dataflow reacts to, so
+     * that the control flow graph, which is costly to build, is only asked for
+     * when it is needed. Accesses to fields that are no longer localizable
+     * don't count. Methods without code are always checked, as their control
+     * flow graph can't be built, which clears all fields.
+     *
+     * @param method
+     *            the method to check
+     * @return whether the method refers to a localizable field or a relevant
+     *         method
+     */
+    private boolean mayAffectFields(Method method) {
+        Code code = method.getCode();
+        if (code == null) {
+            return true;
+        }
+
+        byte[] bytes = code.getCode();
+        int offset = 0;
+        while (offset < bytes.length) {
+            int op = CodeByteUtils.getbyte(bytes, offset);
+            if ((op == GETFIELD) || (op == PUTFIELD)) {
+                String fieldName = fieldConstants[CodeByteUtils.getshort(bytes, offset + 1) & 0xFFFF];
+                if ((fieldName != null) && localizableFields.containsKey(fieldName)) {
+                    return true;
+                }
+            } else if (((op == INVOKESPECIAL) || (op == INVOKEVIRTUAL)) && methodConstants.get(CodeByteUtils.getshort(bytes, offset + 1) & 0xFFFF)) {
+                return true;
+            }
+            offset += CodeByteUtils.getInstructionLength(bytes, offset);
+        }
+        return false;
+    }
+
     /**
      * looks for methods that contain a GETFIELD or PUTFIELD opcodes
      *
@@ -179,8 +259,7 @@ public class FieldCouldBeLocal extends BytecodeScanningDetector {
      * @return if the class uses GETFIELD or PUTFIELD
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.PUTFIELD) || bytecodeSet.get(Constants.GETFIELD));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -223,90 +302,201 @@ public class FieldCouldBeLocal extends BytecodeScanningDetector {
     }
 
     /**
-     * looks in this basic block for the first access to the fields in
-     * uncheckedFields. Once found the item is removed from uncheckedFields, and
-     * removed from localizableFields if the access is a GETFIELD. If any
-     * unchecked fields remain, this method is recursively called on all
-     * outgoing edges of this basic block.
+     * runs the first access dataflow from the entry block of the method. A
+     * block is (re)processed whenever the set of unchecked fields reaching it
+     * grows, until no set grows anymore. Each time a block is processed, the
+     * fields it reads first that are unchecked on entry are removed from
+     * localizableFields, and its other effects are applied if some field is
+     * still unchecked when they are reached.
      *
-     * @param bb
-     *            this basic block
      * @param uncheckedFields
-     *            the list of fields to look for
+     *            the ordinals of the fields to look for on method entry
      */
-    private void checkBlock(BasicBlock bb, Set<String> uncheckedFields) {
-        LinkedList<BlockState> toBeProcessed = new LinkedList<BlockState>();
-        toBeProcessed.add(new BlockState(bb, uncheckedFields));
-        visitedBlocks.set(bb.getLabel());
+    private void checkBlocks(BitSet uncheckedFields) {
+        int maxLabel = 0;
+        Iterator<BasicBlock> bi = cfg.blockIterator();
+        while (bi.hasNext()) {
+            maxLabel = Math.max(maxLabel, bi.next().getLabel());
+        }
+        if (blockSummaries.length <= maxLabel) {
+            int size = Math.max(maxLabel + 1, blockSummaries.length * 2);
+            blockSummaries = new BlockSummary[size];
+            blockEntryFields = Arrays.copyOf(blockEntryFields, size);
+        } else {
+            Arrays.fill(blockSummaries, 0, maxLabel + 1, null);
+        }
+        reachedBlocks.clear();
+        queuedBlocks.clear();
 
-        while (!toBeProcessed.isEmpty()) {
+        BasicBlock entry = cfg.getEntry();
+        reachBlock(entry.getLabel(), uncheckedFields);
+        worklist.addLast(entry);
+
+        while (!worklist.isEmpty()) {
             if (localizableFields.isEmpty()) {
                 return;
             }
-            BlockState bState = toBeProcessed.removeFirst();
-            bb = bState.getBasicBlock();
-
-            InstructionIterator ii = bb.instructionIterator();
-            while ((bState.getUncheckedFieldSize() > 0) && ii.hasNext()) {
-                InstructionHandle ih = ii.next();
-                Instruction ins = ih.getInstruction();
-                if (ins instanceof FieldInstruction) {
-                    FieldInstruction fi = (FieldInstruction) ins;
-                    if (fi.getReferenceType(cpg).getSignature().equals(clsSig)) {
-                        String fieldName = fi.getFieldName(cpg);
-                        FieldInfo finfo = localizableFields.get(fieldName);
-
-                        if ((finfo != null) && localizableFields.get(fieldName).hasAnnotation()) {
-                            localizableFields.remove(fieldName);
-                        } else {
-                            boolean justRemoved = bState.removeUncheckedField(fieldName);
-
-                            if (ins instanceof GETFIELD) {
-                                if (justRemoved) {
-                                    localizableFields.remove(fieldName);
-                                    if (localizableFields.isEmpty()) {
-                                        return;
-                                    }
-                                }
-                            } else {
-                                if (finfo != null) {
-                                    finfo.setSrcLineAnnotation(SourceLineAnnotation.fromVisitedInstruction(clsContext, this, ih.getPosition()));
-                                }
-                            }
-                        }
-                    }
-                } else if (ins instanceof INVOKESPECIAL) {
-                    INVOKESPECIAL is = (INVOKESPECIAL) ins;
+            BasicBlock bb = worklist.removeFirst();
+            int label = bb.getLabel();
+            queuedBlocks.clear(label);
+
+            BlockSummary summary = blockSummaries[label];
+            if (summary == null) {
+                summary = summarizeBlock(bb);
+                blockSummaries[label] = summary;
+            }
+            BitSet entryFields = blockEntryFields[label];
 
-                    ReferenceType rt = is.getReferenceType(cpg);
-                    if (Values.CONSTRUCTOR.equals(is.getMethodName(cpg)) && ((rt instanceof ObjectType) && ((ObjectType) rt).getClassName().startsWith(clsContext.getJavaClass().getClassName() + '$'))) {
-                        localizableFields.clear();
-                    }
-                } else if (ins instanceof INVOKEVIRTUAL) {
-                    INVOKEVIRTUAL is = (INVOKEVIRTUAL) ins;
+            scratchFields.clear();
+            scratchFields.or(entryFields);
+            scratchFields.and(summary.getReadFirstFields());
+            for (int f = scratchFields.nextSetBit(0); f >= 0; f = scratchFields.nextSetBit(f + 1)) {
+                localizableFields.remove(fieldNames.get(f));
+            }
+            for (BlockEffect effect : summary.getEffects()) {
+                if (effect.isReached(entryFields)) {
+                    applyEffect(effect.getHandle());
+                }
+            }
 
-                    ReferenceType rt = is.getReferenceType(cpg);
-                    if ((rt instanceof ObjectType) && ((ObjectType) rt).getClassName().equals(clsName)) {
-                        String methodDesc = is.getName(cpg) + is.getSignature(cpg);
-                        Set<String> fields = methodFieldModifiers.get(methodDesc);
-                        if (fields != null) {
-                            localizableFields.keySet().removeAll(fields);
-                        }
-                    }
+            scratchFields.clear();
+            scratchFields.or(entryFields);
+            scratchFields.andNot(summary.getAccessedFields());
+            if (scratchFields.isEmpty()) {
+                continue;
+            }
+
+            Iterator<Edge> oei = cfg.outgoingEdgeIterator(bb);
+            while (oei.hasNext()) {
+                BasicBlock cb = oei.next().getTarget();
+                int cbLabel = cb.getLabel();
+                boolean grew;
+                if (reachedBlocks.get(cbLabel)) {
+                    BitSet cbFields = blockEntryFields[cbLabel];
+                    int cardinality = cbFields.cardinality();
+                    cbFields.or(scratchFields);
+                    grew = cbFields.cardinality() != cardinality;
+                } else {
+                    reachBlock(cbLabel, scratchFields);
+                    grew = true;
+                }
+                if (grew && !queuedBlocks.get(cbLabel)) {
+                    queuedBlocks.set(cbLabel);
+                    worklist.addLast(cb);
                 }
             }
+        }
+    }
 
-            if (bState.getUncheckedFieldSize() > 0) {
-                Iterator<Edge> oei = cfg.outgoingEdgeIterator(bb);
-                while (oei.hasNext()) {
-                    Edge e = oei.next();
-                    BasicBlock cb = e.getTarget();
-                    int label = cb.getLabel();
-                    if (!visitedBlocks.get(label)) {
-                        toBeProcessed.addLast(new BlockState(cb, bState));
-                        visitedBlocks.set(label);
+    /**
+     * marks a block as reached by the dataflow, reusing the entry set left
+     * from an earlier method if there is one
+     *
+     * @param label
+     *            the label of the block
+     * @param fields
+     *            the unchecked fields that first reach the block
+     */
+    private void reachBlock(int label, BitSet fields) {
+        BitSet entryFields = blockEntryFields[label];
+        if (entryFields == null) {
+            entryFields = new BitSet();
+            blockEntryFields[label] = entryFields;
+        } else {
+            entryFields.clear();
+        }
+        entryFields.or(fields);
+        reachedBlocks.set(label);
+    }
+
+    /**
+     * walks the instructions of a basic block once, collecting the fields of
+     * this class that are first accessed by a read, all the fields that are
+     * accessed, and the instructions that have an effect beyond the dataflow,
+     * along with the fields accessed before them.
+     *
+     * @param bb
+     *            the basic block to summarize
+     * @return the summary of the block
+     */
+    private BlockSummary summarizeBlock(BasicBlock bb) {
+        BlockSummary summary = new BlockSummary();
+        BitSet accessedFields = summary.getAccessedFields();
+        BitSet accessedBefore = null;
+
+        InstructionIterator ii = bb.instructionIterator();
+        while (ii.hasNext()) {
+            InstructionHandle ih = ii.next();
+            Instruction ins = ih.getInstruction();
+            int field = -1;
+            boolean hasEffect = false;
+            if (ins instanceof FieldInstruction) {
+                FieldInstruction fi = (FieldInstruction) ins;
+                if (fi.getReferenceType(cpg).getSignature().equals(clsSig)) {
+                    Integer ordinal = fieldOrdinals.get(fi.getFieldName(cpg));
+                    if (ordinal != null) {
+                        field = ordinal.intValue();
+                        hasEffect = annotatedFields.get(field) || !(ins instanceof GETFIELD);
                     }
                 }
+            } else if (ins instanceof INVOKESPECIAL) {
+                INVOKESPECIAL is = (INVOKESPECIAL) ins;
+
+                ReferenceType rt = is.getReferenceType(cpg);
+                hasEffect = Values.CONSTRUCTOR.equals(is.getMethodName(cpg))
+                        && ((rt instanceof ObjectType) && ((ObjectType) rt).getClassName().startsWith(clsName + '$'));
+            } else if (ins instanceof INVOKEVIRTUAL) {
+                INVOKEVIRTUAL is = (INVOKEVIRTUAL) ins;
+
+                ReferenceType rt = is.getReferenceType(cpg);
+                hasEffect = (rt instanceof ObjectType) && ((ObjectType) rt).getClassName().equals(clsName)
+                        && methodFieldModifiers.containsKey(is.getName(cpg) + is.getSignature(cpg));
+            }
+
+            if (hasEffect) {
+                accessedBefore = summary.addEffect(ih, accessedBefore);
+            }
+            if ((field >= 0) && !accessedFields.get(field)) {
+                accessedFields.set(field);
+                accessedBefore = null;
+                if (ins instanceof GETFIELD) {
+                    summary.getReadFirstFields().set(field);
+                }
+            }
+        }
+
+        return summary;
+    }
+
+    /**
+     * applies what an instruction means to the localizable fields, beyond the
+     * first access of a field. An access to a field with a non java annotation
+     * removes it, a write sets where the field is first stored, constructing an
+     * inner class removes all fields, and calling a method of this class that
+     * writes fields removes those fields.
+     *
+     * @param ih
+     *            the instruction handle of the instruction
+     */
+    private void applyEffect(InstructionHandle ih) {
+        Instruction ins = ih.getInstruction();
+        if (ins instanceof FieldInstruction) {
+            String fieldName = ((FieldInstruction) ins).getFieldName(cpg);
+            FieldInfo finfo = localizableFields.get(fieldName);
+            if (finfo != null) {
+                if (finfo.hasAnnotation()) {
+                    localizableFields.remove(fieldName);
+                } else {
+                    finfo.setSrcLineAnnotation(SourceLineAnnotation.fromVisitedInstruction(clsContext, this, ih.getPosition()));
+                }
+            }
+        } else if (ins instanceof INVOKESPECIAL) {
+            localizableFields.clear();
+        } else {
+            InvokeInstruction ii = (InvokeInstruction) ins;
+            Set<String> fields = methodFieldModifiers.get(ii.getName(cpg) + ii.getSignature(cpg));
+            if (fields != null) {
+                localizableFields.keySet().removeAll(fields);
             }
         }
     }
@@ -325,6 +515,38 @@ public class FieldCouldBeLocal extends BytecodeScanningDetector {
         methodFieldModifiers = fm.getMethodFieldModifiers();
     }
 
+    /**
+     * collects the constant pool entries of the fields and methods the
+     * dataflow reacts to: the names of the localizable fields by the index of
+     * their field references, and the method references of constructors of
+     * inner classes, and of methods of this class that write fields.
+     *
+     * @param cls
+     *            the currently parsed class
+     */
+    private void buildConstants(JavaClass cls) {
+        ConstantPool cp = cls.getConstantPool();
+        fieldConstants = new String[cp.getLength()];
+        methodConstants = new BitSet();
+        for (int i = 1; i < cp.getLength(); i++) {
+            Constant c = cp.getConstant(i);
+            if (c instanceof ConstantCP) {
+                ConstantCP ref = (ConstantCP) c;
+                String refClsName = ref.getClass(cp);
+                ConstantNameAndType nat = (ConstantNameAndType) cp.getConstant(ref.getNameAndTypeIndex());
+                String name = nat.getName(cp);
+                if (c instanceof ConstantFieldref) {
+                    if (refClsName.equals(clsName) && fieldOrdinals.containsKey(name)) {
+                        fieldConstants[i] = name;
+                    }
+                } else if ((refClsName.equals(clsName) && methodFieldModifiers.containsKey(name + nat.getSignature(cp)))
+                        || (Values.CONSTRUCTOR.equals(name) && refClsName.startsWith(clsName + '$'))) {
+                    methodConstants.set(i);
+                }
+            }
+        }
+    }
+
     /**
      * holds information about a field and it's first usage
      */
@@ -394,87 +616,114 @@ public class FieldCouldBeLocal extends BytecodeScanningDetector {
     }
 
     /**
-     * holds the parse state of the current basic block, and what fields are
-     * left to be checked the fields that are left to be checked are a reference
-     * from the parent block and a new collection is created on first write to
-     * the set to reduce memory concerns.
+     * holds what the dataflow needs to know about a basic block, computed once
+     * per method: the fields whose first access in the block is a read, the
+     * fields accessed at all, and the instructions with further effects.
      */
-    private static class BlockState {
-        private final BasicBlock basicBlock;
-        private Set<String> uncheckedFields;
-        private boolean fieldsAreSharedWithParent;
+    private static class BlockSummary {
+        private final BitSet readFirstFields = new BitSet();
+        private final BitSet accessedFields = new BitSet();
+        private List<BlockEffect> effects = Collections.<BlockEffect> emptyList();
 
         /**
-         * creates a BlockState consisting of the next basic block to parse, and
-         * what fields are to be checked
+         * get the fields whose first access in the block is a read
          *
-         * @param bb
-         *            the basic block to parse
-         * @param fields
-         *            the fields to look for first use
+         * @return the ordinals of the fields read first
          */
-        public BlockState(final BasicBlock bb, final Set<String> fields) {
-            basicBlock = bb;
-            uncheckedFields = fields;
-            fieldsAreSharedWithParent = true;
+        BitSet getReadFirstFields() {
+            return readFirstFields;
         }
 
         /**
-         * creates a BlockState consisting of the next basic block to parse, and
-         * what fields are to be checked
+         * get the fields accessed anywhere in the block
          *
-         * @param bb
-         *            the basic block to parse
-         * @param the
-         *            basic block to copy from
+         * @return the ordinals of the fields accessed
          */
-        public BlockState(final BasicBlock bb, BlockState parentBlockState) {
-            basicBlock = bb;
-            uncheckedFields = parentBlockState.uncheckedFields;
-            fieldsAreSharedWithParent = true;
+        BitSet getAccessedFields() {
+            return accessedFields;
         }
 
         /**
-         * get the basic block to parse
+         * get the instructions of the block with effects beyond the dataflow
          *
-         * @return the basic block
+         * @return the effects in instruction order
          */
-        public BasicBlock getBasicBlock() {
-            return basicBlock;
+        List<BlockEffect> getEffects() {
+            return effects;
         }
 
         /**
-         * returns the number of unchecked fields
+         * adds an instruction with an effect, sharing the set of fields
+         * accessed before it with the previous effect when no field was first
+         * accessed in between
          *
-         * @return the number of unchecked fields
+         * @param ih
+         *            the instruction with the effect
+         * @param accessedBefore
+         *            the fields accessed before the previous effect, or null if
+         *            that set is out of date
+         * @return the fields accessed before this effect
          */
-        public int getUncheckedFieldSize() {
-            return (uncheckedFields == null) ? 0 : uncheckedFields.size();
+        BitSet addEffect(InstructionHandle ih, BitSet accessedBefore) {
+            BitSet before = (accessedBefore == null) ? (BitSet) accessedFields.clone() : accessedBefore;
+            if (effects.isEmpty()) {
+                effects = new ArrayList<BlockEffect>();
+            }
+            effects.add(new BlockEffect(ih, before));
+            return before;
         }
 
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * an instruction of a basic block with an effect beyond the dataflow. As
+     * nothing is looked at once no fields are left to check, the effect only
+     * applies when some field entering the block is still unchecked at the
+     * instruction.
+     */
+    private static class BlockEffect {
+        private final InstructionHandle handle;
+        private final BitSet accessedBefore;
+
         /**
-         * return the field from the set of unchecked fields if this occurs make
-         * a copy of the set on write to reduce memory usage
+         * creates an effect for an instruction
          *
-         * @return whether the object was removed.
+         * @param ih
+         *            the instruction
+         * @param fields
+         *            the fields accessed in the block before the instruction
          */
-        public boolean removeUncheckedField(String field) {
-            if ((uncheckedFields != null) && uncheckedFields.contains(field)) {
-                if (uncheckedFields.size() == 1) {
-                    uncheckedFields = null;
-                    fieldsAreSharedWithParent = false;
-                    return true;
-                }
+        BlockEffect(InstructionHandle ih, BitSet fields) {
+            handle = ih;
+            accessedBefore = fields;
+        }
 
-                if (fieldsAreSharedWithParent) {
-                    uncheckedFields = new HashSet<String>(uncheckedFields);
-                    fieldsAreSharedWithParent = false;
-                    uncheckedFields.remove(field);
-                } else {
-                    uncheckedFields.remove(field);
-                }
+        /**
+         * get the instruction with the effect
+         *
+         * @return the instruction handle
+         */
+        InstructionHandle getHandle() {
+            return handle;
+        }
 
-                return true;
+        /**
+         * returns whether a field unchecked on block entry is still unchecked
+         * at this instruction
+         *
+         * @param entryFields
+         *            the unchecked fields on block entry
+         * @return whether the effect applies
+         */
+        boolean isReached(BitSet entryFields) {
+            for (int f = entryFields.nextSetBit(0); f >= 0; f = entryFields.nextSetBit(f + 1)) {
+                if (!accessedBefore.get(f)) {
+                    return true;
+                }
             }
             return false;
         }
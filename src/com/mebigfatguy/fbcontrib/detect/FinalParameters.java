@@ -35,12 +35,12 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -52,7 +52,7 @@ import edu.umd.cs.findbugs.ba.SourceFinder;
  * document this, and to perhaps help the jvm optimize the invocation of this
  * method, you should consider defining these parameters as final.
  */
-public class FinalParameters extends BytecodeScanningDetector {
+public class FinalParameters extends ScopedBytecodeScanningDetector {
     private final BugReporter bugReporter;
     private BitSet changedParms;
     private String methodName;
@@ -25,9 +25,11 @@ import java.util.Set;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.generic.Type;
 
+import com.mebigfatguy.fbcontrib.utils.LoopNesting;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 
 /**
  * looks for methods that use floating point indexes for loops. Since floating
@@ -35,13 +37,14 @@ import edu.umd.cs.findbugs.BytecodeScanningDetector;
  * loop causing hard to find problems. It is usually better to use integer
  * indexing, and calculating the correct floating point value from the index.
  */
-public class FloatingPointLoops extends BytecodeScanningDetector {
+public class FloatingPointLoops extends ScopedBytecodeScanningDetector {
     enum State {
         SAW_LOAD, SAW_CMPX, SAW_IFX, SAW_STORE
     }
 
     BugReporter bugReporter;
     private Set<FloatForLoop> forLoops = new HashSet<FloatForLoop>(5);
+    private LoopNesting loopNesting;
 
     /**
      * constructs a FPL detector given the reporter to report bugs on
@@ -54,16 +57,21 @@ public class FloatingPointLoops extends BytecodeScanningDetector {
     }
 
     /**
-     * implements the visitor to clear the forLoops set
+     * implements the visitor to clear the forLoops set, for methods that have
+     * loops
      * 
      * @param obj
      *            the context object for the currently parsed code block
      */
     @Override
     public void visitCode(Code obj) {
-        forLoops = new HashSet<FloatForLoop>();
-        super.visitCode(obj);
-        forLoops = null;
+        loopNesting = LoopNesting.getLoopNesting(getClassContext(), getMethod());
+        if (loopNesting.hasLoops()) {
+            forLoops = new HashSet<FloatForLoop>();
+            super.visitCode(obj);
+            forLoops = null;
+        }
+        loopNesting = null;
     }
 
     /**
@@ -82,6 +90,9 @@ public class FloatingPointLoops extends BytecodeScanningDetector {
             }
         }
 
+        if (!loopNesting.isLoopHeader(getPC()))
+            return;
+
         if ((seen == FLOAD) || (seen == DLOAD))
             forLoops.add(new FloatForLoop(getRegisterOperand(), getPC()));
         else if ((seen >= FLOAD_0) && (seen <= FLOAD_3))
@@ -33,13 +33,15 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.FieldAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
@@ -52,7 +54,9 @@ import edu.umd.cs.findbugs.ba.XMethod;
 /**
  * looks for executors that are never shutdown, which will not allow the application to terminate
  */
-public class HangingExecutors extends BytecodeScanningDetector {
+public class HangingExecutors extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(HangingExecutors.class, Prescreen.prefixes("java/util/concurrent/"));
 
     private static final Set<String> hangableSig = UnmodifiableSet.create("Ljava/util/concurrent/ExecutorService;",
             "Ljava/util/concurrent/AbstractExecutorService;", "Ljava/util/concurrent/ForkJoinPool;", "Ljava/util/concurrent/ScheduledThreadPoolExecutor;",
@@ -63,7 +67,8 @@ public class HangingExecutors extends BytecodeScanningDetector {
     private final BugReporter bugReporter;
     private Map<XField, AnnotationPriority> hangingFieldCandidates;
     private Map<XField, Integer> exemptExecutors;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private String methodName;
 
     private final LocalHangingExecutor localHEDetector;
@@ -82,6 +87,10 @@ public class HangingExecutors extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (!PRESCREEN.acceptClass(classContext)) {
+            return;
+        }
+
         localHEDetector.visitClassContext(classContext);
         try {
             hangingFieldCandidates = new HashMap<XField, AnnotationPriority>();
@@ -89,13 +98,13 @@ public class HangingExecutors extends BytecodeScanningDetector {
             parseFieldsForHangingCandidates(classContext);
 
             if (!hangingFieldCandidates.isEmpty()) {
-                stack = new OpcodeStack();
                 super.visitClassContext(classContext);
 
                 reportHangingExecutorFieldBugs();
             }
         } finally {
             stack = null;
+            snapshots = null;
             hangingFieldCandidates = null;
             exemptExecutors = null;
         }
@@ -132,10 +141,11 @@ public class HangingExecutors extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
         exemptExecutors.clear();
 
         if (!hangingFieldCandidates.isEmpty()) {
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
         }
     }
@@ -164,7 +174,7 @@ public class HangingExecutors extends BytecodeScanningDetector {
             return;
         }
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if ((seen == INVOKEVIRTUAL) || (seen == INVOKEINTERFACE)) {
                 String sig = getSigConstantOperand();
@@ -196,13 +206,13 @@ public class HangingExecutors extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
     private void lookForCustomThreadFactoriesInConstructors(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
             if (seen == PUTFIELD) {
                 XField f = getXFieldOperand();
                 if ((f != null) && hangableSig.contains(f.getSignature())) {
@@ -227,7 +237,7 @@ public class HangingExecutors extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
 
     }
@@ -22,10 +22,12 @@ package com.mebigfatguy.fbcontrib.detect;
 import java.util.Set;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * looks for problems surrounding use of HttpRequests from the Apache
@@ -34,7 +36,9 @@ import edu.umd.cs.findbugs.BugReporter;
  */
 public class HttpClientProblems extends MissingMethodsDetector {
 
-    private static Set<String> httpRequestClasses = UnmodifiableSet.create(
+    private static final Prescreen PRESCREEN = Prescreen.register(HttpClientProblems.class, Prescreen.prefixes("org/apache/http/client/methods/"));
+
+    private static final Set<String> httpRequestClasses = UnmodifiableSet.create(
         "org.apache.http.client.methods.HttpGet",
         "org.apache.http.client.methods.HttpPut",
         "org.apache.http.client.methods.HttpDelete",
@@ -42,13 +46,13 @@ public class HttpClientProblems extends MissingMethodsDetector {
         "org.apache.http.client.methods.HttpPatch"
     );
 
-    private static Set<String> resetMethods = UnmodifiableSet.create(
+    private static final Set<String> resetMethods = UnmodifiableSet.create(
         "reset",
         "releaseConnection"
     );
     
     // Any methods that should not be treated as a "will call a reset method"
-    private static Set<String> whiteListMethods = UnmodifiableSet.create(
+    private static final Set<String> whiteListMethods = UnmodifiableSet.create(
         "execute",
         "fatal",
         "error",
@@ -65,6 +69,19 @@ public class HttpClientProblems extends MissingMethodsDetector {
         super(bugReporter);
     }
 
+    /**
+     * implements the visitor to skip classes that do not use apache HttpClient requests
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        if (PRESCREEN.acceptClass(classContext)) {
+            super.visitClassContext(classContext);
+        }
+    }
+
     @Override
     protected BugInstance makeFieldBugInstance() {
         return new BugInstance(this, BugType.HCP_HTTP_REQUEST_RESOURCES_NOT_FREED_FIELD.name(), NORMAL_PRIORITY);
@@ -27,12 +27,14 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -41,14 +43,14 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for various issues around input/output/streaming library use
  */
 @CustomUserValue
-public class IOIssues extends BytecodeScanningDetector {
+public class IOIssues extends ScopedBytecodeScanningDetector {
 
     enum IOIUserValue {
         BUFFER, READER
     };
 
     private static final String ANY_PARMS = "(*)";
-    private static Set<FQMethod> COPY_METHODS = UnmodifiableSet.create(
+    private static final Set<FQMethod> COPY_METHODS = UnmodifiableSet.create(
     //@formatter:off
             new FQMethod("java.nio.file.Files", "copy", ANY_PARMS),
             new FQMethod("org.apache.commons.io.IOUtils", "copy", ANY_PARMS),
@@ -69,16 +71,6 @@ public class IOIssues extends BytecodeScanningDetector {
     //@formatter:on
     );
 
-    private static JavaClass READER_CLASS;
-
-    static {
-        try {
-            READER_CLASS = Repository.lookupClass("java.io.Reader");
-        } catch (ClassNotFoundException cnfe) {
-            READER_CLASS = null;
-        }
-    }
-
     private BugReporter bugReporter;
     private OpcodeStack stack;
 
@@ -144,7 +136,7 @@ public class IOIssues extends BytecodeScanningDetector {
                             uvSawBuffer = IOIUserValue.BUFFER;
                         } else {
                             JavaClass cls = Repository.lookupClass(clsName);
-                            if (cls.instanceOf(READER_CLASS)) {
+                            if (TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.READER.lookupClass())) {
                                 uvSawBuffer = IOIUserValue.READER;
                             }
                         }
@@ -21,12 +21,12 @@ package com.mebigfatguy.fbcontrib.detect;
 import org.apache.bcel.classfile.Code;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
-import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * looks for java.util.Properties use where values other than String are placed
@@ -36,10 +36,10 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * original Properties class designers to derive from Hashtable, rather than
  * using aggregation.
  */
-public class ImproperPropertiesUse extends BytecodeScanningDetector {
+public class ImproperPropertiesUse extends ScopedBytecodeScanningDetector {
 
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
 
     /**
      * constructs a IPU detector given the reporter to report bugs on
@@ -52,31 +52,19 @@ public class ImproperPropertiesUse extends BytecodeScanningDetector {
     }
 
     /**
-     * implements the listener to set up and tear down the opcode stack
-     * 
-     * @param classContext
-     *            the context object of the currently parsed class
-     */
-    @Override
-    public void visitClassContext(ClassContext classContext) {
-        try {
-            stack = new OpcodeStack();
-            super.visitClassContext(classContext);
-        } finally {
-            stack = null;
-        }
-    }
-
-    /**
-     * implements the visitor to reset the opcode stack
+     * implements the visitor to fetch the shared opcode stack snapshots for this method
      * 
      * @param obj
      *            the context object for the currently parsed code block
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
-        super.visitCode(obj);
+        try {
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            super.visitCode(obj);
+        } finally {
+            snapshots = null;
+        }
     }
 
     /**
@@ -90,36 +78,31 @@ public class ImproperPropertiesUse extends BytecodeScanningDetector {
 
     @Override
     public void sawOpcode(int seen) {
-        try {
-            stack.precomputation(this);
-
-            if (seen == INVOKEVIRTUAL) {
-                String clsName = getClassConstantOperand();
-                if ("java/util/Properties".equals(clsName)) {
-                    String methodName = getNameConstantOperand();
-                    if ("put".equals(methodName)) {
-                        String sig = getSigConstantOperand();
-                        if ("(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;".equals(sig)) {
-                            if (stack.getStackDepth() >= 3) {
-                                OpcodeStack.Item valueItem = stack.getStackItem(0);
-                                String valueSig = valueItem.getSignature();
-                                if ("Ljava/lang/String;".equals(valueSig)) {
-                                    bugReporter.reportBug(new BugInstance(this, BugType.IPU_IMPROPER_PROPERTIES_USE_SETPROPERTY.name(), LOW_PRIORITY)
-                                            .addClass(this).addMethod(this).addSourceLine(this));
-                                } else if (!"Ljava/lang/Object;".equals(valueSig)) {
-                                    bugReporter.reportBug(new BugInstance(this, BugType.IPU_IMPROPER_PROPERTIES_USE.name(), NORMAL_PRIORITY).addClass(this)
-                                            .addMethod(this).addSourceLine(this));
-                                } else {
-                                    bugReporter.reportBug(new BugInstance(this, BugType.IPU_IMPROPER_PROPERTIES_USE_SETPROPERTY.name(), NORMAL_PRIORITY)
-                                            .addClass(this).addMethod(this).addSourceLine(this));
-                                }
+        if (seen == INVOKEVIRTUAL) {
+            String clsName = getClassConstantOperand();
+            if ("java/util/Properties".equals(clsName)) {
+                String methodName = getNameConstantOperand();
+                if ("put".equals(methodName)) {
+                    String sig = getSigConstantOperand();
+                    if ("(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;".equals(sig)) {
+                        OpcodeStackSnapshots.Snapshot stack = snapshots.before(getPC());
+                        if (stack.getStackDepth() >= 3) {
+                            OpcodeStack.Item valueItem = stack.getStackItem(0);
+                            String valueSig = valueItem.getSignature();
+                            if ("Ljava/lang/String;".equals(valueSig)) {
+                                bugReporter.reportBug(new BugInstance(this, BugType.IPU_IMPROPER_PROPERTIES_USE_SETPROPERTY.name(), LOW_PRIORITY)
+                                        .addClass(this).addMethod(this).addSourceLine(this));
+                            } else if (!"Ljava/lang/Object;".equals(valueSig)) {
+                                bugReporter.reportBug(new BugInstance(this, BugType.IPU_IMPROPER_PROPERTIES_USE.name(), NORMAL_PRIORITY).addClass(this)
+                                        .addMethod(this).addSourceLine(this));
+                            } else {
+                                bugReporter.reportBug(new BugInstance(this, BugType.IPU_IMPROPER_PROPERTIES_USE_SETPROPERTY.name(), NORMAL_PRIORITY)
+                                        .addClass(this).addMethod(this).addSourceLine(this));
                             }
                         }
                     }
                 }
             }
-        } finally {
-            stack.sawOpcode(this, seen);
         }
     }
 }
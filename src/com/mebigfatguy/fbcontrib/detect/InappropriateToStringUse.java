@@ -29,13 +29,13 @@ import org.apache.bcel.generic.Type;
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -49,7 +49,7 @@ import edu.umd.cs.findbugs.ba.XMethod;
  * should be relied on, depending on it's format is dangerous.
  */
 @CustomUserValue
-public class InappropriateToStringUse extends BytecodeScanningDetector {
+public class InappropriateToStringUse extends ScopedBytecodeScanningDetector {
 
     private static final Set<String> validToStringClasses = UnmodifiableSet.create(
             "java/lang/Object", // too many fps
@@ -78,6 +78,7 @@ public class InappropriateToStringUse extends BytecodeScanningDetector {
 
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Map<Integer, String> toStringRegisters;
     private String packageName;
 
@@ -191,9 +192,9 @@ public class InappropriateToStringUse extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (methodPackage != null) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item item = stack.getStackItem(0);
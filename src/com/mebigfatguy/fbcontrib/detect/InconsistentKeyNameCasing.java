@@ -28,7 +28,11 @@ import java.util.Map;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.generic.Type;
 
+import com.mebigfatguy.fbcontrib.utils.DetectorProfiler;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.WholeProgramDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
@@ -40,9 +44,10 @@ import edu.umd.cs.findbugs.ba.ClassContext;
 /**
  * looks for calls to HttpRequest.getParameter with parameters of the same name with different cases like 'id' and 'Id'.
  */
-public class InconsistentKeyNameCasing extends BytecodeScanningDetector {
+public class InconsistentKeyNameCasing extends BytecodeScanningDetector implements WholeProgramDetector {
     private static final String HTTP_SESSION = "javax/servlet/http/HttpSession";
     private static final String HTTP_SERVLET_REQUEST = "javax/servlet/http/HttpServletRequest";
+    private static final Prescreen PRESCREEN = Prescreen.register(InconsistentKeyNameCasing.class, Prescreen.prefixes(HTTP_SESSION, HTTP_SERVLET_REQUEST));
     private static final String GET_ATTRIBUTE = "getAttribute";
     private static final String SET_ATTRIBUTE = "setAttribute";
     private static final String GET_PARAMETER = "getParameter";
@@ -65,7 +70,8 @@ public class InconsistentKeyNameCasing extends BytecodeScanningDetector {
     }
 
     BugReporter bugReporter;
-    OpcodeStack stack;
+    OpcodeStackSnapshots snapshots;
+    OpcodeStackSnapshots.Snapshot stack;
     Map<KeyType, Map<String, Map<String, List<SourceInfo>>>> parmInfo;
 
     /**
@@ -89,11 +95,15 @@ public class InconsistentKeyNameCasing extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (!PRESCREEN.acceptClass(classContext)) {
+            return;
+        }
+
         try {
-            stack = new OpcodeStack();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -105,7 +115,8 @@ public class InconsistentKeyNameCasing extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         super.visitCode(obj);
     }
 
@@ -118,7 +129,7 @@ public class InconsistentKeyNameCasing extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (seen == INVOKEINTERFACE) {
                 KeyType type = isKeyAccessMethod(seen);
@@ -149,7 +160,7 @@ public class InconsistentKeyNameCasing extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -158,28 +169,33 @@ public class InconsistentKeyNameCasing extends BytecodeScanningDetector {
      */
     @Override
     public void report() {
-        for (Map.Entry<KeyType, Map<String, Map<String, List<SourceInfo>>>> entry : parmInfo.entrySet()) {
-            KeyType type = entry.getKey();
-            Map<String, Map<String, List<SourceInfo>>> typeMap = entry.getValue();
-
-            for (Map<String, List<SourceInfo>> parmCaseInfo : typeMap.values()) {
-                if (parmCaseInfo.size() > 1) {
-                    BugInstance bi = new BugInstance(this, type.getDescription(), NORMAL_PRIORITY);
-
-                    for (Map.Entry<String, List<SourceInfo>> sourceInfos : parmCaseInfo.entrySet()) {
-                        for (SourceInfo sourceInfo : sourceInfos.getValue()) {
-                            bi.addClass(sourceInfo.clsName);
-                            bi.addMethod(sourceInfo.clsName, sourceInfo.methodName, sourceInfo.signature, sourceInfo.isStatic);
-                            bi.addSourceLine(sourceInfo.srcLine);
-                            bi.addString(sourceInfos.getKey());
+        DetectorProfiler.startReport(this);
+        try {
+            for (Map.Entry<KeyType, Map<String, Map<String, List<SourceInfo>>>> entry : parmInfo.entrySet()) {
+                KeyType type = entry.getKey();
+                Map<String, Map<String, List<SourceInfo>>> typeMap = entry.getValue();
+
+                for (Map<String, List<SourceInfo>> parmCaseInfo : typeMap.values()) {
+                    if (parmCaseInfo.size() > 1) {
+                        BugInstance bi = new BugInstance(this, type.getDescription(), NORMAL_PRIORITY);
+
+                        for (Map.Entry<String, List<SourceInfo>> sourceInfos : parmCaseInfo.entrySet()) {
+                            for (SourceInfo sourceInfo : sourceInfos.getValue()) {
+                                bi.addClass(sourceInfo.clsName);
+                                bi.addMethod(sourceInfo.clsName, sourceInfo.methodName, sourceInfo.signature, sourceInfo.isStatic);
+                                bi.addSourceLine(sourceInfo.srcLine);
+                                bi.addString(sourceInfos.getKey());
+                            }
                         }
-                    }
 
-                    bugReporter.reportBug(bi);
+                        bugReporter.reportBug(bi);
+                    }
                 }
             }
+            parmInfo.clear();
+        } finally {
+            DetectorProfiler.endReport(this);
         }
-        parmInfo.clear();
     }
 
     /**
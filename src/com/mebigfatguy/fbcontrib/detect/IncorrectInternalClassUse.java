@@ -26,19 +26,20 @@ import org.apache.bcel.classfile.ConstantPool;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * looks for classes that use objects from com.sun.xxx packages. As these are
  * internal to sun and subject to change, this should not be done.
  */
-public class IncorrectInternalClassUse implements Detector {
+public class IncorrectInternalClassUse extends ScopedDetector {
     private final BugReporter bugReporter;
 
     private static final Set<String> internalPackages = UnmodifiableSet.create(
@@ -57,6 +58,8 @@ public class IncorrectInternalClassUse implements Detector {
         "org/apache/xerces/xs/",
         "org/apache/xalan/extensions"
     );
+
+    private static final Prescreen PRESCREEN = Prescreen.register(IncorrectInternalClassUse.class, internalPackages);
     
     /**
      * constructs a IICU detector given the reporter to report bugs on
@@ -78,6 +81,10 @@ public class IncorrectInternalClassUse implements Detector {
      */
     @Override
     public void visitClassContext(ClassContext context) {
+        if (!PRESCREEN.acceptClass(context)) {
+            return;
+        }
+
         JavaClass cls = context.getJavaClass();
         if (!isInternal(cls.getClassName())) {
             ConstantPool pool = cls.getConstantPool();
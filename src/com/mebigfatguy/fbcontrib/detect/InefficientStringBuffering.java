@@ -24,13 +24,13 @@ import org.apache.bcel.classfile.ConstantString;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -39,13 +39,14 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for appending strings inside of calls to StringBuffer or StringBuilder append.
  */
 @CustomUserValue
-public class InefficientStringBuffering extends BytecodeScanningDetector {
+public class InefficientStringBuffering extends ScopedBytecodeScanningDetector {
     private enum AppendType {
         CLEAR, NESTED, TOSTRING
     };
 
     private BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private boolean sawLDCEmpty;
 
     /**
@@ -133,9 +134,9 @@ public class InefficientStringBuffering extends BytecodeScanningDetector {
     }
 
     private void handleOpcode(final int seen) {
-        TernaryPatcher.pre(stack, seen);
+        ternaryPatcher.pre(stack, seen);
         stack.sawOpcode(this, seen);
-        TernaryPatcher.post(stack, seen);
+        ternaryPatcher.post(stack, seen);
     }
 
     private ISBUserValue sawInvokeVirtual(ISBUserValue userValue) {
@@ -26,6 +26,7 @@ import org.apache.bcel.classfile.Code;
 
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 
@@ -40,7 +41,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * inheritance, this often is better handled through calling a single overridden
  * method.
  */
-public class InheritanceTypeChecking extends BytecodeScanningDetector {
+public class InheritanceTypeChecking extends ScopedBytecodeScanningDetector {
     private BugReporter bugReporter;
     private Set<IfStatement> ifStatements;
 
@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,11 +40,12 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -51,12 +53,16 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * Looks for jdk method calls where a parameter expects a constant value, because the api was created before enums. Reports values that are not considered valid
  * values, and may cause problems with use.
  */
-public class InvalidConstantArgument extends BytecodeScanningDetector {
+public class InvalidConstantArgument extends ScopedBytecodeScanningDetector {
 
-    private static final Map<Pattern, List<ParameterInfo<?>>> PATTERNS;
+    /**
+     * the patterns of the methods to check, by the class they are in, in the order they were added. Looking up the class first means the patterns are only
+     * run for calls to the few classes named, and then only over the name and signature of the method.
+     */
+    private static final Map<String, Map<Pattern, List<ParameterInfo<?>>>> PATTERNS;
 
     static {
-        Map<Pattern, List<ParameterInfo<?>>> patterns = new HashMap<Pattern, List<ParameterInfo<?>>>(10);
+        Map<String, Map<Pattern, List<ParameterInfo<?>>>> patterns = new HashMap<String, Map<Pattern, List<ParameterInfo<?>>>>();
         addPattern(patterns, "javax/swing/JOptionPane#showMessageDialog\\(Ljava/awt/Component;Ljava/lang/Object;Ljava/lang/String;I\\)V",
                 ParameterInfo.createIntegerParameterInfo(0, false, JOptionPane.ERROR_MESSAGE, JOptionPane.INFORMATION_MESSAGE, JOptionPane.PLAIN_MESSAGE,
                         JOptionPane.WARNING_MESSAGE));
@@ -83,15 +89,34 @@ public class InvalidConstantArgument extends BytecodeScanningDetector {
                 ParameterInfo.createIntegerParameterInfo(1, true, ResultSet.TYPE_FORWARD_ONLY, ResultSet.TYPE_SCROLL_INSENSITIVE,
                         ResultSet.TYPE_SCROLL_SENSITIVE),
                 ParameterInfo.createIntegerParameterInfo(2, true, ResultSet.CONCUR_READ_ONLY, ResultSet.CONCUR_UPDATABLE));
-        PATTERNS = Collections.<Pattern, List<ParameterInfo<?>>>unmodifiableMap(patterns);
+        PATTERNS = Collections.<String, Map<Pattern, List<ParameterInfo<?>>>>unmodifiableMap(patterns);
     }
 
-    private static void addPattern(Map<Pattern, List<ParameterInfo<?>>> patterns, String pattern, ParameterInfo<?>... info) {
-        patterns.put(Pattern.compile(pattern), Arrays.asList(info));
+    /**
+     * adds a pattern of the methods to check, of the form class#name(signature), where the class is a literal slashed class name, and the rest is a regex
+     * matched over the name and signature of the method
+     *
+     * @param patterns
+     *            the patterns collected so far, by class
+     * @param pattern
+     *            the pattern of the methods
+     * @param info
+     *            the parameters to check in calls to the methods
+     */
+    private static void addPattern(Map<String, Map<Pattern, List<ParameterInfo<?>>>> patterns, String pattern, ParameterInfo<?>... info) {
+        int hashPos = pattern.indexOf('#');
+        String clsName = pattern.substring(0, hashPos);
+        Map<Pattern, List<ParameterInfo<?>>> clsPatterns = patterns.get(clsName);
+        if (clsPatterns == null) {
+            clsPatterns = new LinkedHashMap<Pattern, List<ParameterInfo<?>>>();
+            patterns.put(clsName, clsPatterns);
+        }
+        clsPatterns.put(Pattern.compile(pattern.substring(hashPos + 1)), Arrays.asList(info));
     }
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
 
     /**
      * constructs a ICA detector given the reporter to report bugs on
@@ -111,10 +136,10 @@ public class InvalidConstantArgument extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -125,7 +150,8 @@ public class InvalidConstantArgument extends BytecodeScanningDetector {
      */
     @Override
     public void visitMethod(Method obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         super.visitMethod(obj);
     }
 
@@ -137,9 +163,13 @@ public class InvalidConstantArgument extends BytecodeScanningDetector {
             case INVOKESTATIC:
             case INVOKEINTERFACE:
             case INVOKEVIRTUAL:
+                Map<Pattern, List<ParameterInfo<?>>> clsPatterns = PATTERNS.get(getClassConstantOperand());
+                if (clsPatterns == null) {
+                    break;
+                }
                 String sig = getSigConstantOperand();
-                String mInfo = getClassConstantOperand() + '#' + getNameConstantOperand() + sig;
-                for (Map.Entry<Pattern, List<ParameterInfo<?>>> entry : PATTERNS.entrySet()) {
+                String mInfo = getNameConstantOperand() + sig;
+                for (Map.Entry<Pattern, List<ParameterInfo<?>>> entry : clsPatterns.entrySet()) {
                     Matcher m = entry.getKey().matcher(mInfo);
                     if (m.matches()) {
                         for (ParameterInfo<?> info : entry.getValue()) {
@@ -162,7 +192,7 @@ public class InvalidConstantArgument extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
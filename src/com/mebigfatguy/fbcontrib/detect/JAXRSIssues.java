@@ -28,18 +28,20 @@ import org.apache.bcel.classfile.ParameterAnnotationEntry;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * looks for various issues around use of the JAX_RS standard
  */
-public class JAXRSIssues extends PreorderVisitor implements Detector {
+public class JAXRSIssues extends ScopedPreorderDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(JAXRSIssues.class, Prescreen.prefixes("javax/ws/rs/"));
 
     private static final Set<String> METHOD_ANNOTATIONS = UnmodifiableSet.create(
             //@formatter:off
@@ -104,6 +106,10 @@ public class JAXRSIssues extends PreorderVisitor implements Detector {
     
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (!PRESCREEN.acceptClass(classContext)) {
+            return;
+        }
+
         JavaClass cls = classContext.getJavaClass();
         pathOnClass = "";
         hasClassConsumes = false;
@@ -27,12 +27,13 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -42,9 +43,12 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * database access code non portable.
  */
 @CustomUserValue
-public class JDBCVendorReliance extends BytecodeScanningDetector {
+public class JDBCVendorReliance extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(JDBCVendorReliance.class, Prescreen.prefixes("java/sql/", "javax/sql/"));
+
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Map<Integer, Integer> jdbcLocals = new HashMap<Integer, Integer>();
 
     /**
@@ -65,6 +69,10 @@ public class JDBCVendorReliance extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (!PRESCREEN.acceptClass(classContext)) {
+            return;
+        }
+
         stack = new OpcodeStack();
         jdbcLocals = new HashMap<Integer, Integer>();
         super.visitClassContext(classContext);
@@ -151,9 +159,9 @@ public class JDBCVendorReliance extends BytecodeScanningDetector {
                     tosIsJDBC = true;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (tosIsJDBC) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item itm = stack.getStackItem(0);
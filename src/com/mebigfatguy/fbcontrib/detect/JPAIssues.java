@@ -40,10 +40,13 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -52,7 +55,10 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for various issues around the use of the Java Persistence API (JPA)
  */
 @CustomUserValue
-public class JPAIssues extends BytecodeScanningDetector {
+public class JPAIssues extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(JPAIssues.class,
+            Prescreen.prefixes("javax/persistence/", "org/springframework/transaction/"));
 
     enum JPAUserValue {
         MERGE
@@ -74,16 +80,6 @@ public class JPAIssues extends BytecodeScanningDetector {
         }
     }
 
-    private static JavaClass runtimeExceptionClass;
-
-    static {
-        try {
-            runtimeExceptionClass = Repository.lookupClass("java.lang.RuntimeException");
-        } catch (Exception e) {
-            // can't log, have no bugReporter
-        }
-    }
-
     private static final Pattern annotationClassPattern = Pattern.compile("(L[^;]+;)");
 
     private BugReporter bugReporter;
@@ -120,6 +116,10 @@ public class JPAIssues extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext clsContext) {
+        if (!PRESCREEN.acceptClass(clsContext)) {
+            return;
+        }
+
         try {
             cls = clsContext.getJavaClass();
             catalogClass(cls);
@@ -163,7 +163,7 @@ public class JPAIssues extends BytecodeScanningDetector {
                     .reportBug(new BugInstance(this, BugType.JPAI_TRANSACTION_ON_NON_PUBLIC_METHOD.name(), NORMAL_PRIORITY).addClass(this).addMethod(cls, obj));
         }
 
-        if ((methodTransType == TransactionalType.WRITE) && (runtimeExceptionClass != null)) {
+        if ((methodTransType == TransactionalType.WRITE) && (WellKnownType.RUNTIME_EXCEPTION.getJavaClass() != null)) {
             try {
                 Set<JavaClass> annotatedRollBackExceptions = getAnnotatedRollbackExceptions(obj);
                 Set<JavaClass> declaredExceptions = getDeclaredExceptions(obj);
@@ -370,7 +370,7 @@ public class JPAIssues extends BytecodeScanningDetector {
             for (JavaClass declEx : actualExceptions) {
                 boolean handled = false;
                 for (JavaClass annotEx : expectedExceptions) {
-                    if (declEx.instanceOf(annotEx) || (checkByDirectionally && annotEx.instanceOf(declEx))) {
+                    if (TypeHierarchyCache.isSubtypeOf(declEx, annotEx) || (checkByDirectionally && TypeHierarchyCache.isSubtypeOf(annotEx, declEx))) {
                         handled = true;
                         break;
                     }
@@ -415,7 +415,7 @@ public class JPAIssues extends BytecodeScanningDetector {
                         while (m.find()) {
                             String exName = m.group(1);
                             JavaClass exCls = Repository.lookupClass(exName.substring(1, exName.length() - 1));
-                            if (!exCls.instanceOf(runtimeExceptionClass)) {
+                            if (!TypeHierarchyCache.isSubtypeOf(exCls, WellKnownType.RUNTIME_EXCEPTION.lookupClass())) {
                                 rollbackExceptions.add(exCls);
                             }
                         }
@@ -448,7 +448,7 @@ public class JPAIssues extends BytecodeScanningDetector {
         Set<JavaClass> exceptions = new HashSet<JavaClass>();
         for (String en : et.getExceptionNames()) {
             JavaClass exCls = Repository.lookupClass(en);
-            if (!exCls.instanceOf(runtimeExceptionClass)) {
+            if (!TypeHierarchyCache.isSubtypeOf(exCls, WellKnownType.RUNTIME_EXCEPTION.lookupClass())) {
                 exceptions.add(exCls);
             }
         }
@@ -28,12 +28,13 @@ import org.apache.bcel.classfile.Code;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -46,7 +47,9 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * dispose them as soon as possible
  */
 @CustomUserValue
-public class LingeringGraphicsObjects extends BytecodeScanningDetector {
+public class LingeringGraphicsObjects extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(LingeringGraphicsObjects.class, Prescreen.prefixes("java/awt/"));
 
     private static final Set<FQMethod> GRAPHICS_PRODUCERS;
     private static final Set<FQMethod> GRAPHICS_DISPOSERS;
@@ -65,6 +68,7 @@ public class LingeringGraphicsObjects extends BytecodeScanningDetector {
 
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Map<Integer, Integer> graphicsRegs; // reg->pc
 
     public LingeringGraphicsObjects(BugReporter bugReporter) {
@@ -78,6 +82,10 @@ public class LingeringGraphicsObjects extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (!PRESCREEN.acceptClass(classContext)) {
+            return;
+        }
+
         try {
             stack = new OpcodeStack();
             graphicsRegs = new HashMap<Integer, Integer>(5);
@@ -167,9 +175,9 @@ public class LingeringGraphicsObjects extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (sawNewGraphicsAt != null) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item item = stack.getStackItem(0);
@@ -18,7 +18,6 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -27,9 +26,13 @@ import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.Method;
 
+import com.mebigfatguy.fbcontrib.utils.LoopNesting;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XField;
@@ -40,10 +43,9 @@ import edu.umd.cs.findbugs.ba.XField;
  * depending List implementation, but more importantly will allow the code to be
  * converted to other collections type.
  */
-public class ListIndexedIterating extends BytecodeScanningDetector {
-    enum State {
-        SAW_NOTHING, SAW_IINC
-    }
+public class ListIndexedIterating extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(ListIndexedIterating.class, Prescreen.opcodes(Constants.IINC),
+            Prescreen.opcodes(Constants.GOTO, Constants.GOTO_W));
 
     enum LoopState {
         LOOP_NOT_STARTED, LOOP_INDEX_LOADED_FOR_TEST, LOOP_IN_BODY, LOOP_IN_BODY_WITH_GET
@@ -54,10 +56,10 @@ public class ListIndexedIterating extends BytecodeScanningDetector {
     }
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Set<ForLoop> possibleForLoops;
     private Stage stage;
-    private State state;
     private int loopReg;
     private boolean sawListSize;
 
@@ -80,11 +82,11 @@ public class ListIndexedIterating extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             possibleForLoops = new HashSet<ForLoop>();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
             possibleForLoops = null;
         }
     }
@@ -97,8 +99,7 @@ public class ListIndexedIterating extends BytecodeScanningDetector {
      * @return if the class uses synchronization
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.IINC)) && (bytecodeSet.get(Constants.GOTO) || bytecodeSet.get(Constants.GOTO_W));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -111,22 +112,71 @@ public class ListIndexedIterating extends BytecodeScanningDetector {
     public void visitCode(final Code obj) {
         Method m = getMethod();
         if (prescreen(m)) {
-            sawListSize = false;
+            possibleForLoops.clear();
+            findForLoops(obj);
+            if (possibleForLoops.isEmpty()) {
+                return;
+            }
 
-            stack.resetForMethodEntry(this);
-            state = State.SAW_NOTHING;
+            sawListSize = false;
             stage = Stage.FIND_LOOP_STAGE;
             super.visitCode(obj);
 
             if (sawListSize) {
-                stack.resetForMethodEntry(this);
-                state = State.SAW_NOTHING;
+                snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+                stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
                 stage = Stage.FIND_BUG_STAGE;
                 super.visitCode(obj);
             }
         }
     }
 
+    /**
+     * collects the loops of the method whose back edge is a goto that directly follows an increment of a register by one, as the loop register of a for
+     * loop
+     *
+     * @param obj
+     *            the code object for the currently parsed Code
+     */
+    private void findForLoops(final Code obj) {
+        LoopNesting loopNesting = LoopNesting.getLoopNesting(getClassContext(), getMethod());
+        byte[] code = obj.getCode();
+        for (LoopNesting.Loop loop : loopNesting.getLoops()) {
+            for (LoopNesting.BackEdge backEdge : loop.getBackEdges()) {
+                if (backEdge.isGoto() && (backEdge.getTarget() < backEdge.getPC())) {
+                    int reg = getIncrementedByOneReg(code, backEdge.getPrevPC());
+                    if (reg >= 0) {
+                        possibleForLoops.add(new ForLoop(backEdge.getTarget(), backEdge.getPC(), reg));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * decodes the instruction at a pc, to see if it is an IINC, or wide IINC, of a register by one
+     *
+     * @param code
+     *            the bytecode of the method
+     * @param pc
+     *            the program counter of the instruction
+     * @return the register incremented, or -1 if the instruction isn't an increment by one
+     */
+    private static int getIncrementedByOneReg(final byte[] code, final int pc) {
+        if (pc < 0) {
+            return -1;
+        }
+
+        int opcode = 0x00FF & code[pc];
+        if ((opcode == IINC) && (code[pc + 2] == 1)) {
+            return 0x00FF & code[pc + 1];
+        }
+        if ((opcode == WIDE) && ((0x00FF & code[pc + 1]) == IINC) && (code[pc + 4] == 0) && (code[pc + 5] == 1)) {
+            return ((0x00FF & code[pc + 2]) << 8) | (0x00FF & code[pc + 3]);
+        }
+        return -1;
+    }
+
     /**
      * overrides the visitor to find list indexed iterating
      * 
@@ -142,41 +192,15 @@ public class ListIndexedIterating extends BytecodeScanningDetector {
     }
 
     /**
-     * the first pass of the method opcode to collet for loops information
+     * the first pass of the method opcode to see whether the size of a list is taken
      * 
      * @param seen
      *            the currently parsed opcode
      */
     private void sawOpcodeLoop(final int seen) {
-        try {
-            stack.mergeJumps(this);
-
-            switch (state) {
-            case SAW_NOTHING:
-                if ((seen == IINC) && (getIntConstant() == 1)) {
-                    loopReg = getRegisterOperand();
-                    state = State.SAW_IINC;
-                }
-                break;
-
-            case SAW_IINC:
-                if ((seen == GOTO) || (seen == GOTO_W)) {
-                    int branchTarget = getBranchTarget();
-                    int pc = getPC();
-                    if (branchTarget < pc) {
-                        possibleForLoops.add(new ForLoop(branchTarget, pc, loopReg));
-                    }
-                }
-                state = State.SAW_NOTHING;
-                break;
-            }
-
-            if ((seen == INVOKEINTERFACE) && "java/util/List".equals(getClassConstantOperand()) && "size".equals(getNameConstantOperand())
-                    && "()I".equals(getSigConstantOperand())) {
-                sawListSize = true;
-            }
-        } finally {
-            stack.sawOpcode(this, seen);
+        if ((seen == INVOKEINTERFACE) && "java/util/List".equals(getClassConstantOperand()) && "size".equals(getNameConstantOperand())
+                && "()I".equals(getSigConstantOperand())) {
+            sawListSize = true;
         }
     }
 
@@ -188,7 +212,7 @@ public class ListIndexedIterating extends BytecodeScanningDetector {
      */
     private void sawOpcodeBug(final int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             Iterator<ForLoop> it = possibleForLoops.iterator();
             while (it.hasNext()) {
@@ -267,7 +291,7 @@ public class ListIndexedIterating extends BytecodeScanningDetector {
             }
 
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -26,11 +26,12 @@ import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.Method;
 
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -45,7 +46,9 @@ import edu.umd.cs.findbugs.ba.XMethod;
  * String.equals(Constant) bytecodes, and thus, must be accounted for
  */
 @CustomUserValue
-public class LiteralStringComparison extends BytecodeScanningDetector {
+public class LiteralStringComparison extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(LiteralStringComparison.class, Prescreen.opcodes(Constants.LDC, Constants.LDC_W));
+
     private BugReporter bugReporter;
     private OpcodeStack stack;
     /**
@@ -89,8 +92,7 @@ public class LiteralStringComparison extends BytecodeScanningDetector {
      * @return if the class loads constants
      */
     public boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.LDC) || bytecodeSet.get(Constants.LDC_W));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -34,14 +34,16 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
@@ -54,16 +56,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * parameterized interface.
  */
 @CustomUserValue
-public class LoggerOddities extends BytecodeScanningDetector {
-
-    private static JavaClass THROWABLE_CLASS;
-    static {
-        try {
-            THROWABLE_CLASS = Repository.lookupClass("java/lang/Throwable");
-        } catch (ClassNotFoundException cnfe) {
-            THROWABLE_CLASS = null;
-        }
-    }
+public class LoggerOddities extends ScopedBytecodeScanningDetector {
 
     private static final Set<String> LOGGER_METHODS = UnmodifiableSet.create(
         "trace",
@@ -79,7 +72,9 @@ public class LoggerOddities extends BytecodeScanningDetector {
 
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private String nameOfThisClass;
+    private JavaClass throwableClass;
 
     /**
      * constructs a LO detector given the reporter to report bugs on.
@@ -102,6 +97,7 @@ public class LoggerOddities extends BytecodeScanningDetector {
     public void visitClassContext(ClassContext classContext) {
         try {
             stack = new OpcodeStack();
+            throwableClass = WellKnownType.THROWABLE.getJavaClass();
             nameOfThisClass = SignatureUtils.getNonAnonymousPortion(classContext.getJavaClass().getClassName());
             super.visitClassContext(classContext);
         } finally {
@@ -156,7 +152,7 @@ public class LoggerOddities extends BytecodeScanningDetector {
                 }
             } else if (seen == INVOKESTATIC) {
                 lookForSuspectClasses();
-            } else if (((seen == INVOKEVIRTUAL) || (seen == INVOKEINTERFACE)) && (THROWABLE_CLASS != null)) {
+            } else if (((seen == INVOKEVIRTUAL) || (seen == INVOKEINTERFACE)) && (throwableClass != null)) {
                 String mthName = getNameConstantOperand();
                 if ("getName".equals(mthName)) {
                     if (stack.getStackDepth() >= 1) {
@@ -170,7 +166,7 @@ public class LoggerOddities extends BytecodeScanningDetector {
                 } else if ("getMessage".equals(mthName)) {
                     String callingClsName = getClassConstantOperand();
                     JavaClass cls = Repository.lookupClass(callingClsName);
-                    if (cls.instanceOf(THROWABLE_CLASS)) {
+                    if (TypeHierarchyCache.isSubtypeOf(cls, throwableClass)) {
                         if (stack.getStackDepth() > 0) {
                             OpcodeStack.Item exItem = stack.getStackItem(0);
                             exMessageReg = exItem.getRegisterNumber();
@@ -222,9 +218,9 @@ public class LoggerOddities extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
 
             if (stack.getStackDepth() > 0) {
                 OpcodeStack.Item item = stack.getStackItem(0);
@@ -266,7 +262,7 @@ public class LoggerOddities extends BytecodeScanningDetector {
             } else if ("(Ljava/lang/Object;)V".equals(sig)) {
                 if (stack.getStackDepth() > 0) {
                     final JavaClass clazz = stack.getStackItem(0).getJavaClass();
-                    if ((clazz != null) && clazz.instanceOf(THROWABLE_CLASS)) {
+                    if ((clazz != null) && TypeHierarchyCache.isSubtypeOf(clazz, throwableClass)) {
                         bugReporter.reportBug(new BugInstance(this, BugType.LO_LOGGER_LOST_EXCEPTION_STACK_TRACE.name(), NORMAL_PRIORITY).addClass(this)
                                 .addMethod(this).addSourceLine(this));
                     }
@@ -476,7 +472,7 @@ public class LoggerOddities extends BytecodeScanningDetector {
                 if (sig.startsWith("L")) {
                     String name = SignatureUtils.stripSignature(sig);
                     JavaClass cls = Repository.lookupClass(name);
-                    if (cls.instanceOf(THROWABLE_CLASS))
+                    if (TypeHierarchyCache.isSubtypeOf(cls, throwableClass))
                         return true;
                 } else if (sig.startsWith("[")) {
                     Integer sz = (Integer) item.getUserValue();
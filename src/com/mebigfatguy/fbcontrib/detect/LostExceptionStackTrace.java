@@ -19,7 +19,6 @@
 package com.mebigfatguy.fbcontrib.detect;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -39,14 +38,17 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -58,22 +60,13 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * and fixing errors difficult.
  */
 @CustomUserValue
-public class LostExceptionStackTrace extends BytecodeScanningDetector {
-    private static JavaClass throwableClass;
-    private static JavaClass assertionClass;
-
-    static {
-        try {
-            throwableClass = Repository.lookupClass("java/lang/Throwable");
-            assertionClass = Repository.lookupClass("java/lang/AssertionError");
-        } catch (ClassNotFoundException cnfe) {
-            throwableClass = null;
-            assertionClass = null;
-        }
-    }
+public class LostExceptionStackTrace extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(LostExceptionStackTrace.class, Prescreen.opcodes(Constants.ATHROW));
 
     private final BugReporter bugReporter;
+    private JavaClass throwableClass;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private CodeException[] exceptions;
     private Set<CatchInfo> catchInfos;
     private Map<Integer, Boolean> exReg;
@@ -98,6 +91,7 @@ public class LostExceptionStackTrace extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
+            throwableClass = WellKnownType.THROWABLE.getJavaClass();
             if (throwableClass != null && !isPre14Class(classContext.getJavaClass())) {
                 stack = new OpcodeStack();
                 catchInfos = new HashSet<CatchInfo>();
@@ -131,8 +125,7 @@ public class LostExceptionStackTrace extends BytecodeScanningDetector {
             return false;
         }
 
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return bytecodeSet != null && bytecodeSet.get(Constants.ATHROW);
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -214,13 +207,13 @@ public class LostExceptionStackTrace extends BytecodeScanningDetector {
                             if (Values.CONSTRUCTOR.equals(getNameConstantOperand())) {
                                 String className = getClassConstantOperand();
                                 JavaClass exClass = Repository.lookupClass(className);
-                                if (exClass.instanceOf(throwableClass)) {
+                                if (TypeHierarchyCache.isSubtypeOf(exClass, throwableClass)) {
                                     String sig = getSigConstantOperand();
                                     if (sig.indexOf("Exception") >= 0 || sig.indexOf("Throwable") >= 0 || sig.indexOf("Error") >= 0) {
                                         markAsValid = true;
                                         break;
                                     }
-                                    if (exClass.instanceOf(assertionClass)) {
+                                    if (TypeHierarchyCache.isSubtypeOf(exClass, WellKnownType.ASSERTION_ERROR.lookupClass())) {
                                         // just ignore LEST for AssertionErrors
                                         markAsValid = true;
                                         break;
@@ -233,7 +226,7 @@ public class LostExceptionStackTrace extends BytecodeScanningDetector {
                             if ("initCause".equals(getNameConstantOperand())) {
                                 String className = getClassConstantOperand();
                                 JavaClass exClass = Repository.lookupClass(className);
-                                if (exClass.instanceOf(throwableClass)) {
+                                if (TypeHierarchyCache.isSubtypeOf(exClass, throwableClass)) {
                                     if (stack.getStackDepth() > 1) {
                                         OpcodeStack.Item itm = stack.getStackItem(1);
                                         int reg = itm.getRegisterNumber();
@@ -301,9 +294,9 @@ public class LostExceptionStackTrace extends BytecodeScanningDetector {
 
             lastWasExitPoint = seen >= IRETURN && seen <= RETURN || seen == GOTO || seen == GOTO_W || seen == ATHROW;
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (markAsValid) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item itm = stack.getStackItem(0);
@@ -333,7 +326,7 @@ public class LostExceptionStackTrace extends BytecodeScanningDetector {
         if (returnSig.startsWith("L")) {
             returnSig = returnSig.substring(1, returnSig.length() - 1);
             JavaClass retCls = Repository.lookupClass(returnSig);
-            if (retCls.instanceOf(throwableClass)) {
+            if (TypeHierarchyCache.isSubtypeOf(retCls, throwableClass)) {
                 int numParms = Type.getArgumentTypes(sig).length;
                 if (stack.getStackDepth() >= numParms) {
                     for (int p = 0; p < numParms; p++) {
@@ -23,15 +23,18 @@ import java.util.BitSet;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.Method;
 
+import com.mebigfatguy.fbcontrib.utils.LoopNesting;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 
 /**
  * looks for methods that copy data from one array to another using a loop. It is better performing to use System.arraycopy to do such copying as this is a
  * native method.
  */
-public class ManualArrayCopy extends BytecodeScanningDetector {
+public class ManualArrayCopy extends ScopedBytecodeScanningDetector {
     enum State {
         SAW_NOTHING, SAW_ICMP, SAW_ARRAY1_LOAD, SAW_ARRAY1_INDEX, SAW_ARRAY2_LOAD, SAW_ARRAY2_INDEX, SAW_ELEM_LOAD, SAW_ELEM_STORE
     }
@@ -49,7 +52,10 @@ public class ManualArrayCopy extends BytecodeScanningDetector {
         arrayLoadOps.set(FALOAD);
     }
 
+    private static final Prescreen PRESCREEN = Prescreen.register(ManualArrayCopy.class, arrayLoadOps);
+
     private final BugReporter bugReporter;
+    private LoopNesting loopNesting;
     private State state;
     private int arrayIndexReg;
     private int loadInstruction;
@@ -72,12 +78,11 @@ public class ManualArrayCopy extends BytecodeScanningDetector {
      * @return if the class loads array contents
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && bytecodeSet.intersects(arrayLoadOps);
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
-     * implements the visitor to reset the state
+     * implements the visitor to reset the state, for methods that have loops
      *
      * @param obj
      *            the context object of the currently parsed code block
@@ -85,8 +90,15 @@ public class ManualArrayCopy extends BytecodeScanningDetector {
     @Override
     public void visitCode(Code obj) {
         if (prescreen(getMethod())) {
-            state = State.SAW_NOTHING;
-            super.visitCode(obj);
+            try {
+                loopNesting = LoopNesting.getLoopNesting(getClassContext(), getMethod());
+                if (loopNesting.hasLoops()) {
+                    state = State.SAW_NOTHING;
+                    super.visitCode(obj);
+                }
+            } finally {
+                loopNesting = null;
+            }
         }
     }
 
@@ -173,7 +185,7 @@ public class ManualArrayCopy extends BytecodeScanningDetector {
             break;
 
             case SAW_ELEM_STORE:
-                if (seen == IINC) {
+                if ((seen == IINC) && (loopNesting.getDepth(getPC()) > 0)) {
                     bugReporter.reportBug(new BugInstance(this, "MAC_MANUAL_ARRAY_COPY", NORMAL_PRIORITY).addClass(this).addMethod(this).addSourceLine(this));
                 }
                 state = State.SAW_NOTHING;
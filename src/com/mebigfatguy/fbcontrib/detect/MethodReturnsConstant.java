@@ -26,12 +26,12 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -41,9 +41,10 @@ import edu.umd.cs.findbugs.ba.XField;
  * looks for private methods that can only return one constant value. either the class should not return a value, or perhaps a branch was missed.
  */
 @CustomUserValue
-public class MethodReturnsConstant extends BytecodeScanningDetector {
+public class MethodReturnsConstant extends ScopedBytecodeScanningDetector {
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Integer returnRegister;
     private Map<Integer, Object> registerConstants;
     private Object returnConstant;
@@ -201,9 +202,9 @@ public class MethodReturnsConstant extends BytecodeScanningDetector {
             }
 
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (sawSBToString && (stack.getStackDepth() > 0)) {
                 OpcodeStack.Item item = stack.getStackItem(0);
                 item.setUserValue(Boolean.TRUE);
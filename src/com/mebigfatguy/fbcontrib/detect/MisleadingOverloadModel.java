@@ -25,20 +25,19 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XFactory;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * looks for classes that define both static and instance methods with the same
  * name. This 'overloading' is confusing as one method is instance based the
  * other class based, and points to a confusion in implementation.
  */
-public class MisleadingOverloadModel extends PreorderVisitor implements Detector {
+public class MisleadingOverloadModel extends ScopedPreorderDetector {
     enum MethodFoundType {
         Instance, Static, Both
     }
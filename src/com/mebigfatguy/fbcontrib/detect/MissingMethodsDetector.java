@@ -27,13 +27,13 @@ import org.apache.bcel.classfile.Field;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XField;
@@ -42,10 +42,11 @@ import edu.umd.cs.findbugs.ba.XField;
  * an abstract base class for WriteOnlyCollections and HttpClientProblems, looks
  * for calls that are expected to be made, but are not.
  */
-public abstract class MissingMethodsDetector extends BytecodeScanningDetector {
+public abstract class MissingMethodsDetector extends ScopedBytecodeScanningDetector {
 
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private String clsSignature;
     /** register to first allocation PC */
     private Map<Integer, Integer> localSpecialObjects;
@@ -226,9 +227,9 @@ public abstract class MissingMethodsDetector extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (userObject != null) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item item = stack.getStackItem(0);
@@ -30,11 +30,11 @@ import com.mebigfatguy.fbcontrib.collect.Statistics;
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.CollectionUtils;
 import com.mebigfatguy.fbcontrib.utils.QMethod;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -43,7 +43,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for code that attempts to modify a collection that is or may be defined as immutable. Doing so will cause exceptions at runtime.
  */
 @CustomUserValue
-public class ModifyingUnmodifiableCollection extends BytecodeScanningDetector {
+public class ModifyingUnmodifiableCollection extends ScopedBytecodeScanningDetector {
 
     private static final Map<QMethod, Integer> MODIFYING_METHODS;
 
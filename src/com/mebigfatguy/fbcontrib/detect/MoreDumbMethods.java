@@ -19,6 +19,7 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -26,18 +27,18 @@ import java.util.Set;
 import org.apache.bcel.classfile.Code;
 
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
+import com.mebigfatguy.fbcontrib.utils.OpcodeInterestDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * looks for method calls that are unsafe or might indicate bugs.
  */
-public class MoreDumbMethods extends BytecodeScanningDetector {
+public class MoreDumbMethods extends OpcodeInterestDetector {
     private static class ReportInfo {
         private final String bugPattern;
         private final int bugPriority;
@@ -143,6 +144,17 @@ public class MoreDumbMethods extends BytecodeScanningDetector {
 
     private static final Set<ReportInfo> assertableReports = UnmodifiableSet.create(new ReportInfo("MDM_LOCK_ISLOCKED", LOW_PRIORITY));
 
+    private static final BitSet INTERESTING_OPCODES = new BitSet();
+
+    static {
+        INTERESTING_OPCODES.set(INVOKEVIRTUAL);
+        INTERESTING_OPCODES.set(INVOKEINTERFACE);
+        INTERESTING_OPCODES.set(INVOKESPECIAL);
+        INTERESTING_OPCODES.set(INVOKESTATIC);
+        INTERESTING_OPCODES.set(GETSTATIC);
+        INTERESTING_OPCODES.set(IFNE);
+    }
+
     private final BugReporter bugReporter;
 
     private boolean sawAssertionDisabled;
@@ -158,6 +170,16 @@ public class MoreDumbMethods extends BytecodeScanningDetector {
         this.bugReporter = bugReporter;
     }
 
+    /**
+     * returns the opcodes this detector looks at, so that sawOpcode is only called for these
+     *
+     * @return the set of interesting opcodes
+     */
+    @Override
+    public BitSet getInterestingOpcodes() {
+        return INTERESTING_OPCODES;
+    }
+
     @Override
     public void visitClassContext(ClassContext classContext) {
         if (classContext.getJavaClass().getMajor() <= MAJOR_1_5) {
@@ -196,7 +218,7 @@ public class MoreDumbMethods extends BytecodeScanningDetector {
                 return;
             }
         } else if (seen == IFNE) {
-            if (sawAssertionDisabled) {
+            if (sawAssertionDisabled && (getPrevOpcode(1) == GETSTATIC)) {
                 assertionEnd = getBranchTarget();
             }
         }
@@ -26,19 +26,19 @@ import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedOpcodeStackDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
 /**
  * Looks for methods that pass a primitive wrapper class object, to the same
  * classes Constructor.
  */
-public class NeedlessAutoboxing extends OpcodeStackDetector {
+public class NeedlessAutoboxing extends ScopedOpcodeStackDetector {
     enum State {
         SEEN_NOTHING, SEEN_VALUE, SEEN_VALUEOFSTRING, SEEN_PARSE, SEEN_CTOR, SEEN_VALUEOFPRIMITIVE, SEEN_ICONST, SEEN_GETSTATIC
     }
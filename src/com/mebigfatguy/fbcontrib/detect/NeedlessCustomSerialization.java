@@ -18,15 +18,16 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -35,21 +36,11 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * the stream parameter. As this is the standard behavior implementing these
  * methods is not needed.
  */
-public class NeedlessCustomSerialization extends BytecodeScanningDetector {
+public class NeedlessCustomSerialization extends ScopedBytecodeScanningDetector {
     enum State {
         SEEN_NOTHING, SEEN_ALOAD1, SEEN_INVOKEVIRTUAL, SEEN_RETURN, SEEN_INVALID
     }
 
-    private static JavaClass serializableClass;
-
-    static {
-        try {
-            serializableClass = Repository.lookupClass("java/io/Serializable");
-        } catch (ClassNotFoundException cnfe) {
-            // no bugReporter here, so do nothing
-        }
-    }
-
     private BugReporter bugReporter;
     private boolean inReadObject;
     private boolean inWriteObject;
@@ -72,7 +63,8 @@ public class NeedlessCustomSerialization extends BytecodeScanningDetector {
     public void visitClassContext(ClassContext classContext) {
         try {
             JavaClass cls = classContext.getJavaClass();
-            if ((serializableClass != null) && cls.implementationOf(serializableClass)) {
+            JavaClass serializableClass = WellKnownType.SERIALIZABLE.getJavaClass();
+            if ((serializableClass != null) && TypeHierarchyCache.isSubtypeOf(cls, serializableClass)) {
                 super.visitClassContext(classContext);
             }
         } catch (ClassNotFoundException cnfe) {
@@ -23,18 +23,18 @@ import org.apache.bcel.classfile.LineNumberTable;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 
 /**
  * looks for methods that call a method to retrieve a reference to an object, to
  * use to load a constant. It is simpler and more performant to access the
  * static variable directly from the class itself.
  */
-public class NeedlessInstanceRetrieval extends BytecodeScanningDetector {
+public class NeedlessInstanceRetrieval extends ScopedBytecodeScanningDetector {
     enum State {
         SEEN_NOTHING, SEEN_INVOKE, SEEN_POP
     }
@@ -29,14 +29,16 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.FieldAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
@@ -51,33 +53,13 @@ import edu.umd.cs.findbugs.ba.XField;
  * thread safe.
  */
 @CustomUserValue
-public class NeedlessMemberCollectionSynchronization extends BytecodeScanningDetector {
-    private static JavaClass collectionClass;
-
-    static {
-        try {
-            collectionClass = Repository.lookupClass("java/util/Collection");
-        } catch (ClassNotFoundException cnfe) {
-            collectionClass = null;
-        }
-    }
-
-    private static JavaClass mapClass;
-
-    static {
-        try {
-            mapClass = Repository.lookupClass("java/util/Map");
-        } catch (ClassNotFoundException cnfe) {
-            mapClass = null;
-        }
-    }
-
-    private static Set<String> syncCollections = UnmodifiableSet.create(
+public class NeedlessMemberCollectionSynchronization extends ScopedBytecodeScanningDetector {
+    private static final Set<String> syncCollections = UnmodifiableSet.create(
             "java/util/Vector",
             "java/util/Hashtable"
     );
     
-    private static Set<String> modifyingMethods = UnmodifiableSet.create(
+    private static final Set<String> modifyingMethods = UnmodifiableSet.create(
             "add",
             "addAll",
             "addFirst",
@@ -105,9 +87,12 @@ public class NeedlessMemberCollectionSynchronization extends BytecodeScanningDet
     };
 
     private BugReporter bugReporter;
+    private JavaClass collectionClass;
+    private JavaClass mapClass;
     private Map<String, FieldInfo> collectionFields;
     private Map<Integer, String> aliases;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private State state;
     private String className;
 
@@ -131,6 +116,8 @@ public class NeedlessMemberCollectionSynchronization extends BytecodeScanningDet
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
+            collectionClass = WellKnownType.COLLECTION.getJavaClass();
+            mapClass = WellKnownType.MAP.getJavaClass();
             if ((collectionClass != null) && (mapClass != null)) {
                 collectionFields = new HashMap<String, FieldInfo>();
                 aliases = new HashMap<Integer, String>();
@@ -165,7 +152,7 @@ public class NeedlessMemberCollectionSynchronization extends BytecodeScanningDet
             if (signature.charAt(0) == 'L') {
                 try {
                     JavaClass cls = Repository.lookupClass(SignatureUtils.stripSignature(signature));
-                    if (cls.implementationOf(collectionClass) || cls.implementationOf(mapClass)) {
+                    if (TypeHierarchyCache.isSubtypeOf(cls, collectionClass) || TypeHierarchyCache.isSubtypeOf(cls, mapClass)) {
                         FieldAnnotation fa = FieldAnnotation.fromVisitedField(this);
                         collectionFields.put(fa.getFieldName(), new FieldInfo(fa));
                     }
@@ -348,9 +335,9 @@ public class NeedlessMemberCollectionSynchronization extends BytecodeScanningDet
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (isSyncCollection) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item item = stack.getStackItem(0);
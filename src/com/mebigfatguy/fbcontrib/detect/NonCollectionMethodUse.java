@@ -18,20 +18,21 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
+import java.util.BitSet;
 import java.util.Set;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
+import com.mebigfatguy.fbcontrib.utils.OpcodeInterestDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 
 /**
  * looks for method calls to collection classes where the method is not defined by the Collections interface, and an equivalent method exists in the interface.
  */
-public class NonCollectionMethodUse extends BytecodeScanningDetector {
+public class NonCollectionMethodUse extends OpcodeInterestDetector {
     private static final Set<FQMethod> oldMethods = UnmodifiableSet.create(new FQMethod("java/util/Hashtable", "contains", "(java/lang/Object)Z"),
             new FQMethod("java/util/Hashtable", "elements", "()Ljava/util/Enumeration;"),
             new FQMethod("java/util/Hashtable", "keys", "()Ljava/util/Enumeration;"), new FQMethod("java/util/Vector", "addElement", "(Ljava/lang/Object;)V"),
@@ -40,6 +41,12 @@ public class NonCollectionMethodUse extends BytecodeScanningDetector {
             new FQMethod("java/util/Vector", "removeElement", "(Ljava/lang/Object;)Z"), new FQMethod("java/util/Vector", "removeElementAt", "(I)V"),
             new FQMethod("java/util/Vector", "setElementAt", "(Ljava/lang/Object;I)V"));
 
+    private static final BitSet INTERESTING_OPCODES = new BitSet();
+
+    static {
+        INTERESTING_OPCODES.set(INVOKEVIRTUAL);
+    }
+
     private BugReporter bugReporter;
 
     /**
@@ -52,6 +59,16 @@ public class NonCollectionMethodUse extends BytecodeScanningDetector {
         this.bugReporter = bugReporter;
     }
 
+    /**
+     * returns the opcodes this detector looks at, so that sawOpcode is only called for these
+     *
+     * @return the set of interesting opcodes
+     */
+    @Override
+    public BitSet getInterestingOpcodes() {
+        return INTERESTING_OPCODES;
+    }
+
     /**
      * implements the visitor to look for method calls that are one of the old pre-collections1.2 set of methods
      *
@@ -18,34 +18,24 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.Priorities;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * looks for fields in serializable classes that are defined as both final and transient. As a transient field is not initialized when streamed, and is not
  * initialized in a constructor, it will remain null because it is defined final.
  */
-public class NonFunctionalField extends PreorderVisitor implements Detector {
-
-    private static JavaClass serializableClass;
-
-    static {
-        try {
-            serializableClass = Repository.lookupClass("java/io/Serializable");
-        } catch (ClassNotFoundException cnfe) {
-            serializableClass = null;
-        }
-    }
+public class NonFunctionalField extends ScopedPreorderDetector {
 
     private BugReporter bugReporter;
 
@@ -69,7 +59,8 @@ public class NonFunctionalField extends PreorderVisitor implements Detector {
     public void visitClassContext(ClassContext classContext) {
         try {
             JavaClass cls = classContext.getJavaClass();
-            if ((serializableClass != null) && (cls.implementationOf(serializableClass))) {
+            JavaClass serializableClass = WellKnownType.SERIALIZABLE.getJavaClass();
+            if ((serializableClass != null) && (TypeHierarchyCache.isSubtypeOf(cls, serializableClass))) {
                 Field[] fields = cls.getFields();
                 setupVisitorForClass(cls);
                 for (Field f : fields) {
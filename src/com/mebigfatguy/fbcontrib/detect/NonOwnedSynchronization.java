@@ -18,7 +18,6 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -28,13 +27,14 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -45,10 +45,13 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * by the current class and synchronization on 'this' should be avoided as well.
  */
 @CustomUserValue
-public class NonOwnedSynchronization extends BytecodeScanningDetector {
+public class NonOwnedSynchronization extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(NonOwnedSynchronization.class, Prescreen.opcodes(Constants.MONITORENTER));
+
     private static final Integer OWNED = Integer.valueOf(Integer.MAX_VALUE);
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Map<Integer, Integer> regPriorities;
 
     /**
@@ -84,8 +87,7 @@ public class NonOwnedSynchronization extends BytecodeScanningDetector {
      * @return if the class uses synchronization
      */
     public boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.MONITORENTER));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -214,9 +216,9 @@ public class NonOwnedSynchronization extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (tosIsPriority != null) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item itm = stack.getStackItem(0);
@@ -25,11 +25,11 @@ import java.util.regex.Pattern;
 import org.apache.bcel.classfile.Code;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -40,7 +40,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * this method is useless. The method call can be removed.
  */
 @CustomUserValue
-public class NonProductiveMethodCall extends BytecodeScanningDetector {
+public class NonProductiveMethodCall extends ScopedBytecodeScanningDetector {
 
     private static final Set<Pattern> IMMUTABLE_METHODS = UnmodifiableSet.create(
                 Pattern.compile(".*@toString\\(\\)Ljava/lang/String;"),
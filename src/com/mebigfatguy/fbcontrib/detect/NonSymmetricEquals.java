@@ -18,7 +18,6 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,6 +28,11 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.DetectorProfiler;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WholeProgramDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
@@ -41,10 +45,13 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * equals to compare different types, at the very least you should make sure that each class knows about each other and is able to compare themselves with each
  * other.
  */
-public class NonSymmetricEquals extends BytecodeScanningDetector {
+public class NonSymmetricEquals extends BytecodeScanningDetector implements WholeProgramDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(NonSymmetricEquals.class, Prescreen.opcodes(Constants.CHECKCAST));
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Map<String, Map<String, BugInstance>> possibleBugs = new HashMap<String, Map<String, BugInstance>>();
 
     /**
@@ -66,10 +73,10 @@ public class NonSymmetricEquals extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -86,7 +93,8 @@ public class NonSymmetricEquals extends BytecodeScanningDetector {
         String signature = m.getSignature();
 
         if ("equals".equals(name) && "(Ljava/lang/Object;)Z".equals(signature) && prescreen(m)) {
-            stack.resetForMethodEntry(this);
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
         }
     }
@@ -99,8 +107,7 @@ public class NonSymmetricEquals extends BytecodeScanningDetector {
      * @return if the class does checkcast instructions
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.CHECKCAST));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -112,7 +119,7 @@ public class NonSymmetricEquals extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (seen == CHECKCAST) {
                 if (stack.getStackDepth() > 0) {
@@ -123,7 +130,8 @@ public class NonSymmetricEquals extends BytecodeScanningDetector {
                         if (!thisCls.equals(equalsCls)) {
                             JavaClass thisJavaClass = getClassContext().getJavaClass();
                             JavaClass equalsJavaClass = Repository.lookupClass(equalsCls);
-                            boolean inheritance = thisJavaClass.instanceOf(equalsJavaClass) || equalsJavaClass.instanceOf(thisJavaClass);
+                            boolean inheritance = TypeHierarchyCache.isSubtypeOf(thisJavaClass, equalsJavaClass)
+                                    || TypeHierarchyCache.isSubtypeOf(equalsJavaClass, thisJavaClass);
 
                             BugInstance bug = new BugInstance(this, BugType.NSE_NON_SYMMETRIC_EQUALS.name(), inheritance ? LOW_PRIORITY : NORMAL_PRIORITY)
                                     .addClass(this).addMethod(this).addSourceLine(this).addString(equalsCls);
@@ -140,7 +148,7 @@ public class NonSymmetricEquals extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -149,24 +157,29 @@ public class NonSymmetricEquals extends BytecodeScanningDetector {
      */
     @Override
     public void report() {
-        for (Map.Entry<String, Map<String, BugInstance>> thisEntry : possibleBugs.entrySet()) {
+        DetectorProfiler.startReport(this);
+        try {
+            for (Map.Entry<String, Map<String, BugInstance>> thisEntry : possibleBugs.entrySet()) {
 
-            Map<String, BugInstance> equalsClassesMap = thisEntry.getValue();
-            for (Map.Entry<String, BugInstance> equalsEntry : equalsClassesMap.entrySet()) {
-                String equalsCls = equalsEntry.getKey();
+                Map<String, BugInstance> equalsClassesMap = thisEntry.getValue();
+                for (Map.Entry<String, BugInstance> equalsEntry : equalsClassesMap.entrySet()) {
+                    String equalsCls = equalsEntry.getKey();
 
-                Map<String, BugInstance> reverseEqualsClassMap = possibleBugs.get(equalsCls);
-                if (reverseEqualsClassMap == null) {
-                    bugReporter.reportBug(equalsClassesMap.values().iterator().next());
-                    break;
-                }
+                    Map<String, BugInstance> reverseEqualsClassMap = possibleBugs.get(equalsCls);
+                    if (reverseEqualsClassMap == null) {
+                        bugReporter.reportBug(equalsClassesMap.values().iterator().next());
+                        break;
+                    }
 
-                if (!reverseEqualsClassMap.containsKey(thisEntry.getKey())) {
-                    bugReporter.reportBug(equalsClassesMap.values().iterator().next());
-                    break;
+                    if (!reverseEqualsClassMap.containsKey(thisEntry.getKey())) {
+                        bugReporter.reportBug(equalsClassesMap.values().iterator().next());
+                        break;
+                    }
                 }
             }
+            possibleBugs.clear();
+        } finally {
+            DetectorProfiler.endReport(this);
         }
-        possibleBugs.clear();
     }
 }
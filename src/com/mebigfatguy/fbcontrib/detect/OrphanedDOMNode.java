@@ -27,13 +27,15 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -41,7 +43,9 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * Looks for methods that create DOM Nodes but do not add them to any DOM
  * Document.
  */
-public class OrphanedDOMNode extends BytecodeScanningDetector {
+public class OrphanedDOMNode extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(OrphanedDOMNode.class, Prescreen.prefixes("org/w3c/dom/Document"));
+
     private static final Set<String> domCreationMethods = UnmodifiableSet.create(
             "createAttribute:(Ljava/lang/String;)Lorg/w3c/dom/Attr;",
             "createAttributeNS:(Ljava/lang/String;Ljava/lang/String;)Lorg/w3c/dom/Attr;",
@@ -54,7 +58,8 @@ public class OrphanedDOMNode extends BytecodeScanningDetector {
     );
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Map<OpcodeStack.Item, Integer> nodeCreations;
     private Map<Integer, Integer> nodeStores;
 
@@ -77,13 +82,17 @@ public class OrphanedDOMNode extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (!PRESCREEN.acceptClass(classContext)) {
+            return;
+        }
+
         try {
-            stack = new OpcodeStack();
             nodeCreations = new HashMap<OpcodeStack.Item, Integer>();
             nodeStores = new HashMap<Integer, Integer>();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
             nodeCreations = null;
             nodeStores = null;
         }
@@ -97,7 +106,8 @@ public class OrphanedDOMNode extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         nodeCreations.clear();
         nodeStores.clear();
         super.visitCode(obj);
@@ -132,7 +142,7 @@ public class OrphanedDOMNode extends BytecodeScanningDetector {
         Integer itemPC = null;
 
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (seen == INVOKEINTERFACE) {
                 String className = getClassConstantOperand();
@@ -188,7 +198,7 @@ public class OrphanedDOMNode extends BytecodeScanningDetector {
 
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
             if (sawCreate) {
                 if (stack.getStackDepth() > 0)
                     nodeCreations.put(stack.getStackItem(0), itemPC);
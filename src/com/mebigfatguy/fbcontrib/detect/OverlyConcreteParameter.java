@@ -40,16 +40,19 @@ import org.apache.bcel.classfile.ParameterAnnotationEntry;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -57,7 +60,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for parameters that are defined by classes, but only use methods defined by an implemented interface or super class. Relying on concrete classes in
  * public signatures causes cohesion, and makes low impact changes more difficult.
  */
-public class OverlyConcreteParameter extends BytecodeScanningDetector {
+public class OverlyConcreteParameter extends ScopedBytecodeScanningDetector {
 
     private static final Set<String> CONVERSION_ANNOTATIONS = UnmodifiableSet.create("Ljavax/persistence/Converter;", "Ljavax/ws/rs/Consumes;");
 
@@ -68,9 +71,9 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
     private JavaClass[] constrainingClasses;
     private Map<Integer, Map<JavaClass, List<MethodInfo>>> parameterDefiners;
     private BitSet usedParameters;
-    private JavaClass objectClass;
     private JavaClass cls;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private int parmCount;
     private boolean methodSignatureIsConstrained;
     private boolean methodIsStatic;
@@ -83,12 +86,6 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
      */
     public OverlyConcreteParameter(final BugReporter bugReporter) {
         this.bugReporter = bugReporter;
-        try {
-            objectClass = Repository.lookupClass("java/lang/Object");
-        } catch (ClassNotFoundException cnfe) {
-            bugReporter.reportMissingClass(cnfe);
-            objectClass = null;
-        }
     }
 
     /**
@@ -110,7 +107,6 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
                 System.arraycopy(sups, 0, constrainingClasses, infs.length, sups.length);
                 parameterDefiners = new HashMap<Integer, Map<JavaClass, List<MethodInfo>>>();
                 usedParameters = new BitSet();
-                stack = new OpcodeStack();
                 super.visitClassContext(classContext);
             }
         } catch (ClassNotFoundException cnfe) {
@@ -120,6 +116,7 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
             parameterDefiners = null;
             usedParameters = null;
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -203,7 +200,8 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
 
             parameterDefiners.clear();
             usedParameters.clear();
-            stack.resetForMethodEntry(this);
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
 
             if (buildParameterDefiners()) {
                 super.visitCode(obj);
@@ -228,7 +226,7 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
         }
 
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if ((seen == INVOKEVIRTUAL) || (seen == INVOKESTATIC) || (seen == INVOKESPECIAL) || (seen == INVOKEINTERFACE) || (seen == INVOKEDYNAMIC)) {
                 String methodSig = getSigConstantOperand();
@@ -332,7 +330,7 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -382,7 +380,7 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
                 continue;
             }
             Map<JavaClass, List<MethodInfo>> definers = entry.getValue();
-            definers.remove(objectClass);
+            definers.remove(WellKnownType.OBJECT.getJavaClass());
             if (definers.size() > 0) {
                 String name = "";
                 LocalVariableTable lvt = getMethod().getLocalVariableTable();
@@ -577,7 +575,7 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
                 String[] throwClauseExNames = et.getExceptionNames();
                 for (String throwClauseExName : throwClauseExNames) {
                     JavaClass throwClauseEx = Repository.lookupClass(throwClauseExName);
-                    if (thrownEx.instanceOf(throwClauseEx)) {
+                    if (TypeHierarchyCache.isSubtypeOf(thrownEx, throwClauseEx)) {
                         return true;
                     }
                 }
@@ -592,7 +590,7 @@ public class OverlyConcreteParameter extends BytecodeScanningDetector {
                         if (type != 0) {
                             String catchExName = getConstantPool().getConstantString(type, Constants.CONSTANT_Class);
                             JavaClass catchException = Repository.lookupClass(catchExName);
-                            if (thrownEx.instanceOf(catchException)) {
+                            if (TypeHierarchyCache.isSubtypeOf(thrownEx, catchException)) {
                                 return true;
                             }
                         }
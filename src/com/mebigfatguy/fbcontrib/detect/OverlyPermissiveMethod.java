@@ -18,6 +18,7 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,12 +30,16 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
+import com.mebigfatguy.fbcontrib.collect.DependencyGraph;
 import com.mebigfatguy.fbcontrib.collect.MethodInfo;
 import com.mebigfatguy.fbcontrib.collect.Statistics;
 import com.mebigfatguy.fbcontrib.collect.StatisticsKey;
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.DetectorProfiler;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WholeProgramDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
@@ -47,19 +52,22 @@ import edu.umd.cs.findbugs.classfile.ClassDescriptor;
  * looks for methods that are declared more permissively than the code is using. For instance, declaring a method public, when it could just be declared
  * private.
  */
-public class OverlyPermissiveMethod extends BytecodeScanningDetector {
+public class OverlyPermissiveMethod extends BytecodeScanningDetector implements WholeProgramDetector {
 
-    private static Map<Integer, String> DECLARED_ACCESS = new HashMap<Integer, String>();
+    private static final Map<Integer, String> DECLARED_ACCESS;
 
     static {
-        DECLARED_ACCESS.put(Integer.valueOf(Constants.ACC_PRIVATE), "private");
-        DECLARED_ACCESS.put(Integer.valueOf(Constants.ACC_PROTECTED), "protected");
-        DECLARED_ACCESS.put(Integer.valueOf(Constants.ACC_PUBLIC), "public");
-        DECLARED_ACCESS.put(Integer.valueOf(0), "package private");
+        Map<Integer, String> da = new HashMap<Integer, String>();
+        da.put(Integer.valueOf(Constants.ACC_PRIVATE), "private");
+        da.put(Integer.valueOf(Constants.ACC_PROTECTED), "protected");
+        da.put(Integer.valueOf(Constants.ACC_PUBLIC), "public");
+        da.put(Integer.valueOf(0), "package private");
+        DECLARED_ACCESS = Collections.unmodifiableMap(da);
     }
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private JavaClass cls;
     private String callingPackage;
     private String callingClass;
@@ -81,11 +89,11 @@ public class OverlyPermissiveMethod extends BytecodeScanningDetector {
             ClassDescriptor cd = classContext.getClassDescriptor();
             callingClass = cd.getClassName();
             callingPackage = cd.getPackageName();
-            stack = new OpcodeStack();
             super.visitClassContext(classContext);
         } finally {
             callingPackage = null;
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -99,7 +107,8 @@ public class OverlyPermissiveMethod extends BytecodeScanningDetector {
             MethodInfo mi = Statistics.getStatistics().getMethodStatistics(cls.getClassName(), methodName, sig);
             mi.addCallingAccess(Constants.ACC_PUBLIC);
         } else if (!hasRuntimeAnnotations(m) && !isGetterSetter(methodName, sig)) {
-            stack.resetForMethodEntry(this);
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
         }
     }
@@ -107,7 +116,7 @@ public class OverlyPermissiveMethod extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             switch (seen) {
             case INVOKEVIRTUAL:
@@ -152,7 +161,7 @@ public class OverlyPermissiveMethod extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -212,42 +221,50 @@ public class OverlyPermissiveMethod extends BytecodeScanningDetector {
      */
     @Override
     public void report() {
-        for (Map.Entry<StatisticsKey, MethodInfo> entry : Statistics.getStatistics()) {
-            MethodInfo mi = entry.getValue();
+        DetectorProfiler.startReport(this);
+        try {
+            for (Map.Entry<StatisticsKey, MethodInfo> entry : Statistics.getStatistics()) {
+                MethodInfo mi = entry.getValue();
 
-            int declaredAccess = mi.getDeclaredAccess();
-            if ((declaredAccess & Constants.ACC_PRIVATE) != 0) {
-                continue;
-            }
+                int declaredAccess = mi.getDeclaredAccess();
+                if ((declaredAccess & Constants.ACC_PRIVATE) != 0) {
+                    continue;
+                }
 
-            if (mi.wasCalledPublicly() || !mi.wasCalled()) {
-                continue;
-            }
+                if (mi.wasCalledPublicly() || !mi.wasCalled()) {
+                    continue;
+                }
             
-            StatisticsKey key = entry.getKey();
+                StatisticsKey key = entry.getKey();
+                if (DependencyGraph.isOutOfScope(key.getClassName())) {
+                    continue;
+                }
 
-            String methodName = key.getMethodName();
-            if (isGetterSetter(methodName, key.getSignature())) {
-                continue;
-            }
+                String methodName = key.getMethodName();
+                if (isGetterSetter(methodName, key.getSignature())) {
+                    continue;
+                }
 
-            if (isOverlyPermissive(declaredAccess)) {
-                try {
-                    if (!isDerived(Repository.lookupClass(key.getClassName()), key)) {
+                if (isOverlyPermissive(declaredAccess)) {
+                    try {
+                        if (!isDerived(Repository.lookupClass(key.getClassName()), key)) {
 
-                        BugInstance bi = new BugInstance(this, BugType.OPM_OVERLY_PERMISSIVE_METHOD.name(), LOW_PRIORITY).addClass(key.getClassName())
-                                .addMethod(key.getClassName(), key.getMethodName(), key.getSignature(), (declaredAccess & Constants.ACC_STATIC) != 0);
+                            BugInstance bi = new BugInstance(this, BugType.OPM_OVERLY_PERMISSIVE_METHOD.name(), LOW_PRIORITY).addClass(key.getClassName())
+                                    .addMethod(key.getClassName(), key.getMethodName(), key.getSignature(), (declaredAccess & Constants.ACC_STATIC) != 0);
 
-                        String descr = String.format("- Method declared %s but could be declared %s", getDeclaredAccessValue(declaredAccess),
-                                getRequiredAccessValue(mi));
-                        bi.addString(descr);
+                            String descr = String.format("- Method declared %s but could be declared %s", getDeclaredAccessValue(declaredAccess),
+                                    getRequiredAccessValue(mi));
+                            bi.addString(descr);
 
-                        bugReporter.reportBug(bi);
+                            bugReporter.reportBug(bi);
+                        }
+                    } catch (ClassNotFoundException cnfe) {
+                        bugReporter.reportMissingClass(cnfe);
                     }
-                } catch (ClassNotFoundException cnfe) {
-                    bugReporter.reportMissingClass(cnfe);
                 }
             }
+        } finally {
+            DetectorProfiler.endReport(this);
         }
     }
 
@@ -18,8 +18,6 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.BitSet;
-
 import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.LocalVariable;
@@ -27,11 +25,12 @@ import org.apache.bcel.classfile.LocalVariableTable;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.FieldAnnotation;
 
 /**
@@ -39,7 +38,9 @@ import edu.umd.cs.findbugs.FieldAnnotation;
  * value is assigned to a class or interface higher up in the inheritance chain.
  * You only need to cast to that class or interface.
  */
-public class OverzealousCasting extends BytecodeScanningDetector {
+public class OverzealousCasting extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(OverzealousCasting.class, Prescreen.opcodes(Constants.CHECKCAST));
+
     enum State {
         SAW_NOTHING, SAW_NEXT, SAW_CHECKCAST
     }
@@ -82,8 +83,7 @@ public class OverzealousCasting extends BytecodeScanningDetector {
      * @return if the class does checkcast instructions
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.CHECKCAST));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
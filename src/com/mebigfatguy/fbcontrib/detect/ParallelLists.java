@@ -27,9 +27,11 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
 
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XField;
@@ -38,9 +40,10 @@ import edu.umd.cs.findbugs.ba.XField;
  * looks for classes that maintain two or more lists or arrays associated one-for-one through the same index to hold two or more pieces of related information.
  * It would be better to create a new class that holds all of these pieces of information, and place instances of this class in one list.
  */
-public class ParallelLists extends BytecodeScanningDetector {
+public class ParallelLists extends ScopedBytecodeScanningDetector {
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Set<String> listFields;
     private Map<Integer, String> indexToFieldMap;
 
@@ -74,12 +77,12 @@ public class ParallelLists extends BytecodeScanningDetector {
             }
 
             if (listFields.size() > 0) {
-                stack = new OpcodeStack();
                 indexToFieldMap = new HashMap<Integer, String>();
                 super.visitClassContext(classContext);
             }
         } finally {
             stack = null;
+            snapshots = null;
             indexToFieldMap = null;
         }
     }
@@ -92,7 +95,8 @@ public class ParallelLists extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(final Code obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         indexToFieldMap.clear();
         super.visitCode(obj);
     }
@@ -100,7 +104,7 @@ public class ParallelLists extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(final int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (seen == INVOKEINTERFACE) {
                 String className = getClassConstantOperand();
@@ -119,7 +123,7 @@ public class ParallelLists extends BytecodeScanningDetector {
                 checkParms();
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
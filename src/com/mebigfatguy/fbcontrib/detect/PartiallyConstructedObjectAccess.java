@@ -32,11 +32,12 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -47,9 +48,10 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * will be accessing an object that is only partially constructed, perhaps
  * causing problems.
  */
-public class PartiallyConstructedObjectAccess extends BytecodeScanningDetector {
+public class PartiallyConstructedObjectAccess extends ScopedBytecodeScanningDetector {
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Map<Method, Map<Method, SourceLineAnnotation>> methodToCalledMethods;
     private boolean reportedCtor;
     private boolean isCtor;
@@ -77,7 +79,6 @@ public class PartiallyConstructedObjectAccess extends BytecodeScanningDetector {
         try {
             JavaClass cls = classContext.getJavaClass();
             if ((cls.getAccessFlags() & Constants.ACC_FINAL) == 0) {
-                stack = new OpcodeStack();
                 methodToCalledMethods = new HashMap<Method, Map<Method, SourceLineAnnotation>>();
                 super.visitClassContext(classContext);
 
@@ -86,13 +87,13 @@ public class PartiallyConstructedObjectAccess extends BytecodeScanningDetector {
             }
         } finally {
             stack = null;
+            snapshots = null;
             methodToCalledMethods = null;
         }
     }
 
     @Override
     public void visitCode(final Code obj) {
-        stack.resetForMethodEntry(this);
         String methodName = getMethodName();
         isCtor = Values.CONSTRUCTOR.equals(methodName);
 
@@ -101,6 +102,8 @@ public class PartiallyConstructedObjectAccess extends BytecodeScanningDetector {
             methodToCalledMethods.put(m, new HashMap<Method, SourceLineAnnotation>());
             reportedCtor = false;
 
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
             if (reportedCtor || (methodToCalledMethods.get(m).isEmpty()))
                 methodToCalledMethods.remove(getMethod());
@@ -113,7 +116,7 @@ public class PartiallyConstructedObjectAccess extends BytecodeScanningDetector {
             return;
 
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if ((seen == INVOKEVIRTUAL) || (seen == INVOKEINTERFACE) || (seen == INVOKESPECIAL)) {
                 int parmCount = Type.getArgumentTypes(getSigConstantOperand()).length;
@@ -144,7 +147,7 @@ public class PartiallyConstructedObjectAccess extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -29,10 +29,11 @@ import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -42,13 +43,14 @@ import edu.umd.cs.findbugs.ba.XFactory;
  * looks for simple fields that only store one of several constant values. This
  * usually is an indication that this field should really be an enum type.
  */
-public class PoorMansEnum extends BytecodeScanningDetector {
+public class PoorMansEnum extends ScopedBytecodeScanningDetector {
 
     private BugReporter bugReporter;
     private Map<String, Set<Object>> fieldValues;
     private Map<String, Field> nameToField;
     private Map<String, SourceLineAnnotation> firstFieldUse;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
 
     public PoorMansEnum(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
@@ -68,7 +70,6 @@ public class PoorMansEnum extends BytecodeScanningDetector {
                     }
                 }
                 if (!fieldValues.isEmpty()) {
-                    stack = new OpcodeStack();
                     firstFieldUse = new HashMap<String, SourceLineAnnotation>();
                     super.visitClassContext(classContext);
 
@@ -89,13 +90,15 @@ public class PoorMansEnum extends BytecodeScanningDetector {
             nameToField = null;
             firstFieldUse = null;
             stack = null;
+            snapshots = null;
         }
     }
 
     @Override
     public void visitCode(Code obj) {
         if (!fieldValues.isEmpty()) {
-            stack.resetForMethodEntry(this);
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
         }
     }
@@ -103,7 +106,7 @@ public class PoorMansEnum extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
             if (fieldValues.isEmpty()) {
                 return;
             }
@@ -132,7 +135,7 @@ public class PoorMansEnum extends BytecodeScanningDetector {
                 }
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 }
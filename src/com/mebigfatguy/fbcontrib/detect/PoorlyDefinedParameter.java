@@ -18,7 +18,6 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -30,19 +29,22 @@ import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 
 /**
  * looks for non derivable method that declare parameters and then cast those parameters to more specific types in the method. This is misleading and dangerous
  * as you are not documenting through parameter types what is necessary for these parameters to function correctly.
  */
-public class PoorlyDefinedParameter extends BytecodeScanningDetector {
+public class PoorlyDefinedParameter extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(PoorlyDefinedParameter.class, Prescreen.opcodes(Constants.CHECKCAST));
+
     enum State {
         SAW_NOTHING, SAW_LOAD, SAW_CHECKCAST
     }
@@ -101,8 +103,7 @@ public class PoorlyDefinedParameter extends BytecodeScanningDetector {
      * @return if the class does checkcast instructions
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.CHECKCAST));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
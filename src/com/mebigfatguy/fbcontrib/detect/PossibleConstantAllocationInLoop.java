@@ -30,7 +30,9 @@ import org.apache.bcel.classfile.LocalVariableTable;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.LoopNesting;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
@@ -38,7 +40,6 @@ import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -50,7 +51,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * loop to avoid excessive garbage.
  */
 @CustomUserValue
-public class PossibleConstantAllocationInLoop extends BytecodeScanningDetector {
+public class PossibleConstantAllocationInLoop extends ScopedBytecodeScanningDetector {
 
     private static final Set<String> SYNTHETIC_ALLOCATION_CLASSES = UnmodifiableSet.create(
             "java/lang/StringBuffer",
@@ -60,6 +61,7 @@ public class PossibleConstantAllocationInLoop extends BytecodeScanningDetector {
     
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     /** allocation number, info where allocated */
     private Map<Integer, AllocationInfo> allocations;
     /** reg, allocation number */
@@ -87,8 +89,19 @@ public class PossibleConstantAllocationInLoop extends BytecodeScanningDetector {
         }
     }
 
+    /**
+     * implements the visitor to look for allocations in methods that have loops, and report those that were never used outside the loop
+     *
+     * @param obj
+     *            the context object of the currently parsed code block
+     */
     @Override
     public void visitCode(Code obj) {
+        LoopNesting loopNesting = LoopNesting.getLoopNesting(getClassContext(), getMethod());
+        if ((loopNesting == null) || !loopNesting.hasLoops()) {
+            return;
+        }
+
         stack.resetForMethodEntry(this);
         allocations.clear();
         storedAllocations.clear();
@@ -288,9 +301,9 @@ public class PossibleConstantAllocationInLoop extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (sawAllocation) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item item = stack.getStackItem(0);
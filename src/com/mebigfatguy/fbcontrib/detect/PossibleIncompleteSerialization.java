@@ -23,11 +23,11 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -35,7 +35,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * fields when the class in question is serializable but is derived from non
  * serializable classes.
  */
-public class PossibleIncompleteSerialization implements Detector {
+public class PossibleIncompleteSerialization extends ScopedDetector {
     private final BugReporter bugReporter;
 
     /**
@@ -31,12 +31,13 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.FieldAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -50,7 +51,7 @@ import edu.umd.cs.findbugs.ba.XField;
  * memory bloat.
  *
  */
-public class PossibleMemoryBloat extends BytecodeScanningDetector {
+public class PossibleMemoryBloat extends ScopedBytecodeScanningDetector {
     
     private static final Set<String> bloatableSigs = UnmodifiableSet.create(
         "Ljava/util/concurrent/ArrayBlockingQueue;",
@@ -122,7 +123,8 @@ public class PossibleMemoryBloat extends BytecodeScanningDetector {
     private final BugReporter bugReporter;
     private Map<XField, FieldAnnotation> bloatableCandidates;
     private Map<XField, FieldAnnotation> bloatableFields;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private String methodName;
     private Set<FieldAnnotation> threadLocalNonStaticFields;
 
@@ -152,7 +154,6 @@ public class PossibleMemoryBloat extends BytecodeScanningDetector {
             parseFields(classContext);
 
             if (bloatableCandidates.size() > 0) {
-                stack = new OpcodeStack();
                 super.visitClassContext(classContext);
 
                 reportMemoryBloatBugs();
@@ -160,6 +161,7 @@ public class PossibleMemoryBloat extends BytecodeScanningDetector {
             }
         } finally {
             stack = null;
+            snapshots = null;
             bloatableCandidates = null;
             bloatableFields = null;
             threadLocalNonStaticFields = null;
@@ -217,13 +219,15 @@ public class PossibleMemoryBloat extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
 
         if (Values.STATIC_INITIALIZER.equals(methodName) || Values.CONSTRUCTOR.equals(methodName))
             return;
 
-        if (bloatableCandidates.size() > 0)
+        if (bloatableCandidates.size() > 0) {
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
+        }
     }
 
     /**
@@ -239,7 +243,7 @@ public class PossibleMemoryBloat extends BytecodeScanningDetector {
             if (bloatableCandidates.isEmpty())
                 return;
 
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if ((seen == INVOKEVIRTUAL) || (seen == INVOKEINTERFACE)) {
                 String sig = getSigConstantOperand();
@@ -267,7 +271,7 @@ public class PossibleMemoryBloat extends BytecodeScanningDetector {
                 removeFieldsThatGetReturned();
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
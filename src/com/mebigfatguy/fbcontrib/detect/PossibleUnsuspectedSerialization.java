@@ -23,10 +23,12 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -35,10 +37,12 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * enclosing class, it may unintentially bring in more to the serialization than
  * is wanted
  */
-public class PossibleUnsuspectedSerialization extends BytecodeScanningDetector {
+public class PossibleUnsuspectedSerialization extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(PossibleUnsuspectedSerialization.class, Prescreen.prefixes("java/io/ObjectOutputStream"));
 
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
 
     /**
      * constructs a PUS detector given the reporter to report bugs on
@@ -51,30 +55,27 @@ public class PossibleUnsuspectedSerialization extends BytecodeScanningDetector {
     }
 
     /**
-     * implements the visitor to setup and tear down the opcode stack
-     * 
+     * overrides the visitor to skip classes that don't use ObjectOutputStream
+     *
      * @param classContext
      *            the context object of the currently parsed class
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
-        try {
-            stack = new OpcodeStack();
+        if (PRESCREEN.acceptClass(classContext)) {
             super.visitClassContext(classContext);
-        } finally {
-            stack = null;
         }
     }
 
     /**
-     * implements the visitor to reset the opcode stack
+     * implements the visitor to fetch the shared opcode stack snapshots for this method
      * 
      * @param obj
      *            the context object of the currently parsed method
      */
     @Override
     public void visitMethod(Method obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), obj);
         super.visitMethod(obj);
     }
 
@@ -88,13 +89,12 @@ public class PossibleUnsuspectedSerialization extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
-
             if (seen == INVOKEVIRTUAL) {
                 String clsName = getClassConstantOperand();
                 if ("java/io/ObjectOutputStream".equals(clsName)) {
                     String name = getNameConstantOperand();
                     if ("writeObject".equals(name)) {
+                        OpcodeStackSnapshots.Snapshot stack = snapshots.before(getPC());
                         if (stack.getStackDepth() > 0) {
                             OpcodeStack.Item item = stack.getStackItem(0);
                             JavaClass cls = item.getJavaClass();
@@ -109,8 +109,6 @@ public class PossibleUnsuspectedSerialization extends BytecodeScanningDetector {
             }
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
-        } finally {
-            stack.sawOpcode(this, seen);
         }
     }
 
@@ -20,6 +20,7 @@ package com.mebigfatguy.fbcontrib.detect;
 
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -35,11 +36,11 @@ import com.mebigfatguy.fbcontrib.collect.MethodInfo;
 import com.mebigfatguy.fbcontrib.collect.Statistics;
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -50,7 +51,7 @@ import edu.umd.cs.findbugs.ba.XField;
  * combined.
  */
 @CustomUserValue
-public class PossiblyRedundantMethodCalls extends BytecodeScanningDetector {
+public class PossiblyRedundantMethodCalls extends ScopedBytecodeScanningDetector {
     public static final String PRMC_RISKY_FIELD_USER_KEY = "fbcontrib.PRMC.riskynames";
     public static final String PRMC_RISKY_CLASS_USER_KEY = "fbcontrib.PRMC.riskyclasses";
     public static final String PRMC_HIGH_BYTECOUNT = "fbcontrib.PRMC.highbytecount";
@@ -58,84 +59,72 @@ public class PossiblyRedundantMethodCalls extends BytecodeScanningDetector {
     public static final String PRMC_NORMAL_BYTECOUNT = "fbcontrib.PRMC.normalbytecount";
     public static final String PRMC_NORMAL_METHODCALLS = "fbcontrib.PRMC.normalmethodcalls";
 
-    private static Set<String> riskyMethodNameContents = new HashSet<String>();
-    private static int highByteCountLimit = 200;
-    private static int highMethodCallLimit = 10;
-    private static int normalByteCountLimit = 50;
-    private static int normalMethodCallLimit = 4;
+    private static final Set<String> riskyMethodNameContents;
+    private static final int highByteCountLimit = Integer.getInteger(PRMC_HIGH_BYTECOUNT, 200).intValue();
+    private static final int highMethodCallLimit = Integer.getInteger(PRMC_HIGH_METHODCALLS, 10).intValue();
+    private static final int normalByteCountLimit = Integer.getInteger(PRMC_NORMAL_BYTECOUNT, 50).intValue();
+    private static final int normalMethodCallLimit = Integer.getInteger(PRMC_NORMAL_METHODCALLS, 4).intValue();
 
     static {
-        riskyMethodNameContents.add("next");
-        riskyMethodNameContents.add("add");
-        riskyMethodNameContents.add("create");
-        riskyMethodNameContents.add("append");
-        riskyMethodNameContents.add("find");
-        riskyMethodNameContents.add("put");
-        riskyMethodNameContents.add("remove");
-        riskyMethodNameContents.add("read");
-        riskyMethodNameContents.add("write");
-        riskyMethodNameContents.add("push");
-        riskyMethodNameContents.add("pop");
-        riskyMethodNameContents.add("scan");
-        riskyMethodNameContents.add("skip");
-        riskyMethodNameContents.add("clone");
-        riskyMethodNameContents.add("close");
-        riskyMethodNameContents.add("copy");
-        riskyMethodNameContents.add("currentTimeMillis");
-        riskyMethodNameContents.add("nanoTime");
-        riskyMethodNameContents.add("newInstance");
-        riskyMethodNameContents.add("noneOf");
-        riskyMethodNameContents.add("allOf");
-        riskyMethodNameContents.add("random");
-        riskyMethodNameContents.add("beep");
-        riskyMethodNameContents.add("emptyList");
-        riskyMethodNameContents.add("emptySet");
-        riskyMethodNameContents.add("emptyMap");
+        Set<String> rmnc = new HashSet<String>();
+        rmnc.add("next");
+        rmnc.add("add");
+        rmnc.add("create");
+        rmnc.add("append");
+        rmnc.add("find");
+        rmnc.add("put");
+        rmnc.add("remove");
+        rmnc.add("read");
+        rmnc.add("write");
+        rmnc.add("push");
+        rmnc.add("pop");
+        rmnc.add("scan");
+        rmnc.add("skip");
+        rmnc.add("clone");
+        rmnc.add("close");
+        rmnc.add("copy");
+        rmnc.add("currentTimeMillis");
+        rmnc.add("nanoTime");
+        rmnc.add("newInstance");
+        rmnc.add("noneOf");
+        rmnc.add("allOf");
+        rmnc.add("random");
+        rmnc.add("beep");
+        rmnc.add("emptyList");
+        rmnc.add("emptySet");
+        rmnc.add("emptyMap");
 
         String userNameProp = System.getProperty(PRMC_RISKY_FIELD_USER_KEY);
         if (userNameProp != null) {
             String[] userNames = userNameProp.split("\\s*,\\s*");
             for (String name : userNames) {
-                riskyMethodNameContents.add(name);
+                rmnc.add(name);
             }
         }
-        Integer prop = Integer.getInteger(PRMC_HIGH_BYTECOUNT);
-        if (prop != null) {
-            highByteCountLimit = prop.intValue();
-        }
-        prop = Integer.getInteger(PRMC_HIGH_METHODCALLS);
-        if (prop != null) {
-            highMethodCallLimit = prop.intValue();
-        }
-        prop = Integer.getInteger(PRMC_NORMAL_BYTECOUNT);
-        if (prop != null) {
-            normalByteCountLimit = prop.intValue();
-        }
-        prop = Integer.getInteger(PRMC_NORMAL_METHODCALLS);
-        if (prop != null) {
-            normalMethodCallLimit = prop.intValue();
-        }
+        riskyMethodNameContents = Collections.unmodifiableSet(rmnc);
     }
 
-    private static Set<String> riskyClassNames = new HashSet<String>();
+    private static final Set<String> riskyClassNames;
 
     static {
-        riskyClassNames.add("java/nio/ByteBuffer");
-        riskyClassNames.add("java/io/DataInputStream");
-        riskyClassNames.add("java/io/ObjectInputStream");
-        riskyClassNames.add("java/util/Calendar");
-        riskyClassNames.add("com/google/common/collect/Lists");
-        riskyClassNames.add("com/google/common/collect/Sets");
-        riskyClassNames.add("com/google/common/collect/Maps");
-        riskyClassNames.add("com/google/common/collect/Queues");
+        Set<String> rcn = new HashSet<String>();
+        rcn.add("java/nio/ByteBuffer");
+        rcn.add("java/io/DataInputStream");
+        rcn.add("java/io/ObjectInputStream");
+        rcn.add("java/util/Calendar");
+        rcn.add("com/google/common/collect/Lists");
+        rcn.add("com/google/common/collect/Sets");
+        rcn.add("com/google/common/collect/Maps");
+        rcn.add("com/google/common/collect/Queues");
 
         String userNameProp = System.getProperty(PRMC_RISKY_CLASS_USER_KEY);
         if (userNameProp != null) {
             String[] userNames = userNameProp.split("\\s*,\\s*");
             for (String name : userNames) {
-                riskyClassNames.add(name);
+                rcn.add(name);
             }
         }
+        riskyClassNames = Collections.unmodifiableSet(rcn);
     }
 
     private final BugReporter bugReporter;
@@ -29,13 +29,13 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -47,7 +47,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * collector.
  */
 @CustomUserValue
-public class PresizeCollections extends BytecodeScanningDetector {
+public class PresizeCollections extends ScopedBytecodeScanningDetector {
 
     private static final Set<String> PRESIZEABLE_COLLECTIONS = UnmodifiableSet.create(
         "java/util/ArrayBlockingQueue",
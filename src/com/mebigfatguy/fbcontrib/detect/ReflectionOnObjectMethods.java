@@ -27,14 +27,15 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -45,7 +46,9 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * do this.
  */
 @CustomUserValue
-public class ReflectionOnObjectMethods extends BytecodeScanningDetector {
+public class ReflectionOnObjectMethods extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(ReflectionOnObjectMethods.class, Prescreen.prefixes("java/lang/reflect/Method"));
 
     private static final Set<String> objectSigs = UnmodifiableSet.create(
         // "clone()", // clone is declared protected
@@ -63,6 +66,7 @@ public class ReflectionOnObjectMethods extends BytecodeScanningDetector {
 
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Map<Integer, String[]> localClassTypes;
     private Map<String, String[]> fieldClassTypes;
 
@@ -85,6 +89,10 @@ public class ReflectionOnObjectMethods extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (!PRESCREEN.acceptClass(classContext)) {
+            return;
+        }
+
         try {
             stack = new OpcodeStack();
             localClassTypes = new HashMap<Integer, String[]>();
@@ -256,9 +264,9 @@ public class ReflectionOnObjectMethods extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
 
             if (stack.getStackDepth() >= 1) {
                 if (arraySize != null) {
@@ -27,13 +27,14 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.StringAnnotation;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * looks for methods that declare Runtime exceptions in their throws clause.
@@ -42,19 +43,10 @@ import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
  * this exception type is expected to happen, which if true, should be handled
  * in code, and not propagated.
  */
-public class RuntimeExceptionDeclared extends PreorderVisitor implements Detector {
+public class RuntimeExceptionDeclared extends ScopedPreorderDetector {
     private final BugReporter bugReporter;
-    private static JavaClass runtimeExceptionClass;
-
-    static {
-        try {
-            runtimeExceptionClass = Repository.lookupClass("java/lang/RuntimeException");
-        } catch (ClassNotFoundException cnfe) {
-            runtimeExceptionClass = null;
-        }
-    }
-
     private final Set<String> runtimeExceptions = new HashSet<String>();
+    private JavaClass runtimeExceptionClass;
 
     /**
      * constructs a DRE detector given the reporter to report bugs on
@@ -75,6 +67,7 @@ public class RuntimeExceptionDeclared extends PreorderVisitor implements Detecto
      */
     @Override
     public void visitClassContext(final ClassContext classContext) {
+        runtimeExceptionClass = WellKnownType.RUNTIME_EXCEPTION.getJavaClass();
         if (runtimeExceptionClass != null) {
             classContext.getJavaClass().accept(this);
         }
@@ -104,7 +97,7 @@ public class RuntimeExceptionDeclared extends PreorderVisitor implements Detecto
                 } else {
                     try {
                         JavaClass exClass = Repository.lookupClass(ex);
-                        if (exClass.instanceOf(runtimeExceptionClass)) {
+                        if (TypeHierarchyCache.isSubtypeOf(exClass, runtimeExceptionClass)) {
                             runtimeExceptions.add(ex);
                             if (ex.startsWith("java.lang.")) {
                                 priority = NORMAL_PRIORITY;
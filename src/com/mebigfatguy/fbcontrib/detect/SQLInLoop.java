@@ -18,19 +18,19 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.BitSet;
 import java.util.Set;
 
 import org.apache.bcel.classfile.Code;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
-import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.LoopNesting;
+import com.mebigfatguy.fbcontrib.utils.OpcodeInterestDetector;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -39,7 +39,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * needed for the query and issuing just one query using an in clause with all
  * the keys for all the queries previously needed in the loop.
  */
-public class SQLInLoop extends BytecodeScanningDetector {
+public class SQLInLoop extends OpcodeInterestDetector {
     private static final Set<String> queryClasses = UnmodifiableSet.create(
         "java/sql/Statement",
         "java/sql/PreparedStatement",
@@ -49,9 +49,16 @@ public class SQLInLoop extends BytecodeScanningDetector {
 
     private static final Set<String> queryMethods = UnmodifiableSet.create("execute", "executeQuery");
 
+    private static final BitSet INTERESTING_OPCODES = new BitSet();
+
+    static {
+        INTERESTING_OPCODES.set(INVOKEINTERFACE);
+    }
+
+    private static final Prescreen PRESCREEN = Prescreen.register(SQLInLoop.class, Prescreen.prefixes("java/sql/"), INTERESTING_OPCODES);
+
     private final BugReporter bugReporter;
-    List<Integer> queryLocations;
-    List<LoopLocation> loops;
+    private LoopNesting loopNesting;
 
     /**
      * constructs a SIL detector given the reporter to report bugs on
@@ -64,49 +71,55 @@ public class SQLInLoop extends BytecodeScanningDetector {
     }
 
     /**
-     * implements the visitor to create and clear the query locations and loops
-     * collections
+     * returns the opcodes this detector looks at, so that sawOpcode is only called for these
+     *
+     * @return the set of interesting opcodes
+     */
+    @Override
+    public BitSet getInterestingOpcodes() {
+        return INTERESTING_OPCODES;
+    }
+
+    /**
+     * overrides the prescreen to skip classes that do not use jdbc at all
+     *
+     * @return the prescreen of this detector
+     */
+    @Override
+    protected Prescreen getPrescreen() {
+        return PRESCREEN;
+    }
+
+    /**
+     * implements the visitor to skip classes whose results are replayed from an incremental analysis
      * 
      * @param classContext
      *            the context object for the currently parsed java class
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
-        try {
-            queryLocations = new ArrayList<Integer>();
-            loops = new ArrayList<LoopLocation>();
-            super.visitClassContext(classContext);
-        } finally {
-            queryLocations = null;
-            loops = null;
-        }
+        super.visitClassContext(classContext);
     }
 
     /**
-     * implements the visitor to clear the collections, and report the query
-     * locations that are in loops
+     * overrides the prescreen to also skip methods without loops, fetching the loops of the methods that have them
      * 
      * @param obj
      *            the context object for the currently parsed code block
+     * @return whether the code contains queries and loops
      */
     @Override
-    public void visitCode(Code obj) {
-        queryLocations.clear();
-        loops.clear();
-        super.visitCode(obj);
-        for (Integer qLoc : queryLocations) {
-            for (LoopLocation lLoc : loops) {
-                if (lLoc.isInLoop(qLoc.intValue())) {
-                    bugReporter.reportBug(new BugInstance(this, BugType.SIL_SQL_IN_LOOP.name(), NORMAL_PRIORITY).addClass(this).addMethod(this)
-                            .addSourceLine(this, qLoc.intValue()));
-                    break;
-                }
-            }
+    public boolean shouldVisitCode(Code obj) {
+        if (!super.shouldVisitCode(obj)) {
+            return false;
         }
+
+        loopNesting = LoopNesting.getLoopNesting(getClassContext(), getMethod());
+        return (loopNesting != null) && loopNesting.hasLoops();
     }
 
     /**
-     * implements the visitor to collect positions of queries and loops
+     * implements the visitor to report queries that are made inside a loop
      * 
      * @param seen
      *            the opcode of the currently parsed instruction
@@ -117,36 +130,10 @@ public class SQLInLoop extends BytecodeScanningDetector {
             String clsName = getClassConstantOperand();
             String methodName = getNameConstantOperand();
 
-            if (queryClasses.contains(clsName) && queryMethods.contains(methodName))
-                queryLocations.add(Integer.valueOf(getPC()));
-        } else if ((seen == GOTO) || (seen == GOTO_W)) {
-            int branchTarget = getBranchTarget();
-            int pc = getPC();
-            if (branchTarget < pc) {
-                loops.add(new LoopLocation(branchTarget, pc));
+            if (queryClasses.contains(clsName) && queryMethods.contains(methodName) && (loopNesting.getDepth(getPC()) > 0)) {
+                bugReporter.reportBug(new BugInstance(this, BugType.SIL_SQL_IN_LOOP.name(), NORMAL_PRIORITY).addClass(this).addMethod(this)
+                        .addSourceLine(this));
             }
         }
     }
-
-    /**
-     * holds the start and end position of a loop
-     */
-    private static class LoopLocation {
-        private final int startPC;
-        private final int endPC;
-
-        LoopLocation(int start, int end) {
-            startPC = start;
-            endPC = end;
-        }
-
-        boolean isInLoop(int pc) {
-            return (pc >= startPC) && (pc <= endPC);
-        }
-
-        @Override
-        public String toString() {
-            return ToString.build(this);
-        }
-    }
 }
@@ -23,7 +23,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
@@ -32,12 +31,14 @@ import org.apache.bcel.generic.Type;
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.FieldAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
@@ -51,43 +52,10 @@ import edu.umd.cs.findbugs.ba.XField;
  * JLabel.setLabelFor, Using null layouts,
  */
 @CustomUserValue
-public class Section508Compliance extends BytecodeScanningDetector {
+public class Section508Compliance extends ScopedBytecodeScanningDetector {
     
     private enum S508UserValue { SAW_TEXT_LABEL, FROM_UIMANAGER, APPENDED_STRING };
 
-    private static JavaClass windowClass;
-    private static JavaClass componentClass;
-    private static JavaClass jcomponentClass;
-    private static JavaClass accessibleClass;
-    private static ClassNotFoundException clsNFException;
-
-    static {
-        try {
-            windowClass = Repository.lookupClass("java/awt/Window");
-        } catch (ClassNotFoundException cnfe) {
-            windowClass = null;
-            clsNFException = cnfe;
-        }
-        try {
-            componentClass = Repository.lookupClass("java/awt/Component");
-        } catch (ClassNotFoundException cnfe) {
-            componentClass = null;
-            clsNFException = cnfe;
-        }
-        try {
-            jcomponentClass = Repository.lookupClass("javax/swing/JComponent");
-        } catch (ClassNotFoundException cnfe) {
-            jcomponentClass = null;
-            clsNFException = cnfe;
-        }
-        try {
-            accessibleClass = Repository.lookupClass("javax/accessibility/Accessible");
-        } catch (ClassNotFoundException cnfe) {
-            accessibleClass = null;
-            clsNFException = cnfe;
-        }
-    }
-
     private static final Map<FQMethod, Integer> displayTextMethods = new HashMap<FQMethod, Integer>();
 
     static {
@@ -115,8 +83,13 @@ public class Section508Compliance extends BytecodeScanningDetector {
 
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Set<XField> fieldLabels;
     private Map<Integer, SourceLineAnnotation> localLabels;
+    private JavaClass windowClass;
+    private JavaClass componentClass;
+    private JavaClass jcomponentClass;
+    private JavaClass accessibleClass;
 
     /**
      * constructs a S508C detector given the reporter to report bugs on
@@ -126,8 +99,6 @@ public class Section508Compliance extends BytecodeScanningDetector {
      */
     public Section508Compliance(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
-        if (clsNFException != null)
-            bugReporter.reportMissingClass(clsNFException);
     }
 
     /**
@@ -139,10 +110,14 @@ public class Section508Compliance extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
+            windowClass = getComponentClass(WellKnownType.WINDOW);
+            componentClass = getComponentClass(WellKnownType.COMPONENT);
+            jcomponentClass = getComponentClass(WellKnownType.JCOMPONENT);
+            accessibleClass = getComponentClass(WellKnownType.ACCESSIBLE);
             if ((jcomponentClass != null) && (accessibleClass != null)) {
                 JavaClass cls = classContext.getJavaClass();
-                if (cls.instanceOf(jcomponentClass)) {
-                    if (!cls.implementationOf(accessibleClass)) {
+                if (TypeHierarchyCache.isSubtypeOf(cls, jcomponentClass)) {
+                    if (!TypeHierarchyCache.isSubtypeOf(cls, accessibleClass)) {
                         bugReporter.reportBug(new BugInstance(this, BugType.S508C_NON_ACCESSIBLE_JCOMPONENT.name(), NORMAL_PRIORITY).addClass(cls));
                     }
                 }
@@ -164,6 +139,22 @@ public class Section508Compliance extends BytecodeScanningDetector {
         }
     }
 
+    /**
+     * looks up one of the awt or swing classes that components are checked against, reporting it if it is missing
+     *
+     * @param type
+     *            the class to look up
+     * @return the class, or null if it can't be found
+     */
+    private JavaClass getComponentClass(WellKnownType type) {
+        try {
+            return type.lookupClass();
+        } catch (ClassNotFoundException cnfe) {
+            bugReporter.reportMissingClass(cnfe);
+            return null;
+        }
+    }
+
     /**
      * looks for fields that are JLabels and stores them in a set
      *
@@ -297,9 +288,9 @@ public class Section508Compliance extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (sawTextLabel) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item item = stack.getStackItem(0);
@@ -383,7 +374,8 @@ public class Section508Compliance extends BytecodeScanningDetector {
                 if (S508UserValue.FROM_UIMANAGER != item.getUserValue()) {
                     item = stack.getStackItem(argCount);
                     JavaClass cls = item.getJavaClass();
-                    if (((jcomponentClass != null) && cls.instanceOf(jcomponentClass)) || ((componentClass != null) && cls.instanceOf(componentClass))) {
+                    if (((jcomponentClass != null) && TypeHierarchyCache.isSubtypeOf(cls, jcomponentClass))
+                            || ((componentClass != null) && TypeHierarchyCache.isSubtypeOf(cls, componentClass))) {
                         bugReporter.reportBug(
                                 new BugInstance(this, BugType.S508C_SET_COMP_COLOR.name(), NORMAL_PRIORITY).addClass(this).addMethod(this).addSourceLine(this));
                     }
@@ -408,7 +400,7 @@ public class Section508Compliance extends BytecodeScanningDetector {
             if ((windowClass != null) && (stack.getStackDepth() > argCount)) {
                 OpcodeStack.Item item = stack.getStackItem(argCount);
                 JavaClass cls = item.getJavaClass();
-                if ((cls != null) && cls.instanceOf(windowClass)) {
+                if ((cls != null) && TypeHierarchyCache.isSubtypeOf(cls, windowClass)) {
                     bugReporter.reportBug(
                             new BugInstance(this, BugType.S508C_NO_SETSIZE.name(), NORMAL_PRIORITY).addClass(this).addMethod(this).addSourceLine(this));
                 }
@@ -20,6 +20,7 @@ package com.mebigfatguy.fbcontrib.detect;
 
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -49,15 +50,17 @@ import com.mebigfatguy.fbcontrib.utils.CodeByteUtils;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
 import com.mebigfatguy.fbcontrib.utils.QMethod;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -73,7 +76,7 @@ import edu.umd.cs.findbugs.visitclass.LVTHelper;
     justification = "lastPCs is an int[] of size 4 for efficiency reasons"
 )
 @CustomUserValue
-public class SillynessPotPourri extends BytecodeScanningDetector {
+public class SillynessPotPourri extends ScopedBytecodeScanningDetector {
 
     private static final Set<String> collectionInterfaces = UnmodifiableSet.create("java/util/Collection", "java/util/List", "java/util/Set",
             "java/util/SortedSet", "java/util/Map", "java/util/SortedMap");
@@ -89,30 +92,23 @@ public class SillynessPotPourri extends BytecodeScanningDetector {
     private static final String LITERAL = "literal";
     private static final Pattern APPEND_PATTERN = Pattern.compile("([0-9]+):(.*)");
 
-    private static JavaClass calendarClass;
+    private static final Map<QMethod, Integer> methodsThatAreSillyOnStringLiterals;
 
     static {
-        try {
-            calendarClass = Repository.lookupClass("java/util/Calendar");
-        } catch (ClassNotFoundException cnfe) {
-            calendarClass = null;
-        }
-    }
-
-    private static Map<QMethod, Integer> methodsThatAreSillyOnStringLiterals = new HashMap<QMethod, Integer>();
-
-    static {
-        methodsThatAreSillyOnStringLiterals.put(new QMethod("toLowerCase", "()Ljava/lang/String;"), Values.ZERO);
-        methodsThatAreSillyOnStringLiterals.put(new QMethod("toUpperCase", "()Ljava/lang/String;"), Values.ZERO);
-        methodsThatAreSillyOnStringLiterals.put(new QMethod("toLowerCase", "(Ljava/util/Locale;)Ljava/lang/String;"), Values.ONE);
-        methodsThatAreSillyOnStringLiterals.put(new QMethod("toUpperCase", "(Ljava/util/Locale;)Ljava/lang/String;"), Values.ONE);
-        methodsThatAreSillyOnStringLiterals.put(new QMethod("trim", "()Ljava/lang/String;"), Values.ZERO);
-        methodsThatAreSillyOnStringLiterals.put(new QMethod("isEmpty", "()Z"), Values.ZERO);
+        Map<QMethod, Integer> silly = new HashMap<QMethod, Integer>();
+        silly.put(new QMethod("toLowerCase", "()Ljava/lang/String;"), Values.ZERO);
+        silly.put(new QMethod("toUpperCase", "()Ljava/lang/String;"), Values.ZERO);
+        silly.put(new QMethod("toLowerCase", "(Ljava/util/Locale;)Ljava/lang/String;"), Values.ONE);
+        silly.put(new QMethod("toUpperCase", "(Ljava/util/Locale;)Ljava/lang/String;"), Values.ONE);
+        silly.put(new QMethod("trim", "()Ljava/lang/String;"), Values.ZERO);
+        silly.put(new QMethod("isEmpty", "()Z"), Values.ZERO);
+        methodsThatAreSillyOnStringLiterals = Collections.unmodifiableMap(silly);
     }
 
     private final BugReporter bugReporter;
     private final Set<String> toStringClasses;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private int lastPCs[];
     private int lastOpcode;
     private int lastReg;
@@ -292,9 +288,9 @@ public class SillynessPotPourri extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if ((stack.getStackDepth() > 0)) {
                 OpcodeStack.Item item = stack.getStackItem(0);
                 if (userValue != null) {
@@ -871,7 +867,7 @@ public class SillynessPotPourri extends BytecodeScanningDetector {
             if (!"Ljava/lang/Object;".equals(itemSig) && !"Ljava/util/Calendar;".equals(itemSig) && !"Ljava/util/GregorianCalendar;".equals(itemSig)) {
                 try {
                     JavaClass cls = Repository.lookupClass(SignatureUtils.stripSignature(itemSig));
-                    if (!cls.instanceOf(calendarClass)) {
+                    if (!TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.CALENDAR.lookupClass())) {
                         bugReporter.reportBug(new BugInstance(this, BugType.SPP_INVALID_CALENDAR_COMPARE.name(), NORMAL_PRIORITY).addClass(this).addMethod(this)
                                 .addSourceLine(this));
                     }
@@ -30,11 +30,11 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -44,7 +44,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * transformations as obfuscation. Use of Class.forName should only be used when
  * the class in question isn't already statically bound to this context.
  */
-public class SloppyClassReflection extends BytecodeScanningDetector {
+public class SloppyClassReflection extends ScopedBytecodeScanningDetector {
     enum State {
         COLLECT, SEEN_NOTHING, SEEN_LDC
     }
@@ -28,11 +28,12 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -42,7 +43,9 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * use a separate thread to do the time consuming work so that the user has a
  * better experience.
  */
-public class SluggishGui extends BytecodeScanningDetector {
+public class SluggishGui extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(SluggishGui.class, Prescreen.prefixes("java/awt/", "javax/swing/"));
 
     private static final Set<String> expensiveCalls = UnmodifiableSet.create(
         "java/io/BufferedOutputStream:<init>",
@@ -103,6 +106,10 @@ public class SluggishGui extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (!PRESCREEN.acceptClass(classContext)) {
+            return;
+        }
+
         try {
             guiInterfaces = new HashSet<JavaClass>();
             JavaClass cls = classContext.getJavaClass();
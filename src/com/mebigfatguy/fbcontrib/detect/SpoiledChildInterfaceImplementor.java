@@ -25,12 +25,13 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -38,7 +39,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for classes that implement interfaces by relying on methods being implemented in super classes, even though the superclass knows nothing about the
  * interface being implemented by the child.
  */
-public class SpoiledChildInterfaceImplementor implements Detector {
+public class SpoiledChildInterfaceImplementor extends ScopedDetector {
 
     private final BugReporter bugReporter;
 
@@ -82,7 +83,7 @@ public class SpoiledChildInterfaceImplementor implements Detector {
                             JavaClass superCls = cls.getSuperClass();
                             filterSuperInterfaceMethods(inf, infMethods, superCls);
                             if (infMethods.size() > 0) {
-                                if (!superCls.implementationOf(inf)) {
+                                if (!TypeHierarchyCache.isSubtypeOf(superCls, inf)) {
                                     int priority = AnalysisContext.currentAnalysisContext().isApplicationClass(superCls) ? NORMAL_PRIORITY : LOW_PRIORITY;
                                     BugInstance bi = new BugInstance(this, BugType.SCII_SPOILED_CHILD_INTERFACE_IMPLEMENTOR.name(), priority).addClass(cls)
                                             .addString("Implementing interface: " + inf.getClassName()).addString("Methods:");
@@ -151,7 +152,7 @@ public class SpoiledChildInterfaceImplementor implements Detector {
 
             JavaClass[] superInfs = inf.getInterfaces();
             for (JavaClass superInf : superInfs) {
-                if (cls.implementationOf(superInf)) {
+                if (TypeHierarchyCache.isSubtypeOf(cls, superInf)) {
                     Set<String> superInfMethods = buildMethodSet(superInf);
                     infMethods.removeAll(superInfMethods);
                     if (infMethods.isEmpty()) {
@@ -21,11 +21,12 @@ package com.mebigfatguy.fbcontrib.detect;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
-import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * Looks for methods that call wait, notify or notifyAll on an instance of a
@@ -35,9 +36,9 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * changes, either waking threads up when not intended, or removing the the
  * thread from the runnable state.
  */
-public class SpuriousThreadStates extends BytecodeScanningDetector {
+public class SpuriousThreadStates extends ScopedBytecodeScanningDetector {
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
 
     /**
      * constructs a STS detector given the reporter to report bugs on
@@ -49,19 +50,9 @@ public class SpuriousThreadStates extends BytecodeScanningDetector {
         this.bugReporter = bugReporter;
     }
 
-    @Override
-    public void visitClassContext(ClassContext classContext) {
-        try {
-            stack = new OpcodeStack();
-            super.visitClassContext(classContext);
-        } finally {
-            stack = null;
-        }
-    }
-
     @Override
     public void visitMethod(Method obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), obj);
         super.visitMethod(obj);
     }
 
@@ -70,11 +61,10 @@ public class SpuriousThreadStates extends BytecodeScanningDetector {
         OpcodeStack.Item itm = null;
 
         try {
-            stack.precomputation(this);
-
             if (seen == INVOKEVIRTUAL) {
                 String className = getClassConstantOperand();
                 if ("java/lang/Object".equals(className)) {
+                    OpcodeStackSnapshots.Snapshot stack = snapshots.before(getPC());
                     String methodName = getNameConstantOperand();
                     String signature = getSigConstantOperand();
                     if (("wait".equals(methodName) || "notify".equals(methodName) || "notifyAll".equals(methodName)) && "()V".equals(signature)) {
@@ -114,8 +104,6 @@ public class SpuriousThreadStates extends BytecodeScanningDetector {
             }
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
-        } finally {
-            stack.sawOpcode(this, seen);
         }
     }
 }
@@ -19,12 +19,14 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -36,19 +38,10 @@ import edu.umd.cs.findbugs.ba.XMethod;
  */
 
 @CustomUserValue
-public class StackedTryBlocks extends BytecodeScanningDetector {
-
-    private static JavaClass THROWABLE_CLASS;
-
-    static {
-        try {
-            THROWABLE_CLASS = Repository.lookupClass("java/lang/Throwable");
-        } catch (ClassNotFoundException cnfe) {
-            THROWABLE_CLASS = null;
-        }
-    }
+public class StackedTryBlocks extends ScopedBytecodeScanningDetector {
 
     private final BugReporter bugReporter;
+    private JavaClass throwableClass;
     private List<TryBlock> blocks;
     private List<TryBlock> inBlocks;
     private List<Integer> transitionPoints;
@@ -67,7 +60,8 @@ public class StackedTryBlocks extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            if (THROWABLE_CLASS != null) {
+            throwableClass = WellKnownType.THROWABLE.getJavaClass();
+            if (throwableClass != null) {
                 stack = new OpcodeStack();
                 super.visitClassContext(classContext);
             }
@@ -231,7 +225,7 @@ public class StackedTryBlocks extends BytecodeScanningDetector {
                     } else if ((seen == INVOKESPECIAL) && Values.CONSTRUCTOR.equals(getNameConstantOperand())) {
                         String cls = getClassConstantOperand();
                         JavaClass exCls = Repository.lookupClass(cls);
-                        if (exCls.instanceOf(THROWABLE_CLASS)) {
+                        if (TypeHierarchyCache.isSubtypeOf(exCls, throwableClass)) {
                             String signature = getSigConstantOperand();
                             Type[] types = Type.getArgumentTypes(signature);
                             if (types.length > 0) {
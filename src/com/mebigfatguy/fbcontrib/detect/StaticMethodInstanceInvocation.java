@@ -19,7 +19,6 @@
 package com.mebigfatguy.fbcontrib.detect;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -31,13 +30,15 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -45,9 +46,12 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for methods that make static method calls using an instance reference. For documentation purposes, it is better to call the method using the class
  * name. This may represent a change in definition that should be noticed.
  */
-public class StaticMethodInstanceInvocation extends BytecodeScanningDetector {
+public class StaticMethodInstanceInvocation extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(StaticMethodInstanceInvocation.class, Prescreen.opcodes(Constants.INVOKESTATIC));
+
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private List<PopInfo> popStack;
 
     /**
@@ -63,11 +67,11 @@ public class StaticMethodInstanceInvocation extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             popStack = new ArrayList<PopInfo>();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
             popStack = null;
         }
     }
@@ -80,8 +84,7 @@ public class StaticMethodInstanceInvocation extends BytecodeScanningDetector {
      * @return if the class uses synchronization
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.INVOKESTATIC));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -94,7 +97,8 @@ public class StaticMethodInstanceInvocation extends BytecodeScanningDetector {
     public void visitCode(Code obj) {
         Method m = getMethod();
         if (prescreen(m)) {
-            stack.resetForMethodEntry(this);
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             popStack.clear();
             super.visitCode(obj);
         }
@@ -109,7 +113,7 @@ public class StaticMethodInstanceInvocation extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             int sDepth = stack.getStackDepth();
             Iterator<PopInfo> it = popStack.iterator();
@@ -170,7 +174,7 @@ public class StaticMethodInstanceInvocation extends BytecodeScanningDetector {
             bugReporter.reportMissingClass(cnfe);
             popStack.clear();
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -28,11 +28,11 @@ import org.apache.bcel.generic.Type;
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -41,9 +41,9 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for string fields that appear to be built with parsing or calling toString() on another object, or from objects that are fields.
  */
 @CustomUserValue
-public class StringifiedTypes extends BytecodeScanningDetector {
+public class StringifiedTypes extends ScopedBytecodeScanningDetector {
 
-    private static Map<FQMethod, int[]> COLLECTION_PARMS = new HashMap<FQMethod, int[]>();
+    private static final Map<FQMethod, int[]> COLLECTION_PARMS = new HashMap<FQMethod, int[]>();
 
     static {
         int[] parm0 = new int[] { 0 };
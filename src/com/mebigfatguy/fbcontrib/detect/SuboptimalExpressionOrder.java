@@ -24,11 +24,11 @@ import org.apache.bcel.generic.Type;
 import com.mebigfatguy.fbcontrib.collect.MethodInfo;
 import com.mebigfatguy.fbcontrib.collect.Statistics;
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -39,7 +39,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * that are desired. At present it only looks for simple sequences of 'and' based conditions.
  */
 @CustomUserValue
-public class SuboptimalExpressionOrder extends BytecodeScanningDetector {
+public class SuboptimalExpressionOrder extends ScopedBytecodeScanningDetector {
 
     private static final int NORMAL_WEIGHT_LIMIT = 50;
 
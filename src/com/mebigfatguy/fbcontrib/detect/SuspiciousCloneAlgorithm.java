@@ -18,22 +18,24 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -42,29 +44,24 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for implementation of clone() where a store is made to a member of the source object.
  */
 @CustomUserValue
-public class SuspiciousCloneAlgorithm extends BytecodeScanningDetector {
+public class SuspiciousCloneAlgorithm extends ScopedBytecodeScanningDetector {
 
-    private static JavaClass cloneableClass;
-    private static Map<String, Integer> changingMethods;
+    private static final Map<String, Integer> changingMethods;
 
     static {
-        try {
-            cloneableClass = Repository.lookupClass("java/lang/Cloneable");
-            changingMethods = new HashMap<String, Integer>();
-            changingMethods.put("add", Values.NORMAL_BUG_PRIORITY);
-            changingMethods.put("addAll", Values.NORMAL_BUG_PRIORITY);
-            changingMethods.put("put", Values.NORMAL_BUG_PRIORITY);
-            changingMethods.put("putAll", Values.NORMAL_BUG_PRIORITY);
-            changingMethods.put("insert", Values.LOW_BUG_PRIORITY);
-            changingMethods.put("set", Values.LOW_BUG_PRIORITY);
-
-        } catch (ClassNotFoundException cnfe) {
-            cloneableClass = null;
-        }
+        Map<String, Integer> cm = new HashMap<String, Integer>();
+        cm.put("add", Values.NORMAL_BUG_PRIORITY);
+        cm.put("addAll", Values.NORMAL_BUG_PRIORITY);
+        cm.put("put", Values.NORMAL_BUG_PRIORITY);
+        cm.put("putAll", Values.NORMAL_BUG_PRIORITY);
+        cm.put("insert", Values.LOW_BUG_PRIORITY);
+        cm.put("set", Values.LOW_BUG_PRIORITY);
+        changingMethods = Collections.unmodifiableMap(cm);
     }
 
     private BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
 
     /**
      * constructs a SCA detector given the reporter to report bugs on
@@ -84,13 +81,14 @@ public class SuspiciousCloneAlgorithm extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        JavaClass cloneableClass = WellKnownType.CLONEABLE.getJavaClass();
         if (cloneableClass == null) {
             return;
         }
 
         try {
             JavaClass cls = classContext.getJavaClass();
-            if (cls.implementationOf(cloneableClass)) {
+            if (TypeHierarchyCache.isSubtypeOf(cls, cloneableClass)) {
                 stack = new OpcodeStack();
                 super.visitClassContext(classContext);
             }
@@ -182,9 +180,9 @@ public class SuspiciousCloneAlgorithm extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (srcField && (stack.getStackDepth() > 0)) {
                 OpcodeStack.Item item = stack.getStackItem(0);
                 item.setUserValue(Boolean.TRUE);
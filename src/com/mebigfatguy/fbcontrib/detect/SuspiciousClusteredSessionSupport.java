@@ -27,12 +27,13 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -42,12 +43,16 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * so that cluster replication can happen.
  */
 @CustomUserValue
-public class SuspiciousClusteredSessionSupport extends BytecodeScanningDetector {
+public class SuspiciousClusteredSessionSupport extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(SuspiciousClusteredSessionSupport.class,
+            Prescreen.prefixes("javax/servlet/http/HttpSession"));
 
     private static final Pattern modifyingNames = Pattern.compile("(add|insert|put|remove|clear|set).*");
 
     private BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Map<String, Integer> changedAttributes;
     private Map<Integer, String> savedAttributes;
 
@@ -63,6 +68,10 @@ public class SuspiciousClusteredSessionSupport extends BytecodeScanningDetector
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
+        if (!PRESCREEN.acceptClass(classContext)) {
+            return;
+        }
+
         try {
             stack = new OpcodeStack();
             changedAttributes = new HashMap<String, Integer>();
@@ -168,9 +177,9 @@ public class SuspiciousClusteredSessionSupport extends BytecodeScanningDetector
                 }
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (sawGetAttribute) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item item = stack.getStackItem(0);
@@ -18,19 +18,20 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -40,16 +41,12 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * three possible choice (a negative number, 0, and a positive number).
  */
 @CustomUserValue
-public class SuspiciousComparatorReturnValues extends BytecodeScanningDetector {
-    private static Map<JavaClass, MethodInfo> compareClasses = new HashMap<JavaClass, MethodInfo>();
+public class SuspiciousComparatorReturnValues extends ScopedBytecodeScanningDetector {
+    private static final Map<WellKnownType, MethodInfo> compareClasses = new EnumMap<WellKnownType, MethodInfo>(WellKnownType.class);
 
     static {
-        try {
-            compareClasses.put(Repository.lookupClass("java/lang/Comparable"), new MethodInfo("compareTo", 1, "I"));
-            compareClasses.put(Repository.lookupClass("java/util/Comparator"), new MethodInfo("compare", 2, "I"));
-        } catch (ClassNotFoundException cnfe) {
-            // don't have a bugReporter yet, so do nothing
-        }
+        compareClasses.put(WellKnownType.COMPARABLE, new MethodInfo("compareTo", 1, "I"));
+        compareClasses.put(WellKnownType.COMPARATOR, new MethodInfo("compare", 2, "I"));
     }
 
     private OpcodeStack stack;
@@ -83,8 +80,9 @@ public class SuspiciousComparatorReturnValues extends BytecodeScanningDetector {
     public void visitClassContext(ClassContext classContext) {
         try {
             JavaClass cls = classContext.getJavaClass();
-            for (Map.Entry<JavaClass, MethodInfo> entry : compareClasses.entrySet()) {
-                if (cls.implementationOf(entry.getKey())) {
+            for (Map.Entry<WellKnownType, MethodInfo> entry : compareClasses.entrySet()) {
+                JavaClass compareClass = entry.getKey().getJavaClass();
+                if ((compareClass != null) && TypeHierarchyCache.isSubtypeOf(cls, compareClass)) {
                     methodInfo = entry.getValue();
                     stack = new OpcodeStack();
                     super.visitClassContext(classContext);
@@ -25,6 +25,8 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -41,20 +43,23 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.JDKApiIndex;
+import com.mebigfatguy.fbcontrib.utils.OpcodeInterestDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * looks for calls to classes and methods that do not exist in the JDK for which
  * this class is compiled. This can happen if you specify the -source and
  * -target options of the javac compiler, and specify a target that is less than
- * the jdk version of the javac compiler.
+ * the jdk version of the javac compiler. The jdk's api is taken from the
+ * precomputed index for that version, see {@link JDKApiIndex}, or if there is
+ * none, from an rt.jar found near the running jdk.
  */
-public class SuspiciousJDKVersionUse extends BytecodeScanningDetector {
+public class SuspiciousJDKVersionUse extends OpcodeInterestDetector {
     private static final Map<Integer, String> VER_REG_EX = new HashMap<Integer, String>();
 
     static {
@@ -81,16 +86,26 @@ public class SuspiciousJDKVersionUse extends BytecodeScanningDetector {
         HUMAN_VERSIONS.put(Integer.valueOf(Constants.MAJOR_1_8), Values.EIGHT);
     }
 
+    private static final BitSet INTERESTING_OPCODES = new BitSet();
+
+    static {
+        INTERESTING_OPCODES.set(INVOKEVIRTUAL);
+        INTERESTING_OPCODES.set(INVOKESTATIC);
+        INTERESTING_OPCODES.set(INVOKESPECIAL);
+    }
+
     private static final Pattern jarPattern = Pattern.compile("jar:file:/*([^!]*)");
     private static final String SJVU_JDKHOME = "fb-contrib.sjvu.jdkhome";
 
     private final Map<String, File> versionPaths;
+    private final Map<String, int[]> declaredMethodHashes;
     private final Map<Integer, Map<String, Set<String>>> validMethodsByVersion;
     private final Map<String, String> superNames;
     private final Map<Integer, ZipFile> jdkZips;
     private File jdksRoot = null;
     private Integer clsMajorVersion;
     private ZipFile jdkZip;
+    private JDKApiIndex jdkIndex;
     private final BugReporter bugReporter;
 
     public SuspiciousJDKVersionUse(BugReporter bugReporter) {
@@ -99,12 +114,29 @@ public class SuspiciousJDKVersionUse extends BytecodeScanningDetector {
         jdkZips = new HashMap<Integer, ZipFile>();
         validMethodsByVersion = new HashMap<Integer, Map<String, Set<String>>>();
         superNames = new HashMap<String, String>();
+        declaredMethodHashes = new HashMap<String, int[]>();
+    }
+
+    /**
+     * returns the opcodes this detector looks at, so that sawOpcode is only called for these
+     *
+     * @return the set of interesting opcodes
+     */
+    @Override
+    public BitSet getInterestingOpcodes() {
+        return INTERESTING_OPCODES;
     }
 
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
             clsMajorVersion = Integer.valueOf(classContext.getJavaClass().getMajor());
+            jdkIndex = JDKApiIndex.getIndex(clsMajorVersion.intValue());
+            if (jdkIndex != null) {
+                super.visitClassContext(classContext);
+                return;
+            }
+
             jdkZip = jdkZips.get(clsMajorVersion);
             if (jdkZip == null) {
                 File rtJar = getRTJarFile();
@@ -125,6 +157,7 @@ public class SuspiciousJDKVersionUse extends BytecodeScanningDetector {
         } finally {
             clsMajorVersion = null;
             jdkZip = null;
+            jdkIndex = null;
         }
     }
 
@@ -138,9 +171,13 @@ public class SuspiciousJDKVersionUse extends BytecodeScanningDetector {
                     || (seen == INVOKESTATIC) || (seen == INVOKESPECIAL)) {
                 clsName = getClassConstantOperand();
                 if ((clsName.startsWith("java/")) || (clsName.startsWith("javax/"))) {
-                    Method m = findCalledMethod();
-                    if (m == null)
+                    if (!isDeclaredMethod(clsName))
+                        return;
+
+                    if (jdkIndex != null) {
+                        checkIndex(clsName);
                         return;
+                    }
 
                     Map<String, Set<String>> validMethods = validMethodsByVersion.get(clsMajorVersion);
                     if (validMethods == null) {
@@ -161,22 +198,50 @@ public class SuspiciousJDKVersionUse extends BytecodeScanningDetector {
         }
     }
 
-    private Method findCalledMethod() {
-        try {
-            JavaClass clss = Repository.lookupClass(getClassConstantOperand());
-            Method[] methods = clss.getMethods();
-            String calledMethod = getNameConstantOperand();
-            String calledSignature = getSigConstantOperand();
-            for (Method m : methods) {
-                if (m.getName().equals(calledMethod) && m.getSignature().equals(calledSignature)) {
-                    return m;
+    /**
+     * determines whether the called method is declared on the class named in the call, as the called class is found on the analysis classpath. The sorted
+     * hashes of each class's methods are remembered, so that each class is only looked at once.
+     *
+     * @param clsName
+     *            the slashed name of the called class
+     * @return whether the called method is declared on that class
+     */
+    private boolean isDeclaredMethod(String clsName) {
+        int[] methodHashes = declaredMethodHashes.get(clsName);
+        if (methodHashes == null) {
+            try {
+                Method[] methods = Repository.lookupClass(clsName).getMethods();
+                methodHashes = new int[methods.length];
+                for (int i = 0; i < methods.length; i++) {
+                    methodHashes[i] = JDKApiIndex.methodHash(methods[i].getName(), methods[i].getSignature());
                 }
+                Arrays.sort(methodHashes);
+                declaredMethodHashes.put(clsName, methodHashes);
+            } catch (ClassNotFoundException cnfe) {
+                bugReporter.reportMissingClass(cnfe);
+                return false;
             }
+        }
 
-            return null;
-        } catch (ClassNotFoundException cnfe) {
-            bugReporter.reportMissingClass(cnfe);
-            return null;
+        return Arrays.binarySearch(methodHashes, JDKApiIndex.methodHash(getNameConstantOperand(), getSigConstantOperand())) >= 0;
+    }
+
+    /**
+     * reports the call if the called class, or method, doesn't exist in the precomputed index of the jdk this class is compiled for
+     *
+     * @param clsName
+     *            the slashed name of the called class
+     */
+    private void checkIndex(String clsName) {
+        int classIndex = jdkIndex.findClass(clsName);
+        if (classIndex < 0) {
+            if (clsName.startsWith("java/")) {
+                bugReporter.reportBug(new BugInstance(this, BugType.SJVU_SUSPICIOUS_JDK_VERSION_USE.name(), HIGH_PRIORITY).addClass(this).addMethod(this)
+                        .addSourceLine(this).addClass(clsName));
+            }
+        } else if (!jdkIndex.hasMethod(classIndex, getNameConstantOperand(), getSigConstantOperand())) {
+            bugReporter.reportBug(new BugInstance(this, BugType.SJVU_SUSPICIOUS_JDK_VERSION_USE.name(), HIGH_PRIORITY).addClass(this).addMethod(this)
+                    .addSourceLine(this).addCalledMethod(this));
         }
     }
 
@@ -29,13 +29,14 @@ import org.apache.bcel.classfile.LocalVariableTable;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.LoopNesting;
 import com.mebigfatguy.fbcontrib.utils.OpcodeUtils;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
-import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
@@ -45,14 +46,15 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * code is looking for the last match, but if this we case, a reverse iterator
  * might be more effective.
  */
-public class SuspiciousLoopSearch extends BytecodeScanningDetector {
+public class SuspiciousLoopSearch extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(SuspiciousLoopSearch.class, Prescreen.opcodes(Constants.GOTO));
 
     enum State {
         SAW_NOTHING, SAW_EQUALS, SAW_IFEQ, SAW_ASSIGNMENT
     };
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
     private Map<Integer, Integer> storeRegs;
     private BitSet loadRegs;
     private State state;
@@ -70,7 +72,7 @@ public class SuspiciousLoopSearch extends BytecodeScanningDetector {
     }
 
     /**
-     * overrides the visitor to initialize and tear down the opcode stack
+     * overrides the visitor to initialize and tear down the register collections
      *
      * @param classContext
      *            the context object of the currently parsed class
@@ -80,27 +82,24 @@ public class SuspiciousLoopSearch extends BytecodeScanningDetector {
         try {
             storeRegs = new HashMap<Integer, Integer>();
             loadRegs = new BitSet();
-            stack = new OpcodeStack();
             super.visitClassContext(classContext);
         } finally {
             loadRegs = null;
             storeRegs = null;
-            stack = null;
         }
     }
 
     /**
-     * overrides the visitor to reset the stack
+     * overrides the visitor to reset the search state, for methods that have loops
      *
      * @param obj
      *            the context object of the currently parsed code block
      */
     @Override
     public void visitCode(Code obj) {
-        if (prescreen(getMethod())) {
+        if (prescreen(getMethod()) && LoopNesting.getLoopNesting(getClassContext(), getMethod()).hasLoops()) {
             storeRegs.clear();
             loadRegs.clear();
-            stack.resetForMethodEntry(this);
             state = State.SAW_NOTHING;
             super.visitCode(obj);
         }
@@ -115,74 +114,69 @@ public class SuspiciousLoopSearch extends BytecodeScanningDetector {
      */
     @Override
     public void sawOpcode(int seen) {
-        try {
-            switch (state) {
-            case SAW_NOTHING:
-                if (seen == INVOKEVIRTUAL) {
-                    String methodName = getNameConstantOperand();
-                    String sig = getSigConstantOperand();
-
-                    if ("equals".equals(methodName) && ("(Ljava/lang/Object;)Z".equals(sig))) {
-                        state = State.SAW_EQUALS;
-                        equalsPos = getPC();
-                    }
+        switch (state) {
+        case SAW_NOTHING:
+            if (seen == INVOKEVIRTUAL) {
+                String methodName = getNameConstantOperand();
+                String sig = getSigConstantOperand();
+
+                if ("equals".equals(methodName) && ("(Ljava/lang/Object;)Z".equals(sig))) {
+                    state = State.SAW_EQUALS;
+                    equalsPos = getPC();
                 }
-                break;
-
-            case SAW_EQUALS:
-                if (seen == IFEQ) {
-                    state = State.SAW_IFEQ;
-                    ifeqBranchTarget = getBranchTarget();
-                } else {
-                    state = State.SAW_NOTHING;
-                }
-                break;
-
-            case SAW_IFEQ:
-            case SAW_ASSIGNMENT:
-                if (getPC() >= ifeqBranchTarget) {
-                    if ((seen == GOTO) && (!storeRegs.isEmpty())) {
-                        if (getBranchTarget() < equalsPos) {
-                            bugReporter.reportBug(new BugInstance(this, BugType.SLS_SUSPICIOUS_LOOP_SEARCH.name(), NORMAL_PRIORITY).addClass(this)
-                                    .addMethod(this).addSourceLine(this, storeRegs.values().iterator().next().intValue()));
-                        }
+            }
+            break;
+
+        case SAW_EQUALS:
+            if (seen == IFEQ) {
+                state = State.SAW_IFEQ;
+                ifeqBranchTarget = getBranchTarget();
+            } else {
+                state = State.SAW_NOTHING;
+            }
+            break;
+
+        case SAW_IFEQ:
+        case SAW_ASSIGNMENT:
+            if (getPC() >= ifeqBranchTarget) {
+                if ((seen == GOTO) && (!storeRegs.isEmpty())) {
+                    if (getBranchTarget() < equalsPos) {
+                        bugReporter.reportBug(new BugInstance(this, BugType.SLS_SUSPICIOUS_LOOP_SEARCH.name(), NORMAL_PRIORITY).addClass(this)
+                                .addMethod(this).addSourceLine(this, storeRegs.values().iterator().next().intValue()));
                     }
-                    storeRegs.clear();
-                    loadRegs.clear();
-                    state = State.SAW_NOTHING;
-                } else if (OpcodeUtils.isBranch(seen) || OpcodeUtils.isReturn(seen)) {
-                    state = State.SAW_NOTHING;
-                } else {
-                    if (OpcodeUtils.isStore(seen)) {
-                        int reg = RegisterUtils.getStoreReg(this, seen);
-                        if (!loadRegs.get(reg)) {
-                            LocalVariableTable lvt = getMethod().getLocalVariableTable();
-                            String sig = "";
-                            if (lvt != null) {
-                                LocalVariable lv = lvt.getLocalVariable(reg, getPC());
-                                if (lv != null) {
-                                    sig = lv.getSignature();
-                                }
-                            }
-                            // ignore boolean flag stores, as this is a
-                            // relatively normal occurrence
-                            if (!"Z".equals(sig)) {
-                                storeRegs.put(Integer.valueOf(RegisterUtils.getStoreReg(this, seen)), Integer.valueOf(getPC()));
+                }
+                storeRegs.clear();
+                loadRegs.clear();
+                state = State.SAW_NOTHING;
+            } else if (OpcodeUtils.isBranch(seen) || OpcodeUtils.isReturn(seen)) {
+                state = State.SAW_NOTHING;
+            } else {
+                if (OpcodeUtils.isStore(seen)) {
+                    int reg = RegisterUtils.getStoreReg(this, seen);
+                    if (!loadRegs.get(reg)) {
+                        LocalVariableTable lvt = getMethod().getLocalVariableTable();
+                        String sig = "";
+                        if (lvt != null) {
+                            LocalVariable lv = lvt.getLocalVariable(reg, getPC());
+                            if (lv != null) {
+                                sig = lv.getSignature();
                             }
                         }
-                    } else if (OpcodeUtils.isLoad(seen)) {
-                        int reg = RegisterUtils.getLoadReg(this, seen);
-                        storeRegs.remove(Integer.valueOf(reg));
-                        loadRegs.set(reg);
+                        // ignore boolean flag stores, as this is a
+                        // relatively normal occurrence
+                        if (!"Z".equals(sig)) {
+                            storeRegs.put(Integer.valueOf(RegisterUtils.getStoreReg(this, seen)), Integer.valueOf(getPC()));
+                        }
                     }
-                    state = State.SAW_ASSIGNMENT;
+                } else if (OpcodeUtils.isLoad(seen)) {
+                    int reg = RegisterUtils.getLoadReg(this, seen);
+                    storeRegs.remove(Integer.valueOf(reg));
+                    loadRegs.set(reg);
                 }
-                break;
+                state = State.SAW_ASSIGNMENT;
             }
-        } finally {
-            stack.sawOpcode(this, seen);
+            break;
         }
-
     }
 
     /**
@@ -193,8 +187,7 @@ public class SuspiciousLoopSearch extends BytecodeScanningDetector {
      * @return if the class uses synchronization
      */
     private boolean prescreen(Method method) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && bytecodeSet.get(Constants.GOTO);
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
 }
@@ -25,12 +25,13 @@ import java.util.Map;
 import org.apache.bcel.classfile.Code;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XField;
@@ -41,10 +42,11 @@ import edu.umd.cs.findbugs.ba.XField;
  * that field or variable. It seems that perhaps the guard should check if the
  * field or variable is null.
  */
-public class SuspiciousNullGuard extends BytecodeScanningDetector {
+public class SuspiciousNullGuard extends ScopedBytecodeScanningDetector {
 
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Map<Integer, NullGuard> nullGuards;
 
     /**
@@ -66,11 +68,11 @@ public class SuspiciousNullGuard extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             nullGuards = new HashMap<Integer, NullGuard>();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -82,7 +84,8 @@ public class SuspiciousNullGuard extends BytecodeScanningDetector {
      */
     @Override
     public void visitCode(Code obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+        stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
         nullGuards.clear();
         super.visitCode(obj);
     }
@@ -96,7 +99,7 @@ public class SuspiciousNullGuard extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             Integer pc = Integer.valueOf(getPC());
             nullGuards.remove(pc);
@@ -204,7 +207,7 @@ public class SuspiciousNullGuard extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -20,7 +20,6 @@ package com.mebigfatguy.fbcontrib.detect;
 
 import java.util.BitSet;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
@@ -28,12 +27,14 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -43,21 +44,13 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * the work of populated the array, it seems odd that this would be the case.
  */
 @CustomUserValue
-public class SuspiciousUninitializedArray extends BytecodeScanningDetector {
+public class SuspiciousUninitializedArray extends ScopedBytecodeScanningDetector {
     private static final String UNINIT_ARRAY = "Unitialized Array";
-    private static JavaClass THREAD_LOCAL_CLASS;
     private static final String INITIAL_VALUE = "initialValue";
 
-    static {
-        try {
-            THREAD_LOCAL_CLASS = Repository.lookupClass(ThreadLocal.class);
-        } catch (ClassNotFoundException e) {
-            THREAD_LOCAL_CLASS = null;
-        }
-    }
-
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private String returnArraySig;
     private BitSet uninitializedRegs;
 
@@ -103,7 +96,8 @@ public class SuspiciousUninitializedArray extends BytecodeScanningDetector {
             Method m = getMethod();
             if (INITIAL_VALUE.equals(m.getName())) {
                 try {
-                    if ((THREAD_LOCAL_CLASS == null) || getClassContext().getJavaClass().instanceOf(THREAD_LOCAL_CLASS)) {
+                    JavaClass threadLocalClass = WellKnownType.THREAD_LOCAL.getJavaClass();
+                    if ((threadLocalClass == null) || TypeHierarchyCache.isSubtypeOf(getClassContext().getJavaClass(), threadLocalClass)) {
                         return;
                     }
                 } catch (ClassNotFoundException e) {
@@ -288,9 +282,9 @@ public class SuspiciousUninitializedArray extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (stack.getStackDepth() > 0) {
                 OpcodeStack.Item item = stack.getStackItem(0);
                 item.setUserValue(userValue);
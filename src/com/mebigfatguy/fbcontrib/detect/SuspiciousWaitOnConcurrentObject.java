@@ -25,11 +25,12 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -37,14 +38,14 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for calls to the wait method on mutexes defined in the
  * java.util.concurrent package where it is likely that await was intended.
  */
-public class SuspiciousWaitOnConcurrentObject extends BytecodeScanningDetector {
+public class SuspiciousWaitOnConcurrentObject extends ScopedBytecodeScanningDetector {
     private static final Set<String> concurrentAwaitClasses = UnmodifiableSet.create(
         "java.util.concurrent.CountDownLatch",
         "java.util.concurrent.CyclicBarrier"
     );
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
 
     /**
      * constructs a SWCO detector given the reporter to report bugs on
@@ -64,27 +65,22 @@ public class SuspiciousWaitOnConcurrentObject extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
-        try {
-            JavaClass cls = classContext.getJavaClass();
-            int major = cls.getMajor();
-            if (major >= Constants.MAJOR_1_5) {
-                stack = new OpcodeStack();
-                super.visitClassContext(classContext);
-            }
-        } finally {
-            stack = null;
+        JavaClass cls = classContext.getJavaClass();
+        int major = cls.getMajor();
+        if (major >= Constants.MAJOR_1_5) {
+            super.visitClassContext(classContext);
         }
     }
 
     /**
-     * implements the visitor to reset the opcode stack
+     * implements the visitor to fetch the shared opcode stack snapshots for this method
      * 
      * @param obj
      *            the context object for the currently parsed method
      */
     @Override
     public void visitMethod(Method obj) {
-        stack.resetForMethodEntry(this);
+        snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), obj);
     }
 
     /**
@@ -97,11 +93,10 @@ public class SuspiciousWaitOnConcurrentObject extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
-
             if (seen == INVOKEVIRTUAL) {
                 String methodName = getNameConstantOperand();
                 if ("wait".equals(methodName)) {
+                    OpcodeStackSnapshots.Snapshot stack = snapshots.before(getPC());
                     if (stack.getStackDepth() > 0) {
                         OpcodeStack.Item itm = stack.getStackItem(0);
                         JavaClass cls = itm.getJavaClass();
@@ -117,8 +112,6 @@ public class SuspiciousWaitOnConcurrentObject extends BytecodeScanningDetector {
             }
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
-        } finally {
-            stack.sawOpcode(this, seen);
         }
     }
 }
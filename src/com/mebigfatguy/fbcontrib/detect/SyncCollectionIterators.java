@@ -27,11 +27,12 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.ConstantFieldref;
 import org.apache.bcel.classfile.ConstantNameAndType;
 
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XField;
@@ -44,7 +45,7 @@ import edu.umd.cs.findbugs.ba.XField;
  * unsafe. When iterators are to be used, synchronization should be done
  * manually.
  */
-public class SyncCollectionIterators extends BytecodeScanningDetector {
+public class SyncCollectionIterators extends ScopedBytecodeScanningDetector {
     private final BugReporter bugReporter;
     private static final Set<String> synchCollectionNames = UnmodifiableSet.create(
             "synchronizedSet",
@@ -68,7 +69,8 @@ public class SyncCollectionIterators extends BytecodeScanningDetector {
     private Set<String> memberCollections;
     private Set<Integer> localCollections;
     private List<Object> monitorObjects;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Object collectionInfo = null;
 
     /**
@@ -87,13 +89,13 @@ public class SyncCollectionIterators extends BytecodeScanningDetector {
             memberCollections = new HashSet<String>();
             localCollections = new HashSet<Integer>();
             monitorObjects = new ArrayList<Object>();
-            stack = new OpcodeStack();
             super.visitClassContext(classContext);
         } finally {
             memberCollections = null;
             localCollections = null;
             monitorObjects = null;
             stack = null;
+            snapshots = null;
         }
     }
 
@@ -103,7 +105,8 @@ public class SyncCollectionIterators extends BytecodeScanningDetector {
             state = State.SEEN_NOTHING;
             localCollections.clear();
             monitorObjects.clear();
-            stack.resetForMethodEntry(this);
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
         }
     }
@@ -111,7 +114,7 @@ public class SyncCollectionIterators extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(final int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             switch (state) {
             case SEEN_NOTHING:
@@ -209,7 +212,7 @@ public class SyncCollectionIterators extends BytecodeScanningDetector {
                     monitorObjects.remove(monitorObjects.size() - 1);
             }
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
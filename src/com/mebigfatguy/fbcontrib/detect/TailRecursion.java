@@ -23,23 +23,23 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
-import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * looks for methods that make a recursive call to itself as the last statement
  * in the method. This tail recursion could be converted into a simple loop
  * which would improve the performance and stack requirements.
  */
-public class TailRecursion extends BytecodeScanningDetector {
+public class TailRecursion extends ScopedBytecodeScanningDetector {
     public static final int TAILRECURSIONFUDGE = 6;
 
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
     private int trPCPos;
     private boolean possibleTailRecursion;
     private boolean isStatic;
@@ -54,22 +54,6 @@ public class TailRecursion extends BytecodeScanningDetector {
         this.bugReporter = bugReporter;
     }
 
-    /**
-     * implements the visitor to create and clear the stack
-     * 
-     * @param classContext
-     *            the context object of the currently parsed class
-     */
-    @Override
-    public void visitClassContext(ClassContext classContext) {
-        try {
-            stack = new OpcodeStack();
-            super.visitClassContext(classContext);
-        } finally {
-            stack = null;
-        }
-    }
-
     /**
      * implements the visitor to figure the pc where the method call must occur
      * depending on whether the method returns a value, or not.
@@ -90,7 +74,7 @@ public class TailRecursion extends BytecodeScanningDetector {
                 trPCPos -= TAILRECURSIONFUDGE;
                 possibleTailRecursion = true;
                 isStatic = obj.isStatic();
-                stack.resetForMethodEntry(this);
+                snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), obj);
                 super.visitMethod(obj);
             }
         }
@@ -104,29 +88,24 @@ public class TailRecursion extends BytecodeScanningDetector {
      */
     @Override
     public void sawOpcode(int seen) {
-        try {
-            stack.precomputation(this);
-
-            if (seen == INVOKEVIRTUAL) {
-                boolean isRecursion = (getMethodName().equals(getNameConstantOperand())) && (getMethodSig().equals(getSigConstantOperand()))
-                        && (getClassName().equals(getClassConstantOperand()));
+        if (seen == INVOKEVIRTUAL) {
+            boolean isRecursion = (getMethodName().equals(getNameConstantOperand())) && (getMethodSig().equals(getSigConstantOperand()))
+                    && (getClassName().equals(getClassConstantOperand()));
 
-                if (isRecursion && !isStatic) {
-                    int numParms = Type.getArgumentTypes(getMethodSig()).length;
-                    if (stack.getStackDepth() > numParms) {
-                        OpcodeStack.Item itm = stack.getStackItem(numParms);
-                        isRecursion = (itm.getRegisterNumber() == 0);
-                    }
+            if (isRecursion && !isStatic) {
+                int numParms = Type.getArgumentTypes(getMethodSig()).length;
+                OpcodeStackSnapshots.Snapshot stack = snapshots.before(getPC());
+                if (stack.getStackDepth() > numParms) {
+                    OpcodeStack.Item itm = stack.getStackItem(numParms);
+                    isRecursion = (itm.getRegisterNumber() == 0);
                 }
-
-                if (isRecursion && possibleTailRecursion && (getPC() >= trPCPos)) {
-                    bugReporter.reportBug(
-                            new BugInstance(this, BugType.TR_TAIL_RECURSION.name(), NORMAL_PRIORITY).addClass(this).addMethod(this).addSourceLine(this));
-                } else
-                    possibleTailRecursion = false;
             }
-        } finally {
-            stack.sawOpcode(this, seen);
+
+            if (isRecursion && possibleTailRecursion && (getPC() >= trPCPos)) {
+                bugReporter.reportBug(
+                        new BugInstance(this, BugType.TR_TAIL_RECURSION.name(), NORMAL_PRIORITY).addClass(this).addMethod(this).addSourceLine(this));
+            } else
+                possibleTailRecursion = false;
         }
     }
 }
@@ -23,12 +23,12 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
-import edu.umd.cs.findbugs.ba.ClassContext;
 
 /**
  * looks for methods that are defined to return Boolean, but return null. This
@@ -36,9 +36,9 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * three values intended, it would be more clear to just create an enumeration
  * with three values and return that type.
  */
-public class TristateBooleanPattern extends BytecodeScanningDetector {
+public class TristateBooleanPattern extends ScopedBytecodeScanningDetector {
     private BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
     private boolean methodReported;
 
     /**
@@ -51,22 +51,6 @@ public class TristateBooleanPattern extends BytecodeScanningDetector {
         this.bugReporter = bugReporter;
     }
 
-    /**
-     * implements the visitor to allocate the opcode stack
-     * 
-     * @param classContext
-     *            the context object of the currently parsed class
-     */
-    @Override
-    public void visitClassContext(ClassContext classContext) {
-        try {
-            stack = new OpcodeStack();
-            super.visitClassContext(classContext);
-        } finally {
-            stack = null;
-        }
-    }
-
     /**
      * implements the visitor to filter out methods that don't return Boolean,
      * and to reset the methodReported flag
@@ -79,7 +63,7 @@ public class TristateBooleanPattern extends BytecodeScanningDetector {
         Method m = getMethod();
         Type retType = m.getReturnType();
         if ("Ljava/lang/Boolean;".equals(retType.getSignature())) {
-            stack.resetForMethodEntry(this);
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), m);
             methodReported = false;
             super.visitCode(obj);
         }
@@ -90,24 +74,19 @@ public class TristateBooleanPattern extends BytecodeScanningDetector {
      */
     @Override
     public void sawOpcode(int seen) {
-        try {
-            if (methodReported)
-                return;
-
-            stack.precomputation(this);
+        if (methodReported)
+            return;
 
-            if (seen == ARETURN) {
-                if (stack.getStackDepth() > 0) {
-                    OpcodeStack.Item item = stack.getStackItem(0);
-                    if (item.isNull()) {
-                        bugReporter.reportBug(new BugInstance(this, BugType.TBP_TRISTATE_BOOLEAN_PATTERN.name(), NORMAL_PRIORITY).addClass(this).addMethod(this)
-                                .addSourceLine(this));
-                        methodReported = true;
-                    }
+        if (seen == ARETURN) {
+            OpcodeStackSnapshots.Snapshot stack = snapshots.before(getPC());
+            if (stack.getStackDepth() > 0) {
+                OpcodeStack.Item item = stack.getStackItem(0);
+                if (item.isNull()) {
+                    bugReporter.reportBug(new BugInstance(this, BugType.TBP_TRISTATE_BOOLEAN_PATTERN.name(), NORMAL_PRIORITY).addClass(this).addMethod(this)
+                            .addSourceLine(this));
+                    methodReported = true;
                 }
             }
-        } finally {
-            stack.sawOpcode(this, seen);
         }
     }
 
@@ -29,19 +29,18 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.classfile.Signature;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * Looks for methods that declare method level template parameter(s) that are not bound to any of the method's parameters, and thus is not adding any
  * validation/type safety to the method, and is just confusing.
  */
-public class UnboundMethodTemplateParameter extends PreorderVisitor implements Detector {
+public class UnboundMethodTemplateParameter extends ScopedPreorderDetector {
 
     private static final Pattern TEMPLATED_SIGNATURE = Pattern.compile("(\\<[^\\>]+\\>)(.+)");
     private static final Pattern TEMPLATE = Pattern.compile("\\<?([^:]+):([^;]*);");
@@ -22,7 +22,6 @@ package com.mebigfatguy.fbcontrib.detect;
 import java.util.HashSet;
 import java.util.Set;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.AnnotationEntry;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.ElementValuePair;
@@ -32,11 +31,13 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -45,7 +46,7 @@ import edu.umd.cs.findbugs.classfile.FieldDescriptor;
 
 /** looks for odd uses of the Assert class of the JUnit and TestNG framework */
 @CustomUserValue
-public class UnitTestAssertionOddities extends BytecodeScanningDetector {
+public class UnitTestAssertionOddities extends ScopedBytecodeScanningDetector {
     private enum State {
         SAW_NOTHING, SAW_IF_ICMPNE, SAW_IF_NE, SAW_IF_ICMPEQ, SAW_ICONST_1, SAW_GOTO, SAW_ICONST_0, SAW_EQUALS
     }
@@ -57,22 +58,17 @@ public class UnitTestAssertionOddities extends BytecodeScanningDetector {
     private static final String BOOLEAN_TYPE_SIGNATURE = "Ljava/lang/Boolean;";
     private static final String LJAVA_LANG_DOUBLE = "Ljava/lang/Double;";
 
-    private static final String TESTCASE_CLASS = "junit.framework.TestCase";
-    private static final String TEST_CLASS = "org.junit.Test";
     private static final String TEST_ANNOTATION_SIGNATURE = "Lorg/junit/Test;";
     private static final String OLD_ASSERT_CLASS = "junit/framework/Assert";
     private static final String NEW_ASSERT_CLASS = "org/junit/Assert";
 
-    private static final String TESTNG_CLASS = "org.testng.annotations.Test";
     private static final String TESTNG_ANNOTATION_SIGNATURE = "Lorg/testng/annotations/Test;";
     private static final String NG_ASSERT_CLASS = "org/testng/Assert";
     private static final String NG_JUNIT_ASSERT_CLASS = "org/testng/AssertJUnit";
 
     private BugReporter bugReporter;
-    private JavaClass testCaseClass;
-    private JavaClass testAnnotationClass;
-    private JavaClass testNGAnnotationClass;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private boolean isTestCaseDerived;
     private boolean isAnnotationCapable;
     private String clsName;
@@ -91,23 +87,6 @@ public class UnitTestAssertionOddities extends BytecodeScanningDetector {
      */
     public UnitTestAssertionOddities(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
-
-        try {
-            testCaseClass = Repository.lookupClass(TESTCASE_CLASS);
-        } catch (ClassNotFoundException cnfe) {
-            testCaseClass = null;
-        }
-        try {
-            testAnnotationClass = Repository.lookupClass(TEST_CLASS);
-        } catch (ClassNotFoundException cnfe) {
-            testAnnotationClass = null;
-        }
-
-        try {
-            testNGAnnotationClass = Repository.lookupClass(TESTNG_CLASS);
-        } catch (ClassNotFoundException cnfe) {
-            testNGAnnotationClass = null;
-        }
     }
 
     /**
@@ -121,8 +100,10 @@ public class UnitTestAssertionOddities extends BytecodeScanningDetector {
         try {
             JavaClass cls = classContext.getJavaClass();
             clsName = cls.getClassName().replace('.', '/');
-            isTestCaseDerived = (testCaseClass != null) && cls.instanceOf(testCaseClass);
-            isAnnotationCapable = (cls.getMajor() >= 5) && ((testAnnotationClass != null) || (testNGAnnotationClass != null));
+            JavaClass testCaseClass = WellKnownType.JUNIT_TEST_CASE.getJavaClass();
+            isTestCaseDerived = (testCaseClass != null) && TypeHierarchyCache.isSubtypeOf(cls, testCaseClass);
+            isAnnotationCapable = (cls.getMajor() >= 5)
+                    && ((WellKnownType.JUNIT_TEST.getJavaClass() != null) || (WellKnownType.TESTNG_TEST.getJavaClass() != null));
             if (isTestCaseDerived || isAnnotationCapable) {
                 stack = new OpcodeStack();
                 fieldsWithAnnotations = new HashSet<FieldDescriptor>();
@@ -439,9 +420,9 @@ public class UnitTestAssertionOddities extends BytecodeScanningDetector {
             }
 
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if ((userValue != null) && (stack.getStackDepth() > 0)) {
                 OpcodeStack.Item item = stack.getStackItem(0);
                 item.setUserValue(userValue);
@@ -24,19 +24,18 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedPreorderDetector;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.ba.ClassContext;
-import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * looks for methods that are bigger than 8000 bytes, as these methods are
  * ignored by the jit for compilation, causing them to always be interpreted.
  */
-public class Unjitable extends PreorderVisitor implements Detector {
+public class Unjitable extends ScopedPreorderDetector {
 
     private static final int UNJITABLE_CODE_LENGTH = 8000;
 
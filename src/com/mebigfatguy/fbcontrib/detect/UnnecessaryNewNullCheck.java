@@ -28,13 +28,14 @@ import org.apache.bcel.classfile.CodeException;
 
 import com.mebigfatguy.fbcontrib.utils.AttributesUtils;
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -46,9 +47,12 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * misunderstanding as to how the jvm works.
  */
 @CustomUserValue
-public class UnnecessaryNewNullCheck extends BytecodeScanningDetector {
+public class UnnecessaryNewNullCheck extends ScopedBytecodeScanningDetector {
+    private static final Prescreen PRESCREEN = Prescreen.register(UnnecessaryNewNullCheck.class, Prescreen.opcodes(Constants.NEW, Constants.ANEWARRAY, Constants.MULTIANEWARRAY));
+
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private BitSet allocationRegs;
     private Set<Integer> transitionPoints;
 
@@ -190,9 +194,9 @@ public class UnnecessaryNewNullCheck extends BytecodeScanningDetector {
                 break;
             }
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
 
             if (stack.getStackDepth() > 0) {
                 OpcodeStack.Item item = stack.getStackItem(0);
@@ -202,7 +206,6 @@ public class UnnecessaryNewNullCheck extends BytecodeScanningDetector {
     }
 
     private boolean prescreen() {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.NEW) || bytecodeSet.get(Constants.ANEWARRAY) || bytecodeSet.get(Constants.MULTIANEWARRAY));
+        return PRESCREEN.acceptMethod(getClassContext(), getMethod());
     }
 }
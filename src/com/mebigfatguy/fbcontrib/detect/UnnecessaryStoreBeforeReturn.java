@@ -28,11 +28,11 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -42,7 +42,7 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * immediately returns that local variable.
  */
 @CustomUserValue
-public class UnnecessaryStoreBeforeReturn extends BytecodeScanningDetector {
+public class UnnecessaryStoreBeforeReturn extends ScopedBytecodeScanningDetector {
     enum State {
         SEEN_NOTHING, SEEN_STORE, SEEN_LOAD
     }
@@ -108,6 +108,7 @@ public class UnnecessaryStoreBeforeReturn extends BytecodeScanningDetector {
     private Set<Integer> branchTargets;
     private Set<Integer> catchTargets;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private State state;
     private int storeReg;
 
@@ -222,9 +223,9 @@ public class UnnecessaryStoreBeforeReturn extends BytecodeScanningDetector {
             lhsReg = processBinOp(seen);
 
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if ((lhsReg > -1) && (stack.getStackDepth() >= 1)) {
                 OpcodeStack.Item item = stack.getStackItem(0);
                 item.setUserValue(Integer.valueOf(lhsReg));
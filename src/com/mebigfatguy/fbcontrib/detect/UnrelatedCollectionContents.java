@@ -28,13 +28,14 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -45,12 +46,13 @@ import edu.umd.cs.findbugs.ba.XField;
  * brittle code, relying either on positional correspondence for type, or a reliance on instanceof to determine type. A better design usually can be had by
  * creating a separate class, which defines the different types required, and add an instance of that class to the collection, or array.
  */
-public class UnrelatedCollectionContents extends BytecodeScanningDetector {
+public class UnrelatedCollectionContents extends ScopedBytecodeScanningDetector {
     private static final Set<String> COLLECTION_CLASSES = UnmodifiableSet.create("java/util/Collection", "java/util/List", "java/util/Map", "java/util/Set",
             "java/util/SortedMap", "java/util/SortedSet");
 
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private Map<String, Set<String>> memberCollections;
     private Map<Integer, Set<String>> localCollections;
     private Map<Integer, Set<Integer>> localScopeEnds;
@@ -76,12 +78,12 @@ public class UnrelatedCollectionContents extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(final ClassContext classContext) {
         try {
-            stack = new OpcodeStack();
             memberCollections = new HashMap<String, Set<String>>();
             memberSourceLineAnnotations = new HashMap<String, Set<SourceLineAnnotation>>();
             super.visitClassContext(classContext);
         } finally {
             stack = null;
+            snapshots = null;
             memberCollections = null;
             memberSourceLineAnnotations = null;
         }
@@ -99,7 +101,8 @@ public class UnrelatedCollectionContents extends BytecodeScanningDetector {
             localCollections = new HashMap<Integer, Set<String>>();
             localScopeEnds = new HashMap<Integer, Set<Integer>>();
             localSourceLineAnnotations = new HashMap<Integer, Set<SourceLineAnnotation>>();
-            stack.resetForMethodEntry(this);
+            snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+            stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
             super.visitCode(obj);
         } finally {
             localCollections = null;
@@ -117,7 +120,7 @@ public class UnrelatedCollectionContents extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(final int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             Set<Integer> regs = localScopeEnds.remove(Integer.valueOf(getPC()));
             if (regs != null) {
@@ -160,7 +163,7 @@ public class UnrelatedCollectionContents extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -30,12 +30,13 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.OpcodeStackSnapshots;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.SignatureUtils;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
@@ -43,9 +44,10 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * looks for methods that return Object, and who's code body returns two or more
  * different types of objects that are unrelated (other than by Object).
  */
-public class UnrelatedReturnValues extends BytecodeScanningDetector {
+public class UnrelatedReturnValues extends ScopedBytecodeScanningDetector {
     private final BugReporter bugReporter;
-    private OpcodeStack stack;
+    private OpcodeStackSnapshots snapshots;
+    private OpcodeStackSnapshots.Snapshot stack;
     private JavaClass currentClass;
     private Map<JavaClass, Integer> returnTypes;
 
@@ -69,12 +71,12 @@ public class UnrelatedReturnValues extends BytecodeScanningDetector {
     public void visitClassContext(ClassContext classContext) {
         try {
             currentClass = classContext.getJavaClass();
-            stack = new OpcodeStack();
             returnTypes = new HashMap<JavaClass, Integer>();
             super.visitClassContext(classContext);
         } finally {
             currentClass = null;
             stack = null;
+            snapshots = null;
             returnTypes = null;
         }
     }
@@ -92,7 +94,8 @@ public class UnrelatedReturnValues extends BytecodeScanningDetector {
             Method m = getMethod();
             String signature = m.getSignature();
             if (signature.endsWith(")Ljava/lang/Object;")) {
-                stack.resetForMethodEntry(this);
+                snapshots = OpcodeStackSnapshots.getSnapshots(getClassContext(), getMethod());
+                stack = OpcodeStackSnapshots.EMPTY_SNAPSHOT;
                 returnTypes.clear();
                 super.visitCode(obj);
                 if (returnTypes.size() > 1) {
@@ -141,7 +144,7 @@ public class UnrelatedReturnValues extends BytecodeScanningDetector {
     @Override
     public void sawOpcode(int seen) {
         try {
-            stack.precomputation(this);
+            stack = snapshots.before(getPC());
 
             if (seen == ARETURN) {
                 if (stack.getStackDepth() > 0) {
@@ -154,7 +157,7 @@ public class UnrelatedReturnValues extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            stack.sawOpcode(this, seen);
+            stack = snapshots.after(getPC());
         }
     }
 
@@ -22,18 +22,20 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.LoopNesting;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.ToString;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -47,15 +49,16 @@ import edu.umd.cs.findbugs.ba.XField;
  * can use Arrays.asList(array), and use that as the source to addAll.
  */
 @CustomUserValue
-public class UseAddAll extends BytecodeScanningDetector {
+public class UseAddAll extends ScopedBytecodeScanningDetector {
     private JavaClass collectionClass;
-    private ClassNotFoundException ex;
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     /** register/field to alias register/field */
     private Map<Comparable<?>, Comparable<?>> userValues;
     /** alias register to loop info */
     private Map<Comparable<?>, LoopInfo> loops;
+    private LoopNesting loopNesting;
     private boolean isInstanceMethod;
 
     /**
@@ -66,12 +69,6 @@ public class UseAddAll extends BytecodeScanningDetector {
      */
     public UseAddAll(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
-        try {
-            collectionClass = Repository.lookupClass("java/util/Collection");
-        } catch (ClassNotFoundException cnfe) {
-            collectionClass = null;
-            ex = cnfe;
-        }
     }
 
     /**
@@ -83,11 +80,10 @@ public class UseAddAll extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
-        if (collectionClass == null) {
-            if (ex != null) {
-                bugReporter.reportMissingClass(ex);
-                ex = null;
-            }
+        try {
+            collectionClass = WellKnownType.COLLECTION.lookupClass();
+        } catch (ClassNotFoundException cnfe) {
+            bugReporter.reportMissingClass(cnfe);
             return;
         }
 
@@ -100,7 +96,7 @@ public class UseAddAll extends BytecodeScanningDetector {
     }
 
     /**
-     * implements the visitor to reset the stack and userValues and loops
+     * implements the visitor to reset the stack and userValues and loops, for methods that have loops
      * 
      * @param obj
      *            the context object of the currently parsed code block
@@ -108,6 +104,11 @@ public class UseAddAll extends BytecodeScanningDetector {
     @Override
     public void visitCode(Code obj) {
         try {
+            loopNesting = LoopNesting.getLoopNesting(getClassContext(), getMethod());
+            if (!loopNesting.hasLoops()) {
+                return;
+            }
+
             stack.resetForMethodEntry(this);
             userValues = new HashMap<Comparable<?>, Comparable<?>>();
             loops = new HashMap<Comparable<?>, LoopInfo>();
@@ -116,6 +117,7 @@ public class UseAddAll extends BytecodeScanningDetector {
         } finally {
             userValues = null;
             loops = null;
+            loopNesting = null;
         }
     }
 
@@ -234,21 +236,14 @@ public class UseAddAll extends BytecodeScanningDetector {
                 boolean loopFound = false;
                 if (stack.getStackDepth() > 0) {
                     if (getBranchOffset() > 0) {
-                        int gotoPos = getBranchTarget() - 3;
-                        byte[] code = getCode().getCode();
-                        if ((0x00FF & code[gotoPos]) == GOTO) {
-                            short brOffset = (short) (0x0FF & code[gotoPos + 1]);
-                            brOffset <<= 8;
-                            brOffset |= (0x0FF & code[gotoPos + 2]);
-                            gotoPos += brOffset;
-                            if (gotoPos < pc) {
-                                OpcodeStack.Item itm = stack.getStackItem(0);
-                                uValue = (Comparable<?>) itm.getUserValue();
-                                if (uValue != null) {
-                                    loops.put(uValue, new LoopInfo(pc, getBranchTarget()));
-                                }
-                                loopFound = true;
+                        LoopNesting.BackEdge backEdge = loopNesting.getBackEdge(getBranchTarget() - 3);
+                        if ((backEdge != null) && (backEdge.getOpcode() == GOTO) && (backEdge.getTarget() < pc)) {
+                            OpcodeStack.Item itm = stack.getStackItem(0);
+                            uValue = (Comparable<?>) itm.getUserValue();
+                            if (uValue != null) {
+                                loops.put(uValue, new LoopInfo(pc, getBranchTarget()));
                             }
+                            loopFound = true;
                         }
 
                         if (!loopFound) {
@@ -286,9 +281,9 @@ public class UseAddAll extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (sawAlias) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item itm = stack.getStackItem(0);
@@ -334,7 +329,7 @@ public class UseAddAll extends BytecodeScanningDetector {
             return -1;
 
         JavaClass cls = item.getJavaClass();
-        if ((cls != null) && cls.implementationOf(collectionClass))
+        if ((cls != null) && TypeHierarchyCache.isSubtypeOf(cls, collectionClass))
             return reg;
 
         return -1;
@@ -360,7 +355,7 @@ public class UseAddAll extends BytecodeScanningDetector {
             return null;
 
         JavaClass cls = item.getJavaClass();
-        if ((cls != null) && cls.implementationOf(collectionClass))
+        if ((cls != null) && TypeHierarchyCache.isSubtypeOf(cls, collectionClass))
             return field.getName();
 
         return null;
@@ -18,7 +18,6 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -30,12 +29,13 @@ import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.FQMethod;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.ToString;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -45,7 +45,9 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * instead. It is more performant for the method to handle a single character than a String.
  */
 @CustomUserValue
-public class UseCharacterParameterizedMethod extends BytecodeScanningDetector {
+public class UseCharacterParameterizedMethod extends ScopedBytecodeScanningDetector {
+
+    private static final Prescreen PRESCREEN = Prescreen.register(UseCharacterParameterizedMethod.class, Prescreen.opcodes(Constants.LDC, Constants.LDC_W));
 
     /**
      * holds a user value for a StringBuilder or StringBuffer on the stack that is an online append ideally there would be an UNKNOWN option, rather than null,
@@ -131,8 +133,7 @@ public class UseCharacterParameterizedMethod extends BytecodeScanningDetector {
      */
 
     private boolean prescreen(Method obj) {
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(obj);
-        return (bytecodeSet != null) && ((bytecodeSet.get(Constants.LDC) || (bytecodeSet.get(Constants.LDC_W))));
+        return PRESCREEN.acceptMethod(getClassContext(), obj);
     }
 
     /**
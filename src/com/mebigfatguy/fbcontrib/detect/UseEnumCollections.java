@@ -29,13 +29,13 @@ import org.apache.bcel.classfile.Method;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -46,7 +46,7 @@ import edu.umd.cs.findbugs.ba.XField;
  * is more efficient to use EnumSet or EnumMap. It is a jdk1.5 only detector.
  */
 @CustomUserValue
-public class UseEnumCollections extends BytecodeScanningDetector {
+public class UseEnumCollections extends ScopedBytecodeScanningDetector {
     private static final Set<String> nonEnumCollections = UnmodifiableSet.create(
             "Ljava/util/HashSet;",
             "Ljava/util/HashMap;",
@@ -58,6 +58,7 @@ public class UseEnumCollections extends BytecodeScanningDetector {
 
     private final BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Set<String> checkedFields;
     private Map<Integer, Boolean> enumRegs;
     private Map<String, Boolean> enumFields;
@@ -183,9 +184,9 @@ public class UseEnumCollections extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (sawEnumCollectionCreation != null) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item itm = stack.getStackItem(0);
@@ -21,17 +21,19 @@ package com.mebigfatguy.fbcontrib.detect;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.LoopNesting;
 import com.mebigfatguy.fbcontrib.utils.RegisterUtils;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -43,11 +45,11 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * type[mycollection.size()].
  */
 @CustomUserValue
-public class UseToArray extends BytecodeScanningDetector {
+public class UseToArray extends ScopedBytecodeScanningDetector {
     private JavaClass collectionClass;
-    private ClassNotFoundException ex;
     private BugReporter bugReporter;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
     private Map<Integer, Object> userValues;
 
     /**
@@ -58,12 +60,6 @@ public class UseToArray extends BytecodeScanningDetector {
      */
     public UseToArray(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
-        try {
-            collectionClass = Repository.lookupClass("java/util/Collection");
-        } catch (ClassNotFoundException cnfe) {
-            collectionClass = null;
-            ex = cnfe;
-        }
     }
 
     /**
@@ -75,11 +71,10 @@ public class UseToArray extends BytecodeScanningDetector {
      */
     @Override
     public void visitClassContext(ClassContext classContext) {
-        if (collectionClass == null) {
-            if (ex != null) {
-                bugReporter.reportMissingClass(ex);
-                ex = null;
-            }
+        try {
+            collectionClass = WellKnownType.COLLECTION.lookupClass();
+        } catch (ClassNotFoundException cnfe) {
+            bugReporter.reportMissingClass(cnfe);
             return;
         }
 
@@ -92,7 +87,8 @@ public class UseToArray extends BytecodeScanningDetector {
     }
 
     /**
-     * implements the visitor to reset the stack and uservalues
+     * implements the visitor to reset the stack and uservalues, for methods that
+     * have loops
      * 
      * @param obj
      *            the context object of the currently parsed code block
@@ -100,6 +96,10 @@ public class UseToArray extends BytecodeScanningDetector {
     @Override
     public void visitCode(Code obj) {
         try {
+            if (!LoopNesting.getLoopNesting(getClassContext(), getMethod()).hasLoops()) {
+                return;
+            }
+
             stack.resetForMethodEntry(this);
             userValues = new HashMap<Integer, Object>();
             super.visitCode(obj);
@@ -203,9 +203,9 @@ public class UseToArray extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if (sawAlias) {
                 if (stack.getStackDepth() > 0) {
                     OpcodeStack.Item itm = stack.getStackItem(0);
@@ -250,7 +250,7 @@ public class UseToArray extends BytecodeScanningDetector {
             return -1;
 
         JavaClass cls = item.getJavaClass();
-        if ((cls != null) && cls.implementationOf(collectionClass))
+        if ((cls != null) && TypeHierarchyCache.isSubtypeOf(cls, collectionClass))
             return reg;
 
         return -1;
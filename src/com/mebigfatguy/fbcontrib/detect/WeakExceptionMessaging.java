@@ -18,7 +18,6 @@
  */
 package com.mebigfatguy.fbcontrib.detect;
 
-import java.util.BitSet;
 import java.util.Set;
 
 import org.apache.bcel.Constants;
@@ -30,13 +29,16 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import com.mebigfatguy.fbcontrib.utils.BugType;
+import com.mebigfatguy.fbcontrib.utils.Prescreen;
+import com.mebigfatguy.fbcontrib.utils.ScopedBytecodeScanningDetector;
 import com.mebigfatguy.fbcontrib.utils.TernaryPatcher;
+import com.mebigfatguy.fbcontrib.utils.TypeHierarchyCache;
 import com.mebigfatguy.fbcontrib.utils.UnmodifiableSet;
 import com.mebigfatguy.fbcontrib.utils.Values;
+import com.mebigfatguy.fbcontrib.utils.WellKnownType;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.CustomUserValue;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -48,21 +50,16 @@ import edu.umd.cs.findbugs.ba.ClassContext;
  * showing context.
  */
 @CustomUserValue
-public class WeakExceptionMessaging extends BytecodeScanningDetector {
+public class WeakExceptionMessaging extends ScopedBytecodeScanningDetector {
 
-    private static JavaClass exceptionClass;
-    private static final Set<String> ignorableExceptionTypes = UnmodifiableSet.create("java.lang.UnsupportedOperationException");
+    private static final Prescreen PRESCREEN = Prescreen.register(WeakExceptionMessaging.class, Prescreen.opcodes(Constants.ATHROW));
 
-    static {
-        try {
-            exceptionClass = Repository.lookupClass("java/lang/Exception");
-        } catch (ClassNotFoundException cnfe) {
-            exceptionClass = null;
-        }
-    }
+    private static final Set<String> ignorableExceptionTypes = UnmodifiableSet.create("java.lang.UnsupportedOperationException");
 
     private final BugReporter bugReporter;
+    private JavaClass exceptionClass;
     private OpcodeStack stack;
+    private final TernaryPatcher ternaryPatcher = new TernaryPatcher();
 
     /**
      * constructs a WEM detector given the reporter to report bugs on
@@ -83,6 +80,7 @@ public class WeakExceptionMessaging extends BytecodeScanningDetector {
     @Override
     public void visitClassContext(ClassContext classContext) {
         try {
+            exceptionClass = WellKnownType.EXCEPTION.getJavaClass();
             if (exceptionClass != null) {
                 stack = new OpcodeStack();
                 super.visitClassContext(classContext);
@@ -105,8 +103,7 @@ public class WeakExceptionMessaging extends BytecodeScanningDetector {
             return false;
         }
 
-        BitSet bytecodeSet = getClassContext().getBytecodeSet(method);
-        return (bytecodeSet != null) && (bytecodeSet.get(Constants.ATHROW));
+        return PRESCREEN.acceptMethod(getClassContext(), method);
     }
 
     /**
@@ -161,7 +158,7 @@ public class WeakExceptionMessaging extends BytecodeScanningDetector {
                     String clsName = getClassConstantOperand();
                     if (clsName.indexOf("Exception") >= 0) {
                         JavaClass exCls = Repository.lookupClass(clsName);
-                        if (exCls.instanceOf(exceptionClass)) {
+                        if (TypeHierarchyCache.isSubtypeOf(exCls, exceptionClass)) {
                             String sig = getSigConstantOperand();
                             Type[] argTypes = Type.getArgumentTypes(sig);
                             int stringParms = 0;
@@ -189,9 +186,9 @@ public class WeakExceptionMessaging extends BytecodeScanningDetector {
         } catch (ClassNotFoundException cnfe) {
             bugReporter.reportMissingClass(cnfe);
         } finally {
-            TernaryPatcher.pre(stack, seen);
+            ternaryPatcher.pre(stack, seen);
             stack.sawOpcode(this, seen);
-            TernaryPatcher.post(stack, seen);
+            ternaryPatcher.post(stack, seen);
             if ((sawConstant || allConstantStrings) && (stack.getStackDepth() > 0)) {
                 OpcodeStack.Item item = stack.getStackItem(0);
                 item.setUserValue(Boolean.TRUE);
@@ -0,0 +1,218 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IAnalysisEngineRegistrar;
+
+/**
+ * applies the analysis profile named by the system property fb-contrib.profile, which limits the detectors that are run to those whose cost, in
+ * microseconds of cpu per KB of bytecode, is within a budget. The costs are read from the detector-costs.properties resource, as measured by the
+ * DetectorCalibration benchmark, and the speed given in findbugs.xml is used for detectors that haven't been measured. The profiles are
+ * <ul>
+ * <li>fast - only the detectors of the fast tier</li>
+ * <li>moderate - the detectors of the fast and moderate tiers</li>
+ * <li>all - every detector, the same as not giving a profile</li>
+ * </ul>
+ * A budget of its own can be given instead with fb-contrib.profile.budget. Detectors that don't report bugs, such as the collectors, are always run, as
+ * other detectors rely on what they gather.
+ * <p>
+ * FindBugs gives plugins no say over which detectors are run, so the profile is applied when FindBugs asks the plugin to register its analysis engines,
+ * which it does before planning the passes, by changing whether the detectors are enabled by default. Detectors that are enabled explicitly in the user
+ * preferences are still run.
+ */
+public class AnalysisProfile implements IAnalysisEngineRegistrar {
+
+    public static final String PROFILE_PROPERTY = "fb-contrib.profile";
+    public static final String BUDGET_PROPERTY = "fb-contrib.profile.budget";
+    public static final String COSTS_RESOURCE = "/detector-costs.properties";
+
+    private static final String PLUGIN_ID = "com.mebigfatguy.fbcontrib";
+    private static final String DEFAULT_ENABLED_FIELD = "defEnabled";
+
+    private static final ConcurrentMap<String, Boolean> ORIGINAL_DEFAULTS = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * the speed tiers of detectors, by their highest cost in microseconds of cpu per KB of bytecode
+     */
+    public enum Tier {
+        FAST(250.0), MODERATE(700.0), SLOW(Double.MAX_VALUE);
+
+        private final double maxCost;
+
+        private Tier(double maxCost) {
+            this.maxCost = maxCost;
+        }
+
+        public double getMaxCost() {
+            return maxCost;
+        }
+
+        /**
+         * returns the tier a measured cost falls in
+         *
+         * @param cost
+         *            the cost in microseconds of cpu per KB of bytecode
+         * @return the tier
+         */
+        public static Tier forCost(double cost) {
+            for (Tier tier : values()) {
+                if (cost <= tier.maxCost) {
+                    return tier;
+                }
+            }
+            return SLOW;
+        }
+
+        /**
+         * returns the tier named by the speed attribute of a detector in findbugs.xml
+         *
+         * @param speed
+         *            the speed, fast, moderate or slow
+         * @return the tier, or SLOW if the speed isn't known
+         */
+        public static Tier forSpeed(String speed) {
+            if (speed != null) {
+                for (Tier tier : values()) {
+                    if (tier.name().equalsIgnoreCase(speed)) {
+                        return tier;
+                    }
+                }
+            }
+            return SLOW;
+        }
+
+        public String getSpeed() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    @Override
+    public void registerAnalysisEngines(IAnalysisCache analysisCache) {
+        Plugin plugin = Plugin.getByPluginId(PLUGIN_ID);
+        if (plugin == null) {
+            return;
+        }
+
+        double budget = getBudget();
+        Properties costs = (budget < Double.MAX_VALUE) ? loadCosts() : null;
+        for (DetectorFactory factory : plugin.getDetectorFactories()) {
+            if (factory.getReportedBugPatterns().isEmpty()) {
+                continue;
+            }
+
+            Boolean originalDefault = ORIGINAL_DEFAULTS.get(factory.getFullName());
+            if (originalDefault == null) {
+                originalDefault = Boolean.valueOf(factory.isDefaultEnabled());
+                ORIGINAL_DEFAULTS.put(factory.getFullName(), originalDefault);
+            }
+
+            boolean enabled = originalDefault.booleanValue() && ((costs == null) || (getCost(factory, costs) <= budget));
+            if (enabled != factory.isDefaultEnabled()) {
+                setDefaultEnabled(factory, enabled);
+            }
+        }
+    }
+
+    /**
+     * returns the highest cost of the detectors to run, from the budget or profile properties
+     *
+     * @return the cost in microseconds of cpu per KB of bytecode, or Double.MAX_VALUE when all detectors are to be run
+     */
+    static double getBudget() {
+        String budget = System.getProperty(BUDGET_PROPERTY);
+        if (budget != null) {
+            try {
+                return Double.parseDouble(budget);
+            } catch (NumberFormatException nfe) {
+                // fall back to the profile
+            }
+        }
+
+        String profile = System.getProperty(PROFILE_PROPERTY);
+        if (profile != null) {
+            for (Tier tier : Tier.values()) {
+                if (tier.name().equalsIgnoreCase(profile)) {
+                    return tier.getMaxCost();
+                }
+            }
+        }
+
+        return Double.MAX_VALUE;
+    }
+
+    /**
+     * returns the cost of a detector, as measured, or if it hasn't been, as the highest cost of the tier given by its speed in findbugs.xml
+     *
+     * @param factory
+     *            the factory of the detector
+     * @param costs
+     *            the measured costs by detector short name
+     * @return the cost in microseconds of cpu per KB of bytecode
+     */
+    @SuppressWarnings("deprecation")
+    static double getCost(DetectorFactory factory, Properties costs) {
+        String cost = costs.getProperty(factory.getShortName());
+        if (cost != null) {
+            try {
+                return Double.parseDouble(cost);
+            } catch (NumberFormatException nfe) {
+                // use the speed instead
+            }
+        }
+        return Tier.forSpeed(factory.getSpeed()).getMaxCost();
+    }
+
+    static Properties loadCosts() {
+        Properties costs = new Properties();
+        try (InputStream is = AnalysisProfile.class.getResourceAsStream(COSTS_RESOURCE)) {
+            if (is != null) {
+                costs.load(is);
+            }
+        } catch (IOException e) {
+            // use the speeds of findbugs.xml
+        }
+        return costs;
+    }
+
+    private static void setDefaultEnabled(DetectorFactory factory, boolean enabled) {
+        try {
+            Field defEnabled = DetectorFactory.class.getDeclaredField(DEFAULT_ENABLED_FIELD);
+            defEnabled.setAccessible(true);
+            defEnabled.setBoolean(factory, enabled);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            // an unknown version of FindBugs, so all detectors are run
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ConstantUtf8;
+import org.apache.bcel.classfile.JavaClass;
+
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+/**
+ * an index of all the classes a class refers to thru its constant pool, whether as the owner of a called method or accessed field, or in a field, method
+ * or annotation signature. The index is built once per class, and kept with the ClassContext, so that all detectors can cheaply ask whether a class uses
+ * an api at all, by package or class name prefix.
+ */
+public class ClassReferenceIndex {
+
+    private final NavigableSet<String> referencedClasses = new TreeSet<String>();
+
+    private ClassReferenceIndex(JavaClass cls) {
+        ConstantPool pool = cls.getConstantPool();
+        for (Constant c : pool.getConstantPool()) {
+            if (c instanceof ConstantClass) {
+                String clsName = (String) ((ConstantClass) c).getConstantValue(pool);
+                if (clsName.startsWith("[")) {
+                    addSignatureClasses(clsName);
+                } else {
+                    referencedClasses.add(clsName);
+                }
+            } else if (c instanceof ConstantUtf8) {
+                addSignatureClasses(((ConstantUtf8) c).getBytes());
+            }
+        }
+    }
+
+    /**
+     * retrieves the index for a class, building it if this is the first detector to ask for it. As ClassContext only caches analyses by method, the index is
+     * stored as the analysis of the class's static initializer, whether or not the class has one.
+     *
+     * @param classContext
+     *            the context object of the class being parsed
+     * @return the index of classes referenced by this class
+     */
+    public static ClassReferenceIndex getIndex(ClassContext classContext) {
+        JavaClass cls = classContext.getJavaClass();
+        MethodDescriptor md = DescriptorFactory.instance().getMethodDescriptor(cls.getClassName().replace('.', '/'), Values.STATIC_INITIALIZER, "()V", true);
+        ClassReferenceIndex index = (ClassReferenceIndex) classContext.getMethodAnalysis(ClassReferenceIndex.class, md);
+        if (index == null) {
+            index = new ClassReferenceIndex(cls);
+            classContext.putMethodAnalysis(ClassReferenceIndex.class, md, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * returns whether the class refers to any class whose slashed name starts with the given prefix
+     *
+     * @param prefix
+     *            a slashed package or class name prefix, such as "java/sql/"
+     * @return whether a class with that prefix is referenced
+     */
+    public boolean refersTo(String prefix) {
+        String candidate = referencedClasses.ceiling(prefix);
+        return (candidate != null) && candidate.startsWith(prefix);
+    }
+
+    /**
+     * returns whether the class refers to any class whose slashed name starts with one of the given prefixes
+     *
+     * @param prefixes
+     *            slashed package or class name prefixes
+     * @return whether a class with one of those prefixes is referenced
+     */
+    public boolean refersToAny(Collection<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (refersTo(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * returns all the classes this class refers to
+     *
+     * @return the slashed names of the referenced classes, in sorted order
+     */
+    public Set<String> getReferencedClasses() {
+        return Collections.unmodifiableSet(referencedClasses);
+    }
+
+    /**
+     * adds the classes found in a signature, or what might be a signature, to the index. Strings that just happen to look like signatures only add classes
+     * that aren't really referenced, which at worst keeps a detector from skipping the class.
+     *
+     * @param sig
+     *            a string from the constant pool
+     */
+    private void addSignatureClasses(String sig) {
+        int start = sig.indexOf('L');
+        while (start >= 0) {
+            int end = start + 1;
+            int len = sig.length();
+            while ((end < len) && isClassNameChar(sig.charAt(end))) {
+                end++;
+            }
+
+            if ((end < len) && (end > (start + 1))) {
+                char terminator = sig.charAt(end);
+                if ((terminator == ';') || (terminator == '<')) {
+                    referencedClasses.add(sig.substring(start + 1, end));
+                }
+            }
+
+            start = sig.indexOf('L', end);
+        }
+    }
+
+    private static boolean isClassNameChar(char c) {
+        return (c != ';') && (c != '<') && (c != '>') && (c != '(') && (c != ')') && (c != '.') && (c != '[') && !Character.isWhitespace(c);
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+}
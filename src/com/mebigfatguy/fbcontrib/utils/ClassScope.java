@@ -0,0 +1,87 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import com.mebigfatguy.fbcontrib.collect.IncrementalAnalysis;
+
+import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.log.Profiler;
+
+/**
+ * the one place that decides whether a per class detector visits a class. FindBugs drives detectors that implement Detector2 directly, rather than thru
+ * its adapter for Detector, so the per class detectors extend one of the Scoped base classes, which implement Detector2 by passing each class here. A class
+ * whose results are replayed by an incremental analysis, or that lies outside the classes a change can affect, is dropped before the detector's
+ * visitClassContext is called. Any other class is visited just as the FindBugs adapter would visit it.
+ * <p>
+ * The collectors don't use these bases, as they must see every class. Nor do most whole program detectors, but those that do, such as CircularDependencies
+ * thru OpcodeInterestDetector, are recognized by the WholeProgramDetector marker, and visit every class too.
+ */
+public final class ClassScope {
+
+    /**
+     * private to reinforce the helper status of the class
+     */
+    private ClassScope() {
+    }
+
+    /**
+     * registers a per class detector with the incremental analysis, so that results are only replayed in a run with the same detectors. Whole program
+     * detectors aren't registered, as their bugs are never replayed.
+     *
+     * @param detector
+     *            the detector being created
+     */
+    public static void addDetector(Detector detector) {
+        if (!(detector instanceof WholeProgramDetector)) {
+            IncrementalAnalysis.addDetector(detector.getClass().getName());
+        }
+    }
+
+    /**
+     * visits a class with a detector, unless the class is skipped in this run and the detector isn't a whole program one
+     *
+     * @param detector
+     *            the detector to visit the class with
+     * @param classDescriptor
+     *            the class to visit
+     *
+     * @throws CheckedAnalysisException
+     *             if the class context can't be built
+     */
+    public static void visitClass(Detector detector, ClassDescriptor classDescriptor) throws CheckedAnalysisException {
+        if (!(detector instanceof WholeProgramDetector) && IncrementalAnalysis.isSkipped(classDescriptor.getDottedClassName())) {
+            return;
+        }
+
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        ClassContext classContext = analysisCache.getClassAnalysis(ClassContext.class, classDescriptor);
+        Profiler profiler = analysisCache.getProfiler();
+        profiler.start(detector.getClass());
+        try {
+            detector.visitClassContext(classContext);
+        } finally {
+            profiler.end(detector.getClass());
+        }
+    }
+}
@@ -18,6 +18,10 @@
  */
 package com.mebigfatguy.fbcontrib.utils;
 
+import java.util.BitSet;
+
+import org.apache.bcel.Constants;
+
 /**
  * a collection of static methods for working with retrieving arbitrary code
  * bytes in a code byte array
@@ -25,6 +29,27 @@ package com.mebigfatguy.fbcontrib.utils;
  */
 public class CodeByteUtils {
 
+    private static final int[] INSTRUCTION_LENGTHS = new int[256];
+
+    static {
+        for (int op = 0; op < INSTRUCTION_LENGTHS.length; op++) {
+            int len = 1;
+            if ((op < Constants.TYPE_OF_OPERANDS.length) && (Constants.NO_OF_OPERANDS[op] != Constants.UNDEFINED)
+                    && (Constants.NO_OF_OPERANDS[op] != Constants.UNPREDICTABLE)) {
+                for (short type : Constants.TYPE_OF_OPERANDS[op]) {
+                    if (type == Constants.T_SHORT) {
+                        len += 2;
+                    } else if (type == Constants.T_INT) {
+                        len += 4;
+                    } else {
+                        len += 1;
+                    }
+                }
+            }
+            INSTRUCTION_LENGTHS[op] = len;
+        }
+    }
+
     private CodeByteUtils() {
     }
 
@@ -53,4 +78,67 @@ public class CodeByteUtils {
     public static int getshort(byte[] bytes, int offset) {
         return (short) ((0x0000FFFF & (bytes[offset] << 8)) | (0x00FF & bytes[offset + 1]));
     }
+
+    /**
+     * returns the code int at a specific offset
+     *
+     * @param bytes
+     *            the code bytes
+     * @param offset
+     *            the offset into the code
+     * @return the int
+     */
+    public static int getint(byte[] bytes, int offset) {
+        return ((0x00FF & bytes[offset]) << 24) | ((0x00FF & bytes[offset + 1]) << 16) | ((0x00FF & bytes[offset + 2]) << 8) | (0x00FF & bytes[offset + 3]);
+    }
+
+    /**
+     * returns the length in bytes of the instruction starting at the offset, including its operands
+     *
+     * @param bytes
+     *            the code bytes
+     * @param offset
+     *            the offset of an instruction in the code
+     * @return the length of the instruction
+     */
+    public static int getInstructionLength(byte[] bytes, int offset) {
+        int op = getbyte(bytes, offset);
+        switch (op) {
+            case Constants.TABLESWITCH: {
+                int base = (offset + 4) & ~3;
+                int low = getint(bytes, base + 4);
+                int high = getint(bytes, base + 8);
+                return (base - offset) + 12 + ((high - low + 1) * 4);
+            }
+
+            case Constants.LOOKUPSWITCH: {
+                int base = (offset + 4) & ~3;
+                int npairs = getint(bytes, base + 4);
+                return (base - offset) + 8 + (npairs * 8);
+            }
+
+            case Constants.WIDE:
+                return (getbyte(bytes, offset + 1) == Constants.IINC) ? 6 : 4;
+
+            default:
+                return INSTRUCTION_LENGTHS[op];
+        }
+    }
+
+    /**
+     * returns the set of opcodes used in a block of code. This is a much cheaper walk of the code than a visitor does, as no operands are decoded.
+     *
+     * @param bytes
+     *            the code bytes
+     * @return the set of opcodes found
+     */
+    public static BitSet getOpcodeSet(byte[] bytes) {
+        BitSet opcodes = new BitSet(Constants.JSR_W + 1);
+        int offset = 0;
+        while (offset < bytes.length) {
+            opcodes.set(getbyte(bytes, offset));
+            offset += getInstructionLength(bytes, offset);
+        }
+        return opcodes;
+    }
 }
@@ -27,19 +27,6 @@ import org.apache.bcel.classfile.JavaClass;
  */
 public class CollectionUtils {
 
-    private static JavaClass LIST_CLASS = null;
-    private static JavaClass SET_CLASS = null;
-    private static JavaClass MAP_CLASS = null;
-
-    static {
-        try {
-            LIST_CLASS = Repository.lookupClass("java/util/List");
-            SET_CLASS = Repository.lookupClass("java/util/Set");
-            MAP_CLASS = Repository.lookupClass("java/util/Map");
-        } catch (ClassNotFoundException cnfe) {
-        }
-    }
-
     /**
      * private to reinforce the helper status of the class
      */
@@ -54,10 +41,11 @@ public class CollectionUtils {
      * @return if the class is a List, Set or Map
      * 
      * @throws ClassNotFoundException
-     *             if the cls parameter can't be found
+     *             if the cls parameter, or List, Set or Map, can't be found
      */
     public static boolean isListSetMap(String clsName) throws ClassNotFoundException {
         JavaClass cls = Repository.lookupClass(clsName);
-        return (cls.implementationOf(LIST_CLASS) || cls.implementationOf(SET_CLASS) || cls.implementationOf(MAP_CLASS));
+        return (TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.LIST.lookupClass()) || TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.SET.lookupClass())
+                || TypeHierarchyCache.isSubtypeOf(cls, WellKnownType.MAP.lookupClass()));
     }
 }
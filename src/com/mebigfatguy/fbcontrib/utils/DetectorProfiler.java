@@ -0,0 +1,508 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.BugReporterObserver;
+import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.Detector2;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.ProjectStats;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.log.Profiler;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+
+/**
+ * an opt in profiler of detectors, enabled by setting the system property fb-contrib.detector.profile to the file to write its report to. The report is a
+ * json document if the file name ends with .json, and csv otherwise, and is written when the jvm exits, along with a summary of the most expensive
+ * detectors, the number of which is given by fb-contrib.detector.profile.top, to System.err.
+ * <p>
+ * FindBugs already brackets each detector's visitClassContext, and each analysis it computes on demand, with calls to its profiler, which only records wall
+ * time. When enabled, that profiler is replaced by one that passes every call on to it, and also records wall time, thread cpu time and thread allocated
+ * bytes, each net of the nested calls, along with the classes visited and the methods they hold. Bugs reported are counted through a bug reporter observer.
+ * FindBugs does not profile report(), so fb-contrib detectors that do significant work there bracket it with startReport and endReport.
+ * <p>
+ * When the property is not set, nothing is replaced, and startReport and endReport return immediately.
+ */
+public final class DetectorProfiler {
+
+    public static final String PROFILE_PROPERTY = "fb-contrib.detector.profile";
+    public static final String PROFILE_TOP_PROPERTY = "fb-contrib.detector.profile.top";
+
+    private static final int DEFAULT_TOP = 20;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double BYTES_PER_MEG = 1024.0 * 1024.0;
+
+    private static final String PROFILE_FILE = System.getProperty(PROFILE_PROPERTY);
+    private static final boolean ENABLED = PROFILE_FILE != null;
+
+    private static final ConcurrentMap<String, Timings> TIMINGS = new ConcurrentHashMap<String, Timings>();
+    private static final ThreadLocal<Deque<Frame>> FRAMES = new ThreadLocal<Deque<Frame>>() {
+        @Override
+        protected Deque<Frame> initialValue() {
+            return new ArrayDeque<Frame>();
+        }
+    };
+
+    private static final ThreadMXBean THREAD_BEAN = ENABLED ? ManagementFactory.getThreadMXBean() : null;
+    private static final boolean CPU_TIME_SUPPORTED = ENABLED && THREAD_BEAN.isCurrentThreadCpuTimeSupported();
+    private static final boolean ALLOCATION_SUPPORTED = ENABLED && (THREAD_BEAN instanceof com.sun.management.ThreadMXBean)
+            && ((com.sun.management.ThreadMXBean) THREAD_BEAN).isThreadAllocatedMemorySupported();
+
+    static {
+        if (ENABLED) {
+            if (CPU_TIME_SUPPORTED) {
+                THREAD_BEAN.setThreadCpuTimeEnabled(true);
+            }
+            if (ALLOCATION_SUPPORTED) {
+                ((com.sun.management.ThreadMXBean) THREAD_BEAN).setThreadAllocatedMemoryEnabled(true);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread("fb-contrib detector profile report") {
+                @Override
+                public void run() {
+                    writeReport();
+                }
+            });
+        }
+    }
+
+    /**
+     * private to reinforce the helper status of the class
+     */
+    private DetectorProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * installs the profiler for the analysis that this reporter belongs to, if profiling is enabled, and it isn't installed already
+     *
+     * @param reporter
+     *            the bug reporter of the analysis
+     */
+    public static void start(BugReporter reporter) {
+        if (!ENABLED) {
+            return;
+        }
+
+        try {
+            ProjectStats stats = reporter.getProjectStats();
+            Field profilerField = ProjectStats.class.getDeclaredField("profiler");
+            profilerField.setAccessible(true);
+            Profiler current = (Profiler) profilerField.get(stats);
+            if (current instanceof ProfilingProfiler) {
+                return;
+            }
+            profilerField.set(stats, new ProfilingProfiler(current));
+            reporter.addObserver(new BugCounter());
+        } catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+            reporter.logError("Unable to install the fb-contrib detector profiler", e);
+        }
+    }
+
+    /**
+     * notes that a detector is starting its report, which FindBugs doesn't profile
+     *
+     * @param detector
+     *            the detector starting its report
+     */
+    public static void startReport(Object detector) {
+        if (ENABLED) {
+            push(detector.getClass(), -1);
+        }
+    }
+
+    /**
+     * notes that a detector has finished its report
+     *
+     * @param detector
+     *            the detector finishing its report
+     */
+    public static void endReport(Object detector) {
+        if (ENABLED) {
+            pop(detector.getClass());
+        }
+    }
+
+    /**
+     * returns the timings recorded so far, most expensive first
+     *
+     * @return the timings of each profiled class
+     */
+    public static List<Timings> getTimings() {
+        List<Timings> timings = new ArrayList<Timings>(TIMINGS.values());
+        Collections.sort(timings, new Comparator<Timings>() {
+            @Override
+            public int compare(Timings t1, Timings t2) {
+                int cmp = Long.compare(t2.wallNanos.get(), t1.wallNanos.get());
+                if (cmp != 0) {
+                    return cmp;
+                }
+                return t1.name.compareTo(t2.name);
+            }
+        });
+        return timings;
+    }
+
+    private static Timings getTimings(String name, boolean detector) {
+        Timings timings = TIMINGS.get(name);
+        if (timings == null) {
+            timings = new Timings(name, detector);
+            Timings existing = TIMINGS.putIfAbsent(name, timings);
+            if (existing != null) {
+                timings = existing;
+            }
+        }
+        return timings;
+    }
+
+    private static void push(Class<?> cls, int methodCount) {
+        Frame frame = new Frame(cls, methodCount);
+        FRAMES.get().push(frame);
+        frame.startAlloc = allocatedBytes();
+        frame.startCpu = cpuTime();
+        frame.startWall = System.nanoTime();
+    }
+
+    private static void pop(Class<?> cls) {
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        long alloc = allocatedBytes();
+
+        Deque<Frame> frames = FRAMES.get();
+        Frame frame = frames.peek();
+        while ((frame != null) && (frame.cls != cls)) {
+            // unbalanced, most likely from an exception, so drop what can't be matched
+            frames.pop();
+            frame = frames.peek();
+        }
+        if (frame == null) {
+            return;
+        }
+        frames.pop();
+
+        long wallUsed = wall - frame.startWall;
+        long cpuUsed = cpu - frame.startCpu;
+        long allocUsed = alloc - frame.startAlloc;
+
+        Timings timings = getTimings(cls.getName(), Detector.class.isAssignableFrom(cls) || Detector2.class.isAssignableFrom(cls));
+        timings.wallNanos.addAndGet(wallUsed - frame.childWall);
+        timings.cpuNanos.addAndGet(cpuUsed - frame.childCpu);
+        timings.allocatedBytes.addAndGet(allocUsed - frame.childAlloc);
+        if (frame.methodCount >= 0) {
+            timings.classes.incrementAndGet();
+            timings.methods.addAndGet(frame.methodCount);
+        }
+
+        Frame parent = frames.peek();
+        if (parent != null) {
+            parent.childWall += wallUsed;
+            parent.childCpu += cpuUsed;
+            parent.childAlloc += allocUsed;
+        }
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME_SUPPORTED ? THREAD_BEAN.getCurrentThreadCpuTime() : 0L;
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATION_SUPPORTED ? ((com.sun.management.ThreadMXBean) THREAD_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId()) : 0L;
+    }
+
+    private static void writeReport() {
+        List<Timings> timings = getTimings();
+        File profileFile = new File(PROFILE_FILE);
+        try (PrintWriter pw = new PrintWriter(profileFile, StandardCharsets.UTF_8.name())) {
+            if (PROFILE_FILE.endsWith(".json")) {
+                writeJson(pw, timings);
+            } else {
+                writeCsv(pw, timings);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed writing fb-contrib detector profile to " + profileFile + ": " + e.getMessage());
+        }
+
+        writeSummary(System.err, timings, Integer.getInteger(PROFILE_TOP_PROPERTY, DEFAULT_TOP).intValue());
+    }
+
+    private static void writeCsv(PrintWriter pw, List<Timings> timings) {
+        pw.println("name,kind,classes,methods,bugs,wall_nanos,cpu_nanos,allocated_bytes");
+        for (Timings t : timings) {
+            pw.printf("%s,%s,%d,%d,%d,%d,%d,%d%n", t.name, t.getKind(), Long.valueOf(t.classes.get()), Long.valueOf(t.methods.get()),
+                    Long.valueOf(t.bugs.get()), Long.valueOf(t.wallNanos.get()), Long.valueOf(t.cpuNanos.get()), Long.valueOf(t.allocatedBytes.get()));
+        }
+    }
+
+    private static void writeJson(PrintWriter pw, List<Timings> timings) {
+        pw.println("{");
+        pw.printf("  \"cpuTimeSupported\": %b,%n", Boolean.valueOf(CPU_TIME_SUPPORTED));
+        pw.printf("  \"allocationSupported\": %b,%n", Boolean.valueOf(ALLOCATION_SUPPORTED));
+        pw.println("  \"profiles\": [");
+        for (int i = 0; i < timings.size(); i++) {
+            Timings t = timings.get(i);
+            pw.printf(
+                    "    { \"name\": \"%s\", \"kind\": \"%s\", \"classes\": %d, \"methods\": %d, \"bugs\": %d, \"wallNanos\": %d, \"cpuNanos\": %d, \"allocatedBytes\": %d }%s%n",
+                    t.name.replace("\\", "\\\\").replace("\"", "\\\""), t.getKind(), Long.valueOf(t.classes.get()), Long.valueOf(t.methods.get()),
+                    Long.valueOf(t.bugs.get()), Long.valueOf(t.wallNanos.get()), Long.valueOf(t.cpuNanos.get()), Long.valueOf(t.allocatedBytes.get()),
+                    (i < (timings.size() - 1)) ? "," : "");
+        }
+        pw.println("  ]");
+        pw.println("}");
+    }
+
+    private static void writeSummary(PrintStream out, List<Timings> timings, int top) {
+        long totalWall = 0;
+        for (Timings t : timings) {
+            if (t.detector) {
+                totalWall += t.wallNanos.get();
+            }
+        }
+
+        out.printf("Top %d detectors by wall time, of %.1f ms in all detectors%n", Integer.valueOf(top), Double.valueOf(totalWall / NANOS_PER_MILLI));
+        out.printf("%-60s %10s %6s %10s %10s %8s %8s%n", "Detector", "Wall ms", "%", "Cpu ms", "Alloc MB", "Classes", "Bugs");
+        int shown = 0;
+        for (Timings t : timings) {
+            if (!t.detector) {
+                continue;
+            }
+            if (shown++ >= top) {
+                break;
+            }
+            long wall = t.wallNanos.get();
+            out.printf("%-60s %10.1f %6.1f %10.1f %10.1f %8d %8d%n", t.name, Double.valueOf(wall / NANOS_PER_MILLI),
+                    Double.valueOf((totalWall == 0) ? 0.0 : ((100.0 * wall) / totalWall)), Double.valueOf(t.cpuNanos.get() / NANOS_PER_MILLI),
+                    Double.valueOf(t.allocatedBytes.get() / BYTES_PER_MEG), Long.valueOf(t.classes.get()), Long.valueOf(t.bugs.get()));
+        }
+        out.flush();
+    }
+
+    /**
+     * the totals recorded for one detector, or analysis
+     */
+    public static final class Timings {
+        final String name;
+        final boolean detector;
+        final AtomicLong classes = new AtomicLong();
+        final AtomicLong methods = new AtomicLong();
+        final AtomicLong bugs = new AtomicLong();
+        final AtomicLong wallNanos = new AtomicLong();
+        final AtomicLong cpuNanos = new AtomicLong();
+        final AtomicLong allocatedBytes = new AtomicLong();
+
+        Timings(String name, boolean detector) {
+            this.name = name;
+            this.detector = detector;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getKind() {
+            return detector ? "detector" : "analysis";
+        }
+
+        public long getClasses() {
+            return classes.get();
+        }
+
+        public long getMethods() {
+            return methods.get();
+        }
+
+        public long getBugs() {
+            return bugs.get();
+        }
+
+        public long getWallNanos() {
+            return wallNanos.get();
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos.get();
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes.get();
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * one call in progress, with the resources used by the calls nested within it, so they can be subtracted
+     */
+    static final class Frame {
+        final Class<?> cls;
+        final int methodCount;
+        long startWall;
+        long startCpu;
+        long startAlloc;
+        long childWall;
+        long childCpu;
+        long childAlloc;
+
+        Frame(Class<?> cls, int methodCount) {
+            this.cls = cls;
+            this.methodCount = methodCount;
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * counts the bugs each detector reports
+     */
+    static final class BugCounter implements BugReporterObserver {
+        @Override
+        public void reportBug(BugInstance bug) {
+            DetectorFactory factory = bug.getDetectorFactory();
+            if (factory != null) {
+                getTimings(factory.getFullName(), true).bugs.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * the FindBugs profiler replacement, which hands every call to the profiler it replaces, so FindBugs' own profile is unaffected, and also records its own
+     * timings. The class being analyzed is read from the context FindBugs gives the original profiler.
+     */
+    static final class ProfilingProfiler extends Profiler {
+        private final Profiler delegate;
+        private final Stack<?> delegateContext;
+        private String lastClassName;
+        private int lastMethodCount;
+
+        @SuppressWarnings("unchecked")
+        ProfilingProfiler(Profiler delegate) throws NoSuchFieldException, IllegalAccessException {
+            this.delegate = delegate;
+            Field contextField = Profiler.class.getDeclaredField("context");
+            contextField.setAccessible(true);
+            delegateContext = (Stack<Object>) contextField.get(delegate);
+        }
+
+        @Override
+        public void startContext(Object context) {
+            delegate.startContext(context);
+        }
+
+        @Override
+        public void endContext(Object context) {
+            delegate.endContext(context);
+        }
+
+        @Override
+        public void start(Class<?> c) {
+            delegate.start(c);
+            push(c, (Detector.class.isAssignableFrom(c) || Detector2.class.isAssignableFrom(c)) ? getMethodCount() : -1);
+        }
+
+        @Override
+        public void end(Class<?> c) {
+            pop(c);
+            delegate.end(c);
+        }
+
+        @Override
+        public void report() {
+            delegate.report();
+        }
+
+        @Override
+        public void report(Comparator<Class<?>> reportComparator, Filter filter, PrintStream stream) {
+            delegate.report(reportComparator, filter, stream);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+
+        @Override
+        public Profile getProfile(Class<?> c) {
+            return delegate.getProfile(c);
+        }
+
+        @Override
+        public void writeXML(XMLOutput xmlOutput) throws IOException {
+            delegate.writeXML(xmlOutput);
+        }
+
+        private int getMethodCount() {
+            Object context = delegateContext.isEmpty() ? null : delegateContext.peek();
+            if (!(context instanceof String)) {
+                return 0;
+            }
+
+            String className = (String) context;
+            if (!className.equals(lastClassName)) {
+                lastClassName = className;
+                try {
+                    XClass xcls = Global.getAnalysisCache().getClassAnalysis(XClass.class, DescriptorFactory.createClassDescriptorFromDottedClassName(className));
+                    lastMethodCount = xcls.getXMethods().size();
+                } catch (CheckedAnalysisException e) {
+                    lastMethodCount = 0;
+                }
+            }
+            return lastMethodCount;
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * a precomputed index of the classes and methods of one version of the jdk, as built by {@link JDKApiIndexGenerator}. The index holds, for each class, a
+ * 64 bit hash of its name, the position of its superclass, and the sorted 32 bit hashes of the names and signatures of its methods, all in flat tables, so
+ * that it can be used straight from a memory mapped file, and looked up without allocating anything.
+ * <p>
+ * Indices are found first in the directory named by the system property fb-contrib.sjvu.index.dir, if set, as files named jdk&lt;version&gt;.idx, and then
+ * as resources of the same name in the /sjvu directory of the plugin jar.
+ */
+public final class JDKApiIndex {
+
+    public static final String INDEX_DIR_PROPERTY = "fb-contrib.sjvu.index.dir";
+
+    static final int MAGIC = 0x534A5655;
+    static final int FORMAT = 1;
+    static final int HEADER_SIZE = 20;
+    static final int NO_SUPER = -1;
+    static final int UNKNOWN_SUPER = -2;
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final int CLASS_FILE_MAJOR_OFFSET = 44;
+
+    private static final JDKApiIndex NO_INDEX = new JDKApiIndex(null, 0);
+    private static final ConcurrentMap<Integer, JDKApiIndex> INDICES = new ConcurrentHashMap<Integer, JDKApiIndex>();
+
+    private final ByteBuffer buffer;
+    private final int numClasses;
+    private final int superOffset;
+    private final int methodOffsetsOffset;
+    private final int methodsOffset;
+
+    private JDKApiIndex(ByteBuffer buffer, int numClasses) {
+        this.buffer = buffer;
+        this.numClasses = numClasses;
+        superOffset = HEADER_SIZE + (numClasses * 8);
+        methodOffsetsOffset = superOffset + (numClasses * 4);
+        methodsOffset = methodOffsetsOffset + ((numClasses + 1) * 4);
+    }
+
+    /**
+     * returns the index of the jdk that a class file version targets
+     *
+     * @param classMajorVersion
+     *            the major version of a class file, such as 52 for java 8
+     * @return the index for that jdk, or null if none is available
+     */
+    public static JDKApiIndex getIndex(int classMajorVersion) {
+        Integer version = Integer.valueOf(classMajorVersion - CLASS_FILE_MAJOR_OFFSET);
+        JDKApiIndex index = INDICES.get(version);
+        if (index == null) {
+            index = loadIndex(version.intValue());
+            JDKApiIndex existing = INDICES.putIfAbsent(version, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+
+        return (index == NO_INDEX) ? null : index;
+    }
+
+    /**
+     * finds a class in the index
+     *
+     * @param slashedClassName
+     *            the slashed name of the class
+     * @return the position of the class in the index, or -1 if the jdk does not have it
+     */
+    public int findClass(String slashedClassName) {
+        long hash = classHash(slashedClassName);
+        int low = 0;
+        int high = numClasses - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midHash = buffer.getLong(HEADER_SIZE + (mid * 8));
+            if (midHash < hash) {
+                low = mid + 1;
+            } else if (midHash > hash) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * determines whether a class, or one of its superclasses, has a method
+     *
+     * @param classIndex
+     *            the position of the class, as returned by findClass
+     * @param methodName
+     *            the name of the method
+     * @param signature
+     *            the signature of the method
+     * @return whether the method is found, or true if a superclass isn't in the index, and so the method can't be ruled out
+     */
+    public boolean hasMethod(int classIndex, String methodName, String signature) {
+        int hash = methodHash(methodName, signature);
+        int cls = classIndex;
+        while (cls >= 0) {
+            if (declaresMethod(cls, hash)) {
+                return true;
+            }
+            cls = buffer.getInt(superOffset + (cls * 4));
+        }
+        return cls == UNKNOWN_SUPER;
+    }
+
+    /**
+     * hashes a slashed class name, as the index does
+     *
+     * @param slashedClassName
+     *            the class name to hash
+     * @return the 64 bit hash of the name
+     */
+    public static long classHash(String slashedClassName) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < slashedClassName.length(); i++) {
+            h = (h ^ slashedClassName.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * hashes a method name and signature, as the index does
+     *
+     * @param methodName
+     *            the name of the method
+     * @param signature
+     *            the signature of the method
+     * @return the 32 bit hash of the method
+     */
+    public static int methodHash(String methodName, String signature) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < methodName.length(); i++) {
+            h = (h ^ methodName.charAt(i)) * FNV_PRIME;
+        }
+        for (int i = 0; i < signature.length(); i++) {
+            h = (h ^ signature.charAt(i)) * FNV_PRIME;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private boolean declaresMethod(int classIndex, int hash) {
+        int low = buffer.getInt(methodOffsetsOffset + (classIndex * 4));
+        int high = buffer.getInt(methodOffsetsOffset + ((classIndex + 1) * 4)) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midHash = buffer.getInt(methodsOffset + (mid * 4));
+            if (midHash < hash) {
+                low = mid + 1;
+            } else if (midHash > hash) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static JDKApiIndex loadIndex(int version) {
+        String fileName = "jdk" + version + ".idx";
+        try {
+            ByteBuffer buffer = null;
+            String indexDir = System.getProperty(INDEX_DIR_PROPERTY);
+            if (indexDir != null) {
+                File indexFile = new File(indexDir, fileName);
+                if (indexFile.isFile()) {
+                    try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+                        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    }
+                }
+            }
+
+            if (buffer == null) {
+                try (InputStream is = JDKApiIndex.class.getResourceAsStream("/sjvu/" + fileName)) {
+                    if (is == null) {
+                        return NO_INDEX;
+                    }
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    byte[] chunk = new byte[8192];
+                    int len = is.read(chunk);
+                    while (len >= 0) {
+                        baos.write(chunk, 0, len);
+                        len = is.read(chunk);
+                    }
+                    buffer = ByteBuffer.wrap(baos.toByteArray());
+                }
+            }
+
+            if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != FORMAT) || (buffer.getInt(8) != version)) {
+                return NO_INDEX;
+            }
+            return new JDKApiIndex(buffer, buffer.getInt(12));
+        } catch (IOException e) {
+            return NO_INDEX;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+}
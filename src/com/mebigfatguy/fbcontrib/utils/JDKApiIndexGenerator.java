@@ -0,0 +1,586 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * builds the jdk api indices read by {@link JDKApiIndex}. This is run at build time, not during analysis, as
+ * <p>
+ * java com.mebigfatguy.fbcontrib.utils.JDKApiIndexGenerator &lt;outputDir&gt; &lt;jdkHome&gt; &lt;version&gt;...
+ * <p>
+ * writing jdk&lt;version&gt;.idx for each version requested. If the version is that of the jdk itself, the classes are read from its runtime, either
+ * lib/rt.jar, or for java 9 and up, the jrt file system. Otherwise they are read from the lib/ct.sym file, which javac uses for --release, and which holds
+ * the public api of the previous releases the jdk can compile for.
+ * <p>
+ * So that every index covers the same api whichever way it was read, only the public classes of the java and javax packages, nested only in public
+ * classes, are indexed, along with the classes they derive from, and only their public and protected methods. When read from the jrt file system, the
+ * packages must also be exported, without qualification, by their module, as ct.sym only holds those.
+ */
+public final class JDKApiIndexGenerator {
+
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String SIG_SUFFIX = ".sig";
+    private static final String MODULE_INFO = "module-info";
+
+    private final Map<String, ClassEntry> classes = new TreeMap<String, ClassEntry>();
+    private Set<String> exportedPackages;
+
+    /**
+     * private to force use through main
+     */
+    private JDKApiIndexGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: " + JDKApiIndexGenerator.class.getName() + " outputDir jdkHome version...");
+            System.exit(1);
+        }
+
+        File outputDir = new File(args[0]);
+        File jdkHome = new File(args[1]);
+        int jdkVersion = getJDKVersion(jdkHome);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Failed creating output directory: " + outputDir);
+        }
+
+        for (int i = 2; i < args.length; i++) {
+            int version = Integer.parseInt(args[i]);
+            JDKApiIndexGenerator generator = new JDKApiIndexGenerator();
+            if (version == jdkVersion) {
+                generator.readRuntime(jdkHome);
+            } else {
+                generator.readCtSym(jdkHome, version);
+            }
+
+            File indexFile = new File(outputDir, "jdk" + version + ".idx");
+            generator.write(indexFile, version);
+            System.out.println("Wrote " + indexFile);
+        }
+    }
+
+    private static int getJDKVersion(File jdkHome) throws IOException {
+        Properties release = new Properties();
+        try (InputStream is = new FileInputStream(new File(jdkHome, "release"))) {
+            release.load(is);
+        }
+        String version = release.getProperty("JAVA_VERSION", "").replace("\"", "");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        int end = 0;
+        while ((end < version.length()) && Character.isDigit(version.charAt(end))) {
+            end++;
+        }
+        if (end == 0) {
+            throw new IOException("Unable to determine the version of " + jdkHome);
+        }
+        return Integer.parseInt(version.substring(0, end));
+    }
+
+    private void readRuntime(File jdkHome) throws IOException {
+        File rtJar = new File(jdkHome, "lib/rt.jar");
+        if (!rtJar.isFile()) {
+            rtJar = new File(jdkHome, "jre/lib/rt.jar");
+        }
+        if (rtJar.isFile()) {
+            try (ZipFile zf = new ZipFile(rtJar)) {
+                Enumeration<? extends ZipEntry> entries = zf.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry ze = entries.nextElement();
+                    if (ze.getName().endsWith(CLASS_SUFFIX)) {
+                        try (InputStream is = zf.getInputStream(ze)) {
+                            addClass(is);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+
+        Map<String, String> env = new HashMap<String, String>();
+        env.put("java.home", jdkHome.getPath());
+        exportedPackages = new HashSet<String>();
+        try (FileSystem jrt = newJrtFileSystem(jdkHome, env)) {
+            try (DirectoryStream<Path> modules = Files.newDirectoryStream(jrt.getPath("/modules"))) {
+                for (Path module : modules) {
+                    Path moduleInfo = module.resolve(MODULE_INFO + CLASS_SUFFIX);
+                    if (Files.isRegularFile(moduleInfo)) {
+                        try (InputStream is = Files.newInputStream(moduleInfo)) {
+                            exportedPackages.addAll(ClassEntry.parseExports(is));
+                        }
+                    }
+                    readClassTree(module);
+                }
+            }
+        }
+    }
+
+    private static FileSystem newJrtFileSystem(File jdkHome, Map<String, String> env) throws IOException {
+        URI jrtUri = URI.create("jrt:/");
+        try {
+            return FileSystems.newFileSystem(jrtUri, env);
+        } catch (RuntimeException e) {
+            // an older jvm, that doesn't know about jrt, so load the provider from the target jdk
+            URLClassLoader loader = new URLClassLoader(new URL[] { new File(jdkHome, "lib/jrt-fs.jar").toURI().toURL() });
+            return FileSystems.newFileSystem(jrtUri, env, loader);
+        }
+    }
+
+    private void readClassTree(Path dir) throws IOException {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                if (Files.isDirectory(child)) {
+                    readClassTree(child);
+                } else if (child.getFileName().toString().endsWith(CLASS_SUFFIX)) {
+                    try (InputStream is = Files.newInputStream(child)) {
+                        addClass(is);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * reads the classes of one release from ct.sym. Each entry is filed under a directory, whose name lists the releases the entry belongs to, one base 36
+     * digit per release. In newer jdks, the class path within that directory is preceded by the name of its module.
+     */
+    private void readCtSym(File jdkHome, int version) throws IOException {
+        File ctSym = new File(jdkHome, "lib/ct.sym");
+        if (!ctSym.isFile()) {
+            throw new IOException("No ct.sym found in " + jdkHome);
+        }
+
+        char releaseChar = Character.toUpperCase(Character.forDigit(version, Character.MAX_RADIX));
+        try (ZipFile zf = new ZipFile(ctSym)) {
+            Enumeration<? extends ZipEntry> entries = zf.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry ze = entries.nextElement();
+                String name = ze.getName();
+                int slashPos = name.indexOf('/');
+                if ((slashPos < 0) || !name.endsWith(SIG_SUFFIX) || name.endsWith(MODULE_INFO + SIG_SUFFIX)) {
+                    continue;
+                }
+                String releases = name.substring(0, slashPos);
+                if (releases.contains("-") || (releases.indexOf(releaseChar) < 0)) {
+                    continue;
+                }
+                try (InputStream is = zf.getInputStream(ze)) {
+                    addClass(is);
+                }
+            }
+        }
+
+        if (classes.isEmpty()) {
+            throw new IOException("ct.sym of " + jdkHome + " has no classes for release " + version);
+        }
+    }
+
+    private void addClass(InputStream is) throws IOException {
+        ClassEntry entry = ClassEntry.parse(is);
+        if ((entry != null) && !classes.containsKey(entry.name)) {
+            classes.put(entry.name, entry);
+        }
+    }
+
+    /**
+     * keeps only the classes the detector asks about, the public ones in the exported java and javax packages, along with any classes they derive from
+     */
+    private List<ClassEntry> getApiClasses() {
+        Map<String, ClassEntry> apiClasses = new TreeMap<String, ClassEntry>();
+        for (ClassEntry entry : classes.values()) {
+            if ((entry.name.startsWith("java/") || entry.name.startsWith("javax/")) && isPublic(entry) && isExported(entry.name)) {
+                ClassEntry cls = entry;
+                while ((cls != null) && !apiClasses.containsKey(cls.name)) {
+                    apiClasses.put(cls.name, cls);
+                    cls = (cls.superName == null) ? null : classes.get(cls.superName);
+                }
+            }
+        }
+        return new ArrayList<ClassEntry>(apiClasses.values());
+    }
+
+    /**
+     * determines whether a class can be used outside its package, which for a nested class, also requires that the classes it is nested in are public
+     */
+    private boolean isPublic(ClassEntry entry) {
+        ClassEntry cls = entry;
+        while (cls != null) {
+            if (!cls.isPublic()) {
+                return false;
+            }
+            int dollarPos = cls.name.lastIndexOf('$');
+            cls = (dollarPos < 0) ? null : classes.get(cls.name.substring(0, dollarPos));
+        }
+        return true;
+    }
+
+    private boolean isExported(String clsName) {
+        if (exportedPackages == null) {
+            return true;
+        }
+        int slashPos = clsName.lastIndexOf('/');
+        return (slashPos >= 0) && exportedPackages.contains(clsName.substring(0, slashPos));
+    }
+
+    private void write(File indexFile, int version) throws IOException {
+        List<ClassEntry> entries = getApiClasses();
+        for (ClassEntry entry : entries) {
+            entry.hash = JDKApiIndex.classHash(entry.name);
+        }
+        Collections.sort(entries);
+
+        Map<String, Integer> positions = new HashMap<String, Integer>();
+        int numMethods = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            ClassEntry entry = entries.get(i);
+            if ((i > 0) && (entries.get(i - 1).hash == entry.hash)) {
+                throw new IOException("Class name hash collision: " + entries.get(i - 1).name + " and " + entry.name);
+            }
+            positions.put(entry.name, Integer.valueOf(i));
+            numMethods += entry.methodHashes.length;
+        }
+
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            dos.writeInt(JDKApiIndex.MAGIC);
+            dos.writeInt(JDKApiIndex.FORMAT);
+            dos.writeInt(version);
+            dos.writeInt(entries.size());
+            dos.writeInt(numMethods);
+            for (ClassEntry entry : entries) {
+                dos.writeLong(entry.hash);
+            }
+            for (ClassEntry entry : entries) {
+                if (entry.superName == null) {
+                    dos.writeInt(JDKApiIndex.NO_SUPER);
+                } else {
+                    Integer superPos = positions.get(entry.superName);
+                    dos.writeInt((superPos == null) ? JDKApiIndex.UNKNOWN_SUPER : superPos.intValue());
+                }
+            }
+            int offset = 0;
+            for (ClassEntry entry : entries) {
+                dos.writeInt(offset);
+                offset += entry.methodHashes.length;
+            }
+            dos.writeInt(offset);
+            for (ClassEntry entry : entries) {
+                for (int hash : entry.methodHashes) {
+                    dos.writeInt(hash);
+                }
+            }
+        }
+
+        if (indexFile.exists() && !indexFile.delete()) {
+            throw new IOException("Failed replacing " + indexFile);
+        }
+        if (!tempFile.renameTo(indexFile)) {
+            throw new IOException("Failed renaming " + tempFile + " to " + indexFile);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+
+    /**
+     * the name, superclass and method hashes of one class, read with just enough of the class file format to find them
+     */
+    static final class ClassEntry implements Comparable<ClassEntry> {
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_INTEGER = 3;
+        private static final int CONSTANT_FLOAT = 4;
+        private static final int CONSTANT_LONG = 5;
+        private static final int CONSTANT_DOUBLE = 6;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_STRING = 8;
+        private static final int CONSTANT_FIELDREF = 9;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_INTERFACE_METHODREF = 11;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+        private static final int CONSTANT_METHOD_HANDLE = 15;
+        private static final int CONSTANT_METHOD_TYPE = 16;
+        private static final int CONSTANT_DYNAMIC = 17;
+        private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+        private static final int CONSTANT_MODULE = 19;
+        private static final int CONSTANT_PACKAGE = 20;
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_PROTECTED = 0x0004;
+        private static final int ACC_SYNTHETIC = 0x1000;
+        private static final String MODULE_ATTRIBUTE = "Module";
+
+        final String name;
+        final String superName;
+        final int accessFlags;
+        final int[] methodHashes;
+        long hash;
+
+        private ClassEntry(String name, String superName, int accessFlags, int[] methodHashes) {
+            this.name = name;
+            this.superName = superName;
+            this.accessFlags = accessFlags;
+            this.methodHashes = methodHashes;
+        }
+
+        boolean isPublic() {
+            return (accessFlags & ACC_PUBLIC) != 0;
+        }
+
+        static ClassEntry parse(InputStream is) throws IOException {
+            try (DataInputStream dis = open(is)) {
+                int[] nameIndices = new int[dis.readUnsignedShort()];
+                String[] utf8s = readConstantPool(dis, nameIndices);
+
+                int accessFlags = dis.readUnsignedShort();
+                String name = utf8s[nameIndices[dis.readUnsignedShort()]];
+                if (name.endsWith(MODULE_INFO)) {
+                    return null;
+                }
+                int superIndex = dis.readUnsignedShort();
+                String superName = (superIndex == 0) ? null : utf8s[nameIndices[superIndex]];
+
+                skipInterfacesAndFields(dis);
+
+                int methodCount = dis.readUnsignedShort();
+                int[] methodHashes = new int[methodCount];
+                int numCallable = 0;
+                for (int i = 0; i < methodCount; i++) {
+                    int methodAccessFlags = dis.readUnsignedShort();
+                    String methodName = utf8s[dis.readUnsignedShort()];
+                    String signature = utf8s[dis.readUnsignedShort()];
+                    if (((methodAccessFlags & (ACC_PUBLIC | ACC_PROTECTED)) != 0) && ((methodAccessFlags & ACC_SYNTHETIC) == 0)) {
+                        methodHashes[numCallable++] = JDKApiIndex.methodHash(methodName, signature);
+                    }
+                    skipAttributes(dis);
+                }
+                methodHashes = Arrays.copyOf(methodHashes, numCallable);
+                Arrays.sort(methodHashes);
+
+                return new ClassEntry(name, superName, accessFlags, methodHashes);
+            }
+        }
+
+        /**
+         * reads the packages a module exports to all other modules from its module-info class
+         *
+         * @param is
+         *            the stream of the module-info class
+         * @return the slashed names of the packages exported without qualification
+         */
+        static Set<String> parseExports(InputStream is) throws IOException {
+            try (DataInputStream dis = open(is)) {
+                int[] nameIndices = new int[dis.readUnsignedShort()];
+                String[] utf8s = readConstantPool(dis, nameIndices);
+
+                dis.readUnsignedShort();
+                dis.readUnsignedShort();
+                dis.readUnsignedShort();
+                skipInterfacesAndFields(dis);
+                int methodCount = dis.readUnsignedShort();
+                for (int i = 0; i < methodCount; i++) {
+                    dis.readUnsignedShort();
+                    dis.readUnsignedShort();
+                    dis.readUnsignedShort();
+                    skipAttributes(dis);
+                }
+
+                Set<String> exports = new HashSet<String>();
+                int attributeCount = dis.readUnsignedShort();
+                for (int i = 0; i < attributeCount; i++) {
+                    String attributeName = utf8s[dis.readUnsignedShort()];
+                    int length = dis.readInt();
+                    if (!MODULE_ATTRIBUTE.equals(attributeName)) {
+                        dis.skipBytes(length);
+                        continue;
+                    }
+
+                    dis.readUnsignedShort();
+                    dis.readUnsignedShort();
+                    dis.readUnsignedShort();
+                    int requiresCount = dis.readUnsignedShort();
+                    for (int r = 0; r < requiresCount; r++) {
+                        dis.readUnsignedShort();
+                        dis.readUnsignedShort();
+                        dis.readUnsignedShort();
+                    }
+                    int exportsCount = dis.readUnsignedShort();
+                    for (int e = 0; e < exportsCount; e++) {
+                        String packageName = utf8s[nameIndices[dis.readUnsignedShort()]];
+                        dis.readUnsignedShort();
+                        int toCount = dis.readUnsignedShort();
+                        for (int t = 0; t < toCount; t++) {
+                            dis.readUnsignedShort();
+                        }
+                        if (toCount == 0) {
+                            exports.add(packageName);
+                        }
+                    }
+                    break;
+                }
+                return exports;
+            }
+        }
+
+        private static DataInputStream open(InputStream is) throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int len = is.read(chunk);
+            while (len >= 0) {
+                baos.write(chunk, 0, len);
+                len = is.read(chunk);
+            }
+
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+            if (dis.readInt() != 0xCAFEBABE) {
+                throw new IOException("Not a class file");
+            }
+            dis.readUnsignedShort();
+            dis.readUnsignedShort();
+            return dis;
+        }
+
+        /**
+         * reads the constant pool, whose count has already been read, returning its utf8 strings, and filling in the name index of each class, module and
+         * package constant
+         */
+        private static String[] readConstantPool(DataInputStream dis, int[] nameIndices) throws IOException {
+            int poolCount = nameIndices.length;
+            String[] utf8s = new String[poolCount];
+            for (int i = 1; i < poolCount; i++) {
+                int tag = dis.readUnsignedByte();
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        utf8s[i] = dis.readUTF();
+                    break;
+                    case CONSTANT_CLASS:
+                    case CONSTANT_MODULE:
+                    case CONSTANT_PACKAGE:
+                        nameIndices[i] = dis.readUnsignedShort();
+                    break;
+                    case CONSTANT_STRING:
+                    case CONSTANT_METHOD_TYPE:
+                        dis.readUnsignedShort();
+                    break;
+                    case CONSTANT_METHOD_HANDLE:
+                        dis.readUnsignedByte();
+                        dis.readUnsignedShort();
+                    break;
+                    case CONSTANT_INTEGER:
+                    case CONSTANT_FLOAT:
+                    case CONSTANT_FIELDREF:
+                    case CONSTANT_METHODREF:
+                    case CONSTANT_INTERFACE_METHODREF:
+                    case CONSTANT_NAME_AND_TYPE:
+                    case CONSTANT_DYNAMIC:
+                    case CONSTANT_INVOKE_DYNAMIC:
+                        dis.readInt();
+                    break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        dis.readLong();
+                        i++;
+                    break;
+                    default:
+                        throw new IOException("Unknown constant pool tag: " + tag);
+                }
+            }
+            return utf8s;
+        }
+
+        private static void skipInterfacesAndFields(DataInputStream dis) throws IOException {
+            int interfaceCount = dis.readUnsignedShort();
+            for (int i = 0; i < interfaceCount; i++) {
+                dis.readUnsignedShort();
+            }
+
+            int fieldCount = dis.readUnsignedShort();
+            for (int i = 0; i < fieldCount; i++) {
+                dis.readUnsignedShort();
+                dis.readUnsignedShort();
+                dis.readUnsignedShort();
+                skipAttributes(dis);
+            }
+        }
+
+        private static void skipAttributes(DataInputStream dis) throws IOException {
+            int attributeCount = dis.readUnsignedShort();
+            for (int i = 0; i < attributeCount; i++) {
+                dis.readUnsignedShort();
+                int length = dis.readInt();
+                dis.skipBytes(length);
+            }
+        }
+
+        @Override
+        public int compareTo(ClassEntry other) {
+            return Long.compare(hash, other.hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ClassEntry)) {
+                return false;
+            }
+            return name.equals(((ClassEntry) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.bcel.BCELUtil;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
+
+/**
+ * the loops of a method, as found from its backward branches, arranged as a forest by how they nest. Each backward branch is a back edge of the loop whose
+ * header is its target, so loops sharing a header, as with a continue statement, are one loop. A loop spans from its header to its last back edge, and is
+ * exited by falling through that back edge. The nesting is built once per method, and cached in the ClassContext, so all detectors visiting the same class
+ * share it, and the loop depth and innermost loop at any pc are looked up in constant time.
+ */
+public class LoopNesting {
+
+    private static final LoopNesting NO_LOOPS = new LoopNesting(Collections.<Loop> emptyList(), Collections.<BackEdge> emptyList(), null);
+
+    private final List<Loop> loops;
+    private final List<BackEdge> backEdges;
+    private final Loop[] innermostLoops;
+
+    private LoopNesting(List<Loop> methodLoops, List<BackEdge> methodBackEdges, Loop[] innermost) {
+        loops = methodLoops;
+        backEdges = methodBackEdges;
+        innermostLoops = innermost;
+    }
+
+    /**
+     * retrieves the loop nesting of a method, building it if this is the first detector to ask for it for this class
+     *
+     * @param classContext
+     *            the context object of the class being parsed
+     * @param method
+     *            the method to get the loops of
+     * @return the loop nesting, or null if the method has no code
+     */
+    public static LoopNesting getLoopNesting(ClassContext classContext, Method method) {
+        Code code = method.getCode();
+        if (code == null) {
+            return null;
+        }
+
+        JavaClass cls = classContext.getJavaClass();
+        MethodDescriptor md = BCELUtil.getMethodDescriptor(cls, method);
+        LoopNesting nesting = (LoopNesting) classContext.getMethodAnalysis(LoopNesting.class, md);
+        if (nesting == null) {
+            BackEdgeFinder finder = new BackEdgeFinder();
+            finder.setupVisitorForClass(cls);
+            finder.doVisitMethod(method);
+            nesting = build(finder.backEdges, code.getLength());
+            classContext.putMethodAnalysis(LoopNesting.class, md, nesting);
+        }
+
+        return nesting;
+    }
+
+    /**
+     * returns whether the method has any loops at all
+     *
+     * @return whether there are loops
+     */
+    public boolean hasLoops() {
+        return !loops.isEmpty();
+    }
+
+    /**
+     * returns the loops of the method, outer loops before the loops they contain
+     *
+     * @return the loops, ordered by header
+     */
+    public List<Loop> getLoops() {
+        return loops;
+    }
+
+    /**
+     * returns the number of loops that contain the instruction at a pc
+     *
+     * @param pc
+     *            the program counter of the instruction
+     * @return the loop depth, 0 if the instruction isn't in a loop
+     */
+    public int getDepth(int pc) {
+        Loop loop = getInnermostLoop(pc);
+        return (loop == null) ? 0 : loop.getDepth();
+    }
+
+    /**
+     * returns the most deeply nested loop that contains the instruction at a pc
+     *
+     * @param pc
+     *            the program counter of the instruction
+     * @return the innermost loop, or null if the instruction isn't in a loop
+     */
+    public Loop getInnermostLoop(int pc) {
+        if ((innermostLoops == null) || (pc < 0) || (pc >= innermostLoops.length)) {
+            return null;
+        }
+        return innermostLoops[pc];
+    }
+
+    /**
+     * returns whether the instruction at a pc is the target of a back edge
+     *
+     * @param pc
+     *            the program counter of the instruction
+     * @return whether a loop starts at pc
+     */
+    public boolean isLoopHeader(int pc) {
+        Loop loop = getInnermostLoop(pc);
+        return (loop != null) && (loop.getHeader() == pc);
+    }
+
+    /**
+     * returns the back edge that is the branch instruction at a pc
+     *
+     * @param pc
+     *            the program counter of the instruction
+     * @return the back edge, or null if the instruction at pc isn't a backward branch
+     */
+    public BackEdge getBackEdge(int pc) {
+        int low = 0;
+        int high = backEdges.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            BackEdge edge = backEdges.get(mid);
+            if (edge.getPC() < pc) {
+                low = mid + 1;
+            } else if (edge.getPC() > pc) {
+                high = mid - 1;
+            } else {
+                return edge;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+
+    /**
+     * groups the back edges, which are in pc order, by header, and nests the loops so formed. As loops are visited in header order, a loop that starts
+     * within another is the inner one, and so overwrites the innermost loop of the pcs it covers.
+     */
+    private static LoopNesting build(List<BackEdge> backEdges, int codeLength) {
+        if (backEdges.isEmpty()) {
+            return NO_LOOPS;
+        }
+
+        Map<Integer, List<BackEdge>> edgesByHeader = new TreeMap<Integer, List<BackEdge>>();
+        for (BackEdge edge : backEdges) {
+            Integer header = Integer.valueOf(edge.getTarget());
+            List<BackEdge> edges = edgesByHeader.get(header);
+            if (edges == null) {
+                edges = new ArrayList<BackEdge>(2);
+                edgesByHeader.put(header, edges);
+            }
+            edges.add(edge);
+        }
+
+        List<Loop> loops = new ArrayList<Loop>(edgesByHeader.size());
+        Loop[] innermost = new Loop[codeLength];
+        for (Map.Entry<Integer, List<BackEdge>> entry : edgesByHeader.entrySet()) {
+            int header = entry.getKey().intValue();
+            Loop loop = new Loop(header, Collections.unmodifiableList(entry.getValue()), innermost[header]);
+            for (int pc = header; pc <= loop.getEnd(); pc++) {
+                innermost[pc] = loop;
+            }
+            loops.add(loop);
+        }
+
+        return new LoopNesting(Collections.unmodifiableList(loops), Collections.unmodifiableList(backEdges), innermost);
+    }
+
+    /**
+     * a loop of the method, from its header to its last back edge
+     */
+    public static class Loop {
+        private final int header;
+        private final List<BackEdge> backEdges;
+        private final Loop parent;
+        private final int depth;
+
+        Loop(int headerPC, List<BackEdge> loopBackEdges, Loop parentLoop) {
+            header = headerPC;
+            backEdges = loopBackEdges;
+            parent = parentLoop;
+            depth = (parentLoop == null) ? 1 : parentLoop.getDepth() + 1;
+        }
+
+        /**
+         * returns the pc of the first instruction of the loop, which all of its back edges branch to
+         *
+         * @return the header pc
+         */
+        public int getHeader() {
+            return header;
+        }
+
+        /**
+         * returns the backward branches to the header, in pc order
+         *
+         * @return the back edges
+         */
+        public List<BackEdge> getBackEdges() {
+            return backEdges;
+        }
+
+        /**
+         * returns the pc of the last back edge, the last instruction of the loop
+         *
+         * @return the end pc
+         */
+        public int getEnd() {
+            return backEdges.get(backEdges.size() - 1).getPC();
+        }
+
+        /**
+         * returns the pc of the instruction following the last back edge, which is where the loop is left
+         *
+         * @return the exit pc
+         */
+        public int getExit() {
+            return backEdges.get(backEdges.size() - 1).getNextPC();
+        }
+
+        /**
+         * returns the loop this loop is nested in
+         *
+         * @return the enclosing loop, or null for an outermost loop
+         */
+        public Loop getParent() {
+            return parent;
+        }
+
+        /**
+         * returns how deeply the loop is nested, 1 for an outermost loop
+         *
+         * @return the nesting depth
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * returns whether the instruction at a pc lies within the loop
+         *
+         * @param pc
+         *            the program counter of the instruction
+         * @return whether the loop contains pc
+         */
+        public boolean contains(int pc) {
+            return (pc >= header) && (pc <= getEnd());
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * a branch instruction whose target is at or before itself
+     */
+    public static class BackEdge {
+        private final int pc;
+        private final int opcode;
+        private final int target;
+        private final int nextPC;
+        private final int prevPC;
+
+        BackEdge(int branchPC, int branchOpcode, int branchTarget, int followingPC, int precedingPC) {
+            pc = branchPC;
+            opcode = branchOpcode;
+            target = branchTarget;
+            nextPC = followingPC;
+            prevPC = precedingPC;
+        }
+
+        public int getPC() {
+            return pc;
+        }
+
+        public int getOpcode() {
+            return opcode;
+        }
+
+        public int getTarget() {
+            return target;
+        }
+
+        /**
+         * returns whether the branch is always taken, rather than being a conditional test at the bottom of the loop
+         *
+         * @return whether the back edge is a GOTO or GOTO_W
+         */
+        public boolean isGoto() {
+            return (opcode == Constants.GOTO) || (opcode == Constants.GOTO_W);
+        }
+
+        public int getNextPC() {
+            return nextPC;
+        }
+
+        /**
+         * returns the pc of the instruction just before the branch
+         *
+         * @return the previous pc, or -1 if the branch is the first instruction
+         */
+        public int getPrevPC() {
+            return prevPC;
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * walks the bytecode of a method once, collecting its backward branches
+     */
+    static class BackEdgeFinder extends DismantleBytecode {
+        final List<BackEdge> backEdges = new ArrayList<BackEdge>();
+        private int prevPC;
+
+        @Override
+        public void visitCode(Code obj) {
+            prevPC = -1;
+            super.visitCode(obj);
+        }
+
+        @Override
+        public void sawOpcode(int seen) {
+            int pc = getPC();
+            if (OpcodeUtils.isBranch(seen) && (getBranchOffset() <= 0)) {
+                backEdges.add(new BackEdge(pc, seen, getBranchTarget(), getNextPC(), prevPC));
+            }
+            prevPC = pc;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.util.BitSet;
+
+/**
+ * declares the set of opcodes a detector acts upon. A detector implementing this interface promises that its sawOpcode method ignores all other opcodes,
+ * and does not depend on seeing them, so that they need not be dispatched to it, and methods that contain none of them need not be walked at all.
+ * <p>
+ * Detectors that maintain an OpcodeStack must see every instruction, and so should not implement this interface.
+ */
+public interface OpcodeInterest {
+
+    /**
+     * returns the opcodes this detector wants to see. The returned set must not change over the life of the detector.
+     *
+     * @return the set of interesting opcodes
+     */
+    BitSet getInterestingOpcodes();
+}
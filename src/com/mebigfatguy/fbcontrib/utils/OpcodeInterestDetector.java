@@ -0,0 +1,83 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import org.apache.bcel.classfile.Code;
+
+import edu.umd.cs.findbugs.ba.ClassContext;
+
+/**
+ * a BytecodeScanningDetector that only has sawOpcode called for the opcodes it declares interest in, thru {@link OpcodeInterest}. Methods whose bytecode
+ * contains none of the interesting opcodes are not walked at all, as decided by the detector's {@link Prescreen}.
+ */
+public abstract class OpcodeInterestDetector extends ScopedBytecodeScanningDetector implements OpcodeInterest {
+
+    private Prescreen prescreen;
+
+    /**
+     * overrides the visitor to skip classes that the prescreen rejects. Subclasses that override visitClassContext should call super.visitClassContext as
+     * usual.
+     *
+     * @param classContext
+     *            the context object of the currently parsed class
+     */
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        if (getPrescreen().acceptClass(classContext)) {
+            super.visitClassContext(classContext);
+        }
+    }
+
+    /**
+     * asks the prescreen whether the current method contains any interesting opcodes, as the dispatcher does before calling visitCode
+     *
+     * @param obj
+     *            the context object of the currently parsed code block
+     * @return whether the code contains any interesting opcodes
+     */
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        return getPrescreen().acceptMethod(getClassContext(), getMethod());
+    }
+
+    /**
+     * returns the prescreen for this detector, which by default requires only that a method contains one of the interesting opcodes. Detectors that can also
+     * rule out whole classes, should override this to register a prescreen with the class references they need.
+     *
+     * @return the prescreen of this detector
+     */
+    protected Prescreen getPrescreen() {
+        if (prescreen == null) {
+            prescreen = Prescreen.register(getClass(), getInterestingOpcodes());
+        }
+        return prescreen;
+    }
+
+    /**
+     * implements the dispatcher hook to only pass on interesting opcodes to sawOpcode
+     *
+     * @param seen
+     *            the currently parsed opcode
+     * @return whether sawOpcode should be called for this opcode
+     */
+    @Override
+    public boolean beforeOpcode(int seen) {
+        return getInterestingOpcodes().get(seen);
+    }
+}
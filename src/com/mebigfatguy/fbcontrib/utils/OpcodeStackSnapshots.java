@@ -0,0 +1,209 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+
+import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.bcel.BCELUtil;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
+
+/**
+ * holds the state of an OpcodeStack before and after every instruction of a method, so that detectors that only need to read the stack do not have to each
+ * run their own simulation of the same bytecode. The snapshots are built once per method, and cached in the ClassContext, so all detectors visiting the same
+ * class share them.
+ * <p>
+ * Items found in the snapshots are shared between detectors, and so must not be modified. Detectors that need to associate their own values with stack items
+ * should use a {@link UserValues} side channel instead of OpcodeStack.Item.setUserValue.
+ * <p>
+ * A detector that drove an OpcodeStack of its own can keep a Snapshot field in its place, setting it to EMPTY_SNAPSHOT where it reset the stack, to
+ * before(pc) where it called precomputation, and to after(pc) where it called sawOpcode. It then sees the same stack at every point as it did before.
+ */
+public class OpcodeStackSnapshots {
+
+    /**
+     * the stack on method entry, and wherever nothing is on it
+     */
+    public static final Snapshot EMPTY_SNAPSHOT = new Snapshot(new OpcodeStack.Item[0]);
+
+    private final Snapshot[] before;
+    private final Snapshot[] after;
+
+    private OpcodeStackSnapshots(int codeLength) {
+        before = new Snapshot[codeLength];
+        after = new Snapshot[codeLength];
+    }
+
+    /**
+     * retrieves the snapshots for a method, building them if this is the first detector to ask for them for this class
+     *
+     * @param classContext
+     *            the context object of the class being parsed
+     * @param method
+     *            the method to get the stack snapshots for
+     * @return the snapshots, or null if the method has no code
+     */
+    public static OpcodeStackSnapshots getSnapshots(ClassContext classContext, Method method) {
+        Code code = method.getCode();
+        if (code == null) {
+            return null;
+        }
+
+        JavaClass cls = classContext.getJavaClass();
+        MethodDescriptor md = BCELUtil.getMethodDescriptor(cls, method);
+        OpcodeStackSnapshots snapshots = (OpcodeStackSnapshots) classContext.getMethodAnalysis(OpcodeStackSnapshots.class, md);
+        if (snapshots == null) {
+            snapshots = new OpcodeStackSnapshots(code.getLength());
+            SnapshotBuilder builder = new SnapshotBuilder(snapshots);
+            builder.setupVisitorForClass(cls);
+            builder.doVisitMethod(method);
+            classContext.putMethodAnalysis(OpcodeStackSnapshots.class, md, snapshots);
+        }
+
+        return snapshots;
+    }
+
+    /**
+     * returns the stack as it was just before the instruction at pc was executed
+     *
+     * @param pc
+     *            the program counter of the instruction
+     * @return the stack before the instruction
+     */
+    public Snapshot before(int pc) {
+        Snapshot s = before[pc];
+        return (s == null) ? EMPTY_SNAPSHOT : s;
+    }
+
+    /**
+     * returns the stack as it was just after the instruction at pc was executed
+     *
+     * @param pc
+     *            the program counter of the instruction
+     * @return the stack after the instruction
+     */
+    public Snapshot after(int pc) {
+        Snapshot s = after[pc];
+        return (s == null) ? EMPTY_SNAPSHOT : s;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+
+    /**
+     * a read only view of the OpcodeStack at one point of the method, with the same accessors as OpcodeStack itself, so that converting a detector is
+     * mostly a matter of changing the type of the field it reads.
+     */
+    public static class Snapshot {
+        private final OpcodeStack.Item[] items;
+
+        Snapshot(OpcodeStack.Item[] stackItems) {
+            items = stackItems;
+        }
+
+        public int getStackDepth() {
+            return items.length;
+        }
+
+        public OpcodeStack.Item getStackItem(int depth) {
+            return items[depth];
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * a detector specific association of values to the shared stack items, used in place of OpcodeStack.Item.setUserValue. Items keep their identity in
+     * successive snapshots as long as they stay on the stack, so a value attached to an item after the instruction that pushed it, is seen by later
+     * instructions that look at that item.
+     */
+    public static class UserValues {
+        private final Map<OpcodeStack.Item, Object> values = new IdentityHashMap<OpcodeStack.Item, Object>();
+
+        public Object get(OpcodeStack.Item item) {
+            return values.get(item);
+        }
+
+        public void put(OpcodeStack.Item item, Object value) {
+            values.put(item, value);
+        }
+
+        public void clear() {
+            values.clear();
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * walks the bytecode of a method once, recording the stack state around each instruction
+     */
+    static class SnapshotBuilder extends DismantleBytecode {
+        private final OpcodeStackSnapshots snapshots;
+        private final OpcodeStack stack;
+
+        SnapshotBuilder(OpcodeStackSnapshots stackSnapshots) {
+            snapshots = stackSnapshots;
+            stack = new OpcodeStack();
+        }
+
+        @Override
+        public void visitCode(Code obj) {
+            stack.resetForMethodEntry(this);
+            super.visitCode(obj);
+        }
+
+        @Override
+        public void sawOpcode(int seen) {
+            int pc = getPC();
+            stack.precomputation(this);
+            snapshots.before[pc] = snapshot();
+            stack.sawOpcode(this, seen);
+            snapshots.after[pc] = snapshot();
+        }
+
+        private Snapshot snapshot() {
+            int depth = stack.getStackDepth();
+            if (depth == 0) {
+                return EMPTY_SNAPSHOT;
+            }
+
+            OpcodeStack.Item[] items = new OpcodeStack.Item[depth];
+            for (int i = 0; i < depth; i++) {
+                items[i] = stack.getStackItem(i);
+            }
+            return new Snapshot(items);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.Method;
+
+import edu.umd.cs.findbugs.ba.ClassContext;
+
+/**
+ * a central registry of the cheap checks detectors use to skip classes and methods that they cannot possibly report on. Each detector registers the opcodes
+ * and the referenced class prefixes it requires, and asks its prescreen before walking a class or method. The prescreen counts what it accepted and what
+ * it skipped for each detector, and if the system property fb-contrib.prescreen.report is set to true, dumps those counts to System.err when the jvm exits.
+ */
+public final class Prescreen {
+
+    public static final String PRESCREEN_REPORT_PROPERTY = "fb-contrib.prescreen.report";
+
+    private static final ConcurrentMap<Class<?>, Prescreen> REGISTRY = new ConcurrentHashMap<Class<?>, Prescreen>();
+
+    static {
+        if (Boolean.getBoolean(PRESCREEN_REPORT_PROPERTY)) {
+            Runtime.getRuntime().addShutdownHook(new Thread("fb-contrib prescreen report") {
+                @Override
+                public void run() {
+                    report(System.err);
+                }
+            });
+        }
+    }
+
+    private final String detectorName;
+    private final BitSet[] requiredOpcodes;
+    private final Set<String> requiredReferencePrefixes;
+    private final AtomicLong classesVisited = new AtomicLong();
+    private final AtomicLong classesSkipped = new AtomicLong();
+    private final AtomicLong methodsVisited = new AtomicLong();
+    private final AtomicLong methodsSkipped = new AtomicLong();
+
+    private Prescreen(String detectorName, Set<String> requiredReferencePrefixes, BitSet... requiredOpcodes) {
+        this.detectorName = detectorName;
+        this.requiredReferencePrefixes = requiredReferencePrefixes;
+        this.requiredOpcodes = requiredOpcodes;
+    }
+
+    /**
+     * registers the method level requirements of a detector. A method is visited only if, for each of the opcode sets given, it contains at least one opcode
+     * from that set. Registering a detector a second time returns the original prescreen.
+     *
+     * @param detectorClass
+     *            the class of the detector being registered
+     * @param requiredOpcodes
+     *            sets of opcodes, one of each of which must be found in a method for it to be visited
+     * @return the prescreen for this detector
+     */
+    public static Prescreen register(Class<?> detectorClass, BitSet... requiredOpcodes) {
+        return register(detectorClass, Collections.<String> emptySet(), requiredOpcodes);
+    }
+
+    /**
+     * registers the class and method level requirements of a detector. A class is visited only if it refers to a class starting with at least one of the
+     * required prefixes, and a method only if, for each of the opcode sets given, it contains at least one opcode from that set. Registering a detector a second time
+     * returns the original prescreen.
+     *
+     * @param detectorClass
+     *            the class of the detector being registered
+     * @param requiredReferencePrefixes
+     *            slashed package or class name prefixes, one of which must be referenced by a class for it to be visited, or an empty set to visit all
+     *            classes
+     * @param requiredOpcodes
+     *            sets of opcodes, one of each of which must be found in a method for it to be visited
+     * @return the prescreen for this detector
+     */
+    public static Prescreen register(Class<?> detectorClass, Set<String> requiredReferencePrefixes, BitSet... requiredOpcodes) {
+        Prescreen prescreen = REGISTRY.get(detectorClass);
+        if (prescreen == null) {
+            BitSet[] opcodes = new BitSet[requiredOpcodes.length];
+            for (int i = 0; i < requiredOpcodes.length; i++) {
+                opcodes[i] = (BitSet) requiredOpcodes[i].clone();
+            }
+            prescreen = new Prescreen(detectorClass.getName(), Collections.unmodifiableSet(new HashSet<String>(requiredReferencePrefixes)), opcodes);
+            Prescreen existing = REGISTRY.putIfAbsent(detectorClass, prescreen);
+            if (existing != null) {
+                prescreen = existing;
+            }
+        }
+        return prescreen;
+    }
+
+    /**
+     * builds a set of opcodes, for use in registering a prescreen
+     *
+     * @param opcodes
+     *            the opcodes to include
+     * @return a set of those opcodes
+     */
+    public static BitSet opcodes(int... opcodes) {
+        BitSet set = new BitSet(Constants.JSR_W + 1);
+        for (int op : opcodes) {
+            set.set(op);
+        }
+        return set;
+    }
+
+    /**
+     * builds a set of referenced class prefixes, for use in registering a prescreen
+     *
+     * @param prefixes
+     *            the slashed package or class name prefixes to include, such as "java/sql/"
+     * @return a set of those prefixes
+     */
+    public static Set<String> prefixes(String... prefixes) {
+        return new HashSet<String>(Arrays.asList(prefixes));
+    }
+
+    /**
+     * determines whether a class refers to any of the apis this detector requires
+     *
+     * @param classContext
+     *            the context object of the class to be visited
+     * @return whether the class should be visited
+     */
+    public boolean acceptClass(ClassContext classContext) {
+        boolean accept = requiredReferencePrefixes.isEmpty() || ClassReferenceIndex.getIndex(classContext).refersToAny(requiredReferencePrefixes);
+        (accept ? classesVisited : classesSkipped).incrementAndGet();
+        return accept;
+    }
+
+    /**
+     * determines whether a method contains the opcodes this detector requires. The opcodes of a method are taken from the class context, which caches them,
+     * so that all the detectors asking about a method share one walk of its code.
+     *
+     * @param classContext
+     *            the context object of the class of the method
+     * @param method
+     *            the method to be visited
+     * @return whether the method should be visited
+     */
+    public boolean acceptMethod(ClassContext classContext, Method method) {
+        BitSet bytecodeSet = classContext.getBytecodeSet(method);
+        boolean accept = (bytecodeSet != null) && containsRequiredOpcodes(bytecodeSet);
+        (accept ? methodsVisited : methodsSkipped).incrementAndGet();
+        return accept;
+    }
+
+    /**
+     * returns the prescreens of all detectors that have registered one
+     *
+     * @return the registered prescreens, sorted by detector name
+     */
+    public static List<Prescreen> getRegisteredPrescreens() {
+        List<Prescreen> prescreens = new ArrayList<Prescreen>(REGISTRY.values());
+        Collections.sort(prescreens, new Comparator<Prescreen>() {
+            @Override
+            public int compare(Prescreen p1, Prescreen p2) {
+                return p1.detectorName.compareTo(p2.detectorName);
+            }
+        });
+        return prescreens;
+    }
+
+    /**
+     * writes the visited and skipped counts of all registered prescreens
+     *
+     * @param out
+     *            the stream to write the report to
+     */
+    public static void report(PrintStream out) {
+        out.printf("%-60s %10s %10s %10s %10s%n", "Detector", "Classes", "Skipped", "Methods", "Skipped");
+        for (Prescreen prescreen : getRegisteredPrescreens()) {
+            out.printf("%-60s %10d %10d %10d %10d%n", prescreen.detectorName, Long.valueOf(prescreen.classesVisited.get()),
+                    Long.valueOf(prescreen.classesSkipped.get()), Long.valueOf(prescreen.methodsVisited.get()), Long.valueOf(prescreen.methodsSkipped.get()));
+        }
+        out.flush();
+    }
+
+    public String getDetectorName() {
+        return detectorName;
+    }
+
+    public long getClassesVisited() {
+        return classesVisited.get();
+    }
+
+    public long getClassesSkipped() {
+        return classesSkipped.get();
+    }
+
+    public long getMethodsVisited() {
+        return methodsVisited.get();
+    }
+
+    public long getMethodsSkipped() {
+        return methodsSkipped.get();
+    }
+
+    private boolean containsRequiredOpcodes(BitSet opcodeSet) {
+        for (BitSet required : requiredOpcodes) {
+            if (!opcodeSet.intersects(required)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+}
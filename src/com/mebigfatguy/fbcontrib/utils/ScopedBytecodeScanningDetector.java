@@ -0,0 +1,69 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.Detector2;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+
+/**
+ * a BytecodeScanningDetector that is only handed the classes that are in the scope of this run, as decided by {@link ClassScope}
+ */
+public abstract class ScopedBytecodeScanningDetector extends BytecodeScanningDetector implements Detector2 {
+
+    /**
+     * registers the detector with ClassScope, as each detector is created
+     */
+    protected ScopedBytecodeScanningDetector() {
+        ClassScope.addDetector(this);
+    }
+
+    /**
+     * implements the Detector2 interface to visit the class thru ClassScope, which skips classes that are outside the scope of this run
+     *
+     * @param classDescriptor
+     *            the class to visit
+     *
+     * @throws CheckedAnalysisException
+     *             if the class context can't be built
+     */
+    @Override
+    public void visitClass(ClassDescriptor classDescriptor) throws CheckedAnalysisException {
+        ClassScope.visitClass(this, classDescriptor);
+    }
+
+    /**
+     * implements the Detector2 interface to finish the detector's pass by reporting, as FindBugs does for a Detector
+     */
+    @Override
+    public void finishPass() {
+        report();
+    }
+
+    /**
+     * implements the Detector2 interface to name the detector
+     *
+     * @return the name of the detector's class
+     */
+    @Override
+    public String getDetectorClassName() {
+        return getClass().getName();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+/**
+ * helpers for detectors that match strings by hand, instead of running them through java.util.regex patterns, while keeping the meaning those patterns had.
+ * A '.' in a pattern doesn't match line terminators, and CASE_INSENSITIVE, without UNICODE_CASE, only folds the case of us-ascii letters, so these helpers
+ * do the same.
+ */
+public final class StringMatchUtils {
+
+    /**
+     * private to reinforce the helper status of the class
+     */
+    private StringMatchUtils() {
+    }
+
+    /**
+     * returns whether a character is one of the line terminators a '.' in a pattern won't match, that is a line feed, carriage return, next line (0x85),
+     * line separator (0x2028) or paragraph separator (0x2029)
+     *
+     * @param c
+     *            the character to check
+     * @return whether the character is a line terminator
+     */
+    public static boolean isLineTerminator(char c) {
+        return (c == '\n') || (c == '\r') || (c == 0x85) || (c == 0x2028) || (c == 0x2029);
+    }
+
+    /**
+     * returns whether a range of a string holds a line terminator, and so can't be matched by .*
+     *
+     * @param s
+     *            the string to check
+     * @param start
+     *            the first index of the range
+     * @param end
+     *            the index after the range
+     * @return whether a line terminator is found in the range
+     */
+    public static boolean hasLineTerminator(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isLineTerminator(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * returns whether a string holds a literal at a given index, comparing us-ascii letters without regard to case, as a CASE_INSENSITIVE pattern does
+     *
+     * @param s
+     *            the string to look in
+     * @param offset
+     *            the index the literal is to start at
+     * @param literal
+     *            the literal to look for
+     * @return whether the literal is found at the index
+     */
+    public static boolean regionMatchesIgnoreAsciiCase(String s, int offset, String literal) {
+        int len = literal.length();
+        if ((offset < 0) || (offset > (s.length() - len))) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(offset + i);
+            char l = literal.charAt(i);
+            if ((c != l) && ((toAsciiLowerCase(c) != toAsciiLowerCase(l)) || !isAsciiLetter(c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * returns whether a string holds a literal anywhere, comparing us-ascii letters without regard to case, as a CASE_INSENSITIVE pattern does
+     *
+     * @param s
+     *            the string to look in
+     * @param literal
+     *            the literal to look for
+     * @return whether the literal is found
+     */
+    public static boolean containsIgnoreAsciiCase(String s, String literal) {
+        for (int i = s.length() - literal.length(); i >= 0; i--) {
+            if (regionMatchesIgnoreAsciiCase(s, i, literal)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * returns whether a character is an us-ascii letter
+     *
+     * @param c
+     *            the character to check
+     * @return whether the character is in a-z or A-Z
+     */
+    public static boolean isAsciiLetter(char c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+    }
+
+    /**
+     * returns whether a character is matched by \w in a pattern, that is an us-ascii letter or digit, or an underscore
+     *
+     * @param c
+     *            the character to check
+     * @return whether the character is a word character
+     */
+    public static boolean isWordChar(char c) {
+        return isAsciiLetter(c) || ((c >= '0') && (c <= '9')) || (c == '_');
+    }
+
+    /**
+     * returns whether a character is matched by \s in a pattern, that is a space, tab, line feed, vertical tab, form feed or carriage return
+     *
+     * @param c
+     *            the character to check
+     * @return whether the character is white space
+     */
+    public static boolean isSpace(char c) {
+        return (c == ' ') || ((c >= '\t') && (c <= '\r'));
+    }
+
+    private static char toAsciiLowerCase(char c) {
+        return ((c >= 'A') && (c <= 'Z')) ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -36,14 +36,15 @@ import edu.umd.cs.findbugs.OpcodeStack;
  * should be left alone. This is currently not happening in findbugs. So this
  * class saves off user values across a GOTO involved with a ternary and
  * restores them appropriately.
+ * <p>
+ * The values saved belong to the stack of the method being parsed, so each
+ * detector holds its own patcher, which lets detectors run on several threads
+ * at once.
  */
 public class TernaryPatcher {
 
-    private static List<Object> userValues = new ArrayList<Object>();
-    private static boolean sawGOTO = false;
-
-    private TernaryPatcher() {
-    }
+    private final List<Object> userValues = new ArrayList<Object>();
+    private boolean sawGOTO = false;
 
     /**
      * called before the execution of the parent OpcodeStack.sawOpcode() to save
@@ -54,7 +55,7 @@ public class TernaryPatcher {
      * @param opcode
      *            the opcode currently seen
      */
-    public static void pre(OpcodeStack stack, int opcode) {
+    public void pre(OpcodeStack stack, int opcode) {
         if (!sawGOTO) {
             sawGOTO = (opcode == Constants.GOTO) || (opcode == Constants.GOTO_W);
             if (sawGOTO) {
@@ -80,7 +81,7 @@ public class TernaryPatcher {
      * @param opcode
      *            the opcode currently seen
      */
-    public static void post(OpcodeStack stack, int opcode) {
+    public void post(OpcodeStack stack, int opcode) {
         if ((opcode != Constants.GOTO) && (opcode != Constants.GOTO_W)) {
             if (sawGOTO) {
                 int depth = stack.getStackDepth();
@@ -100,4 +101,9 @@ public class TernaryPatcher {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public String toString() {
+        return ToString.build(this);
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.util.Repository;
+
+/**
+ * a shared memo of subtype questions, so that detectors asking whether one class is derived from, or implements, another, don't each walk the superclass
+ * and interface chains again. Class names are interned to int ids, and answers are kept in a table keyed by the pair of ids. Classes that can't be found
+ * are remembered as well, so they aren't looked up again. The cache is dropped whenever the bcel repository changes, as happens between analysis runs.
+ * <p>
+ * If the system property fb-contrib.typecache.report is set to true, the hit and miss counts are written to System.err when the jvm exits. What the cache
+ * saves each detector is measured by the TypeCacheSavings benchmark, which profiles the detectors with the cache turned on and off.
+ */
+public final class TypeHierarchyCache {
+
+    public static final String TYPECACHE_REPORT_PROPERTY = "fb-contrib.typecache.report";
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private static volatile Memo memo = new Memo(null);
+    private static volatile boolean enabled = true;
+
+    static {
+        if (Boolean.getBoolean(TYPECACHE_REPORT_PROPERTY)) {
+            Runtime.getRuntime().addShutdownHook(new Thread("fb-contrib type cache report") {
+                @Override
+                public void run() {
+                    long hits = HITS.get();
+                    long misses = MISSES.get();
+                    long total = hits + misses;
+                    System.err.printf("TypeHierarchyCache: %d queries, %d hits, %d misses, %.1f%% hit ratio%n", Long.valueOf(total), Long.valueOf(hits),
+                            Long.valueOf(misses), Double.valueOf((total == 0) ? 0.0 : ((100.0 * hits) / total)));
+                }
+            });
+        }
+    }
+
+    /**
+     * private to reinforce the helper status of the class
+     */
+    private TypeHierarchyCache() {
+    }
+
+    /**
+     * determines whether a class is the same as, derived from, or implements another class, as JavaClass.instanceOf does
+     *
+     * @param subClassName
+     *            the dotted or slashed name of the possible subtype
+     * @param superClassName
+     *            the dotted or slashed name of the possible supertype
+     * @return whether the first class is a subtype of the second
+     *
+     * @throws ClassNotFoundException
+     *             if either class, or a class in between, can't be found
+     */
+    public static boolean isSubtypeOf(String subClassName, String superClassName) throws ClassNotFoundException {
+        return isSubtypeOf(subClassName.replace('/', '.'), superClassName.replace('/', '.'), null, null);
+    }
+
+    /**
+     * determines whether a class is the same as, derived from, or implements another class, as JavaClass.instanceOf does, for callers that already have the
+     * classes at hand. Either class may be null, as when it was looked up as a WellKnownType that isn't on the classpath, in which case the answer is false.
+     *
+     * @param subClass
+     *            the possible subtype, or null
+     * @param superClass
+     *            the possible supertype, or null
+     * @return whether the first class is a subtype of the second, and false if either is null
+     *
+     * @throws ClassNotFoundException
+     *             if a class in between can't be found
+     */
+    public static boolean isSubtypeOf(JavaClass subClass, JavaClass superClass) throws ClassNotFoundException {
+        if ((subClass == null) || (superClass == null)) {
+            return false;
+        }
+
+        return isSubtypeOf(subClass.getClassName(), superClass.getClassName(), subClass, superClass);
+    }
+
+    /**
+     * drops all answers collected so far, for when classes have changed without the bcel repository changing, as between the requests of the analysis
+     * daemon
+     */
+    public static void clear() {
+        memo = new Memo(null);
+    }
+
+    /**
+     * turns the memo on or off, so that what it saves can be measured. While it is off, every query walks the class hierarchy, and counts as a miss.
+     *
+     * @param enable
+     *            whether answers should be memoized
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    public static long getHits() {
+        return HITS.get();
+    }
+
+    public static long getMisses() {
+        return MISSES.get();
+    }
+
+    private static boolean isSubtypeOf(String subName, String superName, JavaClass subClass, JavaClass superClass) throws ClassNotFoundException {
+        if (subName.equals(superName)) {
+            HITS.incrementAndGet();
+            return true;
+        }
+
+        if (!enabled) {
+            MISSES.incrementAndGet();
+            JavaClass sub = (subClass != null) ? subClass : org.apache.bcel.Repository.lookupClass(subName);
+            JavaClass sup = (superClass != null) ? superClass : org.apache.bcel.Repository.lookupClass(superName);
+            return sub.instanceOf(sup);
+        }
+
+        Memo m = getMemo();
+        long key = m.key(subName, superName);
+        byte answer = m.answers.get(key);
+        if (answer != Memo.UNKNOWN) {
+            HITS.incrementAndGet();
+            return answer == Memo.YES;
+        }
+
+        MISSES.incrementAndGet();
+        JavaClass sub = (subClass != null) ? subClass : m.lookupClass(subName);
+        JavaClass sup = (superClass != null) ? superClass : m.lookupClass(superName);
+        boolean isSubtype = sub.instanceOf(sup);
+        m.answers.put(key, isSubtype ? Memo.YES : Memo.NO);
+        return isSubtype;
+    }
+
+    private static Memo getMemo() {
+        Repository repository = org.apache.bcel.Repository.getRepository();
+        Memo m = memo;
+        if (m.repository != repository) {
+            synchronized (TypeHierarchyCache.class) {
+                m = memo;
+                if (m.repository != repository) {
+                    m = new Memo(repository);
+                    memo = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * the answers collected for one bcel repository
+     */
+    static final class Memo {
+        static final byte UNKNOWN = 0;
+        static final byte NO = 1;
+        static final byte YES = 2;
+
+        final Repository repository;
+        final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+        final AtomicInteger nextId = new AtomicInteger();
+        final Set<String> missingClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AnswerTable answers = new AnswerTable();
+
+        Memo(Repository repository) {
+            this.repository = repository;
+        }
+
+        long key(String subName, String superName) {
+            return (((long) id(subName)) << 32) | (id(superName) & 0xFFFFFFFFL);
+        }
+
+        int id(String clsName) {
+            Integer id = ids.get(clsName);
+            if (id == null) {
+                Integer newId = Integer.valueOf(nextId.getAndIncrement());
+                id = ids.putIfAbsent(clsName, newId);
+                if (id == null) {
+                    id = newId;
+                }
+            }
+            return id.intValue();
+        }
+
+        JavaClass lookupClass(String clsName) throws ClassNotFoundException {
+            if (missingClasses.contains(clsName)) {
+                throw new ClassNotFoundException(clsName);
+            }
+
+            try {
+                return org.apache.bcel.Repository.lookupClass(clsName);
+            } catch (ClassNotFoundException e) {
+                missingClasses.add(clsName);
+                throw e;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+
+    /**
+     * an open addressed hash table from a pair of class ids, packed in a long, to an answer, which avoids boxing either the keys or the values
+     */
+    static final class AnswerTable {
+        private static final float LOAD_FACTOR = 0.5f;
+
+        private long[] keys = new long[1024];
+        private byte[] values = new byte[1024];
+        private int size;
+
+        synchronized byte get(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != Memo.UNKNOWN) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return Memo.UNKNOWN;
+        }
+
+        synchronized void put(long key, byte value) {
+            if ((size + 1) > (keys.length * LOAD_FACTOR)) {
+                grow();
+            }
+            if (insert(keys, values, key, value)) {
+                size++;
+            }
+        }
+
+        private void grow() {
+            long[] newKeys = new long[keys.length * 2];
+            byte[] newValues = new byte[values.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != Memo.UNKNOWN) {
+                    insert(newKeys, newValues, keys[i], values[i]);
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        private static boolean insert(long[] tableKeys, byte[] tableValues, long key, byte value) {
+            int mask = tableKeys.length - 1;
+            int slot = hash(key) & mask;
+            while (tableValues[slot] != Memo.UNKNOWN) {
+                if (tableKeys[slot] == key) {
+                    tableValues[slot] = value;
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            tableKeys[slot] = key;
+            tableValues[slot] = value;
+            return true;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+}
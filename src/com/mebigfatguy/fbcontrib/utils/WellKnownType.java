@@ -0,0 +1,147 @@
+/*
+ * fb-contrib - Auxiliary detectors for Java programs
+ * Copyright (C) 2005-2016 Dave Brosius
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.mebigfatguy.fbcontrib.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.util.Repository;
+
+/**
+ * the classes that detectors compare the classes they see against, such as java.util.Collection or java.lang.Throwable. Rather than each detector looking
+ * these up when it is loaded or created, which is done for every detector whether or not it is enabled, or ever sees a class where it matters, they are
+ * looked up the first time a detector asks for them, and shared by all detectors. Like the TypeHierarchyCache, the classes found are dropped whenever the
+ * bcel repository changes, as happens between analysis runs, so that a class from an earlier run isn't compared against the classes of a later one.
+ */
+public enum WellKnownType {
+    // @formatter:off
+    OBJECT("java/lang/Object"),
+    THROWABLE("java/lang/Throwable"),
+    EXCEPTION("java/lang/Exception"),
+    RUNTIME_EXCEPTION("java/lang/RuntimeException"),
+    ASSERTION_ERROR("java/lang/AssertionError"),
+    CLONEABLE("java/lang/Cloneable"),
+    COMPARABLE("java/lang/Comparable"),
+    THREAD_LOCAL("java/lang/ThreadLocal"),
+    INVOCATION_HANDLER("java/lang/reflect/InvocationHandler"),
+    SERIALIZABLE("java/io/Serializable"),
+    READER("java/io/Reader"),
+    COLLECTION("java/util/Collection"),
+    LIST("java/util/List"),
+    SET("java/util/Set"),
+    MAP("java/util/Map"),
+    QUEUE("java/util/Queue"),
+    ITERATOR("java/util/Iterator"),
+    COMPARATOR("java/util/Comparator"),
+    CALENDAR("java/util/Calendar"),
+    WINDOW("java/awt/Window"),
+    COMPONENT("java/awt/Component"),
+    JCOMPONENT("javax/swing/JComponent"),
+    ACCESSIBLE("javax/accessibility/Accessible"),
+    JUNIT_TEST_CASE("junit/framework/TestCase"),
+    JUNIT_TEST("org/junit/Test"),
+    TESTNG_TEST("org/testng/annotations/Test");
+    // @formatter:on
+
+    private static volatile Lookups lookups = new Lookups(null);
+
+    private final String className;
+
+    WellKnownType(String className) {
+        this.className = className;
+    }
+
+    /**
+     * returns the slashed name of the class
+     *
+     * @return the class name
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * returns the class from the current bcel repository, looking it up if it hasn't been yet
+     *
+     * @return the class, or null if it can't be found
+     */
+    public JavaClass getJavaClass() {
+        Lookups l = getLookups();
+        Object cls = l.classes.get(ordinal());
+        if (cls == null) {
+            try {
+                cls = org.apache.bcel.Repository.lookupClass(className);
+            } catch (ClassNotFoundException e) {
+                cls = Lookups.NOT_FOUND;
+            }
+            l.classes.set(ordinal(), cls);
+        }
+        return (cls == Lookups.NOT_FOUND) ? null : (JavaClass) cls;
+    }
+
+    /**
+     * returns the class from the current bcel repository, for callers that report the class missing
+     *
+     * @return the class
+     *
+     * @throws ClassNotFoundException
+     *             if the class can't be found
+     */
+    public JavaClass lookupClass() throws ClassNotFoundException {
+        JavaClass cls = getJavaClass();
+        if (cls == null) {
+            throw new ClassNotFoundException(className);
+        }
+        return cls;
+    }
+
+    private static Lookups getLookups() {
+        Repository repository = org.apache.bcel.Repository.getRepository();
+        Lookups l = lookups;
+        if (l.repository != repository) {
+            synchronized (WellKnownType.class) {
+                l = lookups;
+                if (l.repository != repository) {
+                    l = new Lookups(repository);
+                    lookups = l;
+                }
+            }
+        }
+        return l;
+    }
+
+    /**
+     * the classes found in one bcel repository, by ordinal, with classes that couldn't be found marked as such
+     */
+    static final class Lookups {
+        static final Object NOT_FOUND = new Object();
+
+        final Repository repository;
+        final AtomicReferenceArray<Object> classes = new AtomicReferenceArray<Object>(values().length);
+
+        Lookups(Repository repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public String toString() {
+            return ToString.build(this);
+        }
+    }
+}